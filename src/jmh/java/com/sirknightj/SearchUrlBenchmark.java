@@ -0,0 +1,60 @@
+package com.sirknightj;
+
+import com.sirknightj.utils.DateHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats dates with {@link DateHelper#getFormattedAndURLEncodedDateString(ZonedDateTime)}, and builds the search
+ * URIs of the four interval queries of a repository with {@link GithubAPI#searchUri}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchUrlBenchmark {
+
+    private final ZonedDateTime start = ZonedDateTime.of(2023, 8, 20, 9, 0, 0, 0, ZoneId.of("America/Los_Angeles"));
+    private final ZonedDateTime end = this.start.plusDays(1);
+    private final String owner = "facebookresearch";
+    private final String name = "audiocraft";
+
+    @Benchmark
+    public String formatDate() {
+        return DateHelper.getFormattedAndURLEncodedDateString(this.start);
+    }
+
+    @Benchmark
+    public URI searchUri() {
+        return searchUri("+is%3Aissue+created%3A");
+    }
+
+    /**
+     * The URIs of one repository's interval queries.
+     */
+    @Benchmark
+    public int repositorySearchUris() {
+        return searchUri("+is%3Aissue+created%3A").hashCode()
+                ^ searchUri("+is%3Aissue+closed%3A").hashCode()
+                ^ searchUri("+is%3Apr+created%3A").hashCode()
+                ^ searchUri("+is%3Apr+closed%3A").hashCode();
+    }
+
+    private URI searchUri(final String qualifier) {
+        return GithubAPI.searchUri(GithubAPI.DEFAULT_API_BASE_URL, this.owner, this.name, qualifier, this.start, this.end);
+    }
+}
@@ -0,0 +1,159 @@
+package com.sirknightj.benchmark;
+
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long a one-shot run ({@code Main once}) takes to send its first request, in fresh JVMs. Not a JMH
+ * benchmark: JMH measures code inside a JVM that has already started.
+ * <p>
+ * Each run is a new process, pointed at a local stand-in for both GitHub and CloudWatch, which notes when the first
+ * GitHub request and the first PutMetricData request arrive. Every variant is run several times, after a discarded
+ * first run, and the medians are printed:
+ * <ul>
+ *     <li>{@code netty}: the SDK's default HTTP client, as every run used before.</li>
+ *     <li>{@code jdk}: the JDK's HTTP client, the default of one-shot runs.</li>
+ *     <li>{@code jdk + AppCDS}: the same, with the class-data archive of the {@code appcds} profile, if given.</li>
+ * </ul>
+ * Arguments: the classpath of the application (e.g. the jar), the number of runs (default 5), and the AppCDS archive.
+ * The archive only matches the classpath it was dumped with.
+ */
+public class StartupBenchmark {
+
+    private static final String JAVA = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    private final HttpServer server;
+    private final AtomicLong firstGithubRequestNanos = new AtomicLong();
+    private final AtomicLong firstCloudWatchRequestNanos = new AtomicLong();
+
+    private StartupBenchmark() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/search/issues", exchange -> {
+            this.firstGithubRequestNanos.compareAndSet(0, System.nanoTime());
+            respondToGithub(exchange, "{\"total_count\":1,\"incomplete_results\":false,\"items\":[{\"number\":1}]}");
+        });
+        this.server.createContext("/repos/", exchange -> {
+            this.firstGithubRequestNanos.compareAndSet(0, System.nanoTime());
+            respondToGithub(exchange, "[{\"number\":1}]");
+        });
+        this.server.createContext("/", exchange -> {
+            this.firstCloudWatchRequestNanos.compareAndSet(0, System.nanoTime());
+            respond(exchange, "text/xml", "<PutMetricDataResponse xmlns=\"http://monitoring.amazonaws.com/doc/2010-08-01/\">"
+                    + "<ResponseMetadata><RequestId>ok</RequestId></ResponseMetadata></PutMetricDataResponse>");
+        });
+        this.server.start();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StartupBenchmark <application classpath> [runs] [AppCDS archive]");
+            System.exit(2);
+        }
+        final String classpath = args[0];
+        final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final String archive = args.length > 2 ? args[2] : null;
+
+        final StartupBenchmark benchmark = new StartupBenchmark();
+        try {
+            System.out.printf("%-14s  %21s  %21s  %9s%n", "Variant", "First GitHub request", "First PutMetricData", "Exit");
+            benchmark.measure("netty", classpath, List.of(), "netty", runs);
+            benchmark.measure("jdk", classpath, List.of(), "jdk", runs);
+            if (archive != null) {
+                if (!Files.exists(Paths.get(archive))) {
+                    throw new IllegalArgumentException("No AppCDS archive at " + archive + ". Build it with mvn -Pappcds package.");
+                }
+                benchmark.measure("jdk + AppCDS", classpath, List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto"), "jdk", runs);
+            }
+        } finally {
+            benchmark.server.stop(0);
+        }
+    }
+
+    private void measure(final String variant, final String classpath, final List<String> jvmOptions,
+                         final String httpClient, final int runs) throws Exception {
+        final long[] github = new long[runs];
+        final long[] cloudWatch = new long[runs];
+        final long[] exit = new long[runs];
+        // The first run warms the page cache, and isn't counted.
+        for (int run = -1; run < runs; run++) {
+            this.firstGithubRequestNanos.set(0);
+            this.firstCloudWatchRequestNanos.set(0);
+
+            final List<String> command = new ArrayList<>();
+            command.add(JAVA);
+            command.addAll(jvmOptions);
+            command.addAll(Arrays.asList("-cp", classpath, "com.sirknightj.Main", "once"));
+            final ProcessBuilder builder = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD);
+            configure(builder.environment(), httpClient);
+
+            final long startNanos = System.nanoTime();
+            final int exitCode = builder.start().waitFor();
+            final long exitNanos = System.nanoTime();
+            if (exitCode != 0 || this.firstGithubRequestNanos.get() == 0 || this.firstCloudWatchRequestNanos.get() == 0) {
+                throw new IllegalStateException(variant + " run exited with " + exitCode + " before sending both requests");
+            }
+            if (run >= 0) {
+                github[run] = this.firstGithubRequestNanos.get() - startNanos;
+                cloudWatch[run] = this.firstCloudWatchRequestNanos.get() - startNanos;
+                exit[run] = exitNanos - startNanos;
+            }
+        }
+        System.out.printf("%-14s  %18d ms  %18d ms  %6d ms%n", variant, median(github), median(cloudWatch), median(exit));
+    }
+
+    private void configure(final Map<String, String> environment, final String httpClient) {
+        final String endpoint = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        for (final String variable : List.of("GITHUB_TOKEN", "GITHUB_TOKENS", "GITHUB_ORGS", "GITHUB_REPO_CATALOG",
+                "GITHUB_FETCHER", "METRICS_SINK", "METRICS_HISTORY_DIR", "COLLECTOR_METRICS_NAMESPACE")) {
+            environment.remove(variable);
+        }
+        environment.put("GITHUB_API_URL", endpoint);
+        environment.put("CLOUDWATCH_ENDPOINT", endpoint);
+        environment.put("CLOUDWATCH_HTTP_CLIENT", httpClient);
+        environment.put("METRICS_SPOOL_FILE", "none");
+        environment.put("AWS_ACCESS_KEY_ID", "test");
+        environment.put("AWS_SECRET_ACCESS_KEY", "test");
+    }
+
+    private static long median(final long[] nanos) {
+        final long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000;
+    }
+
+    private static void respondToGithub(final HttpExchange exchange, final String body) throws IOException {
+        // Plenty of quota left, so the rate limit governor doesn't hold the run back.
+        exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, "5000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, "4000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(System.currentTimeMillis() / 1000 + 60));
+        respond(exchange, "application/json", body);
+    }
+
+    private static void respond(final HttpExchange exchange, final String contentType, final String body) throws IOException {
+        try (final InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
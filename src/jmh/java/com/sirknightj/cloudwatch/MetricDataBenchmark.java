@@ -0,0 +1,81 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds what {@link GitHubStatsCloudWatchPublisher#publish(List, ZonedDateTime)} sends for a number of repositories:
+ * the datums, then the {@link PutMetricDataRequest}s the {@link CloudWatchPublishingPipeline} cuts them into. Nothing
+ * is sent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricDataBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int repositories;
+
+    private final ZonedDateTime collectedTime = ZonedDateTime.of(2023, 8, 21, 9, 0, 0, 0, ZoneId.of("America/Los_Angeles"));
+    private List<RepoInfo> repoInfo;
+    private List<MetricDatum> metricData;
+
+    @Setup
+    public void setUp() {
+        this.repoInfo = new ArrayList<>(this.repositories);
+        for (int i = 0; i < this.repositories; i++) {
+            this.repoInfo.add(new RepoInfo("owner-" + (i % 50), "repository-" + i, i % 300, i % 40, i % 7, i % 9, i % 5, i % 6));
+        }
+        this.metricData = GitHubStatsCloudWatchPublisher.toMetricData(this.repoInfo, this.collectedTime);
+    }
+
+    @Benchmark
+    public List<MetricDatum> toMetricData() {
+        return GitHubStatsCloudWatchPublisher.toMetricData(this.repoInfo, this.collectedTime);
+    }
+
+    @Benchmark
+    public List<PutMetricDataRequest> toRequests() {
+        return toRequests(this.metricData);
+    }
+
+    @Benchmark
+    public List<PutMetricDataRequest> toMetricDataAndRequests() {
+        return toRequests(GitHubStatsCloudWatchPublisher.toMetricData(this.repoInfo, this.collectedTime));
+    }
+
+    private static List<PutMetricDataRequest> toRequests(final List<MetricDatum> metricData) {
+        final List<List<MetricDatum>> batches = CloudWatchPublishingPipeline.partition(metricData,
+                CloudWatchPublishingPipeline.MAX_DATUMS_PER_REQUEST, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES);
+        final List<PutMetricDataRequest> requests = new ArrayList<>(batches.size());
+        for (final List<MetricDatum> batch : batches) {
+            requests.add(PutMetricDataRequest.builder()
+                    .namespace(CloudwatchConstants.customMetricNamespace)
+                    .metricData(batch)
+                    .build());
+        }
+        return requests;
+    }
+}
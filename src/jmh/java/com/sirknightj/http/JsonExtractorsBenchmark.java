@@ -0,0 +1,119 @@
+package com.sirknightj.http;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Parses recorded GitHub responses the way {@code GithubAPI} does once a {@code 200 OK} comes back: a
+ * {@link JsonReader} over the body stream, handed to one of the {@link JsonExtractors}.
+ * <ul>
+ *     <li>{@code search-issues.json} is a page of {@code /search/issues}, 30 items, read with
+ *     {@link JsonExtractors#TOTAL_COUNT}. Building the whole tree with Gson is measured next to it as a baseline.</li>
+ *     <li>{@code pulls-per-page-1.json} is {@code /pulls?state=open&per_page=1}, read with
+ *     {@link JsonExtractors#LAST_PAGE_NUMBER} and its {@code Link} header. The way open pull requests used to be
+ *     counted, {@link JsonExtractors#ARRAY_SIZE} over a default page of 30, is measured next to it, over the recorded
+ *     pull request repeated 30 times.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonExtractorsBenchmark {
+
+    private static final String PULLS_LINK_HEADER =
+            "<https://api.github.com/repositories/640264145/pulls?state=open&per_page=1&page=2>; rel=\"next\", "
+                    + "<https://api.github.com/repositories/640264145/pulls?state=open&per_page=1&page=37>; rel=\"last\"";
+
+    // Default page size of the GitHub REST API.
+    private static final int PULLS_PAGE_SIZE = 30;
+
+    private byte[] searchResponse;
+    private byte[] pullsResponse;
+    private byte[] pullsPageResponse;
+    private Function<String, String> pullsHeaders;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.searchResponse = readResource("search-issues.json");
+        this.pullsResponse = readResource("pulls-per-page-1.json");
+        final String pulls = new String(this.pullsResponse, StandardCharsets.UTF_8).trim();
+        final String pullRequest = pulls.substring(1, pulls.length() - 1);
+        this.pullsPageResponse = ("[" + String.join(",", Collections.nCopies(PULLS_PAGE_SIZE, pullRequest)) + "]")
+                .getBytes(StandardCharsets.UTF_8);
+        this.pullsHeaders = name -> "Link".equalsIgnoreCase(name) ? PULLS_LINK_HEADER : null;
+    }
+
+    @Benchmark
+    public int searchTotalCount() throws IOException {
+        try (final JsonReader reader = reader(this.searchResponse)) {
+            return JsonExtractors.TOTAL_COUNT.extract(reader, name -> null);
+        }
+    }
+
+    @Benchmark
+    public int searchTotalCountTree() throws IOException {
+        try (final InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(this.searchResponse), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject().get("total_count").getAsInt();
+        }
+    }
+
+    @Benchmark
+    public int searchItemsArraySize() throws IOException {
+        try (final JsonReader reader = reader(this.searchResponse)) {
+            reader.beginObject();
+            while (!"items".equals(reader.nextName())) {
+                reader.skipValue();
+            }
+            return JsonExtractors.ARRAY_SIZE.extract(reader, name -> null);
+        }
+    }
+
+    @Benchmark
+    public int pullsLastPageNumber() throws IOException {
+        try (final JsonReader reader = reader(this.pullsResponse)) {
+            return JsonExtractors.LAST_PAGE_NUMBER.extract(reader, this.pullsHeaders);
+        }
+    }
+
+    @Benchmark
+    public int pullsPageArraySize() throws IOException {
+        try (final JsonReader reader = reader(this.pullsPageResponse)) {
+            return JsonExtractors.ARRAY_SIZE.extract(reader, name -> null);
+        }
+    }
+
+    private static JsonReader reader(final byte[] body) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readResource(final String name) throws IOException {
+        try (final InputStream in = JsonExtractorsBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing recorded response " + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -1,32 +1,58 @@
 package com.sirknightj;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.http.JsonExtractors;
+import com.sirknightj.http.JsonExtractors.JsonCountExtractor;
+import com.sirknightj.http.ResponseCache;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.TokenPool;
 import com.sirknightj.utils.DateHelper;
 import com.sirknightj.utils.RepoInfo;
-import lombok.Data;
 import lombok.extern.log4j.Log4j2;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.time.Duration;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 @Log4j2
-public class GithubAPI {
+public class GithubAPI implements GithubStatsFetcher {
 
-    private final String githubToken;
-    private final Gson gson;
+    /**
+     * Number of repositories fetched concurrently by {@link #fetchGithubIssuesFrom(List, ZonedDateTime, ZonedDateTime)}.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    // Retries of a single request that GitHub rejected because of a rate limit.
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
+    public static final String DEFAULT_API_BASE_URL = "https://api.github.com";
+
+    private final String apiBaseUrl;
+    private final GithubHttpClient httpClient;
+    private final int parallelism;
 
-    private final long sleepMs;
+    private final TokenPool tokenPool;
+    private final ResponseCache responseCache;
 
     public GithubAPI() {
         this(null);
@@ -39,62 +65,205 @@ public class GithubAPI {
      *                  want to use one.
      */
     public GithubAPI(final String authToken) {
-        this.githubToken = authToken;
-        this.gson = new Gson();
-
-        if (githubToken == null || githubToken.length() == 0) {
-            // Rate limit to search api is 10 requests per minute, unauthenticated
-            sleepMs = Duration.ofSeconds(6).toMillis();
-        } else {
-            // Rate limit to search api is 30 requests per minute, authenticated
-            sleepMs = Duration.ofSeconds(2).toMillis();
+        this(authToken, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authToken   GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                    want to use one.
+     * @param parallelism Maximum number of repositories to fetch concurrently.
+     */
+    public GithubAPI(final String authToken, final int parallelism) {
+        this(authToken, parallelism, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authToken     GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                      want to use one.
+     * @param parallelism   Maximum number of repositories to fetch concurrently.
+     * @param responseCache Cache used to make conditional requests. Can be {@code null} to always fetch responses
+     *                      in full.
+     */
+    public GithubAPI(final String authToken, final int parallelism, final ResponseCache responseCache) {
+        this(authToken, parallelism, responseCache, DEFAULT_API_BASE_URL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authToken     GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                      want to use one.
+     * @param parallelism   Maximum number of repositories to fetch concurrently.
+     * @param responseCache Cache used to make conditional requests. Can be {@code null} to always fetch responses
+     *                      in full.
+     * @param apiBaseUrl    Base URL of the GitHub REST API, without a trailing slash. E.g. a GitHub Enterprise
+     *                      server, or a local stub.
+     */
+    public GithubAPI(final String authToken, final int parallelism, final ResponseCache responseCache, final String apiBaseUrl) {
+        this(TokenPool.single(authToken), parallelism, responseCache, apiBaseUrl);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tokenPool     Tokens to spread the requests over. Each request is sent with the token that has the most
+     *                      budget left for the API it uses.
+     * @param parallelism   Maximum number of repositories to fetch concurrently.
+     * @param responseCache Cache used to make conditional requests. Can be {@code null} to always fetch responses
+     *                      in full.
+     * @param apiBaseUrl    Base URL of the GitHub REST API, without a trailing slash. E.g. a GitHub Enterprise
+     *                      server, or a local stub.
+     */
+    public GithubAPI(final TokenPool tokenPool, final int parallelism, final ResponseCache responseCache, final String apiBaseUrl) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
         }
+        this.apiBaseUrl = apiBaseUrl;
+        this.httpClient = new GithubHttpClient();
+        this.parallelism = parallelism;
+        this.responseCache = responseCache;
+        this.tokenPool = tokenPool;
     }
 
-    public List<RepoInfo> fetchGithubIssuesFrom(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime start, final ZonedDateTime end) throws IOException, InterruptedException {
-        final List<RepoInfo> repoInfo = new ArrayList<>();
-        for (final Map.Entry<String, String> repo : reposToFetch) {
-            log.info("Working on: {}/{}.", repo.getKey(), repo.getValue());
+    /**
+     * @return The governor pacing requests sent with the first token of the pool. Its state can be used to plan
+     * around the remaining quota.
+     */
+    public RateLimitGovernor getRateLimitGovernor() {
+        return this.tokenPool.getTokens().get(0).getGovernor();
+    }
+
+    /**
+     * @return The tokens requests of this instance are spread over.
+     */
+    public TokenPool getTokenPool() {
+        return this.tokenPool;
+    }
+
+    /**
+     * @return The HTTP transport of this instance, which can be shared with other fetchers to reuse its connections.
+     */
+    public GithubHttpClient getHttpClient() {
+        return this.httpClient;
+    }
 
-            try {
-                final int currentIssuesCount = fetchOpenIssuesCount(repo.getKey(), repo.getValue());
-                log.info("{}/{} - Open pull requests: {}", repo.getKey(), repo.getValue(), currentIssuesCount);
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Repositories are fetched concurrently, and each call is sent with the token of the pool with the most budget left,
+     * paced by that token's {@link RateLimitGovernor} according to the quota of the API it uses.
+     */
+    @Override
+    public List<RepoInfo> fetchGithubIssuesFrom(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime start, final ZonedDateTime end) throws IOException, InterruptedException {
+        return fetchEach(reposToFetch, repo -> () -> fetchRepoInfo(repo.getKey(), repo.getValue(), start, end));
+    }
 
-                // Doesn't use search API, so not required.
-                final int currentPullRequestsCount = fetchOpenPullRequestsCount(repo.getKey(), repo.getValue());
-                log.info("{}/{} - Open issues: {}", repo.getKey(), repo.getValue(), currentPullRequestsCount);
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Sends the two requests of the open counts per repository, and none of the interval searches.
+     */
+    @Override
+    public List<RepoInfo> fetchOpenCounts(final List<Map.Entry<String, String>> reposToFetch) throws IOException, InterruptedException {
+        return fetchEach(reposToFetch, repo -> () -> fetchOpenCounts(repo.getKey(), repo.getValue()));
+    }
 
-                Thread.sleep(sleepMs);
+    /**
+     * Fetches the repositories concurrently, leaving out and logging the ones that fail.
+     *
+     * @param fetch Fetches one repository.
+     */
+    private List<RepoInfo> fetchEach(final List<Map.Entry<String, String>> reposToFetch,
+                                     final Function<Map.Entry<String, String>, Callable<RepoInfo>> fetch) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.parallelism, reposToFetch.size())));
+        try {
+            final List<Future<RepoInfo>> futures = new ArrayList<>(reposToFetch.size());
+            for (final Map.Entry<String, String> repo : reposToFetch) {
+                futures.add(executor.submit(fetch.apply(repo)));
+            }
 
-                final int issuesOpenedInterval = fetchIssuesOpenedBetween(repo.getKey(), repo.getValue(), start, end);
-                log.info("{}/{} - Issues opened between {} and {}: {}", repo.getKey(), repo.getValue(), start, end, issuesOpenedInterval);
+            final List<RepoInfo> repoInfo = new ArrayList<>(reposToFetch.size());
+            for (int i = 0; i < futures.size(); i++) {
+                final Map.Entry<String, String> repo = reposToFetch.get(i);
+                try {
+                    repoInfo.add(futures.get(i).get());
+                } catch (final ExecutionException ex) {
+                    log.error("Encountered error working on: {}/{}.", repo.getKey(), repo.getValue(), ex.getCause());
+                }
+            }
+            return repoInfo;
+        } finally {
+            executor.shutdownNow();
+            if (this.responseCache != null) {
+                this.responseCache.flush();
+            }
+        }
+    }
 
-                Thread.sleep(sleepMs);
+    /**
+     * Fetch the stats of a single repository. The six requests are sent concurrently, and multiplexed over the same
+     * connection.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @param start           Start of the interval (inclusive).
+     * @param end             End of the interval (inclusive).
+     * @return The stats of the repository.
+     * @throws IOException If something went wrong.
+     */
+    public RepoInfo fetchRepoInfo(final String repositoryOwner, final String repositoryName,
+                                  final ZonedDateTime start, final ZonedDateTime end) throws IOException {
+        log.info("Working on: {}/{}.", repositoryOwner, repositoryName);
 
-                final int issuesClosedInterval = fetchIssuesClosedBetween(repo.getKey(), repo.getValue(), start, end);
-                log.info("{}/{} - Issues closed between {} and {}: {}", repo.getKey(), repo.getValue(), start, end, issuesClosedInterval);
+        final CompletableFuture<Integer> currentIssues = fetchOpenIssuesCountAsync(repositoryOwner, repositoryName);
+        final CompletableFuture<Integer> currentPullRequests = fetchOpenPullRequestsCountAsync(repositoryOwner, repositoryName);
+        final CompletableFuture<Integer> issuesOpened = fetchIssuesOpenedBetweenAsync(repositoryOwner, repositoryName, start, end);
+        final CompletableFuture<Integer> issuesClosed = fetchIssuesClosedBetweenAsync(repositoryOwner, repositoryName, start, end);
+        final CompletableFuture<Integer> pullRequestsOpened = fetchPullRequestsOpenedBetweenAsync(repositoryOwner, repositoryName, start, end);
+        final CompletableFuture<Integer> pullRequestsClosed = fetchPullRequestsClosedBetweenAsync(repositoryOwner, repositoryName, start, end);
 
-                Thread.sleep(sleepMs);
+        final int currentIssuesCount = await(currentIssues);
+        log.info("{}/{} - Open issues: {}", repositoryOwner, repositoryName, currentIssuesCount);
 
-                final int pullRequestsOpenedInterval = fetchPullRequestsOpenedBetween(repo.getKey(), repo.getValue(), start, end);
-                log.info("{}/{} - Pull requests opened between {} and {}: {}", repo.getKey(), repo.getValue(), start, end, pullRequestsOpenedInterval);
+        final int currentPullRequestsCount = await(currentPullRequests);
+        log.info("{}/{} - Open pull requests: {}", repositoryOwner, repositoryName, currentPullRequestsCount);
 
-                Thread.sleep(sleepMs);
+        final int issuesOpenedInterval = await(issuesOpened);
+        log.info("{}/{} - Issues opened between {} and {}: {}", repositoryOwner, repositoryName, start, end, issuesOpenedInterval);
 
-                final int pullRequestsClosedInterval = fetchPullRequestsClosedBetween(repo.getKey(), repo.getValue(), start, end);
-                log.info("{}/{} - Pull requests closed between {} and {}: {}", repo.getKey(), repo.getValue(), start, end, pullRequestsClosedInterval);
+        final int issuesClosedInterval = await(issuesClosed);
+        log.info("{}/{} - Issues closed between {} and {}: {}", repositoryOwner, repositoryName, start, end, issuesClosedInterval);
 
-                Thread.sleep(sleepMs);
+        final int pullRequestsOpenedInterval = await(pullRequestsOpened);
+        log.info("{}/{} - Pull requests opened between {} and {}: {}", repositoryOwner, repositoryName, start, end, pullRequestsOpenedInterval);
 
-                repoInfo.add(new RepoInfo(repo.getKey(), repo.getValue(), currentIssuesCount, currentPullRequestsCount,
-                        issuesClosedInterval, issuesOpenedInterval, pullRequestsClosedInterval, pullRequestsOpenedInterval));
+        final int pullRequestsClosedInterval = await(pullRequestsClosed);
+        log.info("{}/{} - Pull requests closed between {} and {}: {}", repositoryOwner, repositoryName, start, end, pullRequestsClosedInterval);
 
-            } catch (final Exception ex) {
-                log.error("Encountered error working on: {}/{}.", repo.getKey(), repo.getValue(), ex);
-            }
-        }
+        return new RepoInfo(repositoryOwner, repositoryName, currentIssuesCount, currentPullRequestsCount,
+                issuesClosedInterval, issuesOpenedInterval, pullRequestsClosedInterval, pullRequestsOpenedInterval);
+    }
 
-        return repoInfo;
+    /**
+     * Fetch the current numbers of open issues and pull requests of a single repository. The two requests are sent
+     * concurrently.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @return The open counts of the repository. The counts of the interval are 0.
+     * @throws IOException If something went wrong.
+     */
+    public RepoInfo fetchOpenCounts(final String repositoryOwner, final String repositoryName) throws IOException {
+        final CompletableFuture<Integer> currentIssues = fetchOpenIssuesCountAsync(repositoryOwner, repositoryName);
+        final CompletableFuture<Integer> currentPullRequests = fetchOpenPullRequestsCountAsync(repositoryOwner, repositoryName);
+        final int currentIssuesCount = await(currentIssues);
+        final int currentPullRequestsCount = await(currentPullRequests);
+        log.info("{}/{} - Open issues: {}, open pull requests: {}", repositoryOwner, repositoryName, currentIssuesCount, currentPullRequestsCount);
+        return new RepoInfo(repositoryOwner, repositoryName, currentIssuesCount, currentPullRequestsCount, 0, 0, 0, 0);
     }
 
     /**
@@ -102,183 +271,224 @@ public class GithubAPI {
      *
      * @param repositoryOwner Repository owner.
      * @param repositoryName  Name of the repository.
-     * @return A number (0+) if successful. -1 if there was an error.
+     * @return A number (0+).
      * @throws IOException If something went wrong.
      */
     public int fetchOpenIssuesCount(final String repositoryOwner, final String repositoryName) throws IOException {
-        final String githubApiLink = new StringBuilder()
-                .append("https://api.github.com/search/issues?q=repo:")
-                .append(repositoryOwner)
-                .append("/")
-                .append(repositoryName)
+        return await(fetchOpenIssuesCountAsync(repositoryOwner, repositoryName));
+    }
+
+    /**
+     * Asynchronous version of {@link #fetchOpenIssuesCount(String, String)}.
+     */
+    public CompletableFuture<Integer> fetchOpenIssuesCountAsync(final String repositoryOwner, final String repositoryName) {
+        final String githubApiLink = searchIssuesLink(this.apiBaseUrl, repositoryOwner, repositoryName)
                 .append("+is%3Aissue+state%3Aopen")
                 .toString();
 
-
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonObject jsonObject = this.gson.fromJson(result.getMessage(), JsonObject.class);
-
-        return jsonObject.get("total_count").getAsInt();
+        return fetchCountAsync(URI.create(githubApiLink), RateLimitResource.SEARCH, JsonExtractors.TOTAL_COUNT);
     }
 
     /**
      * Fetch the current number of open pull requests in a GitHub Repository.
+     * <p>
+     * Lists the pull requests one per page, and reads the total from the page number of the last page in the
+     * {@code Link} header. That is exact for any number of pull requests, and only one pull request is transferred.
      *
      * @param repositoryOwner Repository owner.
      * @param repositoryName  Name of the repository.
-     * @return A number (0+) if successful. -1 if there was an error.
+     * @return A number (0+).
      * @throws IOException If something went wrong.
      */
     public int fetchOpenPullRequestsCount(final String repositoryOwner, final String repositoryName) throws IOException {
-        final String githubApiLink = new StringJoiner("/")
-                .add("https://api.github.com/repos")
-                .add(repositoryOwner)
-                .add(repositoryName)
-                .add("pulls?state=open")
-                .toString();
-
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonArray jsonArray = this.gson.fromJson(result.getMessage(), JsonArray.class);
-        return jsonArray.size();
+        return await(fetchOpenPullRequestsCountAsync(repositoryOwner, repositoryName));
     }
 
-    public int fetchIssuesOpenedBetween(final String repositoryOwner, final String repositoryName,
-                                        final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) throws IOException {
-        final String githubApiLink = new StringBuilder()
-                .append("https://api.github.com/search/issues?q=repo:")
+    /**
+     * Asynchronous version of {@link #fetchOpenPullRequestsCount(String, String)}.
+     */
+    public CompletableFuture<Integer> fetchOpenPullRequestsCountAsync(final String repositoryOwner, final String repositoryName) {
+        final String githubApiLink = new StringBuilder(this.apiBaseUrl)
+                .append("/repos/")
                 .append(repositoryOwner)
                 .append("/")
                 .append(repositoryName)
-                .append("+is%3Aissue+created%3A")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(startInclusive))
-                .append("..")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(endInclusive))
+                .append("/pulls?state=open&per_page=1")
                 .toString();
 
+        return fetchCountAsync(URI.create(githubApiLink), RateLimitResource.CORE, JsonExtractors.LAST_PAGE_NUMBER);
+    }
 
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonObject jsonObject = this.gson.fromJson(result.getMessage(), JsonObject.class);
+    public int fetchIssuesOpenedBetween(final String repositoryOwner, final String repositoryName,
+                                        final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) throws IOException {
+        return await(fetchIssuesOpenedBetweenAsync(repositoryOwner, repositoryName, startInclusive, endInclusive));
+    }
 
-        return jsonObject.get("total_count").getAsInt();
+    public CompletableFuture<Integer> fetchIssuesOpenedBetweenAsync(final String repositoryOwner, final String repositoryName,
+                                                                    final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        return fetchSearchCountAsync(repositoryOwner, repositoryName, "+is%3Aissue+created%3A", startInclusive, endInclusive);
     }
 
     public int fetchIssuesClosedBetween(final String repositoryOwner, final String repositoryName,
                                         final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) throws IOException {
+        return await(fetchIssuesClosedBetweenAsync(repositoryOwner, repositoryName, startInclusive, endInclusive));
+    }
 
-        final String githubApiLink = new StringBuilder()
-                .append("https://api.github.com/search/issues?q=repo:")
-                .append(repositoryOwner)
-                .append("/")
-                .append(repositoryName)
-                .append("+is%3Aissue+closed%3A")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(startInclusive))
-                .append("..")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(endInclusive))
-                .toString();
-
-
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonObject jsonObject = this.gson.fromJson(result.getMessage(), JsonObject.class);
-
-        return jsonObject.get("total_count").getAsInt();
+    public CompletableFuture<Integer> fetchIssuesClosedBetweenAsync(final String repositoryOwner, final String repositoryName,
+                                                                    final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        return fetchSearchCountAsync(repositoryOwner, repositoryName, "+is%3Aissue+closed%3A", startInclusive, endInclusive);
     }
 
     public int fetchPullRequestsOpenedBetween(final String repositoryOwner, final String repositoryName,
                                               final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) throws IOException {
+        return await(fetchPullRequestsOpenedBetweenAsync(repositoryOwner, repositoryName, startInclusive, endInclusive));
+    }
 
-        final String githubApiLink = new StringBuilder()
-                .append("https://api.github.com/search/issues?q=repo:")
-                .append(repositoryOwner)
-                .append("/")
-                .append(repositoryName)
-                .append("+is%3Apr+created%3A")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(startInclusive))
-                .append("..")
-                .append(DateHelper.getFormattedAndURLEncodedDateString(endInclusive))
-                .toString();
-
-
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonObject jsonObject = this.gson.fromJson(result.getMessage(), JsonObject.class);
-
-        return jsonObject.get("total_count").getAsInt();
+    public CompletableFuture<Integer> fetchPullRequestsOpenedBetweenAsync(final String repositoryOwner, final String repositoryName,
+                                                                          final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        return fetchSearchCountAsync(repositoryOwner, repositoryName, "+is%3Apr+created%3A", startInclusive, endInclusive);
     }
 
     public int fetchPullRequestsClosedBetween(final String repositoryOwner, final String repositoryName,
                                               final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) throws IOException {
+        return await(fetchPullRequestsClosedBetweenAsync(repositoryOwner, repositoryName, startInclusive, endInclusive));
+    }
 
-        final String githubApiLink = new StringBuilder()
-                .append("https://api.github.com/search/issues?q=repo:")
+    public CompletableFuture<Integer> fetchPullRequestsClosedBetweenAsync(final String repositoryOwner, final String repositoryName,
+                                                                          final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        return fetchSearchCountAsync(repositoryOwner, repositoryName, "+is%3Apr+closed%3A", startInclusive, endInclusive);
+    }
+
+    private static StringBuilder searchIssuesLink(final String apiBaseUrl, final String repositoryOwner, final String repositoryName) {
+        return new StringBuilder(apiBaseUrl)
+                .append("/search/issues?q=repo:")
                 .append(repositoryOwner)
                 .append("/")
-                .append(repositoryName)
-                .append("+is%3Apr+closed%3A")
+                .append(repositoryName);
+    }
+
+    private CompletableFuture<Integer> fetchSearchCountAsync(final String repositoryOwner, final String repositoryName, final String qualifier,
+                                                             final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        final URI uri = searchUri(this.apiBaseUrl, repositoryOwner, repositoryName, qualifier, startInclusive, endInclusive);
+        return fetchCountAsync(uri, RateLimitResource.SEARCH, JsonExtractors.TOTAL_COUNT);
+    }
+
+    /**
+     * @param qualifier URL-encoded search qualifier the interval is appended to, e.g. {@code +is%3Aissue+created%3A}.
+     * @return The URI of the search of a repository's issues or pull requests over an interval.
+     */
+    static URI searchUri(final String apiBaseUrl, final String repositoryOwner, final String repositoryName, final String qualifier,
+                         final ZonedDateTime startInclusive, final ZonedDateTime endInclusive) {
+        final String githubApiLink = searchIssuesLink(apiBaseUrl, repositoryOwner, repositoryName)
+                .append(qualifier)
                 .append(DateHelper.getFormattedAndURLEncodedDateString(startInclusive))
                 .append("..")
                 .append(DateHelper.getFormattedAndURLEncodedDateString(endInclusive))
                 .toString();
+        return URI.create(githubApiLink);
+    }
 
+    /**
+     * Waits for an asynchronous fetch, unwrapping its failure.
+     */
+    private static int await(final CompletableFuture<Integer> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 
-        final URL url = new URL(githubApiLink);
-        final HttpResult result = fetch(url);
-
-        final JsonObject jsonObject = this.gson.fromJson(result.getMessage(), JsonObject.class);
-
-        return jsonObject.get("total_count").getAsInt();
+    /**
+     * Fetches {@code uri} and streams a count out of the response body. If the response cache has validators for the
+     * URI, the request is made conditional, and the cached count is returned on {@code 304 Not Modified}.
+     * <p>
+     * Counts read from the {@code Link} header aren't cached: the {@code ETag} only covers the body, i.e. the first
+     * page, which doesn't change when an item further down the listing is removed.
+     */
+    private CompletableFuture<Integer> fetchCountAsync(final URI uri, final RateLimitResource resource, final JsonCountExtractor extractor) {
+        return fetchCountAsync(uri, resource, extractor, 0);
     }
 
-    private HttpResult fetch(final URL url) throws IOException {
-        final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        attachAuthHeader(conn);
-        conn.connect();
-        try {
-            final StringBuilder result = new StringBuilder();
-            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                try (final BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                    for (String line; (line = reader.readLine()) != null; ) {
-                        result.append(line);
+    private CompletableFuture<Integer> fetchCountAsync(final URI uri, final RateLimitResource resource,
+                                                       final JsonCountExtractor extractor, final int attempt) {
+        final String cacheKey = uri.toString();
+        final ResponseCache responseCache = extractor == JsonExtractors.LAST_PAGE_NUMBER ? null : this.responseCache;
+        final ResponseCache.Entry cached = responseCache != null ? responseCache.get(cacheKey) : null;
+
+        // Waiting on the rate limit and parsing the body block, so both happen on the transport's threads.
+        return CompletableFuture.supplyAsync(() -> acquireToken(resource, uri), this.httpClient.getExecutor())
+                .thenCompose(token -> {
+                    final HttpRequest.Builder request = GithubHttpClient.newRequest(uri, token.getAuthToken()).GET();
+                    if (cached != null) {
+                        if (cached.getEtag() != null) {
+                            request.header("If-None-Match", cached.getEtag());
+                        }
+                        if (cached.getLastModified() != null) {
+                            request.header("If-Modified-Since", cached.getLastModified());
+                        }
                     }
-                }
+                    return this.httpClient.sendAsync(request.build())
+                            .thenComposeAsync(response -> {
+                                try {
+                                    return handleCountResponse(uri, resource, extractor, attempt, cacheKey, cached, token, response);
+                                } catch (final IOException ex) {
+                                    throw new CompletionException(ex);
+                                }
+                            }, this.httpClient.getExecutor());
+                });
+    }
 
-                final String response = result.toString();
-                log.error("Error fetching {}. Received HTTP error code {}. Message: {}", url, conn.getResponseCode(), response);
+    private CompletableFuture<Integer> handleCountResponse(final URI uri, final RateLimitResource resource, final JsonCountExtractor extractor,
+                                                           final int attempt, final String cacheKey, final ResponseCache.Entry cached,
+                                                           final TokenPool.PooledToken token, final HttpResponse<InputStream> response) throws IOException {
+        final int responseCode = response.statusCode();
+        final String message = responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                ? null : GithubHttpClient.bodyAsString(response);
+        final boolean rateLimited = token.getGovernor().onResponse(resource, responseCode,
+                name -> response.headers().firstValue(name).orElse(null), message);
+
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            response.body().close();
+            log.debug("{} not modified. Using cached value {}.", uri, cached.getValue());
+            return CompletableFuture.completedFuture(cached.getValue());
+        }
 
-                return new HttpResult(conn.getResponseCode(), response);
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            if (rateLimited && attempt < MAX_RATE_LIMIT_RETRIES) {
+                log.warn("Rate limited fetching {} with {}. Received HTTP error code {}. Will retry. Message: {}", uri, token, responseCode, message);
+                return fetchCountAsync(uri, resource, extractor, attempt + 1);
             }
-            // conn.responseCode == HTTP_OK
+            log.error("Error fetching {}. Received HTTP error code {}. Message: {}", uri, responseCode, message);
 
-            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                for (String line; (line = reader.readLine()) != null; ) {
-                    result.append(line);
-                }
-            }
-            return new HttpResult(HttpURLConnection.HTTP_OK, result.toString());
-        } finally {
-            conn.disconnect();
+            throw new IOException("Error fetching " + uri + ". Received HTTP error code " + responseCode);
         }
-    }
+        // response.statusCode == HTTP_OK
 
-    private void attachAuthHeader(final HttpURLConnection conn) {
-        if (this.githubToken != null && this.githubToken.length() > 0) {
-            conn.setRequestProperty("Authorization", "token " + this.githubToken);
+        final int value;
+        try (final JsonReader reader = new JsonReader(new InputStreamReader(GithubHttpClient.body(response), StandardCharsets.UTF_8))) {
+            value = extractor.extract(reader, name -> response.headers().firstValue(name).orElse(null));
+        }
+        if (this.responseCache != null && extractor != JsonExtractors.LAST_PAGE_NUMBER) {
+            this.responseCache.put(cacheKey, response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), value);
         }
-        conn.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
+        return CompletableFuture.completedFuture(value);
     }
 
-    @Data
-    private static class HttpResult {
-        private final int statusCode;
-        private final String message;
+    private TokenPool.PooledToken acquireToken(final RateLimitResource resource, final URI uri) {
+        try {
+            return this.tokenPool.acquire(resource);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new InterruptedIOException("Interrupted while waiting to fetch " + uri));
+        }
     }
 }
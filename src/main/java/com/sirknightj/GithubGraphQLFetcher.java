@@ -0,0 +1,292 @@
+package com.sirknightj;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Fetches repository stats through the GitHub GraphQL API. A single aliased query returns the open issue and pull
+ * request counts, plus the four interval search counts, for a whole batch of repositories, so a list of repositories
+ * costs one request per {@code batchSize} repositories instead of several requests per repository.
+ * <p>
+ * The GraphQL API requires authentication.
+ */
+@Log4j2
+public class GithubGraphQLFetcher implements GithubStatsFetcher {
+
+    public static final String DEFAULT_ENDPOINT = "https://api.github.com/graphql";
+
+    /**
+     * Number of repositories per query. Each repository adds 5 fields, which keeps a query well under GitHub's
+     * node and complexity limits.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 20;
+
+    // Retries of a single request that GitHub rejected because of a rate limit.
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
+    private final Supplier<String> githubToken;
+    private final URI endpoint;
+    private final GithubHttpClient httpClient;
+    private final int batchSize;
+    private final RateLimitGovernor rateLimitGovernor;
+
+    /**
+     * Constructor.
+     *
+     * @param authToken GitHub personal access token.
+     */
+    public GithubGraphQLFetcher(final String authToken) {
+        this(() -> authToken, URI.create(DEFAULT_ENDPOINT), DEFAULT_BATCH_SIZE, new RateLimitGovernor(true), new GithubHttpClient());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authToken         Supplies the current GitHub token, read before every request, so refreshed tokens are
+     *                          picked up.
+     * @param endpoint          URL of the GraphQL endpoint. See {@link #endpointFor(String)}.
+     * @param batchSize         Maximum number of repositories per query.
+     * @param rateLimitGovernor Governor pacing the requests. Can be shared with a {@link GithubAPI} using the same token.
+     * @param httpClient        HTTP transport. Can be shared with a {@link GithubAPI} to reuse its connections.
+     */
+    public GithubGraphQLFetcher(final Supplier<String> authToken, final URI endpoint, final int batchSize,
+                                final RateLimitGovernor rateLimitGovernor, final GithubHttpClient httpClient) {
+        final String currentToken = authToken.get();
+        if (currentToken == null || currentToken.length() == 0) {
+            throw new IllegalArgumentException("The GitHub GraphQL API requires a token");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        this.githubToken = authToken;
+        this.endpoint = endpoint;
+        this.batchSize = batchSize;
+        this.rateLimitGovernor = rateLimitGovernor;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @param apiBaseUrl Base URL of the GitHub REST API, without a trailing slash, e.g. {@code https://api.github.com}
+     *                   or {@code https://github.example.com/api/v3} for GitHub Enterprise Server.
+     * @return URL of the GraphQL endpoint of the same host.
+     */
+    public static URI endpointFor(final String apiBaseUrl) {
+        if (apiBaseUrl.endsWith("/v3")) {
+            // GitHub Enterprise Server serves REST under /api/v3, and GraphQL at /api/graphql.
+            return URI.create(apiBaseUrl.substring(0, apiBaseUrl.length() - "/v3".length()) + "/graphql");
+        }
+        return URI.create(apiBaseUrl + "/graphql");
+    }
+
+    @Override
+    public List<RepoInfo> fetchGithubIssuesFrom(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime start, final ZonedDateTime end) throws IOException, InterruptedException {
+        final List<RepoInfo> repoInfo = new ArrayList<>(reposToFetch.size());
+        for (int from = 0; from < reposToFetch.size(); from += this.batchSize) {
+            final List<Map.Entry<String, String>> batch = reposToFetch.subList(from, Math.min(from + this.batchSize, reposToFetch.size()));
+            log.info("Working on batch of {} repositories, starting with {}/{}.", batch.size(), batch.get(0).getKey(), batch.get(0).getValue());
+            try {
+                repoInfo.addAll(fetchBatch(batch, start, end));
+            } catch (final InterruptedIOException ex) {
+                throw new InterruptedException(ex.getMessage());
+            } catch (final Exception ex) {
+                log.error("Encountered error working on batch starting with: {}/{}.", batch.get(0).getKey(), batch.get(0).getValue(), ex);
+            }
+        }
+        return repoInfo;
+    }
+
+    /**
+     * Fetch the stats of a batch of repositories with a single query.
+     *
+     * @param batch List of repositories. The key is the owner, the value is the repository name.
+     * @param start Start of the interval (inclusive).
+     * @param end   End of the interval (inclusive).
+     * @return The stats of each repository GitHub returned without error, in the order of {@code batch}.
+     * @throws IOException If the request failed.
+     */
+    public List<RepoInfo> fetchBatch(final List<Map.Entry<String, String>> batch, final ZonedDateTime start, final ZonedDateTime end) throws IOException {
+        final String query = buildQuery(batch, start, end);
+        final JsonObject response = post(query);
+
+        final JsonArray errors = response.getAsJsonArray("errors");
+        if (errors != null) {
+            log.warn("GraphQL query returned errors: {}", errors);
+        }
+        final JsonElement dataElement = response.get("data");
+        if (dataElement == null || dataElement.isJsonNull()) {
+            throw new IOException("GraphQL query returned no data. Errors: " + errors);
+        }
+        final JsonObject data = dataElement.getAsJsonObject();
+
+        final List<RepoInfo> repoInfo = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            final Map.Entry<String, String> repo = batch.get(i);
+            final String alias = "r" + i;
+            final JsonElement repository = data.get(alias);
+            if (repository == null || repository.isJsonNull()) {
+                log.error("Encountered error working on: {}/{}. Repository not returned.", repo.getKey(), repo.getValue());
+                continue;
+            }
+            try {
+                final RepoInfo info = new RepoInfo(repo.getKey(), repo.getValue(),
+                        totalCount(repository.getAsJsonObject(), "issues"),
+                        totalCount(repository.getAsJsonObject(), "pullRequests"),
+                        issueCount(data, alias + "_ic"),
+                        issueCount(data, alias + "_io"),
+                        issueCount(data, alias + "_pc"),
+                        issueCount(data, alias + "_po"));
+                log.info("{}/{} - {}", repo.getKey(), repo.getValue(), info);
+                repoInfo.add(info);
+            } catch (final RuntimeException ex) {
+                log.error("Encountered error working on: {}/{}.", repo.getKey(), repo.getValue(), ex);
+            }
+        }
+        return repoInfo;
+    }
+
+    /**
+     * Builds one query for the whole batch. Repository {@code i} is aliased {@code r<i>}, and its searches
+     * {@code r<i>_io}, {@code r<i>_ic}, {@code r<i>_po} and {@code r<i>_pc} (issues/pull requests opened/closed).
+     */
+    String buildQuery(final List<Map.Entry<String, String>> batch, final ZonedDateTime start, final ZonedDateTime end) {
+        final String window = start.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + ".." + end.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        final StringBuilder query = new StringBuilder("query {");
+        for (int i = 0; i < batch.size(); i++) {
+            final String owner = batch.get(i).getKey();
+            final String name = batch.get(i).getValue();
+            final String alias = "r" + i;
+            final String repoQualifier = "repo:" + owner + "/" + name;
+
+            query.append(' ').append(alias).append(": repository(owner: ").append(jsonString(owner))
+                    .append(", name: ").append(jsonString(name))
+                    .append(") { issues(states: OPEN) { totalCount } pullRequests(states: OPEN) { totalCount } }");
+            appendSearch(query, alias + "_io", repoQualifier + " is:issue created:" + window);
+            appendSearch(query, alias + "_ic", repoQualifier + " is:issue closed:" + window);
+            appendSearch(query, alias + "_po", repoQualifier + " is:pr created:" + window);
+            appendSearch(query, alias + "_pc", repoQualifier + " is:pr closed:" + window);
+        }
+        return query.append(" rateLimit { cost remaining resetAt } }").toString();
+    }
+
+    private void appendSearch(final StringBuilder query, final String alias, final String searchQuery) {
+        query.append(' ').append(alias).append(": search(query: ").append(jsonString(searchQuery))
+                .append(", type: ISSUE, first: 0) { issueCount }");
+    }
+
+    /**
+     * Quotes and escapes {@code value} as a JSON (and GraphQL) string. Building the query by hand, rather than with a
+     * {@code Gson}, keeps Gson's reflective setup off the path to the first request.
+     */
+    private static String jsonString(final String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static int totalCount(final JsonObject repository, final String connection) {
+        return repository.getAsJsonObject(connection).get("totalCount").getAsInt();
+    }
+
+    private static int issueCount(final JsonObject data, final String alias) {
+        return data.getAsJsonObject(alias).get("issueCount").getAsInt();
+    }
+
+    private JsonObject post(final String query) throws IOException {
+        final HttpRequest request = GithubHttpClient.newRequest(this.endpoint, null)
+                .header("Authorization", "bearer " + this.githubToken.get())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"query\":" + jsonString(query) + "}", StandardCharsets.UTF_8))
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                this.rateLimitGovernor.acquire(RateLimitResource.GRAPHQL);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to query " + this.endpoint);
+            }
+
+            final HttpResponse<InputStream> response = send(request);
+            final int responseCode = response.statusCode();
+            final String message = responseCode == HttpURLConnection.HTTP_OK ? null : GithubHttpClient.bodyAsString(response);
+            final boolean rateLimited = this.rateLimitGovernor.onResponse(RateLimitResource.GRAPHQL, responseCode,
+                    name -> response.headers().firstValue(name).orElse(null), message);
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                if (rateLimited && attempt < MAX_RATE_LIMIT_RETRIES) {
+                    log.warn("Rate limited querying {}. Received HTTP error code {}. Will retry. Message: {}", this.endpoint, responseCode, message);
+                    continue;
+                }
+                log.error("Error querying {}. Received HTTP error code {}. Message: {}", this.endpoint, responseCode, message);
+                throw new IOException("Error querying " + this.endpoint + ". Received HTTP error code " + responseCode);
+            }
+            try (final Reader reader = new InputStreamReader(GithubHttpClient.body(response), StandardCharsets.UTF_8)) {
+                return JsonParser.parseReader(reader).getAsJsonObject();
+            }
+        }
+    }
+
+    private HttpResponse<InputStream> send(final HttpRequest request) throws IOException {
+        try {
+            return this.httpClient.sendAsync(request).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while querying " + this.endpoint);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+}
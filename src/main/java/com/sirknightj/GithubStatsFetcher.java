@@ -0,0 +1,48 @@
+package com.sirknightj;
+
+import com.sirknightj.utils.RepoInfo;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the stats of a list of GitHub repositories over an interval.
+ */
+public interface GithubStatsFetcher {
+
+    /**
+     * Fetch the stats of every repository in {@code reposToFetch}. Repositories that fail are logged and left out.
+     * The order of the returned list matches {@code reposToFetch}.
+     *
+     * @param reposToFetch List of repositories. The key is the owner, the value is the repository name.
+     * @param start        Start of the interval (inclusive).
+     * @param end          End of the interval (inclusive).
+     * @return The stats of each repository that was fetched successfully.
+     * @throws IOException          If something went wrong for every repository.
+     * @throws InterruptedException If interrupted while fetching.
+     */
+    List<RepoInfo> fetchGithubIssuesFrom(List<Map.Entry<String, String>> reposToFetch, ZonedDateTime start, ZonedDateTime end)
+            throws IOException, InterruptedException;
+
+    /**
+     * Fetch only the numbers of open issues and pull requests of every repository in {@code reposToFetch}. The counts
+     * of the interval are left at 0. Unless overridden, fetches the stats of an empty interval ending now.
+     *
+     * @param reposToFetch List of repositories. The key is the owner, the value is the repository name.
+     * @return The open counts of each repository that was fetched successfully.
+     * @throws IOException          If something went wrong for every repository.
+     * @throws InterruptedException If interrupted while fetching.
+     */
+    default List<RepoInfo> fetchOpenCounts(final List<Map.Entry<String, String>> reposToFetch) throws IOException, InterruptedException {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final List<RepoInfo> openCounts = new ArrayList<>(reposToFetch.size());
+        for (final RepoInfo info : fetchGithubIssuesFrom(reposToFetch, now, now)) {
+            openCounts.add(new RepoInfo(info.getRepositoryOwner(), info.getRepositoryName(),
+                    info.getCurrentIssuesOpen(), info.getCurrentPullRequestsOpen(), 0, 0, 0, 0));
+        }
+        return openCounts;
+    }
+}
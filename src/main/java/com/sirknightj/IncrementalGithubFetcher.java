@@ -0,0 +1,268 @@
+package com.sirknightj;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.http.GithubPageFetcher;
+import com.sirknightj.index.IssueStateIndex;
+import com.sirknightj.index.RepoIssueIndex;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.TokenPool;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches repository stats from a local {@link IssueStateIndex} instead of running search queries.
+ * <p>
+ * Before deriving the counts, each repository's index is brought up to date by listing the issues and pull requests
+ * updated since the last sync ({@code /repos/{owner}/{repo}/issues?state=all&since=...}), a page at a time. The first
+ * sync of a repository pages through its whole history, but after that a run costs one small request per repository
+ * against the core quota, and none against the much tighter search quota.
+ * <p>
+ * Deleted issues, and issues transferred to another repository, aren't reported by the listing, so they stay in the
+ * index as they were last seen.
+ */
+@Log4j2
+public class IncrementalGithubFetcher implements GithubStatsFetcher {
+
+    /**
+     * Issues per page. The maximum GitHub allows.
+     */
+    public static final int PAGE_SIZE = 100;
+
+    private final IssueStateIndex index;
+    private final String apiBaseUrl;
+    private final GithubPageFetcher pageFetcher;
+
+    /**
+     * Constructor.
+     *
+     * @param authToken GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                  want to use one.
+     * @param index     Index to keep up to date and derive the counts from.
+     */
+    public IncrementalGithubFetcher(final String authToken, final IssueStateIndex index) {
+        this(authToken, index, GithubAPI.DEFAULT_API_BASE_URL,
+                new RateLimitGovernor(authToken != null && authToken.length() > 0), new GithubHttpClient());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authToken         GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                          want to use one.
+     * @param index             Index to keep up to date and derive the counts from.
+     * @param apiBaseUrl        Base URL of the GitHub REST API, without a trailing slash.
+     * @param rateLimitGovernor Governor pacing the requests. Can be shared with a {@link GithubAPI} using the same token.
+     * @param httpClient        HTTP transport. Can be shared with a {@link GithubAPI} to reuse its connections.
+     */
+    public IncrementalGithubFetcher(final String authToken, final IssueStateIndex index, final String apiBaseUrl,
+                                    final RateLimitGovernor rateLimitGovernor, final GithubHttpClient httpClient) {
+        this(TokenPool.single(authToken, rateLimitGovernor), index, apiBaseUrl, httpClient);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tokenPool  Tokens to spread the requests over.
+     * @param index      Index to keep up to date and derive the counts from.
+     * @param apiBaseUrl Base URL of the GitHub REST API, without a trailing slash.
+     * @param httpClient HTTP transport. Can be shared with a {@link GithubAPI} to reuse its connections.
+     */
+    public IncrementalGithubFetcher(final TokenPool tokenPool, final IssueStateIndex index, final String apiBaseUrl,
+                                    final GithubHttpClient httpClient) {
+        this.index = index;
+        this.apiBaseUrl = apiBaseUrl;
+        this.pageFetcher = new GithubPageFetcher(tokenPool, httpClient);
+    }
+
+    @Override
+    public List<RepoInfo> fetchGithubIssuesFrom(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime start, final ZonedDateTime end) throws IOException, InterruptedException {
+        final List<RepoInfo> repoInfo = new ArrayList<>(reposToFetch.size());
+        try {
+            for (final Map.Entry<String, String> repo : reposToFetch) {
+                try {
+                    repoInfo.add(fetchRepoInfo(repo.getKey(), repo.getValue(), start, end));
+                } catch (final InterruptedIOException ex) {
+                    throw new InterruptedException(ex.getMessage());
+                } catch (final Exception ex) {
+                    log.error("Encountered error working on: {}/{}.", repo.getKey(), repo.getValue(), ex);
+                }
+            }
+        } finally {
+            this.index.flush();
+        }
+        return repoInfo;
+    }
+
+    /**
+     * Syncs the index of a repository, then derives its stats.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @param start           Start of the interval (inclusive).
+     * @param end             End of the interval (inclusive).
+     * @return The stats of the repository.
+     * @throws IOException If the sync failed. The counts aren't derived from a partially synced index.
+     */
+    public RepoInfo fetchRepoInfo(final String repositoryOwner, final String repositoryName,
+                                  final ZonedDateTime start, final ZonedDateTime end) throws IOException {
+        log.info("Working on: {}/{}.", repositoryOwner, repositoryName);
+        final RepoIssueIndex repoIndex = syncRepository(repositoryOwner, repositoryName);
+
+        final RepoInfo info = repoIndex.toRepoInfo(repositoryOwner, repositoryName,
+                start.toEpochSecond(), end.toEpochSecond());
+        log.info("{}/{} - {}", repositoryOwner, repositoryName, info);
+        return info;
+    }
+
+    /**
+     * Brings the index of a repository up to date.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @return The index of the repository.
+     * @throws IOException If the sync failed. What was synced before the failure is kept.
+     */
+    public RepoIssueIndex syncRepository(final String repositoryOwner, final String repositoryName) throws IOException {
+        final RepoIssueIndex repoIndex = this.index.get(repositoryOwner, repositoryName);
+        sync(repositoryOwner, repositoryName, repoIndex);
+        return repoIndex;
+    }
+
+    /**
+     * @return The index this fetcher keeps up to date.
+     */
+    public IssueStateIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Applies every issue and pull request updated since the last sync to the index.
+     * <p>
+     * Pages are requested oldest update first, and the sync point advances after every page. Rather than following the
+     * {@code next} link, whose offset shifts whenever an issue is updated mid-sync and so skips one, every page is
+     * requested again from the newest update seen. {@code since} is inclusive, so the issues updated at the sync point
+     * itself are listed again, which is harmless, and a sync that fails half way resumes where it stopped. Only when a
+     * whole page was updated within the same second is the next offset page of that query requested.
+     *
+     * @return The number of pages fetched.
+     */
+    int sync(final String repositoryOwner, final String repositoryName, final RepoIssueIndex repoIndex) throws IOException {
+        final String link = new StringBuilder(this.apiBaseUrl)
+                .append("/repos/")
+                .append(repositoryOwner)
+                .append("/")
+                .append(repositoryName)
+                .append("/issues?state=all&sort=updated&direction=asc&per_page=")
+                .append(PAGE_SIZE)
+                .toString();
+
+        int pages = 0;
+        int updated = 0;
+        long since = repoIndex.getSyncedThrough();
+        int page = 1;
+        while (true) {
+            final HttpResponse<InputStream> response = this.pageFetcher.fetch(pageLink(link, since, page), RateLimitResource.CORE);
+            long newestUpdate = repoIndex.getSyncedThrough();
+            try (final JsonReader reader = new JsonReader(new InputStreamReader(GithubHttpClient.body(response), StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    newestUpdate = Math.max(newestUpdate, readIssue(reader, repoIndex));
+                    updated++;
+                }
+                reader.endArray();
+            }
+            repoIndex.setSyncedThrough(newestUpdate);
+            pages++;
+
+            if (GithubPageFetcher.nextPage(response) == null) {
+                break;
+            }
+            if (newestUpdate > since) {
+                since = newestUpdate;
+                page = 1;
+            } else {
+                page++;
+            }
+        }
+        log.info("{}/{} - Synced {} updated issues and pull requests in {} requests. {} indexed.",
+                repositoryOwner, repositoryName, updated, pages, repoIndex.size());
+        return pages;
+    }
+
+    private static URI pageLink(final String link, final long since, final int page) {
+        final StringBuilder pageLink = new StringBuilder(link);
+        if (since > 0) {
+            pageLink.append("&since=").append(Instant.ofEpochSecond(since).toString().replace(":", "%3A"));
+        }
+        if (page > 1) {
+            pageLink.append("&page=").append(page);
+        }
+        return URI.create(pageLink.toString());
+    }
+
+    /**
+     * Reads one element of the issue listing into the index, skipping every field but the few it needs.
+     *
+     * @return The {@code updated_at} time of the issue, in epoch seconds.
+     */
+    private static long readIssue(final JsonReader reader, final RepoIssueIndex repoIndex) throws IOException {
+        int number = -1;
+        boolean pullRequest = false;
+        long createdAt = 0;
+        long closedAt = RepoIssueIndex.NOT_CLOSED;
+        long updatedAt = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "number":
+                    number = reader.nextInt();
+                    break;
+                case "created_at":
+                    createdAt = Instant.parse(reader.nextString()).getEpochSecond();
+                    break;
+                case "closed_at":
+                    closedAt = Instant.parse(reader.nextString()).getEpochSecond();
+                    break;
+                case "updated_at":
+                    updatedAt = Instant.parse(reader.nextString()).getEpochSecond();
+                    break;
+                case "pull_request":
+                    // Only present on pull requests.
+                    pullRequest = true;
+                    reader.skipValue();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (number < 0) {
+            throw new IOException("Issue without a number in the issue listing");
+        }
+        repoIndex.record(number, pullRequest, createdAt, closedAt);
+        return updatedAt;
+    }
+}
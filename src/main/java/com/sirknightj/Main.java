@@ -1,35 +1,232 @@
 package com.sirknightj;
 
-import com.sirknightj.application.FetchGithubStatsOncePerDayApplication;
+import com.sirknightj.application.BackfillApplication;
+import com.sirknightj.application.HistoryApplication;
+import com.sirknightj.application.OneShotApplication;
+import com.sirknightj.application.TieredPollingApplication;
+import com.sirknightj.application.WebhookApplication;
+import com.sirknightj.catalog.RepoCatalog;
+import com.sirknightj.cloudwatch.EmbeddedMetricFormatSink;
+import com.sirknightj.cloudwatch.GitHubStatsCloudWatchPublisher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.MetricsSinks;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.http.ResponseCache;
+import com.sirknightj.index.IssueStateIndex;
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.TokenPool;
+import com.sirknightj.schedule.PollingTier;
+import com.sirknightj.schedule.RepoPollingScheduler;
+import com.sirknightj.shard.FileLeaseStore;
+import com.sirknightj.shard.ShardCoordinator;
+import com.sirknightj.store.RepoHistoryStore;
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import com.sirknightj.webhook.LiveRepoCounters;
+import com.sirknightj.webhook.WebhookServer;
+import com.sirknightj.webhook.WebhookSignatureVerifier;
 import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Log4j2
 public class Main {
 
-    public static void main(final String[] args) throws InterruptedException {
+    // Passed after "once" to load everything without sending any request.
+    private static final String DRY_RUN_ARGUMENT = "--dry-run";
+
+    // How often the organizations are listed again, to poll their new repositories.
+    private static final Duration ORGANIZATION_REFRESH_INTERVAL = Duration.ofHours(1);
+    private static final String RESPONSE_CACHE_FILE_VARIABLE = "GITHUB_RESPONSE_CACHE_FILE";
+    private static final String ISSUE_INDEX_FILE_VARIABLE = "GITHUB_ISSUE_INDEX_FILE";
+
+    public static void main(final String[] args) throws Exception {
         TimeZone.setDefault(TimeZone.getTimeZone("PST"));
 
+        // A one-shot run is over before anyone could attach to it, so it doesn't start the platform MBean server.
+        final boolean oneShot = args.length > 0 && "once".equalsIgnoreCase(args[0]);
+        if (!oneShot) {
+            // Request latencies, rate limits and publish outcomes of this process, under com.sirknightj:type=CollectorMetrics.
+            CollectorMetrics.getInstance().registerMBean();
+        }
+
         // Optional. But GitHub's rate limits are extremely low, so adding this is recommended.
         // https://docs.github.com/en/authentication/keeping-your-account-and-data-secure/managing-your-personal-access-tokens#creating-a-fine-grained-personal-access-token
         final String githubToken = System.getenv("GITHUB_TOKEN");
+        // Optional. Comma-separated tokens, e.g. of several accounts, whose budgets add up. Overrides GITHUB_TOKEN.
+        final String githubTokens = System.getenv().getOrDefault("GITHUB_TOKENS", "");
+        final TokenPool tokenPool = githubTokens.isBlank()
+                ? TokenPool.single(githubToken)
+                : TokenPool.of(Arrays.asList(githubTokens.trim().split("\\s*,\\s*")));
 
-        final GithubAPI githubAPI = new GithubAPI(githubToken);
+        // Optional. Base URL of the REST API, e.g. of a GitHub Enterprise Server.
+        final String apiBaseUrl = System.getenv().getOrDefault("GITHUB_API_URL", GithubAPI.DEFAULT_API_BASE_URL);
 
         // List of repositories to fetch
         // Each entry of the list is a key-value pairs with the key as the owner and the value as the repository name
-        final List<Map.Entry<String, String>> reposToFetch = List.of(
+        // To fetch many repositories, list them in a catalog file named by GITHUB_REPO_CATALOG instead. See RepoCatalog.
+        final List<Map.Entry<String, String>> reposToFetch = new ArrayList<>(List.of(
                 Map.entry("facebookresearch", "audiocraft")
-        );
+        ));
+
+        // Optional. Comma-separated organizations whose every repository is fetched, e.g. "facebookresearch,aws".
+        final String organizations = System.getenv().getOrDefault("GITHUB_ORGS", "");
+        for (final String organization : organizations.split(",")) {
+            if (!organization.isBlank()) {
+                reposToFetch.add(Map.entry(organization.trim(), OrganizationFetcher.ALL_REPOSITORIES));
+            }
+        }
 
         // 9:30 AM each day
         final Duration midnightOffset = Duration.ofHours(9).plusMinutes(30);
 
-        try (final FetchGithubStatsOncePerDayApplication application = new FetchGithubStatsOncePerDayApplication(githubAPI, reposToFetch, midnightOffset)) {
+        // "backfill [days] [day|hour]" publishes the past stats of the repositories, then exits.
+        if (args.length > 0 && "backfill".equalsIgnoreCase(args[0])) {
+            backfill(tokenPool, apiBaseUrl, reposToFetch, midnightOffset, args);
+            return;
+        }
+
+        // "history [snapshots|weekly|monthly] [owner/name|all] [days]" prints the stats recorded in METRICS_HISTORY_DIR.
+        if (args.length > 0 && "history".equalsIgnoreCase(args[0])) {
+            final String historyDirectory = System.getenv().getOrDefault(MetricsSinks.HISTORY_DIRECTORY_VARIABLE, "metrics-history");
+            try (final RepoHistoryStore store = new RepoHistoryStore(Paths.get(historyDirectory))) {
+                new HistoryApplication(store, ZoneId.systemDefault(), System.out).run(Arrays.copyOfRange(args, 1, args.length));
+            }
+            return;
+        }
+
+        // "webhook" counts issues and pull requests from webhook deliveries, and only polls to reconcile.
+        if (args.length > 0 && "webhook".equalsIgnoreCase(args[0])) {
+            webhook(tokenPool, apiBaseUrl, reposToFetch);
+            return;
+        }
+
+        // "once [day|hour] [end]" publishes the latest window that is over, or the one ending at the given time, then
+        // exits. For cron jobs and scheduled containers.
+        if (oneShot) {
+            once(tokenPool, apiBaseUrl, reposToFetch, !organizations.isBlank(), midnightOffset, args);
+            return;
+        }
+
+        // Optional. A directory shared by several instances, e.g. on EFS, to split the repositories between them.
+        final String shardLeaseDirectory = System.getenv().getOrDefault("SHARD_LEASE_DIR", "");
+        final Map<String, String> configuration = new HashMap<>(System.getenv());
+        String instanceId = null;
+        if (!shardLeaseDirectory.isBlank()) {
+            final String hostName = InetAddress.getLocalHost().getHostName();
+            instanceId = System.getenv().getOrDefault("SHARD_INSTANCE_ID", hostName + "-" + ProcessHandle.current().pid());
+            // Instances often share a working directory, e.g. a network file system, but each keeps its own state. Named
+            // after the host rather than the process without an instance ID, so a restart finds its spool again.
+            final String stateName = System.getenv().getOrDefault("SHARD_INSTANCE_ID", hostName);
+            configuration.putIfAbsent(RESPONSE_CACHE_FILE_VARIABLE, instanceFile("github-response-cache", stateName));
+            configuration.putIfAbsent(ISSUE_INDEX_FILE_VARIABLE, instanceFile("github-issue-index", stateName));
+            configuration.putIfAbsent(MetricsSinks.SPOOL_FILE_VARIABLE, instanceFile("metrics-spool", stateName));
+        }
+
+        // Remembers ETags of previous responses, so unchanged results cost no rate limit quota.
+        final String responseCacheFile = configuration.getOrDefault(RESPONSE_CACHE_FILE_VARIABLE, "github-response-cache.bin");
+        final ResponseCache responseCache = new ResponseCache(10_000, Paths.get(responseCacheFile));
+
+        // "graphql" fetches many repositories per request, but requires a token. "incremental" keeps a local index of
+        // every issue, and only fetches what changed since the last run. Defaults to the REST search API.
+        final String fetcher = System.getenv().getOrDefault("GITHUB_FETCHER", "rest");
+
+        final GithubAPI restAPI = new GithubAPI(tokenPool, GithubAPI.DEFAULT_PARALLELISM, responseCache, apiBaseUrl);
+        final GithubStatsFetcher githubAPI = fetcherFromConfiguration(fetcher, tokenPool, restAPI, apiBaseUrl, !organizations.isBlank(),
+                configuration);
+        // Requests each repository is expected to cost, so the scheduler can fit the polls into the rate limits.
+        final Map<RateLimitResource, Integer> costPerRepository;
+        if ("graphql".equalsIgnoreCase(fetcher)) {
+            costPerRepository = Map.of(RateLimitResource.GRAPHQL, 1);
+        } else if ("incremental".equalsIgnoreCase(fetcher)) {
+            costPerRepository = Map.of(RateLimitResource.CORE, 1);
+        } else {
+            costPerRepository = Map.of(RateLimitResource.SEARCH, 5, RateLimitResource.CORE, 1);
+        }
+
+        // Optional. How often to poll each repository, e.g. "facebookresearch/audiocraft=hot,aws/*=hourly". The tiers
+        // are hot (every 5 minutes), hourly and daily. Repositories not listed are polled daily.
+        final Map<String, PollingTier> tiers = new HashMap<>();
+        for (final String assignment : System.getenv().getOrDefault("GITHUB_REPO_TIERS", "").split(",")) {
+            if (!assignment.isBlank()) {
+                final String[] parts = assignment.split("=", 2);
+                tiers.put(parts[0].trim(), PollingTier.named(parts.length > 1 ? parts[1] : ""));
+            }
+        }
+
+        // Windows of every tier line up with midnight+offset, so the daily windows are the same as before.
+        final ZonedDateTime now = ZonedDateTime.now();
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(tokenPool, costPerRepository,
+                now.toLocalDate().atStartOfDay(now.getZone()).plus(midnightOffset));
+        // Organizations are scheduled after the repositories listed on their own, which keep their own tier.
+        final Map<String, PollingTier> organizationTiers = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> repo : reposToFetch) {
+            final PollingTier tier = tiers.getOrDefault(repo.getKey() + "/" + repo.getValue(), PollingTier.DAILY);
+            if (OrganizationFetcher.ALL_REPOSITORIES.equals(repo.getValue())) {
+                organizationTiers.putIfAbsent(repo.getKey(), tier);
+            } else {
+                scheduler.add(repo, tier, Instant.now());
+            }
+        }
+        forEachCatalogEntry(entry -> {
+            final PollingTier tier = entry.getTier() != null ? entry.getTier()
+                    : tiers.getOrDefault(entry.getOwner() + "/" + entry.getName(), PollingTier.DAILY);
+            if (OrganizationFetcher.ALL_REPOSITORIES.equals(entry.getName())) {
+                organizationTiers.putIfAbsent(entry.getOwner(), tier);
+            } else {
+                scheduler.add(entry.toRepository(), tier, Instant.now());
+            }
+        });
+        if (!organizationTiers.isEmpty()) {
+            // fetcherFromConfiguration() wraps the fetcher whenever there are organizations. It still fetches their
+            // inactive repositories from their listings, although they are scheduled one by one.
+            final OrganizationFetcher organizationFetcher = (OrganizationFetcher) githubAPI;
+            scheduleOrganizations(organizationFetcher, organizationTiers, tiers, scheduler);
+            // Picks up the repositories created since, and the organizations that couldn't be listed.
+            final ScheduledExecutorService organizationRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "organization-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            organizationRefresher.scheduleWithFixedDelay(() -> scheduleOrganizations(organizationFetcher, organizationTiers, tiers, scheduler),
+                    ORGANIZATION_REFRESH_INTERVAL.toMinutes(), ORGANIZATION_REFRESH_INTERVAL.toMinutes(), TimeUnit.MINUTES);
+        }
+
+        ShardCoordinator shardCoordinator = null;
+        if (instanceId != null) {
+            // Every instance must use the same number of shards.
+            final int shards = Integer.parseInt(System.getenv().getOrDefault("SHARD_COUNT", String.valueOf(ShardCoordinator.DEFAULT_SHARDS)));
+            final Duration leasePeriod = Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("SHARD_LEASE_SECONDS",
+                    String.valueOf(ShardCoordinator.DEFAULT_LEASE_PERIOD.getSeconds()))));
+            shardCoordinator = new ShardCoordinator(new FileLeaseStore(Paths.get(shardLeaseDirectory)), instanceId, shards, leasePeriod);
+        }
+
+        try (final TieredPollingApplication application = new TieredPollingApplication(githubAPI, scheduler,
+                MetricsSinks.fromConfiguration(configuration), MetricsSinks.collectorMetricsPublisherFromConfiguration(configuration),
+                shardCoordinator)) {
             // Basically keep main() alive.
             Thread.sleep(1_000_000_000_000_000_000L);
         } catch (final Exception ex) {
@@ -37,4 +234,205 @@ public class Main {
         }
         log.info("Finished!");
     }
+
+    /**
+     * Schedules every repository of the organizations that isn't scheduled yet. An organization that can't be listed
+     * is tried again at the next refresh.
+     *
+     * @param organizationTiers Tier of the repositories of each organization.
+     * @param tiers             Tiers of single repositories, which override the tier of their organization.
+     */
+    private static void scheduleOrganizations(final OrganizationFetcher organizationFetcher, final Map<String, PollingTier> organizationTiers,
+                                              final Map<String, PollingTier> tiers, final RepoPollingScheduler scheduler) {
+        for (final Map.Entry<String, PollingTier> organization : organizationTiers.entrySet()) {
+            try {
+                int added = 0;
+                for (final Map.Entry<String, String> repo : organizationFetcher.expand(Map.entry(organization.getKey(), OrganizationFetcher.ALL_REPOSITORIES))) {
+                    if (scheduler.add(repo, tiers.getOrDefault(repo.getKey() + "/" + repo.getValue(), organization.getValue()), Instant.now())) {
+                        added++;
+                    }
+                }
+                log.info("{} - Scheduled {} new repositories.", organization.getKey(), added);
+            } catch (final IOException | RuntimeException ex) {
+                log.error("Encountered error listing the repositories of: {}. Will try again in {}.", organization.getKey(),
+                        ORGANIZATION_REFRESH_INTERVAL, ex);
+            }
+        }
+    }
+
+    /**
+     * @param name     Name of a state file, without its extension.
+     * @param instance ID of the sharded instance, or its host name.
+     * @return The default path of the instance's state file, e.g. {@code metrics-spool-collector-1.bin}.
+     */
+    private static String instanceFile(final String name, final String instance) {
+        return name + "-" + instance.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin";
+    }
+
+    /**
+     * @param fetcher          {@code GITHUB_FETCHER}: {@code rest}, {@code graphql} or {@code incremental}.
+     * @param restAPI          REST client, used as is by the {@code rest} fetcher, and to list organizations.
+     * @param hasOrganizations Whether {@code GITHUB_ORGS} lists any organizations.
+     * @param configuration    Environment variables, with the defaults of this run.
+     * @return The configured fetcher.
+     */
+    private static GithubStatsFetcher fetcherFromConfiguration(final String fetcher, final TokenPool tokenPool, final GithubAPI restAPI,
+                                                               final String apiBaseUrl, final boolean hasOrganizations,
+                                                               final Map<String, String> configuration) throws IOException {
+        GithubStatsFetcher githubAPI;
+        if ("graphql".equalsIgnoreCase(fetcher)) {
+            // Shares the first token's governor and the connections of the REST client, and reads the token on every query.
+            final TokenPool.PooledToken token = tokenPool.getTokens().get(0);
+            githubAPI = new GithubGraphQLFetcher(token::getAuthToken, GithubGraphQLFetcher.endpointFor(apiBaseUrl),
+                    GithubGraphQLFetcher.DEFAULT_BATCH_SIZE, token.getGovernor(), restAPI.getHttpClient());
+        } else if ("incremental".equalsIgnoreCase(fetcher)) {
+            final String issueIndexFile = configuration.getOrDefault(ISSUE_INDEX_FILE_VARIABLE, "github-issue-index.bin");
+            githubAPI = new IncrementalGithubFetcher(tokenPool, new IssueStateIndex(Paths.get(issueIndexFile)),
+                    apiBaseUrl, restAPI.getHttpClient());
+        } else {
+            githubAPI = restAPI;
+        }
+        if (hasOrganizations || !configuration.getOrDefault("GITHUB_REPO_CATALOG", "").isBlank()) {
+            // Lists each organization in a few requests, and only fetches the repositories with recent activity.
+            githubAPI = new OrganizationFetcher(restAPI, githubAPI, apiBaseUrl);
+        }
+        return githubAPI;
+    }
+
+    private static void once(final TokenPool tokenPool, final String apiBaseUrl, final List<Map.Entry<String, String>> reposToFetch,
+                             final boolean hasOrganizations, final Duration midnightOffset, final String[] args) throws Exception {
+        final boolean dryRun = Arrays.asList(args).contains(DRY_RUN_ARGUMENT);
+        final List<String> windowArgs = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        windowArgs.remove(DRY_RUN_ARGUMENT);
+        final Duration width = !windowArgs.isEmpty() && "hour".equalsIgnoreCase(windowArgs.get(0)) ? Duration.ofHours(1) : Duration.ofDays(1);
+        final ZonedDateTime end = windowArgs.size() > 1
+                ? ZonedDateTime.parse(windowArgs.get(1))
+                : OneShotApplication.lastWindowEnd(ZonedDateTime.now(), width, midnightOffset);
+
+        // The JDK's HTTP client starts much faster than Netty, and a single run only sends a few requests.
+        final Map<String, String> configuration = new HashMap<>(System.getenv());
+        configuration.putIfAbsent(MetricsSinks.HTTP_CLIENT_VARIABLE, "jdk");
+
+        // No response cache: the searches of every window differ, so it would never be hit.
+        final GithubAPI restAPI = new GithubAPI(tokenPool, GithubAPI.DEFAULT_PARALLELISM, null, apiBaseUrl);
+        final GithubStatsFetcher fetcher = fetcherFromConfiguration(System.getenv().getOrDefault("GITHUB_FETCHER", "rest"),
+                tokenPool, restAPI, apiBaseUrl, hasOrganizations, configuration);
+
+        if (dryRun) {
+            // Loads what a run loads, without sending anything, e.g. to record the classes of the AppCDS archive.
+            try (final CloudWatchAsyncClient cw = MetricsSinks.cloudWatchClientFromConfiguration(configuration)) {
+                PutMetricDataRequest.builder()
+                        .namespace(CloudwatchConstants.customMetricNamespace)
+                        .metricData(GitHubStatsCloudWatchPublisher.toMetricData(List.of(new RepoInfo("owner", "name", 0, 0, 0, 0, 0, 0)), end))
+                        .build();
+            }
+            new OneShotApplication(fetcher, new EmbeddedMetricFormatSink(), () -> null)
+                    .run(Collections.emptyIterator(), end, width);
+            log.info("Dry run finished.");
+            return;
+        }
+
+        final OneShotApplication.Result result;
+        try (final MetricsSink sink = MetricsSinks.fromConfiguration(configuration)) {
+            final OneShotApplication application = new OneShotApplication(fetcher, sink,
+                    () -> MetricsSinks.collectorMetricsPublisherFromConfiguration(configuration));
+            final String catalogFile = configuration.getOrDefault("GITHUB_REPO_CATALOG", "");
+            if (catalogFile.isBlank()) {
+                result = application.run(reposToFetch.iterator(), end, width);
+            } else {
+                // The catalog is streamed through the run, so it can list any number of repositories.
+                try (final RepoCatalog.CatalogReader reader = new RepoCatalog(Paths.get(catalogFile)).open()) {
+                    final Iterator<Map.Entry<String, String>> listed = reposToFetch.iterator();
+                    result = application.run(new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return listed.hasNext() || reader.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            return listed.hasNext() ? listed.next() : reader.next().toRepository();
+                        }
+                    }, end, width);
+                }
+            }
+        }
+        if (!result.isSuccess()) {
+            // So the scheduler running this job sees the failure, and can retry it.
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Passes each entry of the catalog file named by {@code GITHUB_REPO_CATALOG}, if any, to {@code consumer}. The file
+     * is read line by line, so it can list any number of repositories.
+     */
+    private static void forEachCatalogEntry(final Consumer<RepoCatalog.CatalogEntry> consumer) throws IOException {
+        final String catalogFile = System.getenv().getOrDefault("GITHUB_REPO_CATALOG", "");
+        if (catalogFile.isBlank()) {
+            return;
+        }
+        try (final RepoCatalog.CatalogReader reader = new RepoCatalog(Paths.get(catalogFile)).open()) {
+            reader.forEachRemaining(consumer);
+        }
+    }
+
+    private static void webhook(final TokenPool tokenPool, final String apiBaseUrl, final List<Map.Entry<String, String>> reposToFetch) throws Exception {
+        // Required. The secret entered in the settings of the webhooks, which signs every delivery.
+        final WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(System.getenv("GITHUB_WEBHOOK_SECRET"));
+        final int port = Integer.parseInt(System.getenv().getOrDefault("GITHUB_WEBHOOK_PORT", "8080"));
+
+        // Repositories of organizations are counted as their deliveries arrive.
+        final LiveRepoCounters counters = new LiveRepoCounters();
+        for (final Map.Entry<String, String> repo : reposToFetch) {
+            if (!OrganizationFetcher.ALL_REPOSITORIES.equals(repo.getValue())) {
+                counters.track(repo.getKey(), repo.getValue());
+            }
+        }
+        forEachCatalogEntry(entry -> {
+            if (!OrganizationFetcher.ALL_REPOSITORIES.equals(entry.getName())) {
+                counters.track(entry.getOwner(), entry.getName());
+            }
+        });
+
+        final GithubAPI restAPI = new GithubAPI(tokenPool, GithubAPI.DEFAULT_PARALLELISM, null, apiBaseUrl);
+        try (final WebhookApplication application = new WebhookApplication(counters,
+                new WebhookServer(new InetSocketAddress(port), verifier, counters), restAPI,
+                MetricsSinks.fromConfiguration(System.getenv()), MetricsSinks.collectorMetricsPublisherFromConfiguration(System.getenv()))) {
+            // Basically keep main() alive.
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+    private static void backfill(final TokenPool tokenPool, final String apiBaseUrl, final List<Map.Entry<String, String>> reposToFetch,
+                                 final Duration midnightOffset, final String[] args) throws Exception {
+        final int windows = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+        final boolean hourly = args.length > 2 && "hour".equalsIgnoreCase(args[2]);
+
+        // Windows line up with the ones the daily application publishes.
+        final ZonedDateTime end = OneShotApplication.lastWindowEnd(ZonedDateTime.now(),
+                hourly ? Duration.ofHours(1) : Duration.ofDays(1), midnightOffset);
+
+        // Every window of every repository is held in memory, so the catalog is too.
+        final List<Map.Entry<String, String>> entries = new ArrayList<>(reposToFetch);
+        forEachCatalogEntry(entry -> entries.add(entry.toRepository()));
+
+        // Organizations are expanded into their repositories, all of which are backfilled.
+        final GithubAPI restAPI = new GithubAPI(tokenPool, GithubAPI.DEFAULT_PARALLELISM, null, apiBaseUrl);
+        final OrganizationFetcher organizationFetcher = new OrganizationFetcher(restAPI, restAPI, apiBaseUrl);
+        final List<Map.Entry<String, String>> repositories = new ArrayList<>();
+        for (final Map.Entry<String, String> repo : entries) {
+            repositories.addAll(organizationFetcher.expand(repo));
+        }
+
+        // Shares the index of the incremental fetcher, which then starts warm.
+        final String issueIndexFile = System.getenv().getOrDefault(ISSUE_INDEX_FILE_VARIABLE, "github-issue-index.bin");
+        final IncrementalGithubFetcher fetcher = new IncrementalGithubFetcher(tokenPool, new IssueStateIndex(Paths.get(issueIndexFile)),
+                apiBaseUrl, restAPI.getHttpClient());
+        try (final GitHubStatsCloudWatchPublisher publisher = new GitHubStatsCloudWatchPublisher()) {
+            final PublishResult result = new BackfillApplication(fetcher, publisher, GithubAPI.DEFAULT_PARALLELISM)
+                    .backfill(repositories, end, hourly ? Duration.ofHours(1) : Duration.ofDays(1), windows);
+            log.info("Backfill finished: {}", result);
+        }
+    }
 }
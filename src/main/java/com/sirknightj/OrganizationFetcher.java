@@ -0,0 +1,304 @@
+package com.sirknightj;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.http.GithubPageFetcher;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.utils.RepoInfo;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetches the stats of whole organizations. An entry of {@code reposToFetch} whose repository name is
+ * {@link #ALL_REPOSITORIES} stands for every repository of the owner, which must be an organization. Other entries
+ * are passed to the delegate as they are.
+ * <p>
+ * Organizations are walked through {@code /orgs/{org}/repos}, 100 repositories per page. The listing already
+ * carries each repository's {@code open_issues_count} (issues and pull requests) and when it was last pushed to and
+ * updated, so most repositories need no request of their own:
+ * <ul>
+ *     <li>Repositories pushed to or updated since the start of the window, or whose {@code open_issues_count} changed
+ *     since the previous scan, are fetched in full by the delegate.</li>
+ *     <li>The others get no interval queries, and their interval counts are 0. Their open issues are
+ *     {@code open_issues_count} minus their open pull requests, which are remembered from the previous scan, or
+ *     fetched once.</li>
+ * </ul>
+ * Issue activity doesn't always change a repository's {@code pushed_at} or {@code updated_at}, which is why a change
+ * of {@code open_issues_count} also marks it active. An issue opened and closed within the same window on an
+ * otherwise untouched repository is missed.
+ * <p>
+ * Organizations can also be {@link #expand(Map.Entry) expanded} up front, e.g. so that each of their repositories is
+ * scheduled on its own. Their repositories are then still looked up in the organization's listing, listed once per
+ * call, when they are given one by one.
+ */
+@Log4j2
+public class OrganizationFetcher implements GithubStatsFetcher {
+
+    /**
+     * Repository name meaning "every repository of the organization".
+     */
+    public static final String ALL_REPOSITORIES = "*";
+
+    public static final int PAGE_SIZE = 100;
+
+    private final GithubAPI githubAPI;
+    private final GithubStatsFetcher delegate;
+    private final String apiBaseUrl;
+    private final GithubPageFetcher pageFetcher;
+    private final Map<String, ScanResult> previousScan;
+    // Organizations that were listed, whose repositories are looked up in their listing when given one by one.
+    private final Set<String> organizations;
+
+    /**
+     * Constructor.
+     *
+     * @param githubAPI  Fetches the open pull requests of inactive repositories. Its tokens and transport are shared.
+     * @param delegate   Fetches active repositories, and the entries that aren't whole organizations.
+     * @param apiBaseUrl Base URL of the GitHub REST API, without a trailing slash.
+     */
+    public OrganizationFetcher(final GithubAPI githubAPI, final GithubStatsFetcher delegate, final String apiBaseUrl) {
+        this.githubAPI = githubAPI;
+        this.delegate = delegate;
+        this.apiBaseUrl = apiBaseUrl;
+        this.pageFetcher = new GithubPageFetcher(githubAPI.getTokenPool(), githubAPI.getHttpClient());
+        this.previousScan = new ConcurrentHashMap<>();
+        this.organizations = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public List<RepoInfo> fetchGithubIssuesFrom(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime start, final ZonedDateTime end) throws IOException, InterruptedException {
+        final List<Map.Entry<String, String>> active = new ArrayList<>();
+        // Active repositories of organizations, keyed by "owner/name", so their scan is remembered once fetched.
+        final Map<String, ListedRepository> activeListed = new HashMap<>();
+        // Inactive repositories, keyed by "owner/name", with the stats they are published with.
+        final Map<String, RepoInfo> inactive = new HashMap<>();
+        // Every repository, in the order they are returned.
+        final List<Map.Entry<String, String>> ordered = new ArrayList<>();
+
+        // Listings of the organizations that repositories given one by one belong to, by organization.
+        final Map<String, Map<String, ListedRepository>> listings = new HashMap<>();
+
+        for (final Map.Entry<String, String> entry : reposToFetch) {
+            if (!ALL_REPOSITORIES.equals(entry.getValue())) {
+                ordered.add(entry);
+                final ListedRepository repository = this.organizations.contains(entry.getKey())
+                        ? listing(listings, entry.getKey()).get(entry.getValue()) : null;
+                if (repository != null) {
+                    classify(repository, start, active, activeListed, inactive);
+                } else {
+                    active.add(entry);
+                }
+                continue;
+            }
+            final List<ListedRepository> listed;
+            try {
+                listed = listRepositories(entry.getKey());
+            } catch (final IOException ex) {
+                log.error("Encountered error listing the repositories of: {}.", entry.getKey(), ex);
+                continue;
+            }
+
+            int skipped = 0;
+            for (final ListedRepository repository : listed) {
+                ordered.add(Map.entry(repository.getOwner(), repository.getName()));
+                if (classify(repository, start, active, activeListed, inactive)) {
+                    skipped++;
+                }
+            }
+            log.info("{} - {} repositories, {} of them without activity since {}.", entry.getKey(), listed.size(), skipped, start);
+        }
+
+        final Map<String, RepoInfo> fetched = new HashMap<>();
+        if (!active.isEmpty()) {
+            for (final RepoInfo info : this.delegate.fetchGithubIssuesFrom(active, start, end)) {
+                final String key = info.getRepositoryOwner() + "/" + info.getRepositoryName();
+                fetched.put(key, info);
+                if (activeListed.containsKey(key)) {
+                    remember(key, activeListed.get(key), info.getCurrentPullRequestsOpen());
+                }
+            }
+        }
+
+        final List<RepoInfo> repoInfo = new ArrayList<>(ordered.size());
+        for (final Map.Entry<String, String> repo : ordered) {
+            final String key = repo.getKey() + "/" + repo.getValue();
+            final RepoInfo info = fetched.containsKey(key) ? fetched.get(key) : inactive.get(key);
+            if (info != null) {
+                repoInfo.add(info);
+            }
+        }
+        return repoInfo;
+    }
+
+    /**
+     * Adds a listed repository to the active ones, or to the inactive ones with the stats it is published with.
+     *
+     * @return {@code true} if it is inactive, and so skipped.
+     */
+    private boolean classify(final ListedRepository repository, final ZonedDateTime start, final List<Map.Entry<String, String>> active,
+                             final Map<String, ListedRepository> activeListed, final Map<String, RepoInfo> inactive) {
+        final String key = repository.getOwner() + "/" + repository.getName();
+        final ScanResult previous = this.previousScan.get(key);
+        final boolean changed = previous != null && previous.getOpenIssuesCount() != repository.getOpenIssuesCount();
+        if (changed || repository.getLastActivity() >= start.toEpochSecond()) {
+            active.add(Map.entry(repository.getOwner(), repository.getName()));
+            activeListed.put(key, repository);
+            return false;
+        }
+        try {
+            inactive.put(key, inactiveRepoInfo(repository, previous));
+            return true;
+        } catch (final IOException ex) {
+            log.error("Encountered error working on: {}/{}.", repository.getOwner(), repository.getName(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return The repositories of {@code organization} by name, listed once per call. Empty if the listing failed, so
+     * its repositories are fetched in full.
+     */
+    private Map<String, ListedRepository> listing(final Map<String, Map<String, ListedRepository>> listings, final String organization) {
+        Map<String, ListedRepository> listing = listings.get(organization);
+        if (listing == null) {
+            listing = new HashMap<>();
+            try {
+                for (final ListedRepository repository : listRepositories(organization)) {
+                    listing.put(repository.getName(), repository);
+                }
+            } catch (final IOException ex) {
+                log.error("Encountered error listing the repositories of: {}. Fetching them in full.", organization, ex);
+            }
+            listings.put(organization, listing);
+        }
+        return listing;
+    }
+
+    /**
+     * Records the scan of a repository, so it can be skipped next time if nothing changed.
+     */
+    private void remember(final String key, final ListedRepository repository, final int openPullRequests) {
+        this.previousScan.put(key, new ScanResult(repository.getOpenIssuesCount(), openPullRequests));
+    }
+
+    private RepoInfo inactiveRepoInfo(final ListedRepository repository, final ScanResult previous) throws IOException {
+        final int openPullRequests = previous != null
+                ? previous.getOpenPullRequests()
+                : this.githubAPI.fetchOpenPullRequestsCount(repository.getOwner(), repository.getName());
+        remember(repository.getOwner() + "/" + repository.getName(), repository, openPullRequests);
+        return new RepoInfo(repository.getOwner(), repository.getName(),
+                Math.max(0, repository.getOpenIssuesCount() - openPullRequests), openPullRequests, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param entry An entry of {@code reposToFetch}. The key is the owner, the value is the repository name.
+     * @return The repositories of the organization if the entry stands for a whole organization, or else the entry
+     * itself.
+     * @throws IOException If the organization couldn't be listed.
+     */
+    public List<Map.Entry<String, String>> expand(final Map.Entry<String, String> entry) throws IOException {
+        if (!ALL_REPOSITORIES.equals(entry.getValue())) {
+            return List.of(entry);
+        }
+        final List<Map.Entry<String, String>> repositories = new ArrayList<>();
+        for (final ListedRepository repository : listRepositories(entry.getKey())) {
+            repositories.add(Map.entry(repository.getOwner(), repository.getName()));
+        }
+        return repositories;
+    }
+
+    /**
+     * Lists every repository of an organization.
+     *
+     * @param organization Organization login.
+     * @return The repositories.
+     * @throws IOException If a page couldn't be fetched.
+     */
+    public List<ListedRepository> listRepositories(final String organization) throws IOException {
+        final List<ListedRepository> repositories = new ArrayList<>();
+        URI next = URI.create(this.apiBaseUrl + "/orgs/" + organization + "/repos?type=all&per_page=" + PAGE_SIZE);
+        while (next != null) {
+            final HttpResponse<InputStream> response = this.pageFetcher.fetch(next, RateLimitResource.CORE);
+            try (final JsonReader reader = new JsonReader(new InputStreamReader(GithubHttpClient.body(response), StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    repositories.add(readRepository(reader, organization));
+                }
+                reader.endArray();
+            }
+            next = GithubPageFetcher.nextPage(response);
+        }
+        this.organizations.add(organization);
+        return repositories;
+    }
+
+    private static ListedRepository readRepository(final JsonReader reader, final String organization) throws IOException {
+        String name = null;
+        int openIssuesCount = 0;
+        long lastActivity = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (field) {
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "open_issues_count":
+                    openIssuesCount = reader.nextInt();
+                    break;
+                case "pushed_at":
+                case "updated_at":
+                    lastActivity = Math.max(lastActivity, Instant.parse(reader.nextString()).getEpochSecond());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (name == null) {
+            throw new IOException("Repository without a name in the listing of " + organization);
+        }
+        return new ListedRepository(organization, name, openIssuesCount, lastActivity);
+    }
+
+    /**
+     * A repository, as listed by {@code /orgs/{org}/repos}.
+     */
+    @Data
+    public static class ListedRepository {
+        private final String owner;
+        private final String name;
+        // Open issues plus open pull requests.
+        private final int openIssuesCount;
+        // Latest of pushed_at and updated_at, in epoch seconds.
+        private final long lastActivity;
+    }
+
+    @Data
+    private static class ScanResult {
+        private final int openIssuesCount;
+        private final int openPullRequests;
+    }
+}
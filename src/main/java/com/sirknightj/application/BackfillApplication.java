@@ -0,0 +1,134 @@
+package com.sirknightj.application;
+
+import com.sirknightj.IncrementalGithubFetcher;
+import com.sirknightj.cloudwatch.GitHubStatsCloudWatchPublisher;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.index.RepoIssueIndex;
+import com.sirknightj.spool.SpoolingMetricsSink;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Publishes the past stats of repositories, e.g. when adding them to the dashboard.
+ * <p>
+ * Instead of fetching every past window separately, each repository's whole issue history is synced into its
+ * {@link RepoIssueIndex} once, then bucketed into windows in a single pass. The datapoints are backdated to the end of
+ * their window, as {@link TieredPollingApplication} would have published them, and all of them go through
+ * the publisher together.
+ * <p>
+ * CloudWatch rejects datapoints more than two weeks old, so older windows are left out of what is published.
+ */
+@Log4j2
+public class BackfillApplication {
+
+    /**
+     * Age of the oldest datapoint that is published.
+     */
+    public static final Duration MAX_DATAPOINT_AGE = SpoolingMetricsSink.MAX_REPLAY_AGE;
+
+    private final IncrementalGithubFetcher fetcher;
+    private final GitHubStatsCloudWatchPublisher publisher;
+    private final int parallelism;
+    private final Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param fetcher     Fetcher whose index is synced. The index is flushed after the sync.
+     * @param publisher   Publisher of the datapoints. Not closed by this application.
+     * @param parallelism Maximum number of repositories to sync concurrently.
+     */
+    public BackfillApplication(final IncrementalGithubFetcher fetcher, final GitHubStatsCloudWatchPublisher publisher, final int parallelism) {
+        this(fetcher, publisher, parallelism, Clock.systemUTC());
+    }
+
+    BackfillApplication(final IncrementalGithubFetcher fetcher, final GitHubStatsCloudWatchPublisher publisher,
+                        final int parallelism, final Clock clock) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        }
+        this.fetcher = fetcher;
+        this.publisher = publisher;
+        this.parallelism = parallelism;
+        this.clock = clock;
+    }
+
+    /**
+     * Computes and publishes the stats of {@code windows} consecutive windows ending at {@code end}.
+     *
+     * @param reposToFetch List of repositories. The key is the owner, the value is the repository name.
+     * @param end          End of the last window (exclusive). Usually the time of the last scheduled fetch.
+     * @param width        Width of each window, e.g. a day or an hour.
+     * @param windows      Number of windows.
+     * @return The result of publishing.
+     * @throws InterruptedException If interrupted while syncing.
+     */
+    public PublishResult backfill(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime end,
+                                  final Duration width, final int windows) throws InterruptedException {
+        final ZonedDateTime firstStart = end.minus(width.multipliedBy(windows));
+        final Map<ZonedDateTime, List<RepoInfo>> history = collectHistory(reposToFetch, firstStart, width, windows);
+
+        final Instant now = this.clock.instant();
+        final Instant oldestAccepted = now.minus(MAX_DATAPOINT_AGE);
+        final int before = history.size();
+        history.keySet().removeIf(time -> time.toInstant().isBefore(oldestAccepted) || time.toInstant().isAfter(now));
+        if (history.size() < before) {
+            log.warn("Leaving out {} of {} windows, which are more than {} old or not over yet.", before - history.size(), before, MAX_DATAPOINT_AGE);
+        }
+        if (history.isEmpty()) {
+            return new PublishResult(0, 0, 0, 0, 0);
+        }
+        return this.publisher.publishHistory(history);
+    }
+
+    /**
+     * Syncs every repository, then buckets each one's history.
+     *
+     * @return Stats of the repositories that synced successfully, keyed by the end of each window.
+     */
+    Map<ZonedDateTime, List<RepoInfo>> collectHistory(final List<Map.Entry<String, String>> reposToFetch, final ZonedDateTime firstStart,
+                                                      final Duration width, final int windows) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.parallelism, reposToFetch.size())));
+        final Map<ZonedDateTime, List<RepoInfo>> history = new TreeMap<>();
+        try {
+            final List<Future<List<RepoInfo>>> futures = new ArrayList<>(reposToFetch.size());
+            for (final Map.Entry<String, String> repo : reposToFetch) {
+                futures.add(executor.submit(() -> this.fetcher.syncRepository(repo.getKey(), repo.getValue())
+                        .toRepoInfoHistory(repo.getKey(), repo.getValue(), firstStart.toEpochSecond(), width.getSeconds(), windows)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                final Map.Entry<String, String> repo = reposToFetch.get(i);
+                final List<RepoInfo> repoHistory;
+                try {
+                    repoHistory = futures.get(i).get();
+                } catch (final ExecutionException ex) {
+                    log.error("Encountered error backfilling: {}/{}.", repo.getKey(), repo.getValue(), ex.getCause());
+                    continue;
+                }
+                for (int window = 0; window < repoHistory.size(); window++) {
+                    final ZonedDateTime windowEnd = firstStart.plus(width.multipliedBy(window + 1));
+                    history.computeIfAbsent(windowEnd, time -> new ArrayList<>()).add(repoHistory.get(window));
+                }
+                log.info("{}/{} - Bucketed {} windows.", repo.getKey(), repo.getValue(), repoHistory.size());
+            }
+        } finally {
+            executor.shutdownNow();
+            this.fetcher.getIndex().flush();
+        }
+        return history;
+    }
+}
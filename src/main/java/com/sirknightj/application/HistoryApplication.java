@@ -0,0 +1,107 @@
+package com.sirknightj.application;
+
+import com.sirknightj.store.HistorySnapshot;
+import com.sirknightj.store.RepoHistoryStore;
+import com.sirknightj.store.RollupPeriod;
+import com.sirknightj.store.RollupRow;
+import com.sirknightj.utils.RepoInfo;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Prints the history recorded in a {@link RepoHistoryStore}: every snapshot of a range, or its weekly or monthly
+ * rollups, as a table.
+ */
+public class HistoryApplication {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final RepoHistoryStore store;
+    private final ZoneId zone;
+    private final PrintStream out;
+
+    /**
+     * Constructor.
+     *
+     * @param store Store to query. Not closed by this application.
+     * @param zone  Time zone the timestamps are printed, and the periods start, in.
+     * @param out   Where the tables are printed.
+     */
+    public HistoryApplication(final RepoHistoryStore store, final ZoneId zone, final PrintStream out) {
+        this.store = store;
+        this.zone = zone;
+        this.out = out;
+    }
+
+    /**
+     * Runs {@code history <snapshots|weekly|monthly> [owner/name|all] [days]}.
+     *
+     * @param args The arguments after {@code history}.
+     * @throws IllegalArgumentException If the arguments are malformed.
+     */
+    public void run(final String[] args) {
+        final String query = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "weekly";
+        final String repository = args.length > 1 && !"all".equalsIgnoreCase(args[1]) ? args[1] : null;
+        final int days = args.length > 2 ? Integer.parseInt(args[2]) : 90;
+        final Instant to = Instant.now();
+        final Instant from = to.minus(Duration.ofDays(days));
+        switch (query) {
+            case "snapshots":
+                printSnapshots(repository, from, to);
+                break;
+            case "weekly":
+                printRollup(repository, from, to, RollupPeriod.WEEK);
+                break;
+            case "monthly":
+                printRollup(repository, from, to, RollupPeriod.MONTH);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown history query: " + query + ". Expected snapshots, weekly or monthly.");
+        }
+    }
+
+    /**
+     * Prints every snapshot between {@code from} and {@code to}.
+     *
+     * @param repository Repository as {@code owner/name}, or {@code null} for every repository.
+     * @param from       Start of the range (inclusive).
+     * @param to         End of the range (exclusive).
+     */
+    public void printSnapshots(final String repository, final Instant from, final Instant to) {
+        this.out.printf("%-16s  %-40s  %11s  %8s  %13s  %13s  %10s  %10s%n", "Time", "Repository",
+                "Open issues", "Open PRs", "Issues opened", "Issues closed", "PRs opened", "PRs closed");
+        for (final HistorySnapshot snapshot : this.store.snapshots(repository, from, to)) {
+            final RepoInfo info = snapshot.getRepoInfo();
+            this.out.printf("%-16s  %-40s  %11d  %8d  %13d  %13d  %10d  %10d%n",
+                    DATE_TIME.format(snapshot.getTimestamp().atZone(this.zone)),
+                    info.getRepositoryOwner() + "/" + info.getRepositoryName(),
+                    info.getCurrentIssuesOpen(), info.getCurrentPullRequestsOpen(), info.getIssuesOpened(),
+                    info.getIssuesClosed(), info.getPullRequestsOpened(), info.getPullRequestsClosed());
+        }
+    }
+
+    /**
+     * Prints the rollups of the snapshots between {@code from} and {@code to}.
+     *
+     * @param repository Repository as {@code owner/name}, or {@code null} for every repository.
+     * @param from       Start of the range (inclusive).
+     * @param to         End of the range (exclusive).
+     * @param period     Period to roll up into.
+     */
+    public void printRollup(final String repository, final Instant from, final Instant to, final RollupPeriod period) {
+        this.out.printf("%-10s  %-40s  %9s  %11s  %8s  %13s  %13s  %10s  %10s%n", "Start", "Repository", "Snapshots",
+                "Open issues", "Open PRs", "Issues opened", "Issues closed", "PRs opened", "PRs closed");
+        for (final RollupRow row : this.store.rollup(repository, from, to, period, this.zone)) {
+            this.out.printf("%-10s  %-40s  %9d  %11d  %8d  %13d  %13d  %10d  %10d%n",
+                    DATE.format(row.getPeriodStart()), row.getRepository(), row.getSnapshots(),
+                    row.getOpenIssues(), row.getOpenPullRequests(), row.getIssuesOpened(), row.getIssuesClosed(),
+                    row.getPullRequestsOpened(), row.getPullRequestsClosed());
+        }
+    }
+}
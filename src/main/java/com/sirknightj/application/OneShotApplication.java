@@ -0,0 +1,144 @@
+package com.sirknightj.application;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.OrganizationFetcher;
+import com.sirknightj.cloudwatch.CollectorMetricsPublisher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.pipeline.StreamingFetchPipeline;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Collects a single window of every repository, publishes it and returns, for runs started by cron or as a scheduled
+ * container rather than kept alive.
+ * <p>
+ * Nothing is set up that a single window doesn't need: the repositories go through a {@link StreamingFetchPipeline} as
+ * they are read, and the collector's own metrics are only published, and their CloudWatch client created, at the end.
+ */
+@Log4j2
+public class OneShotApplication {
+
+    private final StreamingFetchPipeline pipeline;
+    // Returns null if the collector's metrics aren't published.
+    private final Supplier<CollectorMetricsPublisher> collectorMetricsPublisher;
+
+    /**
+     * Constructor.
+     *
+     * @param fetcher                   Fetches the stats of the repositories, a chunk at a time.
+     * @param sink                      Where the stats are published. Not closed by this application.
+     * @param collectorMetricsPublisher Creates the publisher of the collector's own metrics after the run. Can return
+     *                                  {@code null}.
+     */
+    public OneShotApplication(final GithubStatsFetcher fetcher, final MetricsSink sink,
+                              final Supplier<CollectorMetricsPublisher> collectorMetricsPublisher) {
+        this.pipeline = new StreamingFetchPipeline(fetcher, sink);
+        this.collectorMetricsPublisher = collectorMetricsPublisher;
+    }
+
+    /**
+     * @param now            Current time.
+     * @param width          Width of the window: a day or an hour.
+     * @param midnightOffset Time of day the daily windows end at.
+     * @return The end of the latest window that is over, lined up with the windows of {@link TieredPollingApplication}.
+     */
+    public static ZonedDateTime lastWindowEnd(final ZonedDateTime now, final Duration width, final Duration midnightOffset) {
+        if (width.compareTo(Duration.ofDays(1)) < 0) {
+            return now.truncatedTo(ChronoUnit.HOURS);
+        }
+        final ZonedDateTime end = now.toLocalDate().atStartOfDay(now.getZone()).plus(midnightOffset);
+        return end.isAfter(now) ? end.minusDays(1) : end;
+    }
+
+    /**
+     * Fetches and publishes the window ending at {@code end} of every repository, then publishes the collector's own
+     * metrics.
+     *
+     * @param repositories Repositories, read lazily. The key is the owner, the value is the repository name, or
+     *                     {@link OrganizationFetcher#ALL_REPOSITORIES}.
+     * @param end          End of the window, and timestamp of the datapoints.
+     * @param width        Width of the window.
+     * @return What was fetched and published.
+     * @throws InterruptedException If interrupted.
+     */
+    public Result run(final Iterator<Map.Entry<String, String>> repositories, final ZonedDateTime end,
+                      final Duration width) throws InterruptedException {
+        final ZonedDateTime start = end.minus(width);
+        log.info("Collecting the window from {} to {}.", start, end);
+        final long startNanos = System.nanoTime();
+
+        // Repositories of organizations aren't known up front, so only the ones listed by name are checked off.
+        final Set<String> requested = new HashSet<>();
+        final Iterator<Map.Entry<String, String>> recording = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return repositories.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                final Map.Entry<String, String> repo = repositories.next();
+                if (!OrganizationFetcher.ALL_REPOSITORIES.equals(repo.getValue())) {
+                    synchronized (requested) {
+                        requested.add(key(repo.getKey(), repo.getValue()));
+                    }
+                }
+                return repo;
+            }
+        };
+        final Set<String> fetched = new HashSet<>();
+        final PublishResult publishResult = this.pipeline.run(recording, start, end.minusSeconds(1), end,
+                info -> fetched.add(key(info.getRepositoryOwner(), info.getRepositoryName())));
+
+        final int missing;
+        synchronized (requested) {
+            requested.removeAll(fetched);
+            missing = requested.size();
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        CollectorMetrics.getInstance().recordRun(elapsedNanos);
+        final Result result = new Result(fetched.size(), missing, publishResult);
+        log.info("Collected the window ending {} in {} ms: {}", end, elapsedNanos / 1_000_000, result);
+
+        try (final CollectorMetricsPublisher publisher = this.collectorMetricsPublisher.get()) {
+            if (publisher != null) {
+                publisher.publish();
+            }
+        }
+        return result;
+    }
+
+    private static String key(final String owner, final String name) {
+        return (owner + "/" + name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Outcome of a run.
+     */
+    @Data
+    public static class Result {
+        private final int repositoriesFetched;
+        // Repositories listed by name whose stats couldn't be fetched.
+        private final int repositoriesMissing;
+        private final PublishResult publishResult;
+
+        /**
+         * @return {@code true} if every repository was fetched, and its stats published.
+         */
+        public boolean isSuccess() {
+            return this.repositoriesMissing == 0 && this.publishResult.isSuccess();
+        }
+    }
+}
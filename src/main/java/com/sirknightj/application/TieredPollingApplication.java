@@ -0,0 +1,179 @@
+package com.sirknightj.application;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.cloudwatch.CollectorMetricsPublisher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.pipeline.StreamingFetchPipeline;
+import com.sirknightj.schedule.PollingBatch;
+import com.sirknightj.schedule.RepoPollingScheduler;
+import com.sirknightj.shard.ShardCoordinator;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Polls each repository at the cadence of its tier, as decided by a {@link RepoPollingScheduler}, and publishes the
+ * stats of each window, timestamped at the end of the window.
+ * <p>
+ * A single thread waits for the next repository to be due, fetches every batch that is due, and reports back to the
+ * scheduler which repositories succeeded, so failed and missed windows are caught up on. Each batch goes through a
+ * {@link StreamingFetchPipeline}, so the stats of large batches are published as they are fetched.
+ * <p>
+ * With a {@link ShardCoordinator}, the repositories are split with the other instances sharing its lease store. Only
+ * the repositories of the shards this instance holds are polled, and the recent windows of a shard taken over from
+ * another instance are polled again.
+ */
+@Log4j2
+public class TieredPollingApplication implements AutoCloseable {
+
+    // Longest the polling thread sleeps before checking the scheduler again, e.g. after a deferral.
+    private static final Duration MAX_IDLE = Duration.ofMinutes(1);
+
+    private final StreamingFetchPipeline pipeline;
+    private final RepoPollingScheduler scheduler;
+    private final MetricsSink sink;
+    // Can be null.
+    private final CollectorMetricsPublisher collectorMetricsPublisher;
+    // Can be null.
+    private final ShardCoordinator shardCoordinator;
+    private final Clock clock;
+    private final ExecutorService poller;
+
+    /**
+     * Constructor. Starts polling right away.
+     *
+     * @param fetcher                   Fetches the stats of the repositories of a batch, a chunk at a time.
+     * @param scheduler                 Scheduler with the repositories to poll.
+     * @param sink                      Where the stats are published. Closed when this application is closed.
+     * @param collectorMetricsPublisher Publishes the collector's own metrics after every round of polls. Can be
+     *                                  {@code null}.
+     */
+    public TieredPollingApplication(final GithubStatsFetcher fetcher, final RepoPollingScheduler scheduler, final MetricsSink sink,
+                                    final CollectorMetricsPublisher collectorMetricsPublisher) {
+        this(fetcher, scheduler, sink, collectorMetricsPublisher, null);
+    }
+
+    /**
+     * Constructor. Joins the other instances of the coordinator, and starts polling right away.
+     *
+     * @param fetcher                   Fetches the stats of the repositories of a batch, a chunk at a time.
+     * @param scheduler                 Scheduler with every repository, including the ones other instances poll.
+     * @param sink                      Where the stats are published. Closed when this application is closed.
+     * @param collectorMetricsPublisher Publishes the collector's own metrics after every round of polls. Can be
+     *                                  {@code null}.
+     * @param shardCoordinator          Splits the repositories with other instances. Closed, releasing this instance's
+     *                                  shards, when this application is closed. Can be {@code null} to poll them all.
+     */
+    public TieredPollingApplication(final GithubStatsFetcher fetcher, final RepoPollingScheduler scheduler, final MetricsSink sink,
+                                    final CollectorMetricsPublisher collectorMetricsPublisher, final ShardCoordinator shardCoordinator) {
+        this(fetcher, scheduler, sink, collectorMetricsPublisher, shardCoordinator, Clock.systemUTC());
+    }
+
+    TieredPollingApplication(final GithubStatsFetcher fetcher, final RepoPollingScheduler scheduler, final MetricsSink sink,
+                             final CollectorMetricsPublisher collectorMetricsPublisher, final ShardCoordinator shardCoordinator,
+                             final Clock clock) {
+        this.pipeline = new StreamingFetchPipeline(fetcher, sink);
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.collectorMetricsPublisher = collectorMetricsPublisher;
+        this.shardCoordinator = shardCoordinator;
+        this.clock = clock;
+        if (shardCoordinator != null) {
+            scheduler.setOwnership(shardCoordinator::owns);
+            shardCoordinator.onTakeover((shard, since) -> scheduler.reclaim(
+                    repository -> shardCoordinator.shardOf(repository) == shard, since, clock.instant()));
+            shardCoordinator.start();
+        }
+        this.poller = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "repo-poller"));
+        this.poller.execute(this::pollForever);
+    }
+
+    private void pollForever() {
+        log.info("Polling {} repositories. Next one due at {}.", this.scheduler.size(), this.scheduler.nextDue());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (pollDue() == 0) {
+                        idle();
+                    } else if (this.collectorMetricsPublisher != null) {
+                        this.collectorMetricsPublisher.publish();
+                    }
+                } catch (final RuntimeException ex) {
+                    // Keep polling, or no repository would be polled again until the application is restarted.
+                    log.error("Encountered error polling. Trying again in {}.", MAX_IDLE, ex);
+                    Thread.sleep(MAX_IDLE.toMillis());
+                }
+            }
+        } catch (final InterruptedException ex) {
+            log.info("Stopped polling.");
+        }
+    }
+
+    /**
+     * Polls every batch that is due right now.
+     *
+     * @return The number of batches polled.
+     * @throws InterruptedException If interrupted while fetching.
+     */
+    int pollDue() throws InterruptedException {
+        final List<PollingBatch> batches = this.scheduler.pollDue(this.clock.instant());
+        for (final PollingBatch batch : batches) {
+            poll(batch);
+        }
+        return batches.size();
+    }
+
+    private void poll(final PollingBatch batch) throws InterruptedException {
+        log.info("Polling {} {} repositories for {} to {}.", batch.getRepositories().size(), batch.getTier(), batch.getStart(), batch.getEnd());
+        final long startNanos = System.nanoTime();
+        final Set<String> succeeded = new HashSet<>();
+        try {
+            final PublishResult result = this.pipeline.run(batch.getRepositories().iterator(), batch.getStart(),
+                    batch.getEnd().minusSeconds(1), batch.getEnd(),
+                    info -> succeeded.add(info.getRepositoryOwner() + "/" + info.getRepositoryName()));
+            if (!result.isSuccess()) {
+                log.warn("Some stats of the {} window ending {} weren't published.", batch.getTier(), batch.getEnd());
+            }
+        } catch (final InterruptedException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            log.error("Encountered error polling the {} window ending {}.", batch.getTier(), batch.getEnd(), ex);
+        } finally {
+            this.scheduler.complete(batch, succeeded, this.clock.instant());
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        CollectorMetrics.getInstance().recordRun(elapsedNanos);
+        log.info("Polled {} of {} {} repositories in {} ms.", succeeded.size(), batch.getRepositories().size(), batch.getTier(), elapsedNanos / 1_000_000);
+    }
+
+    private void idle() throws InterruptedException {
+        final Instant now = this.clock.instant();
+        final Instant nextDue = this.scheduler.nextDue();
+        Duration sleep = MAX_IDLE;
+        if (nextDue != null && nextDue.isBefore(now.plus(MAX_IDLE))) {
+            sleep = Duration.between(now, nextDue);
+        }
+        Thread.sleep(Math.max(1, sleep.toMillis()));
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.poller.shutdownNow();
+        if (this.shardCoordinator != null) {
+            this.shardCoordinator.close();
+        }
+        this.sink.close();
+        if (this.collectorMetricsPublisher != null) {
+            this.collectorMetricsPublisher.close();
+        }
+    }
+}
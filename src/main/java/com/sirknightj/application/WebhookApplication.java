@@ -0,0 +1,133 @@
+package com.sirknightj.application;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.cloudwatch.CollectorMetricsPublisher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.utils.RepoInfo;
+import com.sirknightj.webhook.LiveRepoCounters;
+import com.sirknightj.webhook.WebhookServer;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the stats of each repository from webhook deliveries instead of polling. A {@link WebhookServer} applies the
+ * deliveries to {@link LiveRepoCounters}, which are published on an interval, and reconciled with a poll on a much
+ * longer one.
+ * <p>
+ * The first reconciliation runs on startup, as the numbers of open issues and pull requests can only be learned by
+ * polling. A repository is published from then on.
+ */
+@Log4j2
+public class WebhookApplication implements AutoCloseable {
+
+    /**
+     * How often the counters are published, unless another interval is given.
+     */
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * How often the open counts are polled, unless another interval is given. Each poll costs a search and a request
+     * of the core rate limit per repository.
+     */
+    public static final Duration DEFAULT_RECONCILE_INTERVAL = Duration.ofHours(6);
+
+    private final LiveRepoCounters counters;
+    private final WebhookServer server;
+    private final GithubStatsFetcher fetcher;
+    private final MetricsSink sink;
+    // Can be null.
+    private final CollectorMetricsPublisher collectorMetricsPublisher;
+    private final Duration reconcileInterval;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor. Flushes every {@link #DEFAULT_FLUSH_INTERVAL}, and reconciles every
+     * {@link #DEFAULT_RECONCILE_INTERVAL}.
+     *
+     * @param counters                  Counters the server applies deliveries to.
+     * @param server                    Server receiving the deliveries. Closed when this application is closed.
+     * @param fetcher                   Fetcher the open counts are reconciled with.
+     * @param sink                      Where the stats are published. Closed when this application is closed.
+     * @param collectorMetricsPublisher Publishes the collector's own metrics after every flush. Can be {@code null}.
+     */
+    public WebhookApplication(final LiveRepoCounters counters, final WebhookServer server, final GithubStatsFetcher fetcher,
+                              final MetricsSink sink, final CollectorMetricsPublisher collectorMetricsPublisher) {
+        this(counters, server, fetcher, sink, collectorMetricsPublisher, DEFAULT_FLUSH_INTERVAL, DEFAULT_RECONCILE_INTERVAL,
+                Clock.systemDefaultZone());
+    }
+
+    WebhookApplication(final LiveRepoCounters counters, final WebhookServer server, final GithubStatsFetcher fetcher,
+                       final MetricsSink sink, final CollectorMetricsPublisher collectorMetricsPublisher,
+                       final Duration flushInterval, final Duration reconcileInterval, final Clock clock) {
+        this.counters = counters;
+        this.server = server;
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.collectorMetricsPublisher = collectorMetricsPublisher;
+        this.reconcileInterval = reconcileInterval;
+        this.clock = clock;
+        // Reconciling waits on GitHub, so it gets a thread of its own, and flushes stay on time.
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(2, runnable -> new Thread(runnable, "webhook-flusher-" + threadNumber.incrementAndGet()));
+        this.executor.scheduleAtFixedRate(this::reconcile, 0, reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+        this.executor.scheduleAtFixedRate(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Polls the open counts of every repository counted.
+     */
+    void reconcile() {
+        try {
+            this.counters.reconcile(this.fetcher);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception ex) {
+            // Thrown out of a scheduled task, it would cancel every later run.
+            log.error("Encountered error reconciling the counters. Will retry in {}.", this.reconcileInterval, ex);
+        }
+    }
+
+    /**
+     * Publishes what was counted since the previous flush, timestamped now.
+     */
+    void flush() {
+        try {
+            final List<RepoInfo> stats = this.counters.drain();
+            if (stats.isEmpty()) {
+                return;
+            }
+            final ZonedDateTime now = ZonedDateTime.now(this.clock).truncatedTo(ChronoUnit.SECONDS);
+            if (!this.sink.publish(stats, now).isSuccess()) {
+                log.warn("Some stats of the {} repositories flushed at {} weren't published.", stats.size(), now);
+            }
+            if (this.collectorMetricsPublisher != null) {
+                this.collectorMetricsPublisher.publish();
+            }
+        } catch (final Exception ex) {
+            log.error("Encountered error flushing the counters.", ex);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.server.close();
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+        // What was counted since the last flush.
+        flush();
+        this.sink.close();
+        if (this.collectorMetricsPublisher != null) {
+            this.collectorMetricsPublisher.close();
+        }
+    }
+}
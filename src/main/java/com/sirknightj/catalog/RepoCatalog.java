@@ -0,0 +1,141 @@
+package com.sirknightj.catalog;
+
+import com.sirknightj.schedule.PollingTier;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A file listing the repositories to fetch, one per line, as {@code owner/name}, optionally followed by the name of
+ * a {@link PollingTier}. {@code owner/*} stands for every repository of an organization. Blank lines and lines
+ * starting with {@code #} are skipped:
+ * <pre>
+ * # Busy ones
+ * facebookresearch/audiocraft hot
+ * aws/aws-sdk-java-v2         hourly
+ * facebookresearch/llama
+ * </pre>
+ * The file is read line by line as it is iterated, so catalogs of any size can be used without loading them whole.
+ */
+@Log4j2
+public class RepoCatalog {
+
+    private final Path file;
+
+    /**
+     * Constructor.
+     *
+     * @param file The catalog file.
+     */
+    public RepoCatalog(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the catalog for one pass. Malformed lines are logged and skipped.
+     *
+     * @return A reader over the entries. Must be closed.
+     * @throws IOException If the file can't be opened.
+     */
+    public CatalogReader open() throws IOException {
+        return new CatalogReader(Files.newBufferedReader(this.file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A repository of the catalog.
+     */
+    @Data
+    public static class CatalogEntry {
+        private final String owner;
+        private final String name;
+        // Can be null, if the line doesn't set one.
+        private final PollingTier tier;
+
+        /**
+         * @return The repository. The key is the owner, the value is the repository name.
+         */
+        public Map.Entry<String, String> toRepository() {
+            return Map.entry(this.owner, this.name);
+        }
+    }
+
+    /**
+     * Iterates over the entries of a catalog, reading the next line only when asked for the next entry. Throws
+     * {@link UncheckedIOException} if the file can't be read.
+     */
+    public class CatalogReader implements Iterator<CatalogEntry>, Closeable {
+
+        private final BufferedReader reader;
+        private CatalogEntry next;
+        private int lineNumber;
+
+        private CatalogReader(final BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                String line;
+                while (this.next == null && (line = this.reader.readLine()) != null) {
+                    this.lineNumber++;
+                    this.next = parse(line.trim());
+                }
+                return this.next != null;
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public CatalogEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final CatalogEntry entry = this.next;
+            this.next = null;
+            return entry;
+        }
+
+        /**
+         * @return The entry of a line, or {@code null} to skip it.
+         */
+        private CatalogEntry parse(final String line) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                return null;
+            }
+            final String[] fields = line.split("\\s+");
+            final int slash = fields[0].indexOf('/');
+            if (fields.length > 2 || slash <= 0 || slash == fields[0].length() - 1) {
+                log.warn("Skipping line {} of {}: expected owner/name, optionally followed by a tier, got \"{}\".",
+                        this.lineNumber, RepoCatalog.this.file, line);
+                return null;
+            }
+            PollingTier tier = null;
+            if (fields.length == 2) {
+                try {
+                    tier = PollingTier.named(fields[1]);
+                } catch (final IllegalArgumentException ex) {
+                    log.warn("Skipping line {} of {}: {}", this.lineNumber, RepoCatalog.this.file, ex.getMessage());
+                    return null;
+                }
+            }
+            return new CatalogEntry(fields[0].substring(0, slash), fields[0].substring(slash + 1), tier);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.close();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.sirknightj.cloudwatch;
+
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes metric data to CloudWatch in batches that respect the PutMetricData limits, sending several batches
+ * concurrently through a {@link CloudWatchAsyncClient}. Batches rejected because of throttling or a server error are
+ * retried with exponential backoff and full jitter; a failed batch doesn't affect the others.
+ */
+@Log4j2
+public class CloudWatchPublishingPipeline implements AutoCloseable {
+
+    /**
+     * Maximum number of datums in one PutMetricData request.
+     */
+    public static final int MAX_DATUMS_PER_REQUEST = 1000;
+
+    /**
+     * PutMetricData requests are limited to 1 MB. Batches are cut well below that, since the size is estimated.
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 800 * 1024;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(200);
+
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(20);
+
+    private static final Set<String> THROTTLING_ERROR_CODES = Set.of(
+            "Throttling", "ThrottlingException", "ThrottledException", "RequestThrottled", "RequestLimitExceeded",
+            "TooManyRequestsException", "ServiceUnavailable", "InternalFailure");
+
+    // Rough size of the query-protocol encoding of a datum without its strings, e.g.
+    // "&MetricData.member.123.Value=12345.0&MetricData.member.123.Unit=Count&MetricData.member.123.Timestamp=...".
+    private static final int DATUM_OVERHEAD_BYTES = 200;
+    private static final int DIMENSION_OVERHEAD_BYTES = 90;
+    // "&MetricData.member.123.Values.member.45=12345.678", and the same for Counts.
+    private static final int VALUE_OVERHEAD_BYTES = 60;
+
+    private final CloudWatchAsyncClient cw;
+    private final String namespace;
+    private final int maxDatumsPerRequest;
+    private final int maxPayloadBytes;
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final ScheduledExecutorService retryScheduler;
+
+    public CloudWatchPublishingPipeline(final CloudWatchAsyncClient cw, final String namespace) {
+        this(cw, namespace, MAX_DATUMS_PER_REQUEST, DEFAULT_MAX_PAYLOAD_BYTES, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cw                  CloudWatch client. Not closed by this pipeline.
+     * @param namespace           Namespace to publish the metrics to.
+     * @param maxDatumsPerRequest Maximum number of datums per request.
+     * @param maxPayloadBytes     Maximum estimated size of a request.
+     * @param maxInFlight         Maximum number of requests sent concurrently.
+     * @param maxAttempts         Maximum number of times a batch is sent before giving up on it.
+     * @param baseBackoff         Upper bound of the delay before the first retry. Doubles with every retry.
+     */
+    public CloudWatchPublishingPipeline(final CloudWatchAsyncClient cw, final String namespace, final int maxDatumsPerRequest,
+                                        final int maxPayloadBytes, final int maxInFlight, final int maxAttempts, final Duration baseBackoff) {
+        if (maxDatumsPerRequest < 1 || maxDatumsPerRequest > MAX_DATUMS_PER_REQUEST) {
+            throw new IllegalArgumentException("maxDatumsPerRequest must be between 1 and " + MAX_DATUMS_PER_REQUEST + ", got " + maxDatumsPerRequest);
+        }
+        if (maxInFlight < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("maxInFlight and maxAttempts must be at least 1");
+        }
+        this.cw = cw;
+        this.namespace = namespace;
+        this.maxDatumsPerRequest = maxDatumsPerRequest;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "cloudwatch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Publishes {@code metricData}, blocking until every batch has been published or given up on.
+     *
+     * @param metricData The datums to publish.
+     * @return How many datums were published, and how many were given up on.
+     * @throws InterruptedException If interrupted while waiting for the batches.
+     */
+    public PublishResult publish(final List<MetricDatum> metricData) throws InterruptedException {
+        final List<List<MetricDatum>> batches = partition(metricData, this.maxDatumsPerRequest, this.maxPayloadBytes);
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger publishedDatums = new AtomicInteger();
+        final AtomicInteger failedDatums = new AtomicInteger();
+        final AtomicInteger failedBatches = new AtomicInteger();
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        for (final List<MetricDatum> batch : batches) {
+            this.inFlight.acquire();
+            CompletableFuture<Void> sent;
+            try {
+                final PutMetricDataRequest request = PutMetricDataRequest.builder()
+                        .namespace(this.namespace)
+                        .metricData(batch)
+                        .build();
+                sent = send(request, 1, requests);
+            } catch (final RuntimeException ex) {
+                // Fails the batch like any other error, so its permit is released.
+                sent = CompletableFuture.failedFuture(ex);
+            }
+            final CompletableFuture<Void> future = sent
+                    .handle((response, error) -> {
+                        this.inFlight.release();
+                        if (error == null) {
+                            publishedDatums.addAndGet(batch.size());
+                        } else {
+                            final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                            log.error("Giving up publishing a batch of {} datums to CloudWatch.", batch.size(), cause);
+                            failedDatums.addAndGet(batch.size());
+                            failedBatches.incrementAndGet();
+                        }
+                        return null;
+                    });
+            futures.add(future);
+        }
+        try {
+            // Unlike join(), can be interrupted.
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } catch (final ExecutionException ex) {
+            // Each batch's failure is already counted, so only a bug in counting it gets here.
+            throw new IllegalStateException("Failed to count the outcome of a batch", ex.getCause());
+        }
+
+        return new PublishResult(batches.size(), requests.get(), publishedDatums.get(), failedBatches.get(), failedDatums.get());
+    }
+
+    private CompletableFuture<Void> send(final PutMetricDataRequest request, final int attempt, final AtomicInteger requests) {
+        requests.incrementAndGet();
+        CompletableFuture<PutMetricDataResponse> sent;
+        try {
+            sent = this.cw.putMetricData(request);
+        } catch (final RuntimeException ex) {
+            // Also thrown from the retry scheduler, where it would leave the retry incomplete.
+            sent = CompletableFuture.failedFuture(ex);
+        }
+        return sent
+                .<CompletableFuture<Void>>handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (attempt >= this.maxAttempts || !isRetryable(cause)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    final long delayMillis = backoffMillis(attempt);
+                    log.warn("PutMetricData attempt {} failed: {}. Retrying in {} ms.", attempt, cause.getMessage(), delayMillis);
+
+                    final CompletableFuture<Void> retry = new CompletableFuture<>();
+                    this.retryScheduler.schedule(() -> {
+                        send(request, attempt + 1, requests).whenComplete((ignored, retryError) -> {
+                            if (retryError == null) {
+                                retry.complete(null);
+                            } else {
+                                retry.completeExceptionally(retryError);
+                            }
+                        });
+                    }, delayMillis, TimeUnit.MILLISECONDS);
+                    return retry;
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * Full jitter: a random delay between 0 and {@code baseBackoff * 2^(attempt - 1)}, capped.
+     */
+    private long backoffMillis(final int attempt) {
+        final long ceiling = Math.min(MAX_BACKOFF.toMillis(), this.baseBackoff.toMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static boolean isRetryable(final Throwable error) {
+        if (error instanceof CloudWatchException) {
+            final CloudWatchException cwError = (CloudWatchException) error;
+            if (cwError.statusCode() == 429 || cwError.statusCode() >= 500) {
+                return true;
+            }
+            return cwError.awsErrorDetails() != null && THROTTLING_ERROR_CODES.contains(cwError.awsErrorDetails().errorCode());
+        }
+        // Connection failures, timeouts, etc.
+        return error instanceof SdkClientException;
+    }
+
+    /**
+     * Splits {@code metricData} into batches of at most {@code maxDatums} datums and an estimated
+     * {@code maxPayloadBytes} bytes each, keeping the original order.
+     */
+    static List<List<MetricDatum>> partition(final List<MetricDatum> metricData, final int maxDatums, final int maxPayloadBytes) {
+        final List<List<MetricDatum>> batches = new ArrayList<>();
+        List<MetricDatum> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (final MetricDatum datum : metricData) {
+            final int datumBytes = estimateSize(datum);
+            if (!batch.isEmpty() && (batch.size() >= maxDatums || batchBytes + datumBytes > maxPayloadBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(datum);
+            batchBytes += datumBytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Estimates the encoded size of a datum in a PutMetricData request. Strings are counted three times over, in
+     * case every character has to be percent-encoded.
+     */
+    static int estimateSize(final MetricDatum datum) {
+        int size = DATUM_OVERHEAD_BYTES + 3 * datum.metricName().length();
+        for (final Dimension dimension : datum.dimensions()) {
+            size += DIMENSION_OVERHEAD_BYTES + 3 * (dimension.name().length() + dimension.value().length());
+        }
+        size += VALUE_OVERHEAD_BYTES * (datum.values().size() + datum.counts().size());
+        return size;
+    }
+
+    @Override
+    public void close() {
+        this.retryScheduler.shutdownNow();
+    }
+}
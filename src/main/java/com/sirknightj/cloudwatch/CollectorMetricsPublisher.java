@@ -0,0 +1,241 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.metrics.LatencyHistogram;
+import com.sirknightj.ratelimit.RateLimitResource;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes {@link CollectorMetrics} to their own CloudWatch namespace, apart from the repository stats.
+ * <p>
+ * Each call publishes what was recorded since the last one that was published in full, so nothing is lost when a
+ * publish fails. Durations are published as the values and counts of
+ * their histogram buckets, so CloudWatch computes percentiles over any period from the full distribution.
+ */
+@Log4j2
+public class CollectorMetricsPublisher implements AutoCloseable {
+
+    public static final String REQUEST_LATENCY_METRIC_NAME = "Request Latency";
+    public static final String RESPONSES_METRIC_NAME = "Responses";
+    public static final String REQUEST_ERRORS_METRIC_NAME = "Request Errors";
+    public static final String BYTES_RECEIVED_METRIC_NAME = "Bytes Received";
+    public static final String RATE_LIMIT_REMAINING_METRIC_NAME = "Rate Limit Remaining";
+    public static final String RATE_LIMIT_WAIT_METRIC_NAME = "Rate Limit Wait Time";
+    public static final String RUN_TIME_METRIC_NAME = "Run Time";
+    public static final String PUBLISH_TIME_METRIC_NAME = "Publish Time";
+    public static final String DATUMS_PUBLISHED_METRIC_NAME = "Datums Published";
+    public static final String DATUMS_FAILED_METRIC_NAME = "Datums Failed";
+
+    public static final String ENDPOINT_DIMENSION_NAME = "Endpoint";
+    public static final String STATUS_CODE_DIMENSION_NAME = "Status Code";
+    public static final String RESOURCE_DIMENSION_NAME = "Resource";
+
+    // CloudWatch accepts at most 150 distinct values in one datum.
+    static final int MAX_VALUES_PER_DATUM = 150;
+
+    private final CloudWatchAsyncClient cw;
+    private final CloudWatchPublishingPipeline pipeline;
+    private final CollectorMetrics metrics;
+
+    // What had been recorded at the last publish that succeeded.
+    private Baseline previous;
+    // What had been recorded when the datums being published were built. Becomes the previous one once published.
+    private Baseline pending;
+
+    /**
+     * Constructor. Publishes the process-wide {@link CollectorMetrics#getInstance() metrics}.
+     *
+     * @param namespace Namespace to publish to. Should differ from the namespace of the repository stats.
+     */
+    public CollectorMetricsPublisher(final String namespace) {
+        this(GitHubStatsCloudWatchPublisher.defaultClient(), namespace, CollectorMetrics.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cw        CloudWatch client to publish with. Closed when this publisher is closed.
+     * @param namespace Namespace to publish to.
+     * @param metrics   Metrics to publish.
+     */
+    public CollectorMetricsPublisher(final CloudWatchAsyncClient cw, final String namespace, final CollectorMetrics metrics) {
+        this.cw = cw;
+        this.pipeline = new CloudWatchPublishingPipeline(cw, namespace);
+        this.metrics = metrics;
+        this.previous = new Baseline(new long[metrics.getStatusCodeCounts().length]);
+    }
+
+    /**
+     * Publishes what was recorded since the last call that succeeded.
+     *
+     * @return The result of publishing.
+     */
+    public PublishResult publish() {
+        final List<MetricDatum> metricData = toMetricData(Instant.now());
+        try {
+            final PublishResult result = this.pipeline.publish(metricData);
+            log.info("Published collector metrics: {}", result);
+            if (result.isSuccess()) {
+                commit();
+            }
+            return result;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while publishing collector metrics.");
+            return new PublishResult(0, 0, 0, 1, metricData.size());
+        }
+    }
+
+    /**
+     * Builds the datums of what was recorded since the last publish that succeeded. What has been recorded so far
+     * only counts as published once {@link #commit() committed}.
+     *
+     * @param timestamp Timestamp of the datums.
+     * @return The datums.
+     */
+    synchronized List<MetricDatum> toMetricData(final Instant timestamp) {
+        final List<MetricDatum> metricData = new ArrayList<>();
+        final Baseline previous = this.previous;
+        final Baseline next = new Baseline(this.metrics.getStatusCodeCounts());
+
+        for (final Map.Entry<String, LatencyHistogram> entry : this.metrics.getRequestLatencyHistograms().entrySet()) {
+            addHistogram(metricData, REQUEST_LATENCY_METRIC_NAME, "request:" + entry.getKey(), entry.getValue(), timestamp,
+                    previous, next, dimension(ENDPOINT_DIMENSION_NAME, entry.getKey()));
+        }
+        addHistogram(metricData, RUN_TIME_METRIC_NAME, "run", this.metrics.getRunTimeHistogram(), timestamp, previous, next);
+        addHistogram(metricData, PUBLISH_TIME_METRIC_NAME, "publish", this.metrics.getPublishTimeHistogram(), timestamp, previous, next);
+
+        final long[] statusCounts = next.statusCounts;
+        for (int statusCode = 0; statusCode < statusCounts.length; statusCode++) {
+            final long delta = statusCounts[statusCode] - previous.statusCounts[statusCode];
+            if (delta > 0) {
+                metricData.add(datum(RESPONSES_METRIC_NAME, StandardUnit.COUNT, delta, timestamp,
+                        dimension(STATUS_CODE_DIMENSION_NAME, String.valueOf(statusCode))));
+            }
+        }
+
+        for (final RateLimitResource resource : RateLimitResource.values()) {
+            final long remaining = this.metrics.getRateLimitRemaining(resource);
+            if (remaining >= 0) {
+                metricData.add(datum(RATE_LIMIT_REMAINING_METRIC_NAME, StandardUnit.COUNT, remaining, timestamp,
+                        dimension(RESOURCE_DIMENSION_NAME, resource.name())));
+            }
+        }
+
+        next.requestErrors = this.metrics.getRequestErrors();
+        next.bytesReceived = this.metrics.getBytesReceived();
+        next.rateLimitWaitNanos = this.metrics.getRateLimitWaitNanos();
+        next.datumsPublished = this.metrics.getDatumsPublished();
+        next.datumsFailed = this.metrics.getDatumsFailed();
+        metricData.add(datum(REQUEST_ERRORS_METRIC_NAME, StandardUnit.COUNT, next.requestErrors - previous.requestErrors, timestamp));
+        metricData.add(datum(BYTES_RECEIVED_METRIC_NAME, StandardUnit.BYTES, next.bytesReceived - previous.bytesReceived, timestamp));
+        metricData.add(datum(RATE_LIMIT_WAIT_METRIC_NAME, StandardUnit.MILLISECONDS,
+                (next.rateLimitWaitNanos - previous.rateLimitWaitNanos) / 1e6, timestamp));
+        metricData.add(datum(DATUMS_PUBLISHED_METRIC_NAME, StandardUnit.COUNT, next.datumsPublished - previous.datumsPublished, timestamp));
+        metricData.add(datum(DATUMS_FAILED_METRIC_NAME, StandardUnit.COUNT, next.datumsFailed - previous.datumsFailed, timestamp));
+
+        this.pending = next;
+        return metricData;
+    }
+
+    /**
+     * Marks what the latest {@link #toMetricData(Instant) datums} were built from as published.
+     */
+    synchronized void commit() {
+        if (this.pending != null) {
+            this.previous = this.pending;
+            this.pending = null;
+        }
+    }
+
+    /**
+     * Adds the durations recorded in {@code histogram} since {@code previous}, as values in milliseconds with their
+     * counts, split over as many datums as needed.
+     */
+    private static void addHistogram(final List<MetricDatum> metricData, final String metricName, final String key,
+                                     final LatencyHistogram histogram, final Instant timestamp, final Baseline previousBaseline,
+                                     final Baseline next, final Dimension... dimensions) {
+        final long[] buckets = histogram.getBucketCounts();
+        next.buckets.put(key, buckets);
+        final long[] previous = previousBaseline.buckets.get(key);
+
+        List<Double> values = new ArrayList<>();
+        List<Double> counts = new ArrayList<>();
+        for (int i = 0; i < buckets.length; i++) {
+            final long delta = previous == null ? buckets[i] : buckets[i] - previous[i];
+            if (delta <= 0) {
+                continue;
+            }
+            values.add(LatencyHistogram.bucketValueMillis(i));
+            counts.add((double) delta);
+            if (values.size() == MAX_VALUES_PER_DATUM) {
+                metricData.add(histogramDatum(metricName, values, counts, timestamp, dimensions));
+                values = new ArrayList<>();
+                counts = new ArrayList<>();
+            }
+        }
+        if (!values.isEmpty()) {
+            metricData.add(histogramDatum(metricName, values, counts, timestamp, dimensions));
+        }
+    }
+
+    private static MetricDatum histogramDatum(final String metricName, final List<Double> values, final List<Double> counts,
+                                              final Instant timestamp, final Dimension... dimensions) {
+        return MetricDatum.builder()
+                .metricName(metricName)
+                .dimensions(dimensions)
+                .unit(StandardUnit.MILLISECONDS)
+                .values(values)
+                .counts(counts)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static MetricDatum datum(final String metricName, final StandardUnit unit, final double value,
+                                     final Instant timestamp, final Dimension... dimensions) {
+        return MetricDatum.builder()
+                .metricName(metricName)
+                .dimensions(dimensions)
+                .unit(unit)
+                .value(value)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static Dimension dimension(final String name, final String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+
+    /**
+     * What had been recorded at some point.
+     */
+    private static final class Baseline {
+        private final Map<String, long[]> buckets = new HashMap<>();
+        private final long[] statusCounts;
+        private long requestErrors;
+        private long bytesReceived;
+        private long rateLimitWaitNanos;
+        private long datumsPublished;
+        private long datumsFailed;
+
+        private Baseline(final long[] statusCounts) {
+            this.statusCounts = statusCounts;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.pipeline.close();
+        this.cw.close();
+    }
+}
@@ -0,0 +1,167 @@
+package com.sirknightj.cloudwatch;
+
+import com.google.gson.stream.JsonWriter;
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Writes the stats as CloudWatch Embedded Metric Format (EMF) log lines instead of calling PutMetricData. The
+ * CloudWatch agent or CloudWatch Logs extracts the metrics from the lines.
+ * <p>
+ * Each repository becomes one JSON document on its own line, carrying all 6 metrics of the repository under the
+ * {@link CloudwatchConstants#customMetricNamespace} namespace, with the Owner and Repository dimensions. Each document
+ * is written whole, with a single call, so the log lines written to standard output by other threads can't end up in
+ * the middle of one, which the agent would discard.
+ *
+ * @see <a href="https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/CloudWatch_Embedded_Metric_Format_Specification.html">EMF specification</a>
+ */
+@Log4j2
+public class EmbeddedMetricFormatSink implements MetricsSink {
+
+    private static final int METRICS_PER_REPOSITORY = 6;
+
+    private static final String[] METRIC_NAMES = {
+            CloudwatchConstants.openIssuesMetricName,
+            CloudwatchConstants.openPullRequestsMetricName,
+            CloudwatchConstants.openedPullRequestsMetricName,
+            CloudwatchConstants.closedPullRequestsMetricName,
+            CloudwatchConstants.openedIssuesMetricName,
+            CloudwatchConstants.closedIssuesMetricName
+    };
+
+    // Exactly one of the two is set.
+    private final Writer writer;
+    private final PrintStream stream;
+    private final boolean closeWriter;
+
+    /**
+     * Constructor that writes to standard output.
+     */
+    public EmbeddedMetricFormatSink() {
+        this(System.out);
+    }
+
+    /**
+     * Constructor that prints each document with a single {@link PrintStream#println(String)}, which doesn't interleave
+     * with other writes to the same stream.
+     *
+     * @param stream Stream to print the EMF lines to, e.g. one the logs are written to as well. Not closed.
+     */
+    public EmbeddedMetricFormatSink(final PrintStream stream) {
+        this.writer = null;
+        this.stream = stream;
+        this.closeWriter = false;
+    }
+
+    /**
+     * Constructor that appends to a file.
+     *
+     * @param file File to append the EMF lines to. Created if it doesn't exist.
+     * @throws IOException If the file can't be opened.
+     */
+    public EmbeddedMetricFormatSink(final Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND), true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param writer      Writer to write the EMF lines to. Should be buffered.
+     * @param closeWriter Whether to close {@code writer} when this sink is closed.
+     */
+    public EmbeddedMetricFormatSink(final Writer writer, final boolean closeWriter) {
+        this.writer = writer;
+        this.stream = null;
+        this.closeWriter = closeWriter;
+    }
+
+    @Override
+    public synchronized PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+        log.debug("Starting to write EMF documents for {} repositories.", repoInfo.size());
+        final long timestamp = metricCollectedTime.toInstant().toEpochMilli();
+        try {
+            for (final RepoInfo repo : repoInfo) {
+                final String document = toDocument(repo, timestamp);
+                if (this.stream != null) {
+                    this.stream.println(document);
+                } else {
+                    this.writer.write(document + '\n');
+                }
+            }
+            if (this.stream != null) {
+                if (this.stream.checkError()) {
+                    throw new IOException("Could not print to the EMF output stream");
+                }
+            } else {
+                this.writer.flush();
+            }
+        } catch (final IOException ex) {
+            log.error("Could not write EMF documents.", ex);
+            return new PublishResult(repoInfo.size(), 0, 0, repoInfo.size(), repoInfo.size() * METRICS_PER_REPOSITORY);
+        }
+        final PublishResult result = new PublishResult(repoInfo.size(), 0, repoInfo.size() * METRICS_PER_REPOSITORY, 0, 0);
+        log.debug("Finished writing EMF documents: {}", result);
+        return result;
+    }
+
+    /**
+     * @return The EMF document of {@code repo}, on a single line.
+     */
+    private static String toDocument(final RepoInfo repo, final long timestamp) throws IOException {
+        final StringWriter document = new StringWriter(1024);
+        final JsonWriter json = new JsonWriter(document);
+        json.beginObject();
+
+        json.name("_aws").beginObject();
+        json.name("Timestamp").value(timestamp);
+        json.name("CloudWatchMetrics").beginArray().beginObject();
+        json.name("Namespace").value(CloudwatchConstants.customMetricNamespace);
+        json.name("Dimensions").beginArray().beginArray()
+                .value(CloudwatchConstants.repositoryOwnerDimensionName)
+                .value(CloudwatchConstants.repositoryNameDimensionName)
+                .endArray().endArray();
+        json.name("Metrics").beginArray();
+        for (final String metricName : METRIC_NAMES) {
+            json.beginObject().name("Name").value(metricName).name("Unit").value("Count").endObject();
+        }
+        json.endArray();
+        json.endObject().endArray();
+        json.endObject();
+
+        json.name(CloudwatchConstants.repositoryOwnerDimensionName).value(repo.getRepositoryOwner());
+        json.name(CloudwatchConstants.repositoryNameDimensionName).value(repo.getRepositoryName());
+        json.name(CloudwatchConstants.openIssuesMetricName).value(repo.getCurrentIssuesOpen());
+        json.name(CloudwatchConstants.openPullRequestsMetricName).value(repo.getCurrentPullRequestsOpen());
+        json.name(CloudwatchConstants.openedPullRequestsMetricName).value(repo.getPullRequestsOpened());
+        json.name(CloudwatchConstants.closedPullRequestsMetricName).value(repo.getPullRequestsClosed());
+        json.name(CloudwatchConstants.openedIssuesMetricName).value(repo.getIssuesOpened());
+        json.name(CloudwatchConstants.closedIssuesMetricName).value(repo.getIssuesClosed());
+
+        json.endObject();
+        json.close();
+        return document.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.stream != null) {
+            this.stream.flush();
+        } else if (this.closeWriter) {
+            this.writer.close();
+        } else {
+            this.writer.flush();
+        }
+    }
+}
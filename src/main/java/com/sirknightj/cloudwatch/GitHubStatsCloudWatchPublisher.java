@@ -1,14 +1,16 @@
 package com.sirknightj.cloudwatch;
 
+import com.sirknightj.metrics.CollectorMetrics;
 import com.sirknightj.utils.CloudwatchConstants;
 import com.sirknightj.utils.RepoInfo;
 import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
-import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClientBuilder;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
-import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
 import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 
 import java.time.Instant;
@@ -17,109 +19,182 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Log4j2
-public class GitHubStatsCloudWatchPublisher implements AutoCloseable {
+public class GitHubStatsCloudWatchPublisher implements MetricsSink {
 
-    final CloudWatchClient cw;
+    final CloudWatchAsyncClient cw;
+    private final CloudWatchPublishingPipeline pipeline;
 
     public GitHubStatsCloudWatchPublisher() {
-        this.cw = CloudWatchClient.builder()
+        this(defaultClient());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cw CloudWatch client to publish with. Closed when this publisher is closed.
+     */
+    public GitHubStatsCloudWatchPublisher(final CloudWatchAsyncClient cw) {
+        this(cw, new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cw       CloudWatch client to publish with. Closed when this publisher is closed.
+     * @param pipeline Pipeline that batches, sends and retries the datums.
+     */
+    public GitHubStatsCloudWatchPublisher(final CloudWatchAsyncClient cw, final CloudWatchPublishingPipeline pipeline) {
+        this.cw = cw;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return A CloudWatch client for a {@link CloudWatchPublishingPipeline}, which retries throttled batches itself.
+     */
+    static CloudWatchAsyncClient defaultClient() {
+        return defaultClientBuilder().build();
+    }
+
+    /**
+     * @return A builder of {@link #defaultClient()}, to pick its HTTP client or endpoint.
+     */
+    static CloudWatchAsyncClientBuilder defaultClientBuilder() {
+        return CloudWatchAsyncClient.builder()
                 .region(Region.US_WEST_2)
-                .build();
+                // The pipeline retries throttled batches itself.
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryPolicy(RetryPolicy.none())
+                        .build());
     }
 
     @Override
     public void close() throws Exception {
+        this.pipeline.close();
         this.cw.close();
     }
 
-    public void publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+    @Override
+    public PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
         log.info("Starting to publish to CloudWatch: {}", repoInfo);
+        final List<MetricDatum> metricDataList = toMetricData(repoInfo, metricCollectedTime);
+        return publishMetricData(metricDataList);
+    }
+
+    /**
+     * Publishes the stats of many points in time at once, e.g. a backfill. The datums of every timestamp go through
+     * the pipeline together, so they are packed into as few requests as the limits allow.
+     *
+     * @param history Stats of each repository, keyed by timestamp.
+     * @return The result of publishing every datum.
+     */
+    public PublishResult publishHistory(final Map<ZonedDateTime, List<RepoInfo>> history) {
+        final List<MetricDatum> metricDataList = new ArrayList<>();
+        for (final Map.Entry<ZonedDateTime, List<RepoInfo>> entry : history.entrySet()) {
+            metricDataList.addAll(toMetricData(entry.getValue(), entry.getKey()));
+        }
+        log.info("Starting to publish {} datums over {} timestamps to CloudWatch.", metricDataList.size(), history.size());
+        return publishMetricData(metricDataList);
+    }
+
+    private PublishResult publishMetricData(final List<MetricDatum> metricDataList) {
+        final long startNanos = System.nanoTime();
+        PublishResult result;
         try {
-            final List<MetricDatum> metricDataList = new ArrayList<>();
-
-            for (final RepoInfo repo : repoInfo) {
-                final String repositoryName = repo.getRepositoryName();
-                final String repositoryOwner = repo.getRepositoryOwner();
-                final int openIssues = repo.getCurrentIssuesOpen();
-                final int openPRs = repo.getCurrentPullRequestsOpen();
-
-                // Set an Instant object.
-                final String time = metricCollectedTime.withZoneSameInstant(ZoneId.of("UTC"))
-                        .format(DateTimeFormatter.ISO_INSTANT);
-                final Instant instant = Instant.parse(time);
-
-                final Dimension[] dimensions = {
-                        Dimension.builder().name(CloudwatchConstants.repositoryNameDimensionName).value(repositoryName).build(),
-                        Dimension.builder().name(CloudwatchConstants.repositoryOwnerDimensionName).value(repositoryOwner).build()
-                };
-
-                final MetricDatum openIssuesDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.openIssuesMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) openIssues)
-                        .timestamp(instant)
-                        .build();
-
-                final MetricDatum openPRsDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.openPullRequestsMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) openPRs)
-                        .timestamp(instant)
-                        .build();
-
-                final MetricDatum openedPRsDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.openedPullRequestsMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) repo.getPullRequestsOpened())
-                        .timestamp(instant)
-                        .build();
-
-                final MetricDatum closedPRsDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.closedPullRequestsMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) repo.getPullRequestsClosed())
-                        .timestamp(instant)
-                        .build();
-
-                final MetricDatum openedIssuesDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.openedIssuesMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) repo.getIssuesOpened())
-                        .timestamp(instant)
-                        .build();
-
-                final MetricDatum closedIssuesDatam = MetricDatum.builder()
-                        .metricName(CloudwatchConstants.closedIssuesMetricName)
-                        .dimensions(dimensions)
-                        .unit(StandardUnit.COUNT)
-                        .value((double) repo.getIssuesClosed())
-                        .timestamp(instant)
-                        .build();
-
-                metricDataList.add(openIssuesDatam);
-                metricDataList.add(openPRsDatam);
-                metricDataList.add(openedPRsDatam);
-                metricDataList.add(closedPRsDatam);
-                metricDataList.add(openedIssuesDatam);
-                metricDataList.add(closedIssuesDatam);
-            }
-
-            final PutMetricDataRequest request = PutMetricDataRequest.builder()
-                    .namespace(CloudwatchConstants.customMetricNamespace)
-                    .metricData(metricDataList)
+            result = this.pipeline.publish(metricDataList);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while publishing to CloudWatch.");
+            result = new PublishResult(0, 0, 0, 1, metricDataList.size());
+        }
+        CollectorMetrics.getInstance().recordPublish(result, System.nanoTime() - startNanos);
+        log.info("Finished publishing to CloudWatch: {}", result);
+        return result;
+    }
+
+    /**
+     * Builds the datums of each repository: 6 per repository.
+     *
+     * @param repoInfo            Stats of each repository.
+     * @param metricCollectedTime Timestamp of the datapoints.
+     * @return The datums.
+     */
+    public static List<MetricDatum> toMetricData(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+        final List<MetricDatum> metricDataList = new ArrayList<>(repoInfo.size() * 6);
+
+        for (final RepoInfo repo : repoInfo) {
+            final String repositoryName = repo.getRepositoryName();
+            final String repositoryOwner = repo.getRepositoryOwner();
+            final int openIssues = repo.getCurrentIssuesOpen();
+            final int openPRs = repo.getCurrentPullRequestsOpen();
+
+            // Set an Instant object.
+            final String time = metricCollectedTime.withZoneSameInstant(ZoneId.of("UTC"))
+                    .format(DateTimeFormatter.ISO_INSTANT);
+            final Instant instant = Instant.parse(time);
+
+            final Dimension[] dimensions = {
+                    Dimension.builder().name(CloudwatchConstants.repositoryNameDimensionName).value(repositoryName).build(),
+                    Dimension.builder().name(CloudwatchConstants.repositoryOwnerDimensionName).value(repositoryOwner).build()
+            };
+
+            final MetricDatum openIssuesDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.openIssuesMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) openIssues)
+                    .timestamp(instant)
+                    .build();
+
+            final MetricDatum openPRsDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.openPullRequestsMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) openPRs)
+                    .timestamp(instant)
+                    .build();
+
+            final MetricDatum openedPRsDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.openedPullRequestsMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) repo.getPullRequestsOpened())
+                    .timestamp(instant)
+                    .build();
+
+            final MetricDatum closedPRsDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.closedPullRequestsMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) repo.getPullRequestsClosed())
+                    .timestamp(instant)
+                    .build();
+
+            final MetricDatum openedIssuesDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.openedIssuesMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) repo.getIssuesOpened())
+                    .timestamp(instant)
+                    .build();
+
+            final MetricDatum closedIssuesDatam = MetricDatum.builder()
+                    .metricName(CloudwatchConstants.closedIssuesMetricName)
+                    .dimensions(dimensions)
+                    .unit(StandardUnit.COUNT)
+                    .value((double) repo.getIssuesClosed())
+                    .timestamp(instant)
                     .build();
 
-            this.cw.putMetricData(request);
-        } catch (final CloudWatchException e) {
-            log.error(e.awsErrorDetails().errorMessage());
+            metricDataList.add(openIssuesDatam);
+            metricDataList.add(openPRsDatam);
+            metricDataList.add(openedPRsDatam);
+            metricDataList.add(closedPRsDatam);
+            metricDataList.add(openedIssuesDatam);
+            metricDataList.add(closedIssuesDatam);
         }
-        log.info("Finished publishing to CloudWatch: {}", repoInfo);
+        return metricDataList;
     }
 }
@@ -0,0 +1,131 @@
+package com.sirknightj.cloudwatch;
+
+import org.reactivestreams.FlowAdapters;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.http.SdkHttpFullResponse;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
+import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * AWS SDK async HTTP client on top of the JDK's {@link HttpClient}.
+ * <p>
+ * The Netty client the SDK picks by default loads and initializes a few thousand classes and an event loop, which is
+ * most of the startup time of a short run that only sends a handful of PutMetricData requests. The JDK's client is
+ * already part of the runtime. Responses are read whole, as CloudWatch's are small.
+ */
+public class JdkAsyncHttpClient implements SdkAsyncHttpClient {
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+    // Set by the JDK's client itself, which rejects them. They are signed with the same values.
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "date", "expect",
+            "from", "host", "upgrade", "via", "warning");
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+
+    public JdkAsyncHttpClient() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(DEFAULT_CONNECT_TIMEOUT)
+                .build(), DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param httpClient  Client to send the requests with.
+     * @param readTimeout Longest to wait for the headers of a response.
+     */
+    public JdkAsyncHttpClient(final HttpClient httpClient, final Duration readTimeout) {
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public CompletableFuture<Void> execute(final AsyncExecuteRequest request) {
+        final SdkAsyncHttpResponseHandler handler = request.responseHandler();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request.request(), request.requestContentPublisher());
+        } catch (final RuntimeException ex) {
+            handler.onError(ex);
+            done.completeExceptionally(ex);
+            return done;
+        }
+
+        this.httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        handler.onError(cause);
+                        done.completeExceptionally(cause);
+                        return;
+                    }
+                    try {
+                        handler.onHeaders(SdkHttpFullResponse.builder()
+                                .statusCode(response.statusCode())
+                                .headers(response.headers().map())
+                                .build());
+                        handler.onStream(AsyncRequestBody.fromBytes(response.body()));
+                        done.complete(null);
+                    } catch (final RuntimeException ex) {
+                        handler.onError(ex);
+                        done.completeExceptionally(ex);
+                    }
+                });
+        return done;
+    }
+
+    private HttpRequest toHttpRequest(final SdkHttpRequest request, final SdkHttpContentPublisher content) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri()).timeout(this.readTimeout);
+        for (final Map.Entry<String, List<String>> header : request.headers().entrySet()) {
+            if (RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            for (final String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+
+        final Optional<Long> contentLength = content == null ? Optional.of(0L) : content.contentLength();
+        final HttpRequest.BodyPublisher body;
+        if (contentLength.isPresent() && contentLength.get() == 0) {
+            body = HttpRequest.BodyPublishers.noBody();
+        } else if (contentLength.isPresent()) {
+            body = HttpRequest.BodyPublishers.fromPublisher(FlowAdapters.toFlowPublisher(content), contentLength.get());
+        } else {
+            body = HttpRequest.BodyPublishers.fromPublisher(FlowAdapters.toFlowPublisher(content));
+        }
+        return builder.method(request.method().name(), body).build();
+    }
+
+    @Override
+    public String clientName() {
+        return "JdkHttpClient";
+    }
+
+    @Override
+    public void close() {
+        // The JDK's client has no resources to release. Its threads stop once it is unreachable.
+    }
+}
@@ -0,0 +1,52 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.utils.RepoInfo;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Creates a {@link MetricsSink} on its first publish, rather than on startup. Creating a CloudWatch client loads much
+ * of the AWS SDK, which then happens while the first repositories are fetched, or not at all if nothing is collected.
+ */
+public class LazyMetricsSink implements MetricsSink {
+
+    private final Supplier<? extends MetricsSink> factory;
+    private MetricsSink delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param factory Creates the sink to publish to. Called at most once. The sink is closed when this sink is closed.
+     */
+    public LazyMetricsSink(final Supplier<? extends MetricsSink> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+        return delegate().publish(repoInfo, metricCollectedTime);
+    }
+
+    private synchronized MetricsSink delegate() {
+        if (this.delegate == null) {
+            this.delegate = this.factory.get();
+        }
+        return this.delegate;
+    }
+
+    /**
+     * @return {@code true} if the sink was created, i.e. something was published.
+     */
+    public synchronized boolean isCreated() {
+        return this.delegate != null;
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        if (this.delegate != null) {
+            this.delegate.close();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.utils.RepoInfo;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Destination of the collected repository stats.
+ */
+public interface MetricsSink extends AutoCloseable {
+
+    /**
+     * Publishes the stats of each repository, timestamped at {@code metricCollectedTime}.
+     *
+     * @param repoInfo            Stats of each repository.
+     * @param metricCollectedTime Timestamp of the datapoints.
+     * @return How many datums were published, and how many were given up on.
+     */
+    PublishResult publish(List<RepoInfo> repoInfo, ZonedDateTime metricCollectedTime);
+}
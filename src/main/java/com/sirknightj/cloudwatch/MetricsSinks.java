@@ -0,0 +1,134 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.spool.MetricSpool;
+import com.sirknightj.spool.SpoolingMetricsSink;
+import com.sirknightj.store.HistoryRecordingSink;
+import com.sirknightj.store.RepoHistoryStore;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClientBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Creates the {@link MetricsSink} chosen by configuration.
+ */
+public final class MetricsSinks {
+
+    /**
+     * Which sink to use: {@code cloudwatch} (PutMetricData, the default) or {@code emf} (Embedded Metric Format lines).
+     */
+    public static final String SINK_VARIABLE = "METRICS_SINK";
+
+    /**
+     * Where the {@code emf} sink writes: {@code stdout} (the default) or a file path to append to.
+     */
+    public static final String EMF_OUTPUT_VARIABLE = "EMF_OUTPUT";
+
+    /**
+     * File that stats are spooled to until they are published, so a failed publish is replayed later. Defaults to
+     * {@code metrics-spool.bin}. {@code none} disables spooling.
+     */
+    public static final String SPOOL_FILE_VARIABLE = "METRICS_SPOOL_FILE";
+
+    /**
+     * Directory of a {@link RepoHistoryStore} every batch is recorded in, so trends can be queried locally. Not
+     * recorded if unset.
+     */
+    public static final String HISTORY_DIRECTORY_VARIABLE = "METRICS_HISTORY_DIR";
+
+    /**
+     * CloudWatch namespace to publish the collector's own metrics to after every run. Not published if unset.
+     */
+    public static final String COLLECTOR_NAMESPACE_VARIABLE = "COLLECTOR_METRICS_NAMESPACE";
+
+    /**
+     * HTTP client the CloudWatch clients send with: {@code netty} (the default) or {@code jdk}, the JDK's own, which
+     * starts faster. See {@link JdkAsyncHttpClient}.
+     */
+    public static final String HTTP_CLIENT_VARIABLE = "CLOUDWATCH_HTTP_CLIENT";
+
+    /**
+     * Endpoint the CloudWatch clients send to, e.g. of a local stand-in. Defaults to the endpoint of the region.
+     */
+    public static final String ENDPOINT_VARIABLE = "CLOUDWATCH_ENDPOINT";
+
+    private MetricsSinks() {
+
+    }
+
+    /**
+     * @param configuration Configuration, e.g. {@link System#getenv()}.
+     * @return The configured sink.
+     * @throws IOException              If the EMF output file, the spool file or the history can't be opened.
+     * @throws IllegalArgumentException If the sink is unknown.
+     */
+    public static MetricsSink fromConfiguration(final Map<String, String> configuration) throws IOException {
+        MetricsSink sink = createSink(configuration);
+        final String spoolFile = configuration.getOrDefault(SPOOL_FILE_VARIABLE, "metrics-spool.bin");
+        if (!"none".equalsIgnoreCase(spoolFile)) {
+            sink = new SpoolingMetricsSink(sink, new MetricSpool(Paths.get(spoolFile)));
+        }
+        // Outside of the spool, so replayed batches aren't recorded twice.
+        final String historyDirectory = configuration.getOrDefault(HISTORY_DIRECTORY_VARIABLE, "");
+        if (!historyDirectory.isBlank()) {
+            sink = new HistoryRecordingSink(sink, new RepoHistoryStore(Paths.get(historyDirectory)));
+        }
+        return sink;
+    }
+
+    /**
+     * @param configuration Configuration, e.g. {@link System#getenv()}.
+     * @return The publisher of the collector's own metrics, or {@code null} if they aren't published.
+     */
+    public static CollectorMetricsPublisher collectorMetricsPublisherFromConfiguration(final Map<String, String> configuration) {
+        final String namespace = configuration.getOrDefault(COLLECTOR_NAMESPACE_VARIABLE, "");
+        return namespace.isBlank() ? null
+                : new CollectorMetricsPublisher(cloudWatchClientFromConfiguration(configuration), namespace, CollectorMetrics.getInstance());
+    }
+
+    /**
+     * @param configuration Configuration, e.g. {@link System#getenv()}.
+     * @return A CloudWatch client with the configured HTTP client and endpoint, for a {@link CloudWatchPublishingPipeline}.
+     * @throws IllegalArgumentException If the HTTP client is unknown.
+     */
+    public static CloudWatchAsyncClient cloudWatchClientFromConfiguration(final Map<String, String> configuration) {
+        final CloudWatchAsyncClientBuilder builder = GitHubStatsCloudWatchPublisher.defaultClientBuilder();
+        final String httpClient = configuration.getOrDefault(HTTP_CLIENT_VARIABLE, "netty");
+        switch (httpClient.toLowerCase(Locale.ROOT)) {
+            case "netty":
+                // Picked by the SDK from the classpath.
+                break;
+            case "jdk":
+                builder.httpClient(new JdkAsyncHttpClient());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown " + HTTP_CLIENT_VARIABLE + ": " + httpClient + ". Expected netty or jdk.");
+        }
+        final String endpoint = configuration.getOrDefault(ENDPOINT_VARIABLE, "");
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    private static MetricsSink createSink(final Map<String, String> configuration) throws IOException {
+        final String sink = configuration.getOrDefault(SINK_VARIABLE, "cloudwatch");
+        switch (sink.toLowerCase(Locale.ROOT)) {
+            case "cloudwatch":
+                // Created on the first publish, so the AWS SDK loads while the first repositories are fetched.
+                return new LazyMetricsSink(() -> new GitHubStatsCloudWatchPublisher(cloudWatchClientFromConfiguration(configuration)));
+            case "emf":
+                final String output = configuration.getOrDefault(EMF_OUTPUT_VARIABLE, "stdout");
+                return "stdout".equalsIgnoreCase(output)
+                        ? new EmbeddedMetricFormatSink()
+                        : new EmbeddedMetricFormatSink(Paths.get(output));
+            default:
+                throw new IllegalArgumentException("Unknown " + SINK_VARIABLE + ": " + sink + ". Expected cloudwatch or emf.");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sirknightj.cloudwatch;
+
+import lombok.Data;
+
+/**
+ * Outcome of publishing a set of metric datums.
+ */
+@Data
+public class PublishResult {
+    private final int batches;
+    // Includes retries.
+    private final int requests;
+    private final int datumsPublished;
+
+    private final int failedBatches;
+    private final int datumsFailed;
+
+    /**
+     * @return {@code true} if every datum was published.
+     */
+    public boolean isSuccess() {
+        return this.failedBatches == 0;
+    }
+
+    /**
+     * @param other Result of another publish.
+     * @return The sum of both results.
+     */
+    public PublishResult plus(final PublishResult other) {
+        return new PublishResult(this.batches + other.batches, this.requests + other.requests,
+                this.datumsPublished + other.datumsPublished, this.failedBatches + other.failedBatches,
+                this.datumsFailed + other.datumsFailed);
+    }
+}
@@ -0,0 +1,198 @@
+package com.sirknightj.http;
+
+import com.sirknightj.metrics.CollectorMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Asynchronous HTTP transport for the GitHub API, built on {@link HttpClient}.
+ * <p>
+ * One instance keeps its connections open and negotiates HTTP/2 where the server supports it, so many concurrent
+ * requests are multiplexed over a single TLS session. Every request asks for a gzip-compressed response, and
+ * {@link #body(HttpResponse)} transparently decompresses it.
+ * <p>
+ * The latency, status code and body size of every response are recorded to {@link CollectorMetrics}.
+ */
+public class GithubHttpClient {
+
+    public static final String API_VERSION = "2022-11-28";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final CollectorMetrics metrics;
+
+    public GithubHttpClient() {
+        this(CollectorMetrics.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param metrics Metrics to record the requests to.
+     */
+    public GithubHttpClient(final CollectorMetrics metrics) {
+        this.metrics = metrics;
+        this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory("github-http"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(this.executor)
+                .build();
+    }
+
+    /**
+     * @return Executor of this client's daemon threads. Suitable for work that blocks on responses, such as
+     * parsing a body or waiting on a rate limit.
+     */
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Creates a request builder with the headers every GitHub API request carries.
+     *
+     * @param uri       Request URI.
+     * @param authToken GitHub token. Can be {@code null} or empty string to send the request unauthenticated.
+     * @return The request builder.
+     */
+    public static HttpRequest.Builder newRequest(final URI uri, final String authToken) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .header("X-GitHub-Api-Version", API_VERSION);
+        if (authToken != null && authToken.length() > 0) {
+            builder.header("Authorization", "token " + authToken);
+        }
+        return builder;
+    }
+
+    /**
+     * Sends a request. The returned future completes once the response headers arrive; the body is read from
+     * {@link #body(HttpResponse)}.
+     *
+     * @param request The request.
+     * @return The response.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> sendAsync(final HttpRequest request) {
+        final long startNanos = System.nanoTime();
+        final HttpResponse.BodyHandler<InputStream> bodyHandler = responseInfo ->
+                new CountingBodySubscriber<>(HttpResponse.BodySubscribers.ofInputStream(), this.metrics);
+        return this.httpClient.sendAsync(request, bodyHandler)
+                .whenComplete((response, error) -> {
+                    final long latencyNanos = System.nanoTime() - startNanos;
+                    if (response != null) {
+                        this.metrics.recordResponse(request.uri(), response.statusCode(), latencyNanos);
+                    } else {
+                        this.metrics.recordRequestError(request.uri(), latencyNanos);
+                    }
+                });
+    }
+
+    /**
+     * @param response A response.
+     * @return The response body, decompressed if the server gzip-encoded it.
+     * @throws IOException If the body can't be read.
+     */
+    public static InputStream body(final HttpResponse<InputStream> response) throws IOException {
+        final boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzipped ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    /**
+     * Reads a whole response body into a String. Only meant for small bodies, such as error messages.
+     *
+     * @param response A response.
+     * @return The decompressed response body.
+     * @throws IOException If the body can't be read.
+     */
+    public static String bodyAsString(final HttpResponse<InputStream> response) throws IOException {
+        try (final InputStream in = body(response)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Counts the bytes of a body as they arrive, before they are decompressed.
+     */
+    private static final class CountingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final CollectorMetrics metrics;
+
+        private CountingBodySubscriber(final HttpResponse.BodySubscriber<T> delegate, final CollectorMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return this.delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> item) {
+            long bytes = 0;
+            for (final ByteBuffer buffer : item) {
+                bytes += buffer.remaining();
+            }
+            this.metrics.recordBytesReceived(bytes);
+            this.delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.delegate.onComplete();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DaemonThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, this.prefix + "-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
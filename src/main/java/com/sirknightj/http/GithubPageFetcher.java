@@ -0,0 +1,113 @@
+package com.sirknightj.http;
+
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.TokenPool;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fetches pages of GitHub REST listings, spread over a {@link TokenPool} and paced by each token's
+ * {@link RateLimitGovernor}, and retried when GitHub rejects them because of a rate limit. The caller streams each
+ * page's body, and follows its {@code Link} header to the next one.
+ */
+@Log4j2
+public class GithubPageFetcher {
+
+    // Retries of a single request that GitHub rejected because of a rate limit.
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
+    private final TokenPool tokenPool;
+    private final GithubHttpClient httpClient;
+
+    /**
+     * Constructor.
+     *
+     * @param authToken         GitHub personal access token. Can be {@code null} or empty string if you don't
+     *                          want to use one.
+     * @param rateLimitGovernor Governor pacing the requests.
+     * @param httpClient        HTTP transport.
+     */
+    public GithubPageFetcher(final String authToken, final RateLimitGovernor rateLimitGovernor, final GithubHttpClient httpClient) {
+        this(TokenPool.single(authToken, rateLimitGovernor), httpClient);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tokenPool  Tokens to spread the requests over.
+     * @param httpClient HTTP transport.
+     */
+    public GithubPageFetcher(final TokenPool tokenPool, final GithubHttpClient httpClient) {
+        this.tokenPool = tokenPool;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Fetches one page.
+     *
+     * @param uri      URI of the page.
+     * @param resource Rate limit the request counts against.
+     * @return The {@code 200 OK} response. Its body has to be read or closed.
+     * @throws IOException If the request failed, or GitHub returned another status.
+     */
+    public HttpResponse<InputStream> fetch(final URI uri, final RateLimitResource resource) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            final TokenPool.PooledToken token;
+            try {
+                token = this.tokenPool.acquire(resource);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to fetch " + uri);
+            }
+
+            final HttpRequest request = GithubHttpClient.newRequest(uri, token.getAuthToken()).GET().build();
+            final HttpResponse<InputStream> response = send(request, uri);
+            final int responseCode = response.statusCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                token.getGovernor().onResponse(resource, responseCode, name -> response.headers().firstValue(name).orElse(null));
+                return response;
+            }
+            final String message = GithubHttpClient.bodyAsString(response);
+            final boolean rateLimited = token.getGovernor().onResponse(resource, responseCode,
+                    name -> response.headers().firstValue(name).orElse(null), message);
+            if (rateLimited && attempt < MAX_RATE_LIMIT_RETRIES) {
+                log.warn("Rate limited fetching {} with {}. Received HTTP error code {}. Will retry. Message: {}", uri, token, responseCode, message);
+                continue;
+            }
+            log.error("Error fetching {}. Received HTTP error code {}. Message: {}", uri, responseCode, message);
+            throw new IOException("Error fetching " + uri + ". Received HTTP error code " + responseCode);
+        }
+    }
+
+    /**
+     * @param response A response.
+     * @return The URI of the next page, or {@code null} if the response is the last page.
+     */
+    public static URI nextPage(final HttpResponse<?> response) {
+        final String next = LinkHeader.parse(response.headers().firstValue("Link").orElse(null)).next();
+        return next != null ? URI.create(next) : null;
+    }
+
+    private HttpResponse<InputStream> send(final HttpRequest request, final URI uri) throws IOException {
+        try {
+            return this.httpClient.sendAsync(request).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + uri);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+}
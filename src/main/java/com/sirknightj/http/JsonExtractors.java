@@ -0,0 +1,83 @@
+package com.sirknightj.http;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Streaming extractors that pull a single number out of a GitHub response with a {@link JsonReader}, skipping
+ * everything else without building a JSON tree or buffering the body into a String.
+ */
+public final class JsonExtractors {
+
+    /**
+     * Reads the top-level {@code total_count} field of a search response. Stops reading as soon as it is found, so
+     * the {@code items} array that follows it is never parsed.
+     */
+    public static final JsonCountExtractor TOTAL_COUNT = (reader, headers) -> readTopLevelInt(reader, "total_count");
+
+    /**
+     * Counts the elements of a top-level array, skipping over each element.
+     */
+    public static final JsonCountExtractor ARRAY_SIZE = (reader, headers) -> countArrayElements(reader);
+
+    /**
+     * Counts the items of a paginated listing requested with {@code per_page=1}. The page number of the
+     * {@code rel="last"} link is then the total number of items, so only one item is ever transferred. Without a
+     * {@code Link} header everything fits on the one page, and the items in the body are counted.
+     */
+    public static final JsonCountExtractor LAST_PAGE_NUMBER = (reader, headers) -> {
+        final int lastPage = LinkHeader.parse(headers.apply("Link")).lastPage();
+        return lastPage >= 0 ? lastPage : countArrayElements(reader);
+    };
+
+    private JsonExtractors() {
+
+    }
+
+    private static int countArrayElements(final JsonReader reader) throws IOException {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.skipValue();
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * Reads an integer field of the top-level object.
+     *
+     * @param reader    Reader positioned before the top-level object.
+     * @param fieldName Name of the field.
+     * @return The value of the field.
+     * @throws IOException If the JSON is malformed, or the field is missing or not a number.
+     */
+    public static int readTopLevelInt(final JsonReader reader, final String fieldName) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(fieldName) && reader.peek() == JsonToken.NUMBER) {
+                return reader.nextInt();
+            }
+            reader.skipValue();
+        }
+        throw new IOException("Field " + fieldName + " not found in response");
+    }
+
+    /**
+     * Extracts a count from a JSON response.
+     */
+    @FunctionalInterface
+    public interface JsonCountExtractor {
+        /**
+         * @param reader  Reader over the response body.
+         * @param headers Looks up a response header by name. Returns {@code null} if the header is absent.
+         * @return The count.
+         * @throws IOException If the response doesn't contain the count.
+         */
+        int extract(JsonReader reader, Function<String, String> headers) throws IOException;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sirknightj.http;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the {@code Link} header GitHub uses for pagination, e.g.
+ * {@code <https://api.github.com/repositories/1/pulls?per_page=1&page=2>; rel="next",
+ * <https://api.github.com/repositories/1/pulls?per_page=1&page=37>; rel="last"}.
+ */
+public final class LinkHeader {
+
+    private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([^\"]+)\"");
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("[?&]page=(\\d+)");
+
+    private final Map<String, String> links;
+
+    private LinkHeader(final Map<String, String> links) {
+        this.links = links;
+    }
+
+    /**
+     * @param headerValue Value of the {@code Link} header. Can be {@code null}.
+     * @return The parsed header. Empty if {@code headerValue} is {@code null}.
+     */
+    public static LinkHeader parse(final String headerValue) {
+        if (headerValue == null) {
+            return new LinkHeader(Collections.emptyMap());
+        }
+        final Map<String, String> links = new HashMap<>();
+        final Matcher matcher = LINK.matcher(headerValue);
+        while (matcher.find()) {
+            links.put(matcher.group(2), matcher.group(1));
+        }
+        return new LinkHeader(links);
+    }
+
+    /**
+     * @param rel Relation, e.g. {@code "next"}.
+     * @return The URL of the relation, or {@code null} if there is none.
+     */
+    public String get(final String rel) {
+        return this.links.get(rel);
+    }
+
+    /**
+     * @return The URL of the next page, or {@code null} if this is the last page.
+     */
+    public String next() {
+        return get("next");
+    }
+
+    /**
+     * @return The {@code page} parameter of the {@code rel="last"} link, or -1 if there is none.
+     */
+    public int lastPage() {
+        final String last = get("last");
+        if (last == null) {
+            return -1;
+        }
+        final Matcher matcher = PAGE_PARAMETER.matcher(last);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,189 @@
+package com.sirknightj.http;
+
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of conditional-request validators ({@code ETag} / {@code Last-Modified}) and the value parsed from the
+ * response, keyed by URL. A {@code 304 Not Modified} reply doesn't count against GitHub's primary rate limit, and lets
+ * the cached value be reused without downloading or parsing the body again.
+ * <p>
+ * The cache holds at most {@code maxEntries} entries, evicting the least recently used one. If a file is given, the
+ * cache is loaded from it on construction and written back by {@link #flush()}, so it survives restarts.
+ */
+@Log4j2
+public class ResponseCache {
+
+    private static final int FILE_MAGIC = 0x47484331; // "GHC1"
+
+    private static final byte HAS_ETAG = 1;
+    private static final byte HAS_LAST_MODIFIED = 2;
+
+    private final int maxEntries;
+    private final Path file;
+    private final LinkedHashMap<String, Entry> entries;
+    private boolean dirty;
+
+    /**
+     * Constructor for an in-memory cache.
+     *
+     * @param maxEntries Maximum number of URLs to remember.
+     */
+    public ResponseCache(final int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries Maximum number of URLs to remember.
+     * @param file       File to load the cache from and {@link #flush()} it to. Can be {@code null} to keep the cache
+     *                   in memory only.
+     */
+    public ResponseCache(final int maxEntries, final Path file) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, got " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.file = file;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * @param url The URL of the request.
+     * @return The cached entry, or {@code null} if there is none.
+     */
+    public synchronized Entry get(final String url) {
+        return this.entries.get(url);
+    }
+
+    /**
+     * Remembers the validators and parsed value of a response. Responses without any validator aren't cached, since
+     * they can't be revalidated.
+     *
+     * @param url          The URL of the request.
+     * @param etag         Value of the {@code ETag} header. Can be {@code null}.
+     * @param lastModified Value of the {@code Last-Modified} header. Can be {@code null}.
+     * @param value        The value parsed from the response body.
+     */
+    public synchronized void put(final String url, final String etag, final String lastModified, final int value) {
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        final Entry entry = new Entry(etag, lastModified, value);
+        if (!entry.equals(this.entries.put(url, entry))) {
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * @return The number of cached URLs.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Writes the cache to its file, if it has one and anything changed since it was last loaded or written.
+     */
+    public void flush() {
+        if (this.file == null) {
+            return;
+        }
+
+        final List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            if (!this.dirty) {
+                return;
+            }
+            snapshot = new ArrayList<>(this.entries.entrySet());
+            this.dirty = false;
+        }
+
+        try {
+            final Path parent = this.file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(snapshot.size());
+                // Least recently used first, so loading restores the same eviction order.
+                for (final Map.Entry<String, Entry> mapEntry : snapshot) {
+                    final Entry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeByte((entry.getEtag() != null ? HAS_ETAG : 0) | (entry.getLastModified() != null ? HAS_LAST_MODIFIED : 0));
+                    if (entry.getEtag() != null) {
+                        out.writeUTF(entry.getEtag());
+                    }
+                    if (entry.getLastModified() != null) {
+                        out.writeUTF(entry.getLastModified());
+                    }
+                    out.writeInt(entry.getValue());
+                }
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote {} response cache entries to {}.", snapshot.size(), this.file);
+        } catch (final IOException ex) {
+            log.error("Could not write response cache to {}.", this.file, ex);
+            synchronized (this) {
+                this.dirty = true;
+            }
+        }
+    }
+
+    private void load() {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                log.warn("Ignoring response cache file {} with unknown format.", this.file);
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String url = in.readUTF();
+                final byte flags = in.readByte();
+                final String etag = (flags & HAS_ETAG) != 0 ? in.readUTF() : null;
+                final String lastModified = (flags & HAS_LAST_MODIFIED) != 0 ? in.readUTF() : null;
+                final int value = in.readInt();
+                this.entries.put(url, new Entry(etag, lastModified, value));
+            }
+            log.info("Loaded {} response cache entries from {}.", this.entries.size(), this.file);
+        } catch (final NoSuchFileException ex) {
+            log.info("No response cache file at {}. Starting empty.", this.file);
+        } catch (final IOException ex) {
+            log.warn("Could not read response cache file {}. Starting empty.", this.file, ex);
+            this.entries.clear();
+        }
+    }
+
+    @Data
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final int value;
+    }
+}
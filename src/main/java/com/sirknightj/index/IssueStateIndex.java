@@ -0,0 +1,126 @@
+package com.sirknightj.index;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link RepoIssueIndex} of every repository, keyed by {@code owner/name}. If a file is given, the index is loaded
+ * from it on construction and written back by {@link #flush()}, so only changes since the last sync have to be
+ * fetched after a restart.
+ */
+@Log4j2
+public class IssueStateIndex {
+
+    private static final int FILE_MAGIC = 0x47484931; // "GHI1"
+
+    private final Path file;
+    private final Map<String, RepoIssueIndex> repositories;
+
+    /**
+     * Constructor for an in-memory index.
+     */
+    public IssueStateIndex() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file File to load the index from and {@link #flush()} it to. Can be {@code null} to keep the index in
+     *             memory only.
+     */
+    public IssueStateIndex(final Path file) {
+        this.file = file;
+        this.repositories = new HashMap<>();
+
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @return The index of the repository. Created empty if the repository hasn't been indexed yet.
+     */
+    public synchronized RepoIssueIndex get(final String repositoryOwner, final String repositoryName) {
+        return this.repositories.computeIfAbsent(repositoryOwner + "/" + repositoryName, key -> new RepoIssueIndex());
+    }
+
+    /**
+     * @return The number of indexed repositories.
+     */
+    public synchronized int size() {
+        return this.repositories.size();
+    }
+
+    /**
+     * Writes the index to its file, if it has one and any repository changed since it was last loaded or written.
+     */
+    public void flush() {
+        if (this.file == null) {
+            return;
+        }
+
+        final List<Map.Entry<String, RepoIssueIndex>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(this.repositories.entrySet());
+        }
+        if (snapshot.stream().noneMatch(entry -> entry.getValue().isModified())) {
+            return;
+        }
+
+        try {
+            final Path parent = this.file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(snapshot.size());
+                for (final Map.Entry<String, RepoIssueIndex> entry : snapshot) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote the issue index of {} repositories to {}.", snapshot.size(), this.file);
+        } catch (final IOException ex) {
+            log.error("Could not write issue index to {}.", this.file, ex);
+        }
+    }
+
+    private void load() {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                log.warn("Ignoring issue index file {} with unknown format.", this.file);
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String repository = in.readUTF();
+                this.repositories.put(repository, RepoIssueIndex.read(in));
+            }
+            log.info("Loaded the issue index of {} repositories from {}.", this.repositories.size(), this.file);
+        } catch (final NoSuchFileException ex) {
+            log.info("No issue index file at {}. Starting empty.", this.file);
+        } catch (final IOException ex) {
+            log.warn("Could not read issue index file {}. Starting empty.", this.file, ex);
+            this.repositories.clear();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.sirknightj.index;
+
+import com.sirknightj.utils.RepoInfo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * State of every issue and pull request of one repository: number, kind, and when it was created and closed.
+ * <p>
+ * Entries live in parallel primitive arrays, indexed through an open-addressing hash table keyed by the issue number,
+ * so a repository with a hundred thousand issues costs a few megabytes, with no boxing. Any window's counts are then
+ * derived locally by {@link #toRepoInfo(String, String, long, long)}.
+ */
+public class RepoIssueIndex {
+
+    /**
+     * Value of {@code closedAt} for an issue that is open.
+     */
+    public static final long NOT_CLOSED = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Hash table of issue number -> slot + 1. 0 marks an empty bucket.
+    private int[] table;
+    private int[] numbers;
+    private boolean[] pullRequests;
+    private long[] createdAt;
+    private long[] closedAt;
+    private int size;
+
+    private long syncedThrough;
+    private boolean modified;
+
+    public RepoIssueIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private RepoIssueIndex(final int capacity) {
+        this.numbers = new int[capacity];
+        this.pullRequests = new boolean[capacity];
+        this.createdAt = new long[capacity];
+        this.closedAt = new long[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+    }
+
+    /**
+     * Adds or updates an issue.
+     *
+     * @param number      Issue number.
+     * @param pullRequest Whether it is a pull request.
+     * @param createdAt   Creation time, in epoch seconds.
+     * @param closedAt    Closing time, in epoch seconds, or {@link #NOT_CLOSED} if it is open.
+     */
+    public synchronized void record(final int number, final boolean pullRequest, final long createdAt, final long closedAt) {
+        int slot = find(number);
+        if (slot < 0) {
+            if (this.size == this.numbers.length) {
+                grow();
+            }
+            slot = this.size++;
+            this.numbers[slot] = number;
+            insert(number, slot);
+        }
+        this.pullRequests[slot] = pullRequest;
+        this.createdAt[slot] = createdAt;
+        this.closedAt[slot] = closedAt;
+        this.modified = true;
+    }
+
+    /**
+     * @param number Issue number.
+     * @return Closing time of the issue in epoch seconds, {@link #NOT_CLOSED} if it is open, or {@code null} if it
+     * isn't indexed.
+     */
+    public synchronized Long getClosedAt(final int number) {
+        final int slot = find(number);
+        return slot < 0 ? null : this.closedAt[slot];
+    }
+
+    /**
+     * @return The number of indexed issues and pull requests.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The newest {@code updated_at} seen by a sync, in epoch seconds. 0 if never synced.
+     */
+    public synchronized long getSyncedThrough() {
+        return this.syncedThrough;
+    }
+
+    public synchronized void setSyncedThrough(final long syncedThrough) {
+        if (syncedThrough != this.syncedThrough) {
+            this.syncedThrough = syncedThrough;
+            this.modified = true;
+        }
+    }
+
+    /**
+     * Derives the stats of a window in a single pass over the index.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @param startInclusive  Start of the window, in epoch seconds.
+     * @param endInclusive    End of the window, in epoch seconds.
+     * @return The stats. Open counts are as of the last sync.
+     */
+    public synchronized RepoInfo toRepoInfo(final String repositoryOwner, final String repositoryName,
+                                            final long startInclusive, final long endInclusive) {
+        // Indexed by pull request (1) or issue (0).
+        final int[] open = new int[2];
+        final int[] opened = new int[2];
+        final int[] closed = new int[2];
+        for (int slot = 0; slot < this.size; slot++) {
+            final int kind = this.pullRequests[slot] ? 1 : 0;
+            final long created = this.createdAt[slot];
+            final long closedTime = this.closedAt[slot];
+            if (closedTime == NOT_CLOSED) {
+                open[kind]++;
+            } else if (closedTime >= startInclusive && closedTime <= endInclusive) {
+                closed[kind]++;
+            }
+            if (created >= startInclusive && created <= endInclusive) {
+                opened[kind]++;
+            }
+        }
+        return new RepoInfo(repositoryOwner, repositoryName, open[0], open[1], closed[0], opened[0], closed[1], opened[1]);
+    }
+
+    /**
+     * Derives the stats of consecutive windows in a single pass over the index, e.g. one per day of the past year.
+     * Window {@code i} covers {@code [firstStart + i * width, firstStart + (i + 1) * width - 1]}, and its open counts
+     * are the ones at the end of the window.
+     * <p>
+     * Only the latest closing time of an issue is known, so an issue that was closed and reopened counts as open from
+     * its creation until it was last closed.
+     *
+     * @param repositoryOwner Repository owner.
+     * @param repositoryName  Name of the repository.
+     * @param firstStart      Start of the first window, in epoch seconds.
+     * @param width           Width of each window, in seconds.
+     * @param windows         Number of windows.
+     * @return The stats of each window, oldest first.
+     */
+    public synchronized List<RepoInfo> toRepoInfoHistory(final String repositoryOwner, final String repositoryName,
+                                                         final long firstStart, final long width, final int windows) {
+        if (width < 1 || windows < 0) {
+            throw new IllegalArgumentException("Invalid windows: " + windows + " of " + width + " seconds");
+        }
+        // Indexed by [pull request (1) or issue (0)][window].
+        final int[][] opened = new int[2][windows];
+        final int[][] closed = new int[2][windows];
+        // Open at the start of the first window.
+        final int[] open = new int[2];
+        for (int slot = 0; slot < this.size; slot++) {
+            final int kind = this.pullRequests[slot] ? 1 : 0;
+            final long created = this.createdAt[slot];
+            final long closedTime = this.closedAt[slot];
+            if (created < firstStart) {
+                if (closedTime == NOT_CLOSED || closedTime >= firstStart) {
+                    open[kind]++;
+                }
+            } else {
+                final long window = (created - firstStart) / width;
+                if (window < windows) {
+                    opened[kind][(int) window]++;
+                }
+            }
+            if (closedTime != NOT_CLOSED && closedTime >= firstStart) {
+                final long window = (closedTime - firstStart) / width;
+                if (window < windows) {
+                    closed[kind][(int) window]++;
+                }
+            }
+        }
+
+        final List<RepoInfo> history = new ArrayList<>(windows);
+        for (int window = 0; window < windows; window++) {
+            for (int kind = 0; kind < 2; kind++) {
+                open[kind] += opened[kind][window] - closed[kind][window];
+            }
+            history.add(new RepoInfo(repositoryOwner, repositoryName, open[0], open[1],
+                    closed[0][window], opened[0][window], closed[1][window], opened[1][window]));
+        }
+        return history;
+    }
+
+    synchronized boolean isModified() {
+        return this.modified;
+    }
+
+    synchronized void write(final DataOutputStream out) throws IOException {
+        out.writeLong(this.syncedThrough);
+        out.writeInt(this.size);
+        for (int slot = 0; slot < this.size; slot++) {
+            out.writeInt(this.numbers[slot]);
+            out.writeBoolean(this.pullRequests[slot]);
+            out.writeLong(this.createdAt[slot]);
+            out.writeLong(this.closedAt[slot]);
+        }
+        this.modified = false;
+    }
+
+    static RepoIssueIndex read(final DataInputStream in) throws IOException {
+        final long syncedThrough = in.readLong();
+        final int size = in.readInt();
+        final RepoIssueIndex index = new RepoIssueIndex(Math.max(INITIAL_CAPACITY, size));
+        for (int i = 0; i < size; i++) {
+            index.record(in.readInt(), in.readBoolean(), in.readLong(), in.readLong());
+        }
+        index.syncedThrough = syncedThrough;
+        index.modified = false;
+        return index;
+    }
+
+    private int find(final int number) {
+        final int mask = this.table.length - 1;
+        for (int bucket = hash(number) & mask; this.table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            final int slot = this.table[bucket] - 1;
+            if (this.numbers[slot] == number) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(final int number, final int slot) {
+        final int mask = this.table.length - 1;
+        int bucket = hash(number) & mask;
+        while (this.table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        this.table[bucket] = slot + 1;
+    }
+
+    private void grow() {
+        final int capacity = this.numbers.length * 2;
+        this.numbers = Arrays.copyOf(this.numbers, capacity);
+        this.pullRequests = Arrays.copyOf(this.pullRequests, capacity);
+        this.createdAt = Arrays.copyOf(this.createdAt, capacity);
+        this.closedAt = Arrays.copyOf(this.closedAt, capacity);
+        this.table = new int[tableSizeFor(capacity)];
+        for (int slot = 0; slot < this.size; slot++) {
+            insert(this.numbers[slot], slot);
+        }
+    }
+
+    // Keeps the table at most half full.
+    private static int tableSizeFor(final int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 2;
+    }
+
+    // Issue numbers are sequential, so spread them over the table.
+    private static int hash(final int number) {
+        return number * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,301 @@
+package com.sirknightj.metrics;
+
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.ratelimit.RateLimitResource;
+import lombok.extern.log4j.Log4j2;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics about the collector itself: how long its GitHub requests take, how much they transfer, how much rate limit
+ * is left, and how its runs and publishes went. They explain why a run was slow or incomplete.
+ * <p>
+ * Recording never takes a lock, so it stays cheap however many requests are in flight. Counters are
+ * {@link LongAdder}s or atomic arrays, and durations go to {@link LatencyHistogram}s.
+ * <p>
+ * The instrumented classes record to the process-wide {@link #getInstance() instance}, which is exposed over JMX by
+ * {@link #registerMBean()}, and can be published to CloudWatch by
+ * {@link com.sirknightj.cloudwatch.CollectorMetricsPublisher}.
+ */
+@Log4j2
+public class CollectorMetrics implements CollectorMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.sirknightj:type=CollectorMetrics";
+
+    // Status codes above this are counted as this.
+    private static final int MAX_STATUS_CODE = 599;
+
+    private static final CollectorMetrics INSTANCE = new CollectorMetrics();
+
+    private final ConcurrentMap<String, LatencyHistogram> requestLatencies = new ConcurrentHashMap<>();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS_CODE + 1);
+    private final LongAdder requestErrors = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    // Rate limits of each token, e.g. its governor: limit, remaining and reset epoch second, by resource.
+    private final ConcurrentMap<Object, AtomicLongArray> rateLimits = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LatencyHistogram runTimes = new LatencyHistogram();
+    private final LatencyHistogram publishTimes = new LatencyHistogram();
+    private final LongAdder datumsPublished = new LongAdder();
+    private final LongAdder datumsFailed = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * @return The instance the collector records to.
+     */
+    public static CollectorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server as {@value #OBJECT_NAME}. Does nothing if it already is.
+     */
+    public void registerMBean() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (final InstanceAlreadyExistsException ex) {
+            log.debug("{} is already registered.", OBJECT_NAME);
+        } catch (final JMException ex) {
+            log.warn("Could not register {} with JMX.", OBJECT_NAME, ex);
+        }
+    }
+
+    /**
+     * Records a GitHub response.
+     *
+     * @param uri          URI of the request.
+     * @param statusCode   HTTP status code of the response.
+     * @param latencyNanos Time until the response headers arrived.
+     */
+    public void recordResponse(final URI uri, final int statusCode, final long latencyNanos) {
+        requestLatency(endpoint(uri)).record(latencyNanos);
+        this.statusCounts.incrementAndGet(Math.max(0, Math.min(statusCode, MAX_STATUS_CODE)));
+    }
+
+    /**
+     * Records a GitHub request that failed without a response.
+     *
+     * @param uri          URI of the request.
+     * @param latencyNanos Time until it failed.
+     */
+    public void recordRequestError(final URI uri, final long latencyNanos) {
+        requestLatency(endpoint(uri)).record(latencyNanos);
+        this.requestErrors.increment();
+    }
+
+    public void recordBytesReceived(final long bytes) {
+        this.bytesReceived.add(bytes);
+    }
+
+    /**
+     * Records the rate limit of one token, as reported by GitHub.
+     *
+     * @param token             Identifies the token, e.g. its governor.
+     * @param resource          The resource.
+     * @param limit             Requests allowed per window, or -1 if unknown.
+     * @param remaining         Requests left in the current window.
+     * @param resetEpochSeconds When the current window ends.
+     */
+    public void recordRateLimitRemaining(final Object token, final RateLimitResource resource, final int limit,
+                                         final int remaining, final long resetEpochSeconds) {
+        AtomicLongArray rateLimit = this.rateLimits.get(token);
+        if (rateLimit == null) {
+            rateLimit = this.rateLimits.computeIfAbsent(token, key -> {
+                final AtomicLongArray array = new AtomicLongArray(RateLimitResource.values().length * 3);
+                for (int i = 0; i < array.length(); i++) {
+                    array.set(i, -1);
+                }
+                return array;
+            });
+        }
+        final int offset = resource.ordinal() * 3;
+        rateLimit.set(offset, limit);
+        rateLimit.set(offset + 2, resetEpochSeconds);
+        rateLimit.set(offset + 1, remaining);
+    }
+
+    public void recordRateLimitWait(final long nanos) {
+        this.rateLimitWaitNanos.add(nanos);
+    }
+
+    public void recordRun(final long wallNanos) {
+        this.runTimes.record(wallNanos);
+    }
+
+    /**
+     * Records the outcome of publishing the collected stats.
+     *
+     * @param result       The outcome.
+     * @param elapsedNanos Time the publish took.
+     */
+    public void recordPublish(final PublishResult result, final long elapsedNanos) {
+        this.publishTimes.record(elapsedNanos);
+        this.datumsPublished.add(result.getDatumsPublished());
+        this.datumsFailed.add(result.getDatumsFailed());
+        this.failedBatches.add(result.getFailedBatches());
+    }
+
+    /**
+     * @return The latency histogram of every endpoint requested so far.
+     */
+    public Map<String, LatencyHistogram> getRequestLatencyHistograms() {
+        return new TreeMap<>(this.requestLatencies);
+    }
+
+    /**
+     * @return The number of responses with each status code. Indexed by status code.
+     */
+    public long[] getStatusCodeCounts() {
+        final long[] counts = new long[this.statusCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.statusCounts.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @param resource A resource.
+     * @return Requests left in the current rate limit windows of every token, as last reported by GitHub, or -1 if it
+     * hasn't been. A token whose window ended since has its whole limit left.
+     */
+    public long getRateLimitRemaining(final RateLimitResource resource) {
+        return getRateLimitRemaining(resource, Instant.now().getEpochSecond());
+    }
+
+    long getRateLimitRemaining(final RateLimitResource resource, final long nowEpochSeconds) {
+        final int offset = resource.ordinal() * 3;
+        long total = -1;
+        for (final AtomicLongArray rateLimit : this.rateLimits.values()) {
+            final long remaining = rateLimit.get(offset + 1);
+            if (remaining < 0) {
+                continue;
+            }
+            final long limit = rateLimit.get(offset);
+            final boolean reset = limit >= 0 && nowEpochSeconds >= rateLimit.get(offset + 2);
+            total = Math.max(0, total) + (reset ? limit : remaining);
+        }
+        return total;
+    }
+
+    public long getRateLimitWaitNanos() {
+        return this.rateLimitWaitNanos.sum();
+    }
+
+    public LatencyHistogram getRunTimeHistogram() {
+        return this.runTimes;
+    }
+
+    public LatencyHistogram getPublishTimeHistogram() {
+        return this.publishTimes;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getRequestLatencies() {
+        final Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        this.requestLatencies.forEach((endpoint, histogram) -> snapshots.put(endpoint, histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getResponseStatusCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        for (int statusCode = 0; statusCode < this.statusCounts.length(); statusCode++) {
+            final long count = this.statusCounts.get(statusCode);
+            if (count > 0) {
+                counts.put(String.valueOf(statusCode), count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long getRequestErrors() {
+        return this.requestErrors.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return this.bytesReceived.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRateLimitRemaining() {
+        final Map<String, Long> remaining = new TreeMap<>();
+        for (final RateLimitResource resource : RateLimitResource.values()) {
+            final long value = getRateLimitRemaining(resource);
+            if (value >= 0) {
+                remaining.put(resource.name(), value);
+            }
+        }
+        return remaining;
+    }
+
+    @Override
+    public long getRateLimitWaitMillis() {
+        return getRateLimitWaitNanos() / 1_000_000;
+    }
+
+    @Override
+    public LatencySnapshot getRunTimes() {
+        return this.runTimes.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getPublishTimes() {
+        return this.publishTimes.snapshot();
+    }
+
+    @Override
+    public long getDatumsPublished() {
+        return this.datumsPublished.sum();
+    }
+
+    @Override
+    public long getDatumsFailed() {
+        return this.datumsFailed.sum();
+    }
+
+    @Override
+    public long getFailedBatches() {
+        return this.failedBatches.sum();
+    }
+
+    private LatencyHistogram requestLatency(final String endpoint) {
+        // get() doesn't lock. computeIfAbsent() only runs the first time an endpoint is seen.
+        final LatencyHistogram histogram = this.requestLatencies.get(endpoint);
+        return histogram != null ? histogram : this.requestLatencies.computeIfAbsent(endpoint, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Names the endpoint of a request without the owner, repository or organization, so repositories share their
+     * histograms: {@code /repos/o/r/pulls} is {@code repos/pulls}, {@code /orgs/o/repos} is {@code orgs/repos}, and
+     * {@code /search/issues} stays {@code search/issues}.
+     *
+     * @param uri URI of the request.
+     * @return The endpoint.
+     */
+    static String endpoint(final URI uri) {
+        final String path = uri.getPath() == null ? "" : uri.getPath();
+        final String[] segments = path.startsWith("/") ? path.substring(1).split("/") : path.split("/");
+        if ("repos".equals(segments[0])) {
+            return segments.length >= 4 ? "repos/" + segments[3] : "repos";
+        }
+        if ("orgs".equals(segments[0])) {
+            return segments.length >= 3 ? "orgs/" + segments[2] : "orgs";
+        }
+        return segments.length >= 2 ? segments[0] + "/" + segments[1] : segments[0];
+    }
+}
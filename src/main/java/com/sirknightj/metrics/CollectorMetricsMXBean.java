@@ -0,0 +1,57 @@
+package com.sirknightj.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CollectorMetrics}. Counters are totals since the process started.
+ */
+public interface CollectorMetricsMXBean {
+
+    /**
+     * @return Latency of the GitHub requests, by endpoint, e.g. {@code search/issues} or {@code repos/pulls}. Measured
+     * until the response headers arrive.
+     */
+    Map<String, LatencySnapshot> getRequestLatencies();
+
+    /**
+     * @return Number of GitHub responses, by HTTP status code.
+     */
+    Map<String, Long> getResponseStatusCounts();
+
+    /**
+     * @return Number of GitHub requests that failed without a response, e.g. timeouts.
+     */
+    long getRequestErrors();
+
+    /**
+     * @return Bytes of GitHub response bodies received, as sent over the wire (compressed).
+     */
+    long getBytesReceived();
+
+    /**
+     * @return Requests left in the current rate limit windows of every token, by resource, as last reported by GitHub.
+     * Resources GitHub hasn't reported on yet are left out.
+     */
+    Map<String, Long> getRateLimitRemaining();
+
+    /**
+     * @return Time spent waiting for a rate limit to let a request through, in milliseconds.
+     */
+    long getRateLimitWaitMillis();
+
+    /**
+     * @return Wall time of the collection runs.
+     */
+    LatencySnapshot getRunTimes();
+
+    /**
+     * @return Time spent publishing the collected stats.
+     */
+    LatencySnapshot getPublishTimes();
+
+    long getDatumsPublished();
+
+    long getDatumsFailed();
+
+    long getFailedBatches();
+}
@@ -0,0 +1,159 @@
+package com.sirknightj.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, for recording from many threads at once.
+ * <p>
+ * Durations are kept in microseconds, in log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a bucket is at most 12.5% wide relative to its values. Recording is a handful of
+ * atomic increments, and never blocks. Reads aren't atomic across buckets, so a read that races with recording can be
+ * off by the few values recorded meanwhile.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Durations up to 2^41 microseconds, about 25 days. Longer ones go to the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative durations are recorded as 0.
+     */
+    public void record(final long nanos) {
+        final long clamped = Math.max(0, nanos);
+        this.buckets.incrementAndGet(bucketIndex(TimeUnit.NANOSECONDS.toMicros(clamped)));
+        this.count.increment();
+        this.totalNanos.add(clamped);
+        if (clamped > this.maxNanos.get()) {
+            this.maxNanos.accumulateAndGet(clamped, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * @return A copy of the count of every bucket. See {@link #bucketValueMillis(int)} for the value of a bucket.
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The approximate duration below which {@code percentile} percent of the durations are, in
+     * microseconds. 0 if nothing was recorded.
+     */
+    public long percentileMicros(final double percentile) {
+        return percentileMicros(getBucketCounts(), percentile);
+    }
+
+    /**
+     * @return The current statistics of this histogram.
+     */
+    public LatencySnapshot snapshot() {
+        final long[] counts = getBucketCounts();
+        final long recorded = getCount();
+        return new LatencySnapshot(recorded,
+                recorded == 0 ? 0 : getTotalNanos() / 1e6 / recorded,
+                percentileMicros(counts, 50) / 1e3,
+                percentileMicros(counts, 90) / 1e3,
+                percentileMicros(counts, 99) / 1e3,
+                getMaxNanos() / 1e6);
+    }
+
+    static long percentileMicros(final long[] counts, final double percentile) {
+        long total = 0;
+        for (final long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketValueMicros(i);
+            }
+        }
+        return bucketValueMicros(counts.length - 1);
+    }
+
+    /**
+     * @param micros A duration in microseconds. Must not be negative.
+     * @return The bucket the duration is counted in.
+     */
+    static int bucketIndex(final long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index A bucket.
+     * @return The smallest duration counted in the bucket, in microseconds.
+     */
+    static long bucketLowerBoundMicros(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param index A bucket.
+     * @return The duration that stands for the bucket, in milliseconds.
+     */
+    public static double bucketValueMillis(final int index) {
+        return bucketValueMicros(index) / 1e3;
+    }
+
+    /**
+     * @param index A bucket.
+     * @return The duration that stands for the bucket: the middle of its range, in microseconds.
+     */
+    static long bucketValueMicros(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final long lower = bucketLowerBoundMicros(index);
+        final long width = 1L << (index / SUB_BUCKETS - 1);
+        return lower + width / 2;
+    }
+}
@@ -0,0 +1,30 @@
+package com.sirknightj.metrics;
+
+import lombok.Data;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statistics of a {@link LatencyHistogram} at one point in time. Durations are in milliseconds.
+ */
+@Data
+public class LatencySnapshot {
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    // Lets JMX clients rebuild the snapshot from its open type.
+    @ConstructorProperties({"count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"})
+    public LatencySnapshot(final long count, final double meanMillis, final double p50Millis, final double p90Millis,
+                           final double p99Millis, final double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+}
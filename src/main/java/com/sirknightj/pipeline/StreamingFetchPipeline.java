@@ -0,0 +1,219 @@
+package com.sirknightj.pipeline;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches and publishes the stats of any number of repositories in three stages connected by bounded queues:
+ * <ol>
+ *     <li>A reader pulls repositories from an iterator, e.g. over a {@link com.sirknightj.catalog.RepoCatalog}, and
+ *     groups them into chunks.</li>
+ *     <li>Fetch workers pass each chunk to the {@link GithubStatsFetcher}, and queue its stats.</li>
+ *     <li>The calling thread publishes the stats in batches, as soon as a batch is full, or has waited long enough.</li>
+ * </ol>
+ * A full queue blocks the stage feeding it, so the reader never gets further ahead of the publisher than the queues
+ * hold. Memory use depends on the queue sizes, not on the number of repositories, and the first datapoints are
+ * published after the first chunks, not after the last one.
+ */
+@Log4j2
+public class StreamingFetchPipeline {
+
+    /**
+     * Repositories passed to the fetcher at once. Matches {@link com.sirknightj.GithubGraphQLFetcher#DEFAULT_BATCH_SIZE}.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 20;
+
+    /**
+     * Chunks fetched concurrently. Each fetcher has its own concurrency within a chunk.
+     */
+    public static final int DEFAULT_FETCH_THREADS = 2;
+
+    /**
+     * Repositories published at once: 900 datums, under the 1000 of a PutMetricData request.
+     */
+    public static final int DEFAULT_PUBLISH_BATCH_SIZE = 150;
+
+    /**
+     * Longest a fetched repository waits for its batch to fill before it is published anyway.
+     */
+    public static final Duration DEFAULT_MAX_LINGER = Duration.ofSeconds(5);
+
+    // Marks the end of the chunks, once per fetch worker, and of the stats, once per fetch worker.
+    private static final List<Map.Entry<String, String>> END_OF_CHUNKS = List.of();
+    private static final RepoInfo END_OF_STATS = new RepoInfo(null, null, 0, 0, 0, 0, 0, 0);
+
+    private final GithubStatsFetcher fetcher;
+    private final MetricsSink sink;
+    private final int chunkSize;
+    private final int fetchThreads;
+    private final int publishBatchSize;
+    private final Duration maxLinger;
+
+    /**
+     * Constructor with the default sizes.
+     *
+     * @param fetcher Fetches each chunk.
+     * @param sink    Where the stats are published. Not closed by the pipeline.
+     */
+    public StreamingFetchPipeline(final GithubStatsFetcher fetcher, final MetricsSink sink) {
+        this(fetcher, sink, DEFAULT_CHUNK_SIZE, DEFAULT_FETCH_THREADS, DEFAULT_PUBLISH_BATCH_SIZE, DEFAULT_MAX_LINGER);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fetcher          Fetches each chunk.
+     * @param sink             Where the stats are published. Not closed by the pipeline.
+     * @param chunkSize        Repositories passed to the fetcher at once.
+     * @param fetchThreads     Chunks fetched concurrently.
+     * @param publishBatchSize Repositories published at once.
+     * @param maxLinger        Longest a fetched repository waits for its batch to fill.
+     */
+    public StreamingFetchPipeline(final GithubStatsFetcher fetcher, final MetricsSink sink, final int chunkSize,
+                                  final int fetchThreads, final int publishBatchSize, final Duration maxLinger) {
+        if (chunkSize < 1 || fetchThreads < 1 || publishBatchSize < 1) {
+            throw new IllegalArgumentException("chunkSize, fetchThreads and publishBatchSize must be at least 1");
+        }
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+        this.fetchThreads = fetchThreads;
+        this.publishBatchSize = publishBatchSize;
+        this.maxLinger = maxLinger;
+    }
+
+    /**
+     * Fetches and publishes every repository of {@code repositories}. Repositories that fail are logged and left out.
+     *
+     * @param repositories        Repositories, read lazily. The key is the owner, the value is the repository name.
+     * @param start               Start of the interval (inclusive).
+     * @param end                 End of the interval (inclusive).
+     * @param metricCollectedTime Timestamp of the datapoints.
+     * @param onFetched           Called with the stats of each repository fetched, on the calling thread.
+     * @return The result of publishing every batch.
+     * @throws InterruptedException If interrupted. What was fetched but not published yet is dropped.
+     */
+    public PublishResult run(final Iterator<Map.Entry<String, String>> repositories, final ZonedDateTime start,
+                             final ZonedDateTime end, final ZonedDateTime metricCollectedTime,
+                             final Consumer<RepoInfo> onFetched) throws InterruptedException {
+        final BlockingQueue<List<Map.Entry<String, String>>> chunks = new ArrayBlockingQueue<>(this.fetchThreads * 2);
+        final BlockingQueue<RepoInfo> stats = new ArrayBlockingQueue<>(this.publishBatchSize * 2);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService stages = Executors.newFixedThreadPool(this.fetchThreads + 1,
+                runnable -> new Thread(runnable, "pipeline-" + threadNumber.incrementAndGet()));
+        try {
+            stages.execute(() -> read(repositories, chunks));
+            for (int i = 0; i < this.fetchThreads; i++) {
+                stages.execute(() -> fetch(chunks, stats, start, end));
+            }
+            return publish(stats, metricCollectedTime, onFetched);
+        } finally {
+            // Unblocks the other stages if publishing stopped early.
+            stages.shutdownNow();
+        }
+    }
+
+    private void read(final Iterator<Map.Entry<String, String>> repositories, final BlockingQueue<List<Map.Entry<String, String>>> chunks) {
+        try {
+            try {
+                List<Map.Entry<String, String>> chunk = new ArrayList<>(this.chunkSize);
+                while (repositories.hasNext()) {
+                    chunk.add(repositories.next());
+                    if (chunk.size() == this.chunkSize) {
+                        chunks.put(chunk);
+                        chunk = new ArrayList<>(this.chunkSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    chunks.put(chunk);
+                }
+            } catch (final RuntimeException ex) {
+                log.error("Encountered error reading the repositories. Fetching those read so far.", ex);
+            }
+            for (int i = 0; i < this.fetchThreads; i++) {
+                chunks.put(END_OF_CHUNKS);
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fetch(final BlockingQueue<List<Map.Entry<String, String>>> chunks, final BlockingQueue<RepoInfo> stats,
+                       final ZonedDateTime start, final ZonedDateTime end) {
+        try {
+            List<Map.Entry<String, String>> chunk;
+            while ((chunk = chunks.take()) != END_OF_CHUNKS) {
+                try {
+                    for (final RepoInfo info : this.fetcher.fetchGithubIssuesFrom(chunk, start, end)) {
+                        stats.put(info);
+                    }
+                } catch (final InterruptedException ex) {
+                    throw ex;
+                } catch (final Exception ex) {
+                    log.error("Encountered error fetching {} repositories starting with {}/{}.", chunk.size(),
+                            chunk.get(0).getKey(), chunk.get(0).getValue(), ex);
+                }
+            }
+            stats.put(END_OF_STATS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PublishResult publish(final BlockingQueue<RepoInfo> stats, final ZonedDateTime metricCollectedTime,
+                                  final Consumer<RepoInfo> onFetched) throws InterruptedException {
+        PublishResult result = new PublishResult(0, 0, 0, 0, 0);
+        final List<RepoInfo> batch = new ArrayList<>(this.publishBatchSize);
+        long deadlineNanos = 0;
+        int finishedWorkers = 0;
+        while (finishedWorkers < this.fetchThreads) {
+            final RepoInfo info = batch.isEmpty()
+                    ? stats.take()
+                    : stats.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (info == END_OF_STATS) {
+                finishedWorkers++;
+                continue;
+            }
+            if (info != null) {
+                if (batch.isEmpty()) {
+                    deadlineNanos = System.nanoTime() + this.maxLinger.toNanos();
+                }
+                batch.add(info);
+                onFetched.accept(info);
+            }
+            if (batch.size() >= this.publishBatchSize || (info == null && !batch.isEmpty())) {
+                result = result.plus(publishBatch(batch, metricCollectedTime));
+            }
+        }
+        if (!batch.isEmpty()) {
+            result = result.plus(publishBatch(batch, metricCollectedTime));
+        }
+        return result;
+    }
+
+    private PublishResult publishBatch(final List<RepoInfo> batch, final ZonedDateTime metricCollectedTime) {
+        final PublishResult result = this.sink.publish(new ArrayList<>(batch), metricCollectedTime);
+        if (!result.isSuccess()) {
+            log.warn("Some stats of {} repositories collected at {} weren't published.", batch.size(), metricCollectedTime);
+        }
+        batch.clear();
+        return result;
+    }
+}
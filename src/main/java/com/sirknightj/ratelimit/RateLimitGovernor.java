@@ -0,0 +1,273 @@
+package com.sirknightj.ratelimit;
+
+import com.sirknightj.metrics.CollectorMetrics;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Paces requests to the GitHub API using the live budget GitHub reports in the {@code X-RateLimit-*} and
+ * {@code Retry-After} response headers.
+ * <p>
+ * Each {@link RateLimitResource} has a {@link TokenBucket}. Until GitHub reports a budget, the bucket refills at the
+ * documented default rate. Once a budget is known, the remaining requests are spread evenly until the reset time, so
+ * the governor speeds up when plenty of quota is left and slows down when another client is sharing the token. When
+ * the budget runs out, or GitHub asks the client to back off, requests are paused until the reset or retry time.
+ * <p>
+ * The reported budgets, and the time spent waiting on them, are recorded to {@link CollectorMetrics}.
+ */
+@Log4j2
+public class RateLimitGovernor {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RESET_HEADER = "X-RateLimit-Reset";
+    public static final String RESOURCE_HEADER = "X-RateLimit-Resource";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    // GitHub recommends waiting at least one minute after a secondary rate limit without a Retry-After header.
+    private static final Duration SECONDARY_LIMIT_BACKOFF = Duration.ofMinutes(1);
+
+    // Number of requests to keep in reserve, so requests already in flight don't overshoot the budget.
+    private static final int SAFETY_MARGIN = 1;
+
+    private final Clock clock;
+    private final CollectorMetrics metrics = CollectorMetrics.getInstance();
+    private final Map<RateLimitResource, Budget> budgets = new EnumMap<>(RateLimitResource.class);
+
+    /**
+     * Constructor.
+     *
+     * @param authenticated Whether requests are sent with a token. Determines the default rates used until GitHub
+     *                      reports the actual budget.
+     */
+    public RateLimitGovernor(final boolean authenticated) {
+        this(authenticated, Clock.systemUTC());
+    }
+
+    RateLimitGovernor(final boolean authenticated, final Clock clock) {
+        this.clock = clock;
+        if (authenticated) {
+            // Rate limit to search api is 30 requests per minute, authenticated
+            this.budgets.put(RateLimitResource.SEARCH, new Budget(RateLimitResource.SEARCH, 1, 29, Duration.ofMinutes(1)));
+            // Rate limit to core api is 5000 requests per hour, authenticated
+            this.budgets.put(RateLimitResource.CORE, new Budget(RateLimitResource.CORE, 10, 4990, Duration.ofHours(1)));
+            // Rate limit to graphql api is 5000 points per hour, authenticated
+            this.budgets.put(RateLimitResource.GRAPHQL, new Budget(RateLimitResource.GRAPHQL, 10, 4990, Duration.ofHours(1)));
+        } else {
+            // Rate limit to search api is 10 requests per minute, unauthenticated
+            this.budgets.put(RateLimitResource.SEARCH, new Budget(RateLimitResource.SEARCH, 1, 9, Duration.ofMinutes(1)));
+            // Rate limit to core api is 60 requests per hour, unauthenticated
+            this.budgets.put(RateLimitResource.CORE, new Budget(RateLimitResource.CORE, 1, 59, Duration.ofHours(1)));
+            // The graphql api can't be used unauthenticated. Keep a trickle so callers get GitHub's error message.
+            this.budgets.put(RateLimitResource.GRAPHQL, new Budget(RateLimitResource.GRAPHQL, 1, 1, Duration.ofMinutes(1)));
+        }
+    }
+
+    /**
+     * Blocks until a request against {@code resource} may be sent.
+     *
+     * @param resource The quota the request counts against.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire(final RateLimitResource resource) throws InterruptedException {
+        final Budget budget = this.budgets.get(resource);
+        final long startNanos = System.nanoTime();
+        while (true) {
+            final Duration pause = budget.pauseRemaining(this.clock.instant());
+            if (pause.isZero()) {
+                break;
+            }
+            log.info("Rate limit for {} exhausted. Waiting {} before the next request.", resource, pause);
+            TimeUnit.MILLISECONDS.sleep(Math.max(1, pause.toMillis()));
+        }
+        budget.bucket.acquire();
+        budget.onRequestSent();
+        this.metrics.recordRateLimitWait(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the budget reported in a response.
+     *
+     * @param expectedResource The resource the request was expected to count against. Used when the response has no
+     *                         {@code X-RateLimit-Resource} header.
+     * @param statusCode       HTTP status code of the response.
+     * @param headers          Looks up a response header by name. Returns {@code null} if the header is absent.
+     * @return {@code true} if the response says the request was rejected because of a rate limit, and should be
+     * retried once {@link #acquire(RateLimitResource)} lets it through.
+     */
+    public boolean onResponse(final RateLimitResource expectedResource, final int statusCode,
+                              final Function<String, String> headers) {
+        return onResponse(expectedResource, statusCode, headers, null);
+    }
+
+    /**
+     * Records the budget reported in a response, and recognizes secondary rate limits from the error message of a
+     * {@code 403}, which GitHub doesn't always send a {@code Retry-After} header with.
+     *
+     * @param expectedResource The resource the request was expected to count against. Used when the response has no
+     *                         {@code X-RateLimit-Resource} header.
+     * @param statusCode       HTTP status code of the response.
+     * @param headers          Looks up a response header by name. Returns {@code null} if the header is absent.
+     * @param message          Body of an error response. Can be {@code null}.
+     * @return {@code true} if the response says the request was rejected because of a rate limit, and should be
+     * retried once {@link #acquire(RateLimitResource)} lets it through.
+     */
+    public boolean onResponse(final RateLimitResource expectedResource, final int statusCode,
+                              final Function<String, String> headers, final String message) {
+        final RateLimitResource resource = RateLimitResource.fromHeader(headers.apply(RESOURCE_HEADER), expectedResource);
+        final Budget budget = this.budgets.get(resource);
+        final Instant now = this.clock.instant();
+
+        final int limit = parseInt(headers.apply(LIMIT_HEADER));
+        final int remaining = parseInt(headers.apply(REMAINING_HEADER));
+        final long resetEpochSeconds = parseLong(headers.apply(RESET_HEADER));
+        if (remaining >= 0 && resetEpochSeconds >= 0) {
+            budget.update(limit, remaining, Instant.ofEpochSecond(resetEpochSeconds), now);
+            this.metrics.recordRateLimitRemaining(this, resource, limit, remaining, resetEpochSeconds);
+        }
+
+        if (statusCode != 403 && statusCode != 429) {
+            return false;
+        }
+
+        final long retryAfterSeconds = parseLong(headers.apply(RETRY_AFTER_HEADER));
+        if (retryAfterSeconds >= 0) {
+            budget.pauseUntil(now.plusSeconds(retryAfterSeconds));
+            return true;
+        }
+        if (remaining == 0 && resetEpochSeconds >= 0) {
+            // update() already paused until the reset time.
+            return true;
+        }
+        if (statusCode == 429 || isSecondaryLimit(message)) {
+            budget.pauseUntil(now.plus(SECONDARY_LIMIT_BACKOFF));
+            return true;
+        }
+        // A plain 403, e.g. a token without access to the repository.
+        return false;
+    }
+
+    /**
+     * @param resource The resource to look up.
+     * @return The current budget of {@code resource}.
+     */
+    public RateLimitState getState(final RateLimitResource resource) {
+        return this.budgets.get(resource).snapshot();
+    }
+
+    /**
+     * @return The current budget of every resource.
+     */
+    public Map<RateLimitResource, RateLimitState> getStates() {
+        final Map<RateLimitResource, RateLimitState> states = new EnumMap<>(RateLimitResource.class);
+        for (final RateLimitResource resource : RateLimitResource.values()) {
+            states.put(resource, getState(resource));
+        }
+        return states;
+    }
+
+    // E.g. "You have exceeded a secondary rate limit. Please wait a few minutes before you try again.", or the older
+    // "You have triggered an abuse detection mechanism."
+    private static boolean isSecondaryLimit(final String message) {
+        if (message == null) {
+            return false;
+        }
+        final String lowerCase = message.toLowerCase(Locale.ROOT);
+        return lowerCase.contains("secondary rate limit") || lowerCase.contains("abuse detection");
+    }
+
+    private static int parseInt(final String value) {
+        final long parsed = parseLong(value);
+        return parsed > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) parsed;
+    }
+
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static final class Budget {
+        private final RateLimitResource resource;
+        private final TokenBucket bucket;
+        private final long defaultPermits;
+        private final Duration defaultPeriod;
+
+        private int limit = -1;
+        private int remaining = -1;
+        private Instant reset;
+        private Instant pausedUntil;
+
+        private Budget(final RateLimitResource resource, final long burst, final long defaultPermits, final Duration defaultPeriod) {
+            this.resource = resource;
+            this.bucket = new TokenBucket(burst, defaultPermits, defaultPeriod);
+            this.defaultPermits = defaultPermits;
+            this.defaultPeriod = defaultPeriod;
+        }
+
+        private synchronized Duration pauseRemaining(final Instant now) {
+            if (this.reset != null && !now.isBefore(this.reset)) {
+                // The window GitHub told us about is over. Go back to the default pace until the next response.
+                this.remaining = -1;
+                this.reset = null;
+                this.bucket.setRate(this.defaultPermits, this.defaultPeriod);
+            }
+            if (this.pausedUntil == null || !this.pausedUntil.isAfter(now)) {
+                this.pausedUntil = null;
+                return Duration.ZERO;
+            }
+            return Duration.between(now, this.pausedUntil);
+        }
+
+        private synchronized void onRequestSent() {
+            if (this.remaining > 0) {
+                this.remaining--;
+            }
+        }
+
+        private synchronized void update(final int limit, final int remaining, final Instant reset, final Instant now) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.reset = reset;
+
+            if (!reset.isAfter(now)) {
+                return;
+            }
+            if (remaining <= 0) {
+                // The reset time is truncated to the second, so wait one more to be safe.
+                pauseUntil(reset.plusSeconds(1));
+                return;
+            }
+            // Spread what is left evenly over the rest of the window.
+            final long permits = Math.max(0, remaining - SAFETY_MARGIN);
+            if (permits == 0) {
+                pauseUntil(reset.plusSeconds(1));
+                return;
+            }
+            this.bucket.setRate(permits, Duration.between(now, reset));
+        }
+
+        private synchronized void pauseUntil(final Instant until) {
+            if (this.pausedUntil == null || until.isAfter(this.pausedUntil)) {
+                this.pausedUntil = until;
+            }
+        }
+
+        private synchronized RateLimitState snapshot() {
+            return new RateLimitState(this.resource, this.limit, this.remaining, this.reset, this.pausedUntil);
+        }
+    }
+}
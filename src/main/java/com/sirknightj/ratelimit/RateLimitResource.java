@@ -0,0 +1,30 @@
+package com.sirknightj.ratelimit;
+
+import java.util.Locale;
+
+/**
+ * The GitHub API quotas that are tracked separately, as reported by the {@code X-RateLimit-Resource} header.
+ */
+public enum RateLimitResource {
+    CORE,
+    SEARCH,
+    GRAPHQL;
+
+    /**
+     * Parses the value of the {@code X-RateLimit-Resource} header.
+     *
+     * @param headerValue Header value, e.g. {@code "search"}. Can be {@code null}.
+     * @param fallback    Resource to return if the header is missing or unknown.
+     * @return The matching resource, or {@code fallback}.
+     */
+    public static RateLimitResource fromHeader(final String headerValue, final RateLimitResource fallback) {
+        if (headerValue == null) {
+            return fallback;
+        }
+        try {
+            return RateLimitResource.valueOf(headerValue.trim().toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException ex) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.sirknightj.ratelimit;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Snapshot of the budget of one {@link RateLimitResource}, as last reported by GitHub.
+ */
+@Data
+public class RateLimitState {
+    private final RateLimitResource resource;
+
+    // -1 if GitHub has not reported it yet.
+    private final int limit;
+    // -1 if GitHub has not reported it yet. Decremented locally for each request sent since the last report.
+    private final int remaining;
+    // null if GitHub has not reported it yet.
+    private final Instant reset;
+    // Requests are held back until this time. null if not paused.
+    private final Instant pausedUntil;
+
+    /**
+     * @return {@code true} if GitHub has reported this resource's budget at least once.
+     */
+    public boolean isKnown() {
+        return this.remaining >= 0 && this.reset != null;
+    }
+
+    /**
+     * @param now Current time.
+     * @return How long a request sent at {@code now} would be held back. {@link Duration#ZERO} if not paused.
+     */
+    public Duration pauseRemaining(final Instant now) {
+        if (this.pausedUntil == null || !this.pausedUntil.isAfter(now)) {
+            return Duration.ZERO;
+        }
+        return Duration.between(now, this.pausedUntil);
+    }
+}
@@ -0,0 +1,101 @@
+package com.sirknightj.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe token bucket. Tokens refill continuously at {@code permitsPerPeriod / period}, up to
+ * {@code capacity}. {@link #acquire()} blocks the calling thread until a token is available.
+ * <p>
+ * Over any window of length {@code period}, at most {@code capacity + permitsPerPeriod} tokens are handed out,
+ * so callers that must stay under a hard quota should subtract the burst capacity from the quota.
+ */
+public class TokenBucket {
+
+    private final long capacity;
+    private double tokens;
+    private double refillPerNano;
+    private long lastRefillNanos;
+
+    /**
+     * Constructor. The bucket starts full.
+     *
+     * @param capacity         Maximum number of tokens that can be accumulated (the burst size). Must be at least 1.
+     * @param permitsPerPeriod Number of tokens added every {@code period}.
+     * @param period           Refill period.
+     */
+    public TokenBucket(final long capacity, final long permitsPerPeriod, final Duration period) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+        setRate(permitsPerPeriod, period);
+    }
+
+    /**
+     * Changes the refill rate. Tokens accumulated so far are kept.
+     *
+     * @param permitsPerPeriod Number of tokens added every {@code period}. Can be 0 to stop refilling.
+     * @param period           Refill period.
+     */
+    public synchronized void setRate(final long permitsPerPeriod, final Duration period) {
+        if (permitsPerPeriod < 0 || period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("Invalid rate: " + permitsPerPeriod + " per " + period);
+        }
+        refill(System.nanoTime());
+        this.refillPerNano = (double) permitsPerPeriod / period.toNanos();
+        notifyAll();
+    }
+
+    /**
+     * Blocks until a token is available, then takes it.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            refill(System.nanoTime());
+            if (this.tokens >= 1) {
+                this.tokens -= 1;
+                return;
+            }
+            final long waitNanos = this.refillPerNano > 0
+                    ? (long) Math.ceil((1 - this.tokens) / this.refillPerNano)
+                    : TimeUnit.SECONDS.toNanos(1);
+            // Waiting releases the lock, and setRate() wakes waiters up so they can recompute their wait.
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * Takes a token if one is available right now.
+     *
+     * @return {@code true} if a token was taken.
+     */
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of whole tokens currently available.
+     */
+    public synchronized long availableTokens() {
+        refill(System.nanoTime());
+        return (long) this.tokens;
+    }
+
+    private void refill(final long nowNanos) {
+        final long elapsed = nowNanos - this.lastRefillNanos;
+        if (elapsed > 0) {
+            this.tokens = Math.min(this.capacity, this.tokens + elapsed * this.refillPerNano);
+            this.lastRefillNanos = nowNanos;
+        }
+    }
+}
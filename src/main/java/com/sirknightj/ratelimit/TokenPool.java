@@ -0,0 +1,186 @@
+package com.sirknightj.ratelimit;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * A pool of GitHub tokens, each with its own {@link RateLimitGovernor}, so the budgets of several tokens add up.
+ * <p>
+ * {@link #acquire(RateLimitResource)} sends each request with the token that has the most budget left for the
+ * resource, counting the requests already waiting on it. A token whose budget ran out, or that GitHub asked to back
+ * off, is paused by its governor, and left out of rotation until its pause is over. If every token is paused, the one
+ * that resumes first is used.
+ * <p>
+ * A token is read from its supplier for every request, so tokens that expire, such as GitHub App installation tokens,
+ * can be refreshed by the supplier.
+ */
+@Log4j2
+public class TokenPool {
+
+    // Budget assumed for a token GitHub hasn't reported on yet. Unknown tokens are tried first, to learn their budget.
+    private static final int UNKNOWN_BUDGET = Integer.MAX_VALUE / 2;
+
+    private final List<PooledToken> tokens;
+    private final Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param tokens The tokens. At least one.
+     */
+    public TokenPool(final List<PooledToken> tokens) {
+        this(tokens, Clock.systemUTC());
+    }
+
+    TokenPool(final List<PooledToken> tokens, final Clock clock) {
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("A token pool needs at least one token");
+        }
+        this.tokens = Collections.unmodifiableList(new ArrayList<>(tokens));
+        this.clock = clock;
+    }
+
+    /**
+     * @param authTokens GitHub personal access tokens.
+     * @return A pool of the tokens, each with its own governor.
+     */
+    public static TokenPool of(final List<String> authTokens) {
+        final List<PooledToken> tokens = new ArrayList<>(authTokens.size());
+        for (final String authToken : authTokens) {
+            tokens.add(new PooledToken("token-" + (tokens.size() + 1), () -> authToken, new RateLimitGovernor(true)));
+        }
+        return new TokenPool(tokens);
+    }
+
+    /**
+     * @param authToken GitHub personal access token. Can be {@code null} or empty string to send requests
+     *                  unauthenticated.
+     * @return A pool of just that token.
+     */
+    public static TokenPool single(final String authToken) {
+        return single(authToken, new RateLimitGovernor(authToken != null && authToken.length() > 0));
+    }
+
+    /**
+     * @param authToken         GitHub personal access token. Can be {@code null} or empty string to send requests
+     *                          unauthenticated.
+     * @param rateLimitGovernor Governor of the token.
+     * @return A pool of just that token.
+     */
+    public static TokenPool single(final String authToken, final RateLimitGovernor rateLimitGovernor) {
+        return new TokenPool(List.of(new PooledToken("token-1", () -> authToken, rateLimitGovernor)));
+    }
+
+    /**
+     * @return The tokens of this pool.
+     */
+    public List<PooledToken> getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * Picks the token with the most budget left for {@code resource}, and blocks until its governor lets a request
+     * through.
+     *
+     * @param resource The quota the request counts against.
+     * @return The token to send the request with. Its governor must be told about the response.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public PooledToken acquire(final RateLimitResource resource) throws InterruptedException {
+        final PooledToken chosen;
+        synchronized (this) {
+            chosen = select(resource, this.clock.instant());
+            chosen.waiting.incrementAndGet(resource.ordinal());
+        }
+        try {
+            chosen.getGovernor().acquire(resource);
+        } finally {
+            chosen.waiting.decrementAndGet(resource.ordinal());
+        }
+        return chosen;
+    }
+
+    private PooledToken select(final RateLimitResource resource, final Instant now) {
+        if (this.tokens.size() == 1) {
+            return this.tokens.get(0);
+        }
+        PooledToken best = null;
+        long bestScore = Long.MIN_VALUE;
+        PooledToken firstToResume = null;
+        Instant firstResume = null;
+        for (final PooledToken token : this.tokens) {
+            final RateLimitState state = token.getGovernor().getState(resource);
+            if (!state.pauseRemaining(now).isZero()) {
+                if (firstResume == null || state.getPausedUntil().isBefore(firstResume)) {
+                    firstToResume = token;
+                    firstResume = state.getPausedUntil();
+                }
+                continue;
+            }
+            final boolean windowOver = state.getReset() != null && !now.isBefore(state.getReset());
+            final long budget = state.isKnown() && !windowOver ? state.getRemaining() : UNKNOWN_BUDGET;
+            final long score = budget - token.waiting.get(resource.ordinal());
+            if (score > bestScore) {
+                best = token;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            log.info("Every token is out of {} budget. Waiting for {} to resume at {}.", resource, firstToResume, firstResume);
+            return firstToResume;
+        }
+        return best;
+    }
+
+    /**
+     * A token of a {@link TokenPool}.
+     */
+    public static final class PooledToken {
+        private final String name;
+        private final Supplier<String> authToken;
+        private final RateLimitGovernor governor;
+        // Requests picked for this token, still waiting on its governor. Indexed by resource.
+        private final AtomicIntegerArray waiting = new AtomicIntegerArray(RateLimitResource.values().length);
+
+        /**
+         * Constructor.
+         *
+         * @param name      Name used in logs, instead of the token itself.
+         * @param authToken Supplies the current value of the token. Can supply {@code null} to send requests
+         *                  unauthenticated.
+         * @param governor  Governor of the token's rate limits.
+         */
+        public PooledToken(final String name, final Supplier<String> authToken, final RateLimitGovernor governor) {
+            this.name = name;
+            this.authToken = authToken;
+            this.governor = governor;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return The current value of the token.
+         */
+        public String getAuthToken() {
+            return this.authToken.get();
+        }
+
+        public RateLimitGovernor getGovernor() {
+            return this.governor;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.sirknightj.schedule;
+
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repositories of one tier whose stats are due over the same window, fetched together.
+ */
+@Data
+public class PollingBatch {
+    private final PollingTier tier;
+    // Start of the window (inclusive).
+    private final ZonedDateTime start;
+    // End of the window (exclusive). The stats are published with this timestamp.
+    private final ZonedDateTime end;
+    // The key is the owner, the value is the repository name.
+    private final List<Map.Entry<String, String>> repositories;
+}
@@ -0,0 +1,57 @@
+package com.sirknightj.schedule;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * How often the repositories of a tier are polled, and how they compete for rate limit budget with other tiers.
+ */
+@Data
+public class PollingTier {
+
+    /**
+     * Busy repositories, polled every 5 minutes. Never deferred for lack of budget; the rate limit governors pace them.
+     */
+    public static final PollingTier HOT = new PollingTier("hot", Duration.ofMinutes(5), 0, 0);
+
+    /**
+     * Polled every hour. Deferred when less than 20% of a rate limit is left.
+     */
+    public static final PollingTier HOURLY = new PollingTier("hourly", Duration.ofHours(1), 1, 0.2);
+
+    /**
+     * Quiet repositories, polled once a day. Deferred when less than half of a rate limit is left.
+     */
+    public static final PollingTier DAILY = new PollingTier("daily", Duration.ofDays(1), 2, 0.5);
+
+    public static final List<PollingTier> DEFAULT_TIERS = List.of(HOT, HOURLY, DAILY);
+
+    private final String name;
+    private final Duration interval;
+    // Tiers with a lower priority number go first when several repositories are due at once.
+    private final int priority;
+    // Share of each rate limit that must be left after this tier's requests. Below that, they are deferred until the
+    // budget resets, which keeps the rest for tiers that reserve less.
+    private final double reservedFraction;
+
+    /**
+     * @param name Name of one of the {@link #DEFAULT_TIERS}, in any case.
+     * @return The tier.
+     * @throws IllegalArgumentException If there is no such tier.
+     */
+    public static PollingTier named(final String name) {
+        for (final PollingTier tier : DEFAULT_TIERS) {
+            if (tier.getName().equalsIgnoreCase(name.trim())) {
+                return tier;
+            }
+        }
+        throw new IllegalArgumentException("Unknown polling tier: " + name + ". Expected hot, hourly or daily.");
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,367 @@
+package com.sirknightj.schedule;
+
+import com.sirknightj.OrganizationFetcher;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.RateLimitState;
+import com.sirknightj.ratelimit.TokenPool;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Decides which repositories to poll, and when. Each repository belongs to a {@link PollingTier}, and is polled once
+ * per window of its tier. Windows are aligned to an anchor time, so the repositories of a tier that are due together
+ * are fetched in one batch.
+ * <p>
+ * Repositories wait in a priority queue, ordered by when they are next due. A repository whose window ended while it
+ * wasn't polled, e.g. because the process was suspended, a fetch failed, or it was deferred, stays due, and its
+ * missed windows are polled one by one, oldest first, until it has caught up. Windows too old to be published are
+ * skipped, with a warning.
+ * <p>
+ * With a {@link TokenPool}, polls are packed into the budget its tokens have left. Before a repository is handed out,
+ * its expected requests are taken from the budget. A repository whose tier would leave less than its
+ * {@link PollingTier#getReservedFraction() reserve} of a rate limit is deferred until that limit resets, and the rest
+ * of the budget goes to higher-priority tiers.
+ * <p>
+ * When several instances share the repositories, each one schedules all of them, but only polls the ones its
+ * {@link #setOwnership(Predicate) ownership} test accepts. The windows of the others are skipped, and can be
+ * {@link #reclaim(Predicate, Instant, Instant) reclaimed} when their owner changes.
+ * <p>
+ * Its methods are synchronized, but it is meant to be driven by a single polling thread.
+ */
+@Log4j2
+public class RepoPollingScheduler {
+
+    /**
+     * Windows ending longer than this ago are skipped. CloudWatch rejects datapoints older than two weeks.
+     */
+    public static final Duration MAX_CATCH_UP = Duration.ofDays(14).minusHours(1);
+
+    /**
+     * Delay before a repository whose fetch failed is polled again.
+     */
+    public static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    /**
+     * Delay before a deferred repository is considered again, if its rate limit's reset time is unknown.
+     */
+    public static final Duration DEFER_DELAY = Duration.ofMinutes(1);
+
+    // Fetches of a window before it is given up on.
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final Comparator<ScheduledRepository> ORDER = Comparator
+            .comparing((ScheduledRepository repository) -> repository.readyAt)
+            .thenComparingInt(repository -> repository.tier.getPriority())
+            .thenComparing(repository -> repository.windowEnd);
+
+    private final TokenPool tokenPool;
+    private final Map<RateLimitResource, Integer> costPerRepository;
+    private final ZonedDateTime anchor;
+    private final PriorityQueue<ScheduledRepository> queue = new PriorityQueue<>(ORDER);
+    // Repositories handed out by pollDue(), and not completed yet. Keyed by "owner/name".
+    private final Map<String, ScheduledRepository> inFlight = new LinkedHashMap<>();
+    // Every repository scheduled, as "owner/name".
+    private final Set<String> scheduled = new HashSet<>();
+    private Predicate<Map.Entry<String, String>> ownership = repository -> true;
+
+    /**
+     * Constructor.
+     *
+     * @param tokenPool         Tokens whose budget the polls are packed into. Can be {@code null} to ignore budgets.
+     * @param costPerRepository Requests a repository is expected to cost, by resource, e.g. 5 search requests and 1
+     *                          core request with {@link com.sirknightj.GithubAPI}.
+     * @param anchor            Windows of every tier start at this time, plus a whole number of intervals.
+     */
+    public RepoPollingScheduler(final TokenPool tokenPool, final Map<RateLimitResource, Integer> costPerRepository,
+                                final ZonedDateTime anchor) {
+        this.tokenPool = tokenPool;
+        this.costPerRepository = new EnumMap<>(RateLimitResource.class);
+        this.costPerRepository.putAll(costPerRepository);
+        this.anchor = anchor;
+    }
+
+    /**
+     * Schedules a repository. Its first window is the one in progress at {@code now}, polled once it ends.
+     * <p>
+     * Whole organizations must be expanded into their repositories first, e.g. with
+     * {@link OrganizationFetcher#expand(Map.Entry)}, so that each repository is completed, budgeted and
+     * sharded on its own.
+     *
+     * @param repository The repository. The key is the owner, the value is the repository name.
+     * @param tier       Tier of the repository.
+     * @param now        Current time.
+     * @return {@code false} if the repository was already scheduled, in which case it keeps its tier.
+     * @throws IllegalArgumentException If the entry stands for a whole organization.
+     */
+    public synchronized boolean add(final Map.Entry<String, String> repository, final PollingTier tier, final Instant now) {
+        if (OrganizationFetcher.ALL_REPOSITORIES.equals(repository.getValue())) {
+            throw new IllegalArgumentException("Expand the organization " + repository.getKey() + " into its repositories before scheduling it");
+        }
+        if (!this.scheduled.add(repository.getKey() + "/" + repository.getValue())) {
+            return false;
+        }
+        final long intervalSeconds = tier.getInterval().getSeconds();
+        final long elapsedSeconds = now.getEpochSecond() - this.anchor.toEpochSecond();
+        final long windows = Math.floorDiv(elapsedSeconds, intervalSeconds) + 1;
+        final ZonedDateTime windowEnd = this.anchor.plus(tier.getInterval().multipliedBy(windows));
+        this.queue.add(new ScheduledRepository(repository, tier, windowEnd));
+        log.info("Will poll {}/{} every {}, first at {}.", repository.getKey(), repository.getValue(), tier.getInterval(), windowEnd);
+        return true;
+    }
+
+    /**
+     * @return When the next repository is due, or {@code null} if none is scheduled.
+     */
+    public synchronized Instant nextDue() {
+        final ScheduledRepository head = this.queue.peek();
+        return head != null ? head.readyAt : null;
+    }
+
+    /**
+     * @return Number of repositories scheduled, including the ones being polled.
+     */
+    public synchronized int size() {
+        return this.queue.size() + this.inFlight.size();
+    }
+
+    /**
+     * Hands out the repositories that are due, and fit in the budget, grouped into batches by tier and window. Each
+     * repository is handed out for one window at a time, and isn't handed out again until
+     * {@link #complete(PollingBatch, Collection, Instant)} is called for its batch.
+     *
+     * @param now Current time.
+     * @return The batches to poll, highest priority first. Empty if nothing is due.
+     */
+    public synchronized List<PollingBatch> pollDue(final Instant now) {
+        final List<ScheduledRepository> due = new ArrayList<>();
+        while (!this.queue.isEmpty() && !this.queue.peek().readyAt.isAfter(now)) {
+            final ScheduledRepository repository = this.queue.poll();
+            skipExpiredWindows(repository, now);
+            if (repository.readyAt.isAfter(now)) {
+                this.queue.add(repository);
+            } else if (!this.ownership.test(repository.repository)) {
+                // Polled by the instance that owns it.
+                repository.advance();
+                this.queue.add(repository);
+            } else {
+                due.add(repository);
+            }
+        }
+        if (due.isEmpty()) {
+            return List.of();
+        }
+        due.sort(Comparator.comparingInt((ScheduledRepository repository) -> repository.tier.getPriority())
+                .thenComparing(repository -> repository.windowEnd));
+
+        final Map<RateLimitResource, Budget> budgets = budgets(now);
+        final Map<String, List<ScheduledRepository>> batches = new LinkedHashMap<>();
+        for (final ScheduledRepository repository : due) {
+            final RateLimitResource shortOf = take(budgets, repository.tier);
+            if (shortOf != null) {
+                final Budget budget = budgets.get(shortOf);
+                repository.readyAt = budget.reset != null && budget.reset.isAfter(now) ? budget.reset : now.plus(DEFER_DELAY);
+                this.queue.add(repository);
+                log.info("Deferring {} ({}) to {}: not enough {} budget left.", repository.name(), repository.tier, repository.readyAt, shortOf);
+                continue;
+            }
+            this.inFlight.put(repository.name(), repository);
+            batches.computeIfAbsent(repository.tier.getName() + "@" + repository.windowEnd.toEpochSecond(), key -> new ArrayList<>())
+                    .add(repository);
+        }
+
+        final List<PollingBatch> polled = new ArrayList<>(batches.size());
+        for (final List<ScheduledRepository> batch : batches.values()) {
+            final ScheduledRepository first = batch.get(0);
+            final List<Map.Entry<String, String>> repositories = new ArrayList<>(batch.size());
+            for (final ScheduledRepository repository : batch) {
+                repositories.add(repository.repository);
+            }
+            polled.add(new PollingBatch(first.tier, first.windowEnd.minus(first.tier.getInterval()), first.windowEnd, repositories));
+        }
+        return polled;
+    }
+
+    /**
+     * Reports the outcome of polling a batch. Repositories polled successfully move on to their next window. The
+     * others are retried after {@link #RETRY_DELAY}, up to {@value #MAX_ATTEMPTS} times, before their window is
+     * skipped.
+     *
+     * @param batch     A batch returned by {@link #pollDue(Instant)}.
+     * @param succeeded Repositories of the batch that were polled successfully, as {@code "owner/name"}.
+     * @param now       Current time.
+     */
+    public synchronized void complete(final PollingBatch batch, final Collection<String> succeeded, final Instant now) {
+        for (final Map.Entry<String, String> entry : batch.getRepositories()) {
+            final ScheduledRepository repository = this.inFlight.remove(entry.getKey() + "/" + entry.getValue());
+            if (repository == null) {
+                continue;
+            }
+            if (succeeded.contains(repository.name())) {
+                repository.advance();
+            } else if (++repository.attempts < MAX_ATTEMPTS) {
+                repository.readyAt = now.plus(RETRY_DELAY);
+                log.warn("Polling {} for the window ending {} failed. Will retry at {}.", repository.name(), repository.windowEnd, repository.readyAt);
+            } else {
+                log.error("Polling {} for the window ending {} failed {} times. Skipping the window.", repository.name(), repository.windowEnd, repository.attempts);
+                repository.advance();
+            }
+            this.queue.add(repository);
+        }
+    }
+
+    /**
+     * @param ownership Accepts the repositories this instance polls. The windows of the others are skipped when due.
+     */
+    public synchronized void setOwnership(final Predicate<Map.Entry<String, String>> ownership) {
+        this.ownership = ownership;
+    }
+
+    /**
+     * Makes the windows of some repositories that ended after {@code since} due again, e.g. after taking them over
+     * from an instance that may not have polled them. Windows older than {@link #MAX_CATCH_UP} aren't.
+     *
+     * @param repositories Accepts the repositories to reclaim.
+     * @param since        Windows that ended after this are polled again.
+     * @param now          Current time.
+     * @return The number of windows made due again.
+     */
+    public synchronized int reclaim(final Predicate<Map.Entry<String, String>> repositories, final Instant since, final Instant now) {
+        final Instant oldest = since.isAfter(now.minus(MAX_CATCH_UP)) ? since : now.minus(MAX_CATCH_UP);
+        final List<ScheduledRepository> rewound = new ArrayList<>();
+        int windows = 0;
+        for (final Iterator<ScheduledRepository> iterator = this.queue.iterator(); iterator.hasNext(); ) {
+            final ScheduledRepository repository = iterator.next();
+            if (!repositories.test(repository.repository)) {
+                continue;
+            }
+            ZonedDateTime previousEnd = repository.windowEnd.minus(repository.tier.getInterval());
+            if (!previousEnd.toInstant().isAfter(oldest)) {
+                continue;
+            }
+            iterator.remove();
+            while (previousEnd.toInstant().isAfter(oldest)) {
+                repository.windowEnd = previousEnd;
+                previousEnd = previousEnd.minus(repository.tier.getInterval());
+                windows++;
+            }
+            repository.readyAt = repository.windowEnd.toInstant();
+            repository.attempts = 0;
+            rewound.add(repository);
+        }
+        this.queue.addAll(rewound);
+        if (windows > 0) {
+            log.info("Reclaimed {} windows of {} repositories, which ended after {}.", windows, rewound.size(), oldest);
+        }
+        return windows;
+    }
+
+    private static void skipExpiredWindows(final ScheduledRepository repository, final Instant now) {
+        final Instant oldest = now.minus(MAX_CATCH_UP);
+        int skipped = 0;
+        while (repository.windowEnd.toInstant().isBefore(oldest)) {
+            repository.advance();
+            skipped++;
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} windows of {}, which ended more than {} ago.", skipped, repository.name(), MAX_CATCH_UP);
+        }
+    }
+
+    /**
+     * Takes the cost of a repository from the budgets, unless that would leave less than the tier's reserve.
+     *
+     * @return {@code null} if the budgets were taken from, or else a resource that is short.
+     */
+    private RateLimitResource take(final Map<RateLimitResource, Budget> budgets, final PollingTier tier) {
+        for (final Map.Entry<RateLimitResource, Integer> cost : this.costPerRepository.entrySet()) {
+            final Budget budget = budgets.get(cost.getKey());
+            if (budget.known && budget.remaining - cost.getValue() < Math.ceil(tier.getReservedFraction() * budget.limit)) {
+                return cost.getKey();
+            }
+        }
+        for (final Map.Entry<RateLimitResource, Integer> cost : this.costPerRepository.entrySet()) {
+            budgets.get(cost.getKey()).remaining -= cost.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Adds up the budget of every token, for every resource repositories cost.
+     */
+    private Map<RateLimitResource, Budget> budgets(final Instant now) {
+        final Map<RateLimitResource, Budget> budgets = new EnumMap<>(RateLimitResource.class);
+        for (final RateLimitResource resource : this.costPerRepository.keySet()) {
+            final Budget budget = new Budget();
+            budget.known = this.tokenPool != null;
+            if (this.tokenPool != null) {
+                for (final TokenPool.PooledToken token : this.tokenPool.getTokens()) {
+                    final RateLimitState state = token.getGovernor().getState(resource);
+                    if (!state.isKnown() || state.getLimit() < 0 || !now.isBefore(state.getReset())) {
+                        // A token that hasn't reported, or whose window is over, has its whole budget. Let the
+                        // governors find out.
+                        budget.known = false;
+                        break;
+                    }
+                    budget.limit += state.getLimit();
+                    budget.remaining += state.getRemaining();
+                    if (budget.reset == null || state.getReset().isBefore(budget.reset)) {
+                        budget.reset = state.getReset();
+                    }
+                }
+            }
+            budgets.put(resource, budget);
+        }
+        return budgets;
+    }
+
+    private static final class Budget {
+        private boolean known;
+        private long limit;
+        private long remaining;
+        // Earliest reset of the tokens' windows.
+        private Instant reset;
+    }
+
+    private static final class ScheduledRepository {
+        private final Map.Entry<String, String> repository;
+        private final PollingTier tier;
+        // End of the next window to poll.
+        private ZonedDateTime windowEnd;
+        // When the repository may be polled. At the earliest the end of its window.
+        private Instant readyAt;
+        // Failed polls of the current window.
+        private int attempts;
+
+        private ScheduledRepository(final Map.Entry<String, String> repository, final PollingTier tier, final ZonedDateTime windowEnd) {
+            this.repository = repository;
+            this.tier = tier;
+            this.windowEnd = windowEnd;
+            this.readyAt = windowEnd.toInstant();
+        }
+
+        private void advance() {
+            this.windowEnd = this.windowEnd.plus(this.tier.getInterval());
+            this.readyAt = this.windowEnd.toInstant();
+            this.attempts = 0;
+        }
+
+        private String name() {
+            return this.repository.getKey() + "/" + this.repository.getValue();
+        }
+    }
+}
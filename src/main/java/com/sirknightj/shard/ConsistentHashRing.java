@@ -0,0 +1,77 @@
+package com.sirknightj.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of members. Each member is placed on the ring at several points (virtual nodes), and a key
+ * belongs to the member at the first point at or after the key's hash. Adding or removing a member only moves the keys
+ * of the points it gains or loses, about {@code 1 / members} of them, and the virtual nodes spread those evenly over
+ * the other members.
+ * <p>
+ * Immutable. The placement only depends on the members' names, so every instance that sees the same members builds
+ * the same ring.
+ *
+ * @param <T> Type of the members.
+ */
+public class ConsistentHashRing<T> {
+
+    /**
+     * Points each member is placed at, by default. Keeps the share of each of a handful of members within a few
+     * percent of even.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param members      Members, by name.
+     * @param virtualNodes Points each member is placed at.
+     */
+    public ConsistentHashRing(final Map<String, T> members, final int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1, got " + virtualNodes);
+        }
+        for (final Map.Entry<String, T> member : members.entrySet()) {
+            for (int node = 0; node < virtualNodes; node++) {
+                this.ring.put(hash(member.getKey() + "#" + node), member.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param key A key.
+     * @return The member the key belongs to, or {@code null} if the ring has no members.
+     */
+    public T memberFor(final String key) {
+        if (this.ring.isEmpty()) {
+            return null;
+        }
+        final Map.Entry<Long, T> point = this.ring.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, followed by the MurmurHash3 finalizer, which spreads the similar keys this is
+     * used with ({@code shard-1}, {@code shard-2}, ...) over the whole range.
+     *
+     * @param key A key.
+     * @return Its hash.
+     */
+    public static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
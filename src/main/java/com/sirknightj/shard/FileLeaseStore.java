@@ -0,0 +1,171 @@
+package com.sirknightj.shard;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link LeaseStore} in a directory shared by every instance, e.g. a network file system that supports locks, such as
+ * NFSv4 or EFS, or a local directory for instances on the same host.
+ * <p>
+ * Each lease is a small properties file, {@code <name>.lease}, read and rewritten under an exclusive lock on the file
+ * itself, so two instances can't both take a free lease. A lease file is never deleted: after it expires or is
+ * released, it still tells the next holder who held it last, and until when.
+ */
+public class FileLeaseStore implements LeaseStore {
+
+    private static final String SUFFIX = ".lease";
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    // File locks are held by the whole process, and the JVM rejects overlapping ones, so instances sharing a JVM, e.g.
+    // in tests, also take turns on a monitor per file.
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory Directory of the lease files. Created if missing.
+     * @throws IOException If the directory can't be created.
+     */
+    public FileLeaseStore(final Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Lease acquire(final String name, final String holder, final Duration period, final Instant now) throws IOException {
+        final Path file = file(name);
+        synchronized (monitor(file)) {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 final FileLock ignored = channel.lock()) {
+                final Lease current = read(name, channel);
+                if (current != null && current.isHeld(now) && !holder.equals(current.getHolder())) {
+                    return null;
+                }
+                final Lease lease;
+                if (current != null && holder.equals(current.getHolder()) && current.isHeld(now)) {
+                    lease = new Lease(name, holder, now, now.plus(period), current.getPreviousHolder(), current.getPreviousRenewedAt());
+                } else if (current != null) {
+                    // Taken over, possibly by the same holder after it lapsed, e.g. across a restart.
+                    lease = new Lease(name, holder, now, now.plus(period), current.getHolder(), current.getRenewedAt());
+                } else {
+                    lease = new Lease(name, holder, now, now.plus(period), null, null);
+                }
+                write(lease, channel);
+                return lease;
+            }
+        }
+    }
+
+    @Override
+    public void release(final String name, final String holder, final Instant now) throws IOException {
+        final Path file = file(name);
+        if (!Files.exists(file)) {
+            return;
+        }
+        synchronized (monitor(file)) {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 final FileLock ignored = channel.lock()) {
+                final Lease current = read(name, channel);
+                if (current != null && holder.equals(current.getHolder()) && current.isHeld(now)) {
+                    write(new Lease(name, holder, now, now, current.getPreviousHolder(), current.getPreviousRenewedAt()), channel);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Lease> listHeld(final String prefix, final Instant now) throws IOException {
+        final List<Lease> leases = new ArrayList<>();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, prefix + "*" + SUFFIX)) {
+            for (final Path file : files) {
+                final String fileName = file.getFileName().toString();
+                final String name = fileName.substring(0, fileName.length() - SUFFIX.length());
+                synchronized (monitor(file)) {
+                    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                         final FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+                        final Lease lease = read(name, channel);
+                        if (lease != null && lease.isHeld(now)) {
+                            leases.add(lease);
+                        }
+                    }
+                }
+            }
+        }
+        return leases;
+    }
+
+    private Path file(final String name) {
+        if (!VALID_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid lease name: " + name);
+        }
+        return this.directory.resolve(name + SUFFIX);
+    }
+
+    private static Object monitor(final Path file) {
+        return MONITORS.computeIfAbsent(file, unused -> new Object());
+    }
+
+    /**
+     * @return The lease in the file, or {@code null} if the file is empty, i.e. was just created.
+     */
+    private static Lease read(final String name, final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Keep reading.
+        }
+        if (buffer.position() == 0) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        properties.load(new StringReader(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)));
+        final String previousRenewedAt = properties.getProperty("previousRenewedAt");
+        return new Lease(name, properties.getProperty("holder"),
+                Instant.parse(properties.getProperty("renewedAt")),
+                Instant.parse(properties.getProperty("expiresAt")),
+                properties.getProperty("previousHolder"),
+                previousRenewedAt != null ? Instant.parse(previousRenewedAt) : null);
+    }
+
+    private static void write(final Lease lease, final FileChannel channel) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("holder", lease.getHolder());
+        properties.setProperty("renewedAt", lease.getRenewedAt().toString());
+        properties.setProperty("expiresAt", lease.getExpiresAt().toString());
+        if (lease.getPreviousHolder() != null) {
+            properties.setProperty("previousHolder", lease.getPreviousHolder());
+            properties.setProperty("previousRenewedAt", lease.getPreviousRenewedAt().toString());
+        }
+        final StringWriter text = new StringWriter();
+        properties.store(text, null);
+        final ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+
+        channel.truncate(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() {
+        // Lease files are only open while they are read or written.
+    }
+}
@@ -0,0 +1,29 @@
+package com.sirknightj.shard;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A named, time-limited claim held by one collector instance, as kept by a {@link LeaseStore}.
+ */
+@Data
+public class Lease {
+    private final String name;
+    private final String holder;
+    // When the holder last took or renewed the lease. Set to the release time when released.
+    private final Instant renewedAt;
+    // The lease is free from this time on, unless renewed. Released leases expire right away.
+    private final Instant expiresAt;
+    // Holder before the current one, and when it last renewed, or null if the lease was never held by anyone else.
+    private final String previousHolder;
+    private final Instant previousRenewedAt;
+
+    /**
+     * @param now Current time.
+     * @return {@code true} if the lease is held at {@code now}.
+     */
+    public boolean isHeld(final Instant now) {
+        return now.isBefore(this.expiresAt);
+    }
+}
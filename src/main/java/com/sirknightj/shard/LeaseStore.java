@@ -0,0 +1,46 @@
+package com.sirknightj.shard;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Shared store of {@link Lease leases}, through which collector instances agree on who does what. Every operation on a
+ * lease is atomic with respect to every other instance using the same store.
+ * <p>
+ * Instances compare expiry times taken from their own clocks, so the clocks must be kept in sync to well within a
+ * lease period.
+ */
+public interface LeaseStore extends AutoCloseable {
+
+    /**
+     * Takes a lease that is free or expired, or renews one already held by {@code holder}.
+     *
+     * @param name   Name of the lease.
+     * @param holder Instance taking the lease.
+     * @param period How long the lease is held for, unless renewed.
+     * @param now    Current time.
+     * @return The lease as now held by {@code holder}, or {@code null} if another instance holds it.
+     * @throws IOException If the store couldn't be read or written.
+     */
+    Lease acquire(String name, String holder, Duration period, Instant now) throws IOException;
+
+    /**
+     * Gives up a lease, if held by {@code holder}, so another instance can take it right away.
+     *
+     * @param name   Name of the lease.
+     * @param holder Instance giving up the lease.
+     * @param now    Current time.
+     * @throws IOException If the store couldn't be read or written.
+     */
+    void release(String name, String holder, Instant now) throws IOException;
+
+    /**
+     * @param prefix Prefix of the names of the leases to list.
+     * @param now    Current time.
+     * @return The leases whose name starts with {@code prefix}, and are held at {@code now}.
+     * @throws IOException If the store couldn't be read.
+     */
+    List<Lease> listHeld(String prefix, Instant now) throws IOException;
+}
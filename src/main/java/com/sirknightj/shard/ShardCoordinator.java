@@ -0,0 +1,253 @@
+package com.sirknightj.shard;
+
+import com.sirknightj.OrganizationFetcher;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the repositories between the collector instances sharing a {@link LeaseStore}, so each instance only fetches
+ * its share, with its own tokens.
+ * <p>
+ * Each repository belongs to one of a fixed number of shards, by the hash of its name. Every instance holds a
+ * membership lease, and places the live members on a {@link ConsistentHashRing}, which assigns each shard to one of
+ * them. An instance only polls a shard while it holds the shard's lease as well, so a shard that changes hands, e.g.
+ * when an instance joins, is released by its old owner before the new owner takes it, and never polled by both.
+ * <p>
+ * Leases are renewed every third of a lease period. An instance that dies stops renewing, and once its leases expire,
+ * at most one lease period later, the others drop it from their rings and take over its shards. The new owner is told
+ * when the shard was last held, through {@link #onTakeover(TakeoverListener)}, so it can poll the windows that ended
+ * since. Instances that leave cleanly release their leases, and their shards are taken over at the next renewal.
+ */
+@Log4j2
+public class ShardCoordinator implements AutoCloseable {
+
+    /**
+     * Number of shards, by default. Every instance must use the same number.
+     */
+    public static final int DEFAULT_SHARDS = 64;
+
+    public static final Duration DEFAULT_LEASE_PERIOD = Duration.ofSeconds(30);
+
+    static final String MEMBER_PREFIX = "member-";
+    static final String SHARD_PREFIX = "shard-";
+
+    /**
+     * Called when a shard is taken over from another instance, or taken back after its lease lapsed.
+     */
+    @FunctionalInterface
+    public interface TakeoverListener {
+        /**
+         * @param shard The shard.
+         * @param since When the shard was last held. Windows ending after it may not have been polled.
+         */
+        void onTakeover(int shard, Instant since);
+    }
+
+    private final LeaseStore store;
+    private final String instanceId;
+    private final int shards;
+    private final Duration leasePeriod;
+    private final Clock clock;
+    // Expiry of the lease of each shard held.
+    private final Map<Integer, Instant> held = new ConcurrentHashMap<>();
+    private final List<TakeoverListener> listeners = new CopyOnWriteArrayList<>();
+    private Instant startedAt;
+    private ScheduledExecutorService renewer;
+
+    /**
+     * Constructor. Call {@link #start()} to join the other instances.
+     *
+     * @param store       Store shared by every instance.
+     * @param instanceId  Name of this instance, unique among the instances, e.g. its host name and process ID.
+     * @param shards      Number of shards the repositories are split into. Every instance must use the same number.
+     * @param leasePeriod How long leases are held for without being renewed. A dead instance's shards are taken over
+     *                    after at most this long.
+     */
+    public ShardCoordinator(final LeaseStore store, final String instanceId, final int shards, final Duration leasePeriod) {
+        this(store, instanceId, shards, leasePeriod, Clock.systemUTC());
+    }
+
+    ShardCoordinator(final LeaseStore store, final String instanceId, final int shards, final Duration leasePeriod, final Clock clock) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be at least 1, got " + shards);
+        }
+        this.store = store;
+        this.instanceId = instanceId;
+        this.shards = shards;
+        this.leasePeriod = leasePeriod;
+        this.clock = clock;
+        this.startedAt = clock.instant();
+    }
+
+    /**
+     * Joins the other instances, takes this instance's shards, and renews the leases in the background from then on.
+     */
+    public synchronized void start() {
+        if (this.renewer != null) {
+            return;
+        }
+        this.startedAt = this.clock.instant();
+        refresh();
+        final long intervalMillis = Math.max(1, this.leasePeriod.toMillis() / 3);
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "shard-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.renewer.scheduleWithFixedDelay(this::refresh, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renews the membership of this instance, and takes, renews or releases the lease of every shard to match the
+     * current members.
+     */
+    synchronized void refresh() {
+        final Instant now = this.clock.instant();
+        try {
+            this.store.acquire(memberLeaseName(), this.instanceId, this.leasePeriod, now);
+            final Map<String, String> members = new HashMap<>();
+            for (final Lease member : this.store.listHeld(MEMBER_PREFIX, now)) {
+                members.put(member.getHolder(), member.getHolder());
+            }
+            final ConsistentHashRing<String> ring = new ConsistentHashRing<>(members, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+
+            final int ownedBefore = ownedShards().size();
+            for (int shard = 0; shard < this.shards; shard++) {
+                final String name = SHARD_PREFIX + shard;
+                if (this.instanceId.equals(ring.memberFor(name))) {
+                    take(shard, name, now);
+                } else if (this.held.remove(shard) != null) {
+                    this.store.release(name, this.instanceId, now);
+                    log.info("Released shard {}, now assigned to {}.", shard, ring.memberFor(name));
+                }
+            }
+            final int owned = ownedShards().size();
+            if (owned != ownedBefore) {
+                log.info("Instance {} owns {} of {} shards, with {} instances.", this.instanceId, owned, this.shards, members.size());
+            }
+        } catch (final IOException | RuntimeException ex) {
+            // Shards whose leases can't be renewed stop being polled once the leases expire.
+            log.warn("Couldn't renew the shard leases of {}.", this.instanceId, ex);
+        }
+    }
+
+    private void take(final int shard, final String name, final Instant now) throws IOException {
+        final Lease lease = this.store.acquire(name, this.instanceId, this.leasePeriod, now);
+        if (lease == null) {
+            // Still held by the instance it was assigned to before, until that instance releases it, or dies.
+            this.held.remove(shard);
+            return;
+        }
+        final Instant previousExpiry = this.held.put(shard, lease.getExpiresAt());
+        final boolean taken = previousExpiry == null || !previousExpiry.isAfter(now);
+        if (taken && lease.getPreviousHolder() != null) {
+            // Like a restart of a single instance, windows that ended before this instance started aren't caught up on.
+            final Instant since = lease.getPreviousRenewedAt().isAfter(this.startedAt) ? lease.getPreviousRenewedAt() : this.startedAt;
+            log.info("Took over shard {} from {}, last held at {}.", shard, lease.getPreviousHolder(), lease.getPreviousRenewedAt());
+            for (final TakeoverListener listener : this.listeners) {
+                listener.onTakeover(shard, since);
+            }
+        }
+    }
+
+    /**
+     * @param owner Owner of the repository.
+     * @param name  Name of the repository.
+     * @param shards Number of shards.
+     * @return The shard of the repository, between 0 and {@code shards - 1}.
+     * @throws IllegalArgumentException If it stands for a whole organization, whose repositories are spread over the
+     *                                  shards one by one once {@link OrganizationFetcher#expand(Map.Entry) expanded}.
+     */
+    public static int shardOf(final String owner, final String name, final int shards) {
+        if (OrganizationFetcher.ALL_REPOSITORIES.equals(name)) {
+            throw new IllegalArgumentException("Expand the organization " + owner + " into its repositories before sharding it");
+        }
+        return (int) Long.remainderUnsigned(ConsistentHashRing.hash((owner + "/" + name).toLowerCase(Locale.ROOT)), shards);
+    }
+
+    /**
+     * @param repository The repository. The key is the owner, the value is the repository name.
+     * @return Its shard.
+     */
+    public int shardOf(final Map.Entry<String, String> repository) {
+        return shardOf(repository.getKey(), repository.getValue(), this.shards);
+    }
+
+    /**
+     * @param repository The repository. The key is the owner, the value is the repository name.
+     * @return {@code true} if this instance holds the lease of the repository's shard right now.
+     */
+    public boolean owns(final Map.Entry<String, String> repository) {
+        final Instant expiry = this.held.get(shardOf(repository));
+        return expiry != null && this.clock.instant().isBefore(expiry);
+    }
+
+    /**
+     * @return The shards whose leases this instance holds right now.
+     */
+    public Set<Integer> ownedShards() {
+        final Instant now = this.clock.instant();
+        final Set<Integer> owned = new TreeSet<>();
+        this.held.forEach((shard, expiry) -> {
+            if (now.isBefore(expiry)) {
+                owned.add(shard);
+            }
+        });
+        return owned;
+    }
+
+    /**
+     * @param listener Called, on the thread renewing the leases, whenever a shard is taken over.
+     */
+    public void onTakeover(final TakeoverListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public String getInstanceId() {
+        return this.instanceId;
+    }
+
+    public int getShards() {
+        return this.shards;
+    }
+
+    private String memberLeaseName() {
+        return MEMBER_PREFIX + this.instanceId.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Stops renewing, and releases every lease, so the other instances take over right away.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.renewer != null) {
+            this.renewer.shutdownNow();
+            this.renewer = null;
+        }
+        final Instant now = this.clock.instant();
+        try {
+            for (final Integer shard : this.held.keySet()) {
+                this.store.release(SHARD_PREFIX + shard, this.instanceId, now);
+            }
+            this.store.release(memberLeaseName(), this.instanceId, now);
+        } catch (final IOException ex) {
+            log.warn("Couldn't release the shard leases of {}. They will expire.", this.instanceId, ex);
+        }
+        this.held.clear();
+    }
+}
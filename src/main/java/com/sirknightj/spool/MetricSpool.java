@@ -0,0 +1,308 @@
+package com.sirknightj.spool;
+
+import com.sirknightj.utils.RepoInfo;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped file of collected stats that haven't been confirmed as published yet.
+ * <p>
+ * Each batch is {@link #append(List, ZonedDateTime) appended} before publishing, and {@link #commit(long) committed}
+ * once published, by flipping a state byte in place. Batches still pending when the process restarts are returned by
+ * {@link #pending()} so they can be replayed. Once nothing is pending, the file is {@link #compact() truncated}.
+ * <p>
+ * Layout: an 8 byte file header (magic, version), followed by records of
+ * {@code [int magic][byte state][int payloadLength][long timestampMillis][payload][int crc32(payload)]}. A record
+ * that was only partially written when the process died fails its checksum, and marks the end of the file.
+ */
+@Log4j2
+public class MetricSpool implements AutoCloseable {
+
+    private static final int FILE_MAGIC = 0x47485350; // "GHSP"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+
+    private static final int RECORD_MAGIC = 0x52454331; // "REC1"
+    private static final int RECORD_HEADER_BYTES = 4 + 1 + 4 + 8;
+    private static final int RECORD_TRAILER_BYTES = 4;
+    private static final int STATE_OFFSET = 4;
+
+    private static final byte STATE_PENDING = 0;
+    private static final byte STATE_COMMITTED = 1;
+    private static final byte STATE_DROPPED = 2;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int pendingCount;
+
+    /**
+     * Opens the spool file, creating it if needed, and recovers the records already in it. The file is locked until
+     * the spool is closed, so two processes never append to, replay and truncate the same file.
+     *
+     * @param file Spool file.
+     * @throws IOException If the file can't be opened, is already open in another spool, or isn't a spool file.
+     */
+    public MetricSpool(final Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = this.channel.tryLock();
+        } catch (final OverlappingFileLockException ex) {
+            // Already locked by this process.
+            lock = null;
+        }
+        if (lock == null) {
+            this.channel.close();
+            throw new IOException(file + " is already used by another spool. Give each instance its own METRICS_SPOOL_FILE");
+        }
+        final boolean isNew = this.channel.size() == 0;
+        map(Math.max(INITIAL_SIZE, this.channel.size()));
+
+        if (isNew) {
+            this.buffer.putInt(0, FILE_MAGIC);
+            this.buffer.putInt(4, FILE_VERSION);
+            this.buffer.force();
+        } else if (this.buffer.getInt(0) != FILE_MAGIC || this.buffer.getInt(4) != FILE_VERSION) {
+            this.channel.close();
+            throw new IOException(file + " is not a metric spool file");
+        }
+        recover();
+    }
+
+    /**
+     * Durably records a batch as pending.
+     *
+     * @param repoInfo            Stats of each repository.
+     * @param metricCollectedTime Timestamp of the datapoints.
+     * @return Id of the record, to pass to {@link #commit(long)}.
+     * @throws IOException If the record can't be written.
+     */
+    public synchronized long append(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) throws IOException {
+        final byte[] payload = encode(repoInfo);
+        final int recordBytes = RECORD_HEADER_BYTES + payload.length + RECORD_TRAILER_BYTES;
+        // Leave room for the terminating zero after the record.
+        ensureCapacity(this.writePosition + recordBytes + 4);
+
+        final int position = this.writePosition;
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        this.buffer.position(position);
+        this.buffer.putInt(RECORD_MAGIC);
+        this.buffer.put(STATE_PENDING);
+        this.buffer.putInt(payload.length);
+        this.buffer.putLong(metricCollectedTime.toInstant().toEpochMilli());
+        this.buffer.put(payload);
+        this.buffer.putInt((int) crc.getValue());
+        // Marks the end of the records, in case stale bytes follow.
+        this.buffer.putInt(0);
+        this.buffer.force();
+
+        this.writePosition = position + recordBytes;
+        this.pendingCount++;
+        return position;
+    }
+
+    /**
+     * Marks a record as published, so it isn't replayed.
+     *
+     * @param recordId Id returned by {@link #append(List, ZonedDateTime)}.
+     */
+    public synchronized void commit(final long recordId) {
+        setState(recordId, STATE_COMMITTED);
+    }
+
+    /**
+     * Marks a record as given up on, e.g. because it is too old to be published, so it isn't replayed.
+     *
+     * @param recordId Id returned by {@link #append(List, ZonedDateTime)}.
+     */
+    public synchronized void drop(final long recordId) {
+        setState(recordId, STATE_DROPPED);
+    }
+
+    /**
+     * @return Every record that hasn't been committed or dropped, oldest first.
+     * @throws IOException If a record can't be decoded.
+     */
+    public synchronized List<SpooledBatch> pending() throws IOException {
+        final List<SpooledBatch> pending = new ArrayList<>();
+        int position = FILE_HEADER_BYTES;
+        while (position < this.writePosition) {
+            final int payloadLength = this.buffer.getInt(position + 5);
+            if (this.buffer.get(position + STATE_OFFSET) == STATE_PENDING) {
+                final long timestampMillis = this.buffer.getLong(position + 9);
+                final byte[] payload = readBytes(position + RECORD_HEADER_BYTES, payloadLength);
+                pending.add(new SpooledBatch(position,
+                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneOffset.UTC),
+                        decode(payload)));
+            }
+            position += RECORD_HEADER_BYTES + payloadLength + RECORD_TRAILER_BYTES;
+        }
+        return pending;
+    }
+
+    /**
+     * @return The number of records that haven't been committed or dropped.
+     */
+    public synchronized int pendingCount() {
+        return this.pendingCount;
+    }
+
+    /**
+     * Truncates the file if nothing is pending, so it doesn't grow forever.
+     *
+     * @throws IOException If the file can't be truncated.
+     */
+    public synchronized void compact() throws IOException {
+        if (this.pendingCount > 0 || this.writePosition == FILE_HEADER_BYTES) {
+            return;
+        }
+        this.buffer.putInt(FILE_HEADER_BYTES, 0);
+        this.buffer.force();
+        this.buffer = null;
+        this.channel.truncate(FILE_HEADER_BYTES);
+        map(INITIAL_SIZE);
+        this.writePosition = FILE_HEADER_BYTES;
+        log.debug("Compacted metric spool {}.", this.file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.buffer != null) {
+            this.buffer.force();
+        }
+        this.channel.close();
+    }
+
+    private void setState(final long recordId, final byte state) {
+        final int position = (int) recordId;
+        if (position < FILE_HEADER_BYTES || position >= this.writePosition || this.buffer.getInt(position) != RECORD_MAGIC) {
+            throw new IllegalArgumentException("No spool record with id " + recordId);
+        }
+        if (this.buffer.get(position + STATE_OFFSET) == STATE_PENDING) {
+            this.pendingCount--;
+        }
+        this.buffer.put(position + STATE_OFFSET, state);
+        this.buffer.force();
+    }
+
+    private void recover() {
+        int position = FILE_HEADER_BYTES;
+        int pending = 0;
+        final int limit = this.buffer.capacity();
+        while (position + RECORD_HEADER_BYTES + RECORD_TRAILER_BYTES <= limit && this.buffer.getInt(position) == RECORD_MAGIC) {
+            final int payloadLength = this.buffer.getInt(position + 5);
+            final int end = position + RECORD_HEADER_BYTES + payloadLength + RECORD_TRAILER_BYTES;
+            if (payloadLength < 0 || end > limit) {
+                break;
+            }
+            final byte[] payload = readBytes(position + RECORD_HEADER_BYTES, payloadLength);
+            final CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != this.buffer.getInt(end - RECORD_TRAILER_BYTES)) {
+                log.warn("Ignoring partially written record at offset {} of metric spool {}.", position, this.file);
+                break;
+            }
+            if (this.buffer.get(position + STATE_OFFSET) == STATE_PENDING) {
+                pending++;
+            }
+            position = end;
+        }
+        this.writePosition = position;
+        this.pendingCount = pending;
+        if (pending > 0) {
+            log.info("Metric spool {} has {} unpublished batches.", this.file, pending);
+        }
+    }
+
+    private byte[] readBytes(final int position, final int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = this.buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private void ensureCapacity(final int required) throws IOException {
+        if (required <= this.buffer.capacity()) {
+            return;
+        }
+        long size = this.buffer.capacity();
+        while (size < required) {
+            size *= 2;
+        }
+        map(size);
+    }
+
+    private void map(final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Metric spool " + this.file + " is too large");
+        }
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static byte[] encode(final List<RepoInfo> repoInfo) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * repoInfo.size() + 4);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(repoInfo.size());
+            for (final RepoInfo repo : repoInfo) {
+                out.writeUTF(repo.getRepositoryOwner());
+                out.writeUTF(repo.getRepositoryName());
+                out.writeInt(repo.getCurrentIssuesOpen());
+                out.writeInt(repo.getCurrentPullRequestsOpen());
+                out.writeInt(repo.getIssuesClosed());
+                out.writeInt(repo.getIssuesOpened());
+                out.writeInt(repo.getPullRequestsClosed());
+                out.writeInt(repo.getPullRequestsOpened());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<RepoInfo> decode(final byte[] payload) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            final int count = in.readInt();
+            final List<RepoInfo> repoInfo = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                repoInfo.add(new RepoInfo(in.readUTF(), in.readUTF(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+            }
+            return repoInfo;
+        }
+    }
+
+    /**
+     * A batch recorded in the spool.
+     */
+    @Data
+    public static class SpooledBatch {
+        private final long id;
+        private final ZonedDateTime metricCollectedTime;
+        private final List<RepoInfo> repoInfo;
+    }
+}
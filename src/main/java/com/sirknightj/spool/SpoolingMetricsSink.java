@@ -0,0 +1,121 @@
+package com.sirknightj.spool;
+
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Wraps a {@link MetricsSink} so that collected stats survive a failed publish. Every batch is recorded in a
+ * {@link MetricSpool} before it is published, and committed once the delegate reports success. Batches left pending
+ * are replayed when this sink is created (i.e. on startup) and before every publish, as long as they are recent enough
+ * for CloudWatch to accept their timestamps; older ones are dropped with a warning.
+ * <p>
+ * A batch that was partly published is replayed whole, so some of its datapoints can be published twice.
+ */
+@Log4j2
+public class SpoolingMetricsSink implements MetricsSink {
+
+    /**
+     * CloudWatch rejects datapoints with timestamps more than two weeks in the past. Keep a margin.
+     */
+    public static final Duration MAX_REPLAY_AGE = Duration.ofDays(14).minusHours(1);
+
+    private final MetricsSink delegate;
+    private final MetricSpool spool;
+    private final Clock clock;
+
+    public SpoolingMetricsSink(final MetricsSink delegate, final MetricSpool spool) {
+        this(delegate, spool, Clock.systemUTC());
+    }
+
+    SpoolingMetricsSink(final MetricsSink delegate, final MetricSpool spool, final Clock clock) {
+        this.delegate = delegate;
+        this.spool = spool;
+        this.clock = clock;
+        replayPending();
+    }
+
+    @Override
+    public synchronized PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+        replayPending();
+
+        long recordId = -1;
+        try {
+            recordId = this.spool.append(repoInfo, metricCollectedTime);
+        } catch (final IOException ex) {
+            log.error("Could not spool stats collected at {}. Publishing without a safety net.", metricCollectedTime, ex);
+        }
+
+        final PublishResult result = this.delegate.publish(repoInfo, metricCollectedTime);
+        if (recordId >= 0) {
+            if (result.isSuccess()) {
+                this.spool.commit(recordId);
+                compact();
+            } else {
+                log.warn("Publishing stats collected at {} failed. They will be replayed later.", metricCollectedTime);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Publishes every batch still pending in the spool.
+     */
+    public synchronized void replayPending() {
+        if (this.spool.pendingCount() == 0) {
+            return;
+        }
+
+        final List<MetricSpool.SpooledBatch> pending;
+        try {
+            pending = this.spool.pending();
+        } catch (final IOException ex) {
+            log.error("Could not read pending batches from the metric spool.", ex);
+            return;
+        }
+
+        final Instant oldestAccepted = this.clock.instant().minus(MAX_REPLAY_AGE);
+        for (final MetricSpool.SpooledBatch batch : pending) {
+            if (batch.getMetricCollectedTime().toInstant().isBefore(oldestAccepted)) {
+                log.warn("Dropping spooled stats collected at {}. They are too old to be published: {}",
+                        batch.getMetricCollectedTime(), batch.getRepoInfo());
+                this.spool.drop(batch.getId());
+                continue;
+            }
+
+            log.info("Replaying spooled stats collected at {}.", batch.getMetricCollectedTime());
+            final PublishResult result = this.delegate.publish(batch.getRepoInfo(), batch.getMetricCollectedTime());
+            if (result.isSuccess()) {
+                this.spool.commit(batch.getId());
+            } else {
+                log.warn("Replaying spooled stats collected at {} failed. Will try again later.", batch.getMetricCollectedTime());
+            }
+        }
+        compact();
+    }
+
+    private void compact() {
+        try {
+            this.spool.compact();
+        } catch (final IOException ex) {
+            log.warn("Could not compact the metric spool.", ex);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            this.delegate.close();
+        } finally {
+            this.spool.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.sirknightj.store;
+
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Wraps a {@link MetricsSink} so that every batch handed to it is also appended to a {@link RepoHistoryStore}. A batch
+ * is recorded whether or not it was published, so the history doesn't depend on CloudWatch being reachable.
+ */
+@Log4j2
+public class HistoryRecordingSink implements MetricsSink {
+
+    private final MetricsSink delegate;
+    private final RepoHistoryStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Sink the batches are published to. Closed when this sink is closed.
+     * @param store    Store the batches are recorded in. Closed when this sink is closed.
+     */
+    public HistoryRecordingSink(final MetricsSink delegate, final RepoHistoryStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+        try {
+            this.store.append(repoInfo, metricCollectedTime);
+        } catch (final IOException ex) {
+            log.error("Could not record the stats collected at {} in the history.", metricCollectedTime, ex);
+        }
+        return this.delegate.publish(repoInfo, metricCollectedTime);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            this.delegate.close();
+        } finally {
+            this.store.close();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sirknightj.store;
+
+import com.sirknightj.utils.RepoInfo;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The stats of a repository, as published at a point in time.
+ */
+@Data
+public class HistorySnapshot {
+    private final Instant timestamp;
+    private final RepoInfo repoInfo;
+}
@@ -0,0 +1,404 @@
+package com.sirknightj.store;
+
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only, local history of the stats of every repository, so trends can be computed without querying
+ * CloudWatch.
+ * <p>
+ * Snapshots are stored by column in a directory, each column in a memory-mapped file:
+ * <ul>
+ *     <li>{@code timestamp.col}: the epoch second of each snapshot, as a long.</li>
+ *     <li>{@code repository.col}: the id of each snapshot's repository, as an int. Ids index
+ *     {@code repositories.txt}, which lists one {@code owner/name} per line.</li>
+ *     <li>One int column per stat, e.g. {@code open_issues.col}.</li>
+ *     <li>{@code meta.bin}: the number of rows. A row is only visible once it is counted, so a crash mid-append leaves
+ *     no partial row.</li>
+ * </ul>
+ * The minimum and maximum timestamp of every block of {@value #BLOCK_ROWS} rows is kept in memory, so range scans
+ * skip the blocks outside the range, even if snapshots were appended out of order, e.g. when missed windows are caught
+ * up on.
+ * <p>
+ * Methods are synchronized. Another process, e.g. the {@code history} command, can read the files while they are
+ * being appended to.
+ */
+@Log4j2
+public class RepoHistoryStore implements AutoCloseable {
+
+    /**
+     * Rows per block of the timestamp index.
+     */
+    public static final int BLOCK_ROWS = 4096;
+
+    // Rows the column files grow by.
+    private static final int DEFAULT_GROWTH_ROWS = 64 * 1024;
+    private static final int META_MAGIC = 0x47485331; // "GHS1"
+    private static final int ROWS_OFFSET = 8;
+
+    // Order of the stat columns, as in the values passed to a SnapshotVisitor.
+    static final int OPEN_ISSUES = 0;
+    static final int OPEN_PULL_REQUESTS = 1;
+    static final int ISSUES_OPENED = 2;
+    static final int ISSUES_CLOSED = 3;
+    static final int PULL_REQUESTS_OPENED = 4;
+    static final int PULL_REQUESTS_CLOSED = 5;
+    private static final String[] STAT_COLUMNS = {
+            "open_issues", "open_pull_requests", "issues_opened", "issues_closed", "pull_requests_opened", "pull_requests_closed"
+    };
+
+    private final Path directory;
+    private final int growthRows;
+    private final Column timestamps;
+    private final Column repositoryColumn;
+    private final Column[] stats = new Column[STAT_COLUMNS.length];
+    private final MappedByteBuffer meta;
+    private final FileChannel metaChannel;
+    private final BufferedWriter dictionaryWriter;
+    // Repository of each id, as "owner/name".
+    private final List<String> repositories = new ArrayList<>();
+    // Id of each repository, keyed by "owner/name" in lower case.
+    private final Map<String, Integer> repositoryIds = new HashMap<>();
+    private int rows;
+    private int capacity;
+    private long[] blockMin = new long[16];
+    private long[] blockMax = new long[16];
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed.
+     *
+     * @param directory Directory of the column files.
+     * @throws IOException If the files can't be opened, or aren't a store.
+     */
+    public RepoHistoryStore(final Path directory) throws IOException {
+        this(directory, DEFAULT_GROWTH_ROWS);
+    }
+
+    RepoHistoryStore(final Path directory, final int growthRows) throws IOException {
+        this.directory = directory;
+        this.growthRows = growthRows;
+        Files.createDirectories(directory);
+
+        this.metaChannel = FileChannel.open(directory.resolve("meta.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final boolean created = this.metaChannel.size() == 0;
+        this.meta = this.metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+        if (created) {
+            this.meta.putInt(0, META_MAGIC);
+        } else if (this.meta.getInt(0) != META_MAGIC) {
+            throw new IOException(directory + " is not a history store");
+        }
+        this.rows = (int) this.meta.getLong(ROWS_OFFSET);
+
+        final Path dictionary = directory.resolve("repositories.txt");
+        if (Files.exists(dictionary)) {
+            for (final String repository : Files.readAllLines(dictionary, StandardCharsets.UTF_8)) {
+                if (!repository.isEmpty()) {
+                    this.repositoryIds.put(repository.toLowerCase(Locale.ROOT), this.repositories.size());
+                    this.repositories.add(repository);
+                }
+            }
+        }
+        this.dictionaryWriter = Files.newBufferedWriter(dictionary, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        this.capacity = Math.max(this.growthRows, this.rows);
+        this.timestamps = new Column(directory.resolve("timestamp.col"), Long.BYTES, this.capacity);
+        this.repositoryColumn = new Column(directory.resolve("repository.col"), Integer.BYTES, this.capacity);
+        for (int i = 0; i < STAT_COLUMNS.length; i++) {
+            this.stats[i] = new Column(directory.resolve(STAT_COLUMNS[i] + ".col"), Integer.BYTES, this.capacity);
+        }
+        for (int row = 0; row < this.rows; row++) {
+            index(row, this.timestamps.getLong(row));
+        }
+        log.info("Opened the history in {}: {} snapshots of {} repositories.", directory, this.rows, this.repositories.size());
+    }
+
+    /**
+     * Appends the stats of each repository at {@code metricCollectedTime}.
+     *
+     * @param repoInfo            Stats of each repository.
+     * @param metricCollectedTime Timestamp of the stats.
+     * @throws IOException If the files can't be grown, or the repository dictionary can't be written.
+     */
+    public synchronized void append(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) throws IOException {
+        if (this.rows + repoInfo.size() > this.capacity) {
+            grow(this.rows + repoInfo.size());
+        }
+        final long epochSecond = metricCollectedTime.toEpochSecond();
+        int row = this.rows;
+        for (final RepoInfo info : repoInfo) {
+            this.timestamps.putLong(row, epochSecond);
+            this.repositoryColumn.putInt(row, idOf(info.getRepositoryOwner(), info.getRepositoryName()));
+            this.stats[OPEN_ISSUES].putInt(row, info.getCurrentIssuesOpen());
+            this.stats[OPEN_PULL_REQUESTS].putInt(row, info.getCurrentPullRequestsOpen());
+            this.stats[ISSUES_OPENED].putInt(row, info.getIssuesOpened());
+            this.stats[ISSUES_CLOSED].putInt(row, info.getIssuesClosed());
+            this.stats[PULL_REQUESTS_OPENED].putInt(row, info.getPullRequestsOpened());
+            this.stats[PULL_REQUESTS_CLOSED].putInt(row, info.getPullRequestsClosed());
+            index(row, epochSecond);
+            row++;
+        }
+        // New repositories are named before their rows are counted.
+        this.dictionaryWriter.flush();
+        this.rows = row;
+        this.meta.putLong(ROWS_OFFSET, this.rows);
+    }
+
+    /**
+     * @return Number of snapshots stored.
+     */
+    public synchronized int size() {
+        return this.rows;
+    }
+
+    /**
+     * Visits every snapshot between {@code from} and {@code to}, in the order they were appended.
+     *
+     * @param repository Repository as {@code owner/name}, in any case, or {@code null} for every repository.
+     * @param from       Start of the range (inclusive).
+     * @param to         End of the range (exclusive).
+     * @param visitor    Called with each snapshot.
+     */
+    public synchronized void scan(final String repository, final Instant from, final Instant to, final SnapshotVisitor visitor) {
+        final int repositoryId;
+        if (repository == null) {
+            repositoryId = -1;
+        } else {
+            final Integer id = this.repositoryIds.get(repository.toLowerCase(Locale.ROOT));
+            if (id == null) {
+                return;
+            }
+            repositoryId = id;
+        }
+        final long fromSecond = from.getEpochSecond();
+        final long toSecond = to.getEpochSecond();
+        final int[] values = new int[STAT_COLUMNS.length];
+        for (int block = 0; block * BLOCK_ROWS < this.rows; block++) {
+            if (this.blockMax[block] < fromSecond || this.blockMin[block] >= toSecond) {
+                continue;
+            }
+            final int end = Math.min(this.rows, (block + 1) * BLOCK_ROWS);
+            for (int row = block * BLOCK_ROWS; row < end; row++) {
+                final long epochSecond = this.timestamps.getLong(row);
+                if (epochSecond < fromSecond || epochSecond >= toSecond) {
+                    continue;
+                }
+                final int id = this.repositoryColumn.getInt(row);
+                if (repositoryId >= 0 && id != repositoryId) {
+                    continue;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = this.stats[i].getInt(row);
+                }
+                visitor.visit(this.repositories.get(id), epochSecond, values);
+            }
+        }
+    }
+
+    /**
+     * @param repository Repository as {@code owner/name}, in any case, or {@code null} for every repository.
+     * @param from       Start of the range (inclusive).
+     * @param to         End of the range (exclusive).
+     * @return Every snapshot between {@code from} and {@code to}, in the order they were appended.
+     */
+    public List<HistorySnapshot> snapshots(final String repository, final Instant from, final Instant to) {
+        final List<HistorySnapshot> snapshots = new ArrayList<>();
+        scan(repository, from, to, (name, epochSecond, values) -> {
+            final int slash = name.indexOf('/');
+            snapshots.add(new HistorySnapshot(Instant.ofEpochSecond(epochSecond), new RepoInfo(
+                    name.substring(0, slash), name.substring(slash + 1),
+                    values[OPEN_ISSUES], values[OPEN_PULL_REQUESTS], values[ISSUES_CLOSED], values[ISSUES_OPENED],
+                    values[PULL_REQUESTS_CLOSED], values[PULL_REQUESTS_OPENED])));
+        });
+        return snapshots;
+    }
+
+    /**
+     * Rolls the snapshots between {@code from} and {@code to} up into periods. Issues and pull requests opened and
+     * closed are summed, which assumes the snapshots of a repository cover windows that don't overlap, as polled. Open
+     * counts are those of the latest snapshot of the period.
+     *
+     * @param repository Repository as {@code owner/name}, in any case, or {@code null} for every repository.
+     * @param from       Start of the range (inclusive).
+     * @param to         End of the range (exclusive).
+     * @param period     Period to roll up into.
+     * @param zone       Time zone the periods start in.
+     * @return One row per repository and period with snapshots, by repository then period.
+     */
+    public List<RollupRow> rollup(final String repository, final Instant from, final Instant to,
+                                  final RollupPeriod period, final ZoneId zone) {
+        // Sums of each repository's periods, keyed by repository, then by the period's start.
+        final Map<String, TreeMap<Long, long[]>> rollups = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        // The period of the previous snapshot, which is usually the one of the next.
+        final long[] bounds = {Long.MAX_VALUE, Long.MIN_VALUE};
+        scan(repository, from, to, (name, epochSecond, values) -> {
+            if (epochSecond < bounds[0] || epochSecond >= bounds[1]) {
+                final ZonedDateTime start = period.start(Instant.ofEpochSecond(epochSecond).atZone(zone));
+                bounds[0] = start.toEpochSecond();
+                bounds[1] = period.next(start).toEpochSecond();
+            }
+            final long[] sums = rollups.computeIfAbsent(name, key -> new TreeMap<>())
+                    .computeIfAbsent(bounds[0], key -> new long[RollupRow.FIELDS]);
+            sums[RollupRow.SNAPSHOTS]++;
+            sums[RollupRow.ISSUES_OPENED] += values[ISSUES_OPENED];
+            sums[RollupRow.ISSUES_CLOSED] += values[ISSUES_CLOSED];
+            sums[RollupRow.PULL_REQUESTS_OPENED] += values[PULL_REQUESTS_OPENED];
+            sums[RollupRow.PULL_REQUESTS_CLOSED] += values[PULL_REQUESTS_CLOSED];
+            if (epochSecond >= sums[RollupRow.LATEST]) {
+                sums[RollupRow.LATEST] = epochSecond;
+                sums[RollupRow.OPEN_ISSUES] = values[OPEN_ISSUES];
+                sums[RollupRow.OPEN_PULL_REQUESTS] = values[OPEN_PULL_REQUESTS];
+            }
+        });
+
+        final List<RollupRow> rows = new ArrayList<>();
+        for (final Map.Entry<String, TreeMap<Long, long[]>> entry : rollups.entrySet()) {
+            for (final Map.Entry<Long, long[]> periodSums : entry.getValue().entrySet()) {
+                rows.add(RollupRow.of(entry.getKey(), Instant.ofEpochSecond(periodSums.getKey()).atZone(zone), periodSums.getValue()));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the mapped columns to disk.
+     */
+    public synchronized void flush() {
+        this.timestamps.force();
+        this.repositoryColumn.force();
+        for (final Column column : this.stats) {
+            column.force();
+        }
+        this.meta.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        this.dictionaryWriter.close();
+        this.timestamps.close();
+        this.repositoryColumn.close();
+        for (final Column column : this.stats) {
+            column.close();
+        }
+        this.metaChannel.close();
+    }
+
+    private int idOf(final String owner, final String name) throws IOException {
+        final String repository = owner + "/" + name;
+        final Integer id = this.repositoryIds.get(repository.toLowerCase(Locale.ROOT));
+        if (id != null) {
+            return id;
+        }
+        this.dictionaryWriter.write(repository);
+        this.dictionaryWriter.newLine();
+        this.repositoryIds.put(repository.toLowerCase(Locale.ROOT), this.repositories.size());
+        this.repositories.add(repository);
+        return this.repositories.size() - 1;
+    }
+
+    private void index(final int row, final long epochSecond) {
+        final int block = row / BLOCK_ROWS;
+        if (block >= this.blockMin.length) {
+            this.blockMin = Arrays.copyOf(this.blockMin, this.blockMin.length * 2);
+            this.blockMax = Arrays.copyOf(this.blockMax, this.blockMax.length * 2);
+        }
+        if (row % BLOCK_ROWS == 0) {
+            this.blockMin[block] = epochSecond;
+            this.blockMax[block] = epochSecond;
+        } else {
+            this.blockMin[block] = Math.min(this.blockMin[block], epochSecond);
+            this.blockMax[block] = Math.max(this.blockMax[block], epochSecond);
+        }
+    }
+
+    private void grow(final int rows) throws IOException {
+        this.capacity = Math.max(rows, this.capacity + this.growthRows);
+        this.timestamps.map(this.capacity);
+        this.repositoryColumn.map(this.capacity);
+        for (final Column column : this.stats) {
+            column.map(this.capacity);
+        }
+        log.debug("Grew the history in {} to {} rows.", this.directory, this.capacity);
+    }
+
+    /**
+     * Visits a snapshot of {@link #scan}.
+     */
+    @FunctionalInterface
+    public interface SnapshotVisitor {
+        /**
+         * @param repository  Repository as {@code owner/name}.
+         * @param epochSecond Timestamp of the snapshot.
+         * @param values      Open issues, open pull requests, issues opened, issues closed, pull requests opened and
+         *                    pull requests closed. Reused between calls.
+         */
+        void visit(String repository, long epochSecond, int[] values);
+    }
+
+    /**
+     * A column file of fixed-width values, mapped into memory. The file grows with the mapping.
+     */
+    private static final class Column {
+        private final FileChannel channel;
+        private final int width;
+        private MappedByteBuffer buffer;
+
+        private Column(final Path file, final int width, final int capacity) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.width = width;
+            map(capacity);
+        }
+
+        private void map(final int capacity) throws IOException {
+            if (this.buffer != null) {
+                this.buffer.force();
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * this.width);
+        }
+
+        private long getLong(final int row) {
+            return this.buffer.getLong(row * this.width);
+        }
+
+        private void putLong(final int row, final long value) {
+            this.buffer.putLong(row * this.width, value);
+        }
+
+        private int getInt(final int row) {
+            return this.buffer.getInt(row * this.width);
+        }
+
+        private void putInt(final int row, final int value) {
+            this.buffer.putInt(row * this.width, value);
+        }
+
+        private void force() {
+            this.buffer.force();
+        }
+
+        private void close() throws IOException {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sirknightj.store;
+
+import java.time.DayOfWeek;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Periods the history can be rolled up into.
+ */
+public enum RollupPeriod {
+    /**
+     * Weeks starting on Monday, as in ISO-8601.
+     */
+    WEEK {
+        @Override
+        public ZonedDateTime start(final ZonedDateTime time) {
+            return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public ZonedDateTime next(final ZonedDateTime start) {
+            return start.plusWeeks(1);
+        }
+    },
+    MONTH {
+        @Override
+        public ZonedDateTime start(final ZonedDateTime time) {
+            return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        }
+
+        @Override
+        public ZonedDateTime next(final ZonedDateTime start) {
+            return start.plusMonths(1);
+        }
+    };
+
+    /**
+     * @param time A time.
+     * @return Start of the period {@code time} is in.
+     */
+    public abstract ZonedDateTime start(ZonedDateTime time);
+
+    /**
+     * @param start Start of a period.
+     * @return Start of the next period.
+     */
+    public abstract ZonedDateTime next(ZonedDateTime start);
+}
@@ -0,0 +1,44 @@
+package com.sirknightj.store;
+
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The stats of a repository over a {@link RollupPeriod}.
+ */
+@Data
+public class RollupRow {
+
+    // Fields of the sums a row is built from.
+    static final int SNAPSHOTS = 0;
+    static final int ISSUES_OPENED = 1;
+    static final int ISSUES_CLOSED = 2;
+    static final int PULL_REQUESTS_OPENED = 3;
+    static final int PULL_REQUESTS_CLOSED = 4;
+    static final int LATEST = 5;
+    static final int OPEN_ISSUES = 6;
+    static final int OPEN_PULL_REQUESTS = 7;
+    static final int FIELDS = 8;
+
+    // As "owner/name".
+    private final String repository;
+    private final ZonedDateTime periodStart;
+    private final int snapshots;
+
+    // Summed over the period.
+    private final long issuesOpened;
+    private final long issuesClosed;
+    private final long pullRequestsOpened;
+    private final long pullRequestsClosed;
+
+    // As of the latest snapshot of the period.
+    private final int openIssues;
+    private final int openPullRequests;
+
+    static RollupRow of(final String repository, final ZonedDateTime periodStart, final long[] sums) {
+        return new RollupRow(repository, periodStart, (int) sums[SNAPSHOTS],
+                sums[ISSUES_OPENED], sums[ISSUES_CLOSED], sums[PULL_REQUESTS_OPENED], sums[PULL_REQUESTS_CLOSED],
+                (int) sums[OPEN_ISSUES], (int) sums[OPEN_PULL_REQUESTS]);
+    }
+}
@@ -0,0 +1,183 @@
+package com.sirknightj.webhook;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.utils.RepoInfo;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of every repository, kept up to date by webhook events instead of polling.
+ * <p>
+ * Every counter is a {@link LongAdder}, which stripes its updates over cells, so concurrent deliveries for the same
+ * repository don't contend. Issues and pull requests opened and closed are counted since the last {@link #drain()}.
+ * The numbers currently open can't be known from events alone, so they start from a {@link #reconcile poll}, and are
+ * corrected by later ones in case a delivery was missed.
+ */
+@Log4j2
+public class LiveRepoCounters {
+
+    // Keyed by "owner/name" in lower case, as GitHub's names are case-insensitive. Sorted, so drains are stable.
+    private final ConcurrentMap<String, RepoCounters> repositories = new ConcurrentSkipListMap<>();
+
+    /**
+     * Starts counting a repository, if it isn't counted yet. Repositories webhooks are received for are counted
+     * anyway, e.g. every repository of an organization webhook.
+     *
+     * @param owner Owner of the repository.
+     * @param name  Name of the repository.
+     */
+    public void track(final String owner, final String name) {
+        counters(owner, name);
+    }
+
+    /**
+     * @return Number of repositories counted.
+     */
+    public int size() {
+        return this.repositories.size();
+    }
+
+    /**
+     * Applies an {@code issues} or {@code pull_request} event. Actions that don't change the counts, e.g. labeled,
+     * are ignored.
+     *
+     * @param event The event.
+     * @return Whether any counter changed.
+     */
+    public boolean apply(final WebhookEvent event) {
+        final RepoCounters counters = counters(event.getRepositoryOwner(), event.getRepositoryName());
+        final boolean pullRequest = WebhookEvent.PULL_REQUEST.equals(event.getType());
+        final LongAdder open = pullRequest ? counters.openPullRequests : counters.openIssues;
+        switch (event.getAction()) {
+            case "opened":
+                (pullRequest ? counters.pullRequestsOpened : counters.issuesOpened).increment();
+                open.increment();
+                return true;
+            case "closed":
+                (pullRequest ? counters.pullRequestsClosed : counters.issuesClosed).increment();
+                open.decrement();
+                return true;
+            case "reopened":
+                open.increment();
+                return true;
+            case "deleted":
+            case "transferred":
+                // The issue left this repository. Only an open one was counted as open.
+                if ("open".equals(event.getState())) {
+                    open.decrement();
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Polls the numbers of open issues and pull requests of every repository counted, and corrects the counters.
+     * <p>
+     * The poll is taken to reflect the counts as they were when it started, so events applied while it was in flight
+     * are kept on top of it. An event that the poll already saw is then counted twice until the next reconciliation.
+     *
+     * @param fetcher Fetcher to poll the {@link GithubStatsFetcher#fetchOpenCounts(List) open counts} with.
+     * @return Number of repositories reconciled.
+     * @throws IOException          If every repository failed.
+     * @throws InterruptedException If interrupted while polling.
+     */
+    public int reconcile(final GithubStatsFetcher fetcher) throws IOException, InterruptedException {
+        final List<Map.Entry<String, String>> repos = new ArrayList<>(this.repositories.size());
+        final Map<String, long[]> openBefore = new HashMap<>();
+        for (final Map.Entry<String, RepoCounters> entry : this.repositories.entrySet()) {
+            final RepoCounters counters = entry.getValue();
+            repos.add(Map.entry(counters.owner, counters.name));
+            openBefore.put(entry.getKey(), new long[]{counters.openIssues.sum(), counters.openPullRequests.sum()});
+        }
+        if (repos.isEmpty()) {
+            return 0;
+        }
+
+        final List<RepoInfo> polled = fetcher.fetchOpenCounts(repos);
+        for (final RepoInfo info : polled) {
+            final String key = key(info.getRepositoryOwner(), info.getRepositoryName());
+            final RepoCounters counters = this.repositories.get(key);
+            final long[] before = openBefore.get(key);
+            if (counters == null || before == null) {
+                continue;
+            }
+            final long issueDrift = info.getCurrentIssuesOpen() - before[0];
+            final long pullRequestDrift = info.getCurrentPullRequestsOpen() - before[1];
+            counters.openIssues.add(issueDrift);
+            counters.openPullRequests.add(pullRequestDrift);
+            if (counters.reconciled && (issueDrift != 0 || pullRequestDrift != 0)) {
+                log.warn("Corrected the open counts of {}/{} by {} issues and {} pull requests. Were deliveries missed?",
+                        counters.owner, counters.name, issueDrift, pullRequestDrift);
+            }
+            counters.reconciled = true;
+        }
+        log.info("Reconciled {} of {} repositories.", polled.size(), repos.size());
+        return polled.size();
+    }
+
+    /**
+     * Takes the counts of every repository that was reconciled at least once, and resets what was opened and closed.
+     * Repositories not reconciled yet keep counting until they are.
+     *
+     * @return The stats of each repository since the previous drain.
+     */
+    public List<RepoInfo> drain() {
+        final List<RepoInfo> stats = new ArrayList<>(this.repositories.size());
+        for (final RepoCounters counters : this.repositories.values()) {
+            if (!counters.reconciled) {
+                continue;
+            }
+            stats.add(new RepoInfo(counters.owner, counters.name,
+                    clampToInt(counters.openIssues.sum()),
+                    clampToInt(counters.openPullRequests.sum()),
+                    clampToInt(counters.issuesClosed.sumThenReset()),
+                    clampToInt(counters.issuesOpened.sumThenReset()),
+                    clampToInt(counters.pullRequestsClosed.sumThenReset()),
+                    clampToInt(counters.pullRequestsOpened.sumThenReset())));
+        }
+        return stats;
+    }
+
+    private RepoCounters counters(final String owner, final String name) {
+        return this.repositories.computeIfAbsent(key(owner, name), key -> new RepoCounters(owner, name));
+    }
+
+    private static String key(final String owner, final String name) {
+        return (owner + "/" + name).toLowerCase(Locale.ROOT);
+    }
+
+    // Counts can briefly go negative, e.g. a close applied before the poll that saw it open.
+    private static int clampToInt(final long value) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private static final class RepoCounters {
+        private final String owner;
+        private final String name;
+        private final LongAdder openIssues = new LongAdder();
+        private final LongAdder openPullRequests = new LongAdder();
+        private final LongAdder issuesOpened = new LongAdder();
+        private final LongAdder issuesClosed = new LongAdder();
+        private final LongAdder pullRequestsOpened = new LongAdder();
+        private final LongAdder pullRequestsClosed = new LongAdder();
+        // Whether the open counts started from a poll.
+        private volatile boolean reconciled;
+
+        private RepoCounters(final String owner, final String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sirknightj.webhook;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.Data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The fields of an {@code issues} or {@code pull_request} webhook delivery that the counters need.
+ */
+@Data
+public class WebhookEvent {
+
+    public static final String ISSUES = "issues";
+    public static final String PULL_REQUEST = "pull_request";
+
+    // Value of the X-GitHub-Event header: issues or pull_request.
+    private final String type;
+    // E.g. opened, closed, reopened.
+    private final String action;
+    private final String repositoryOwner;
+    private final String repositoryName;
+    // State of the issue or pull request after the action: open or closed. Can be null.
+    private final String state;
+
+    /**
+     * Reads an event with a {@link JsonReader}, skipping everything but the action, the repository's full name, and
+     * the state of the issue or pull request. Bodies and the other large fields are never materialized.
+     *
+     * @param type Value of the {@code X-GitHub-Event} header: {@value #ISSUES} or {@value #PULL_REQUEST}.
+     * @param body Raw body of the delivery.
+     * @return The event.
+     * @throws IOException If the body is malformed, or lacks the action or the repository.
+     */
+    public static WebhookEvent parse(final String type, final byte[] body) throws IOException {
+        String action = null;
+        String fullName = null;
+        String state = null;
+        try (final JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if ("action".equals(name) && reader.peek() == JsonToken.STRING) {
+                    action = reader.nextString();
+                } else if ("repository".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    fullName = readStringField(reader, "full_name");
+                } else if (type.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    state = readStringField(reader, "state");
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (final IllegalStateException ex) {
+            // JsonReader reports unexpected tokens this way.
+            throw new IOException("Malformed " + type + " event", ex);
+        }
+        final int slash = fullName != null ? fullName.indexOf('/') : -1;
+        if (action == null || slash < 0) {
+            throw new IOException("The " + type + " event has no action or repository");
+        }
+        return new WebhookEvent(type, action, fullName.substring(0, slash), fullName.substring(slash + 1), state);
+    }
+
+    /**
+     * Reads an object, returning one of its string fields and skipping the rest.
+     */
+    private static String readStringField(final JsonReader reader, final String fieldName) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(fieldName) && reader.peek() == JsonToken.STRING) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,176 @@
+package com.sirknightj.webhook;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP endpoint that receives GitHub's {@code issues} and {@code pull_request} webhook deliveries, and applies
+ * them to {@link LiveRepoCounters}.
+ * <p>
+ * Deliveries whose signature doesn't match the secret are rejected with 401. A delivery GitHub sends again, e.g. one
+ * redelivered from the webhook's settings, is recognized by its {@code X-GitHub-Delivery} id and only counted once.
+ * Other events, such as {@code ping}, are acknowledged and ignored.
+ */
+@Log4j2
+public class WebhookServer implements AutoCloseable {
+
+    public static final String EVENT_HEADER = "X-GitHub-Event";
+    public static final String DELIVERY_HEADER = "X-GitHub-Delivery";
+
+    /**
+     * Path deliveries are posted to, unless another one is given.
+     */
+    public static final String DEFAULT_PATH = "/webhook";
+
+    /**
+     * Threads handling deliveries, unless another number is given.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    // GitHub caps payloads at 25 MB.
+    private static final int MAX_BODY_BYTES = 25 * 1024 * 1024;
+    // Delivery ids remembered to recognize redeliveries.
+    private static final int MAX_REMEMBERED_DELIVERIES = 10_000;
+
+    private final WebhookSignatureVerifier verifier;
+    private final LiveRepoCounters counters;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Set<String> deliveries = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_REMEMBERED_DELIVERIES;
+                }
+            }));
+
+    /**
+     * Constructor. Listens on {@value #DEFAULT_PATH} with {@value #DEFAULT_THREADS} threads.
+     *
+     * @param address  Address to listen on. Port 0 picks a free port.
+     * @param verifier Verifies the signature of each delivery.
+     * @param counters Counters the events are applied to.
+     * @throws IOException If the address can't be bound.
+     */
+    public WebhookServer(final InetSocketAddress address, final WebhookSignatureVerifier verifier, final LiveRepoCounters counters)
+            throws IOException {
+        this(address, DEFAULT_PATH, DEFAULT_THREADS, verifier, counters);
+    }
+
+    /**
+     * Constructor. Starts listening right away.
+     *
+     * @param address  Address to listen on. Port 0 picks a free port.
+     * @param path     Path deliveries are posted to.
+     * @param threads  Threads handling deliveries.
+     * @param verifier Verifies the signature of each delivery.
+     * @param counters Counters the events are applied to.
+     * @throws IOException If the address can't be bound.
+     */
+    public WebhookServer(final InetSocketAddress address, final String path, final int threads,
+                         final WebhookSignatureVerifier verifier, final LiveRepoCounters counters) throws IOException {
+        this.verifier = verifier;
+        this.counters = counters;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "webhook-" + threadNumber.incrementAndGet()));
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext(path, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        log.info("Receiving webhooks on {}{}.", this.server.getAddress(), path);
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            if (!this.verifier.verify(body, exchange.getRequestHeaders().getFirst(WebhookSignatureVerifier.SIGNATURE_HEADER))) {
+                log.warn("Rejected a delivery from {} with a bad signature.", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(handleDelivery(exchange.getRequestHeaders().getFirst(EVENT_HEADER),
+                    exchange.getRequestHeaders().getFirst(DELIVERY_HEADER), body), -1);
+        } catch (final RuntimeException ex) {
+            log.error("Encountered error handling a delivery.", ex);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The status code to respond with.
+     */
+    private int handleDelivery(final String type, final String deliveryId, final byte[] body) {
+        if (!WebhookEvent.ISSUES.equals(type) && !WebhookEvent.PULL_REQUEST.equals(type)) {
+            log.debug("Ignoring {} delivery {}.", type, deliveryId);
+            return 204;
+        }
+        final WebhookEvent event;
+        try {
+            event = WebhookEvent.parse(type, body);
+        } catch (final IOException ex) {
+            log.warn("Rejected {} delivery {}: {}", type, deliveryId, ex.getMessage());
+            return 400;
+        }
+        if (deliveryId != null && !this.deliveries.add(deliveryId)) {
+            log.info("Ignoring delivery {}, which was already counted.", deliveryId);
+            return 204;
+        }
+        if (this.counters.apply(event)) {
+            log.debug("Counted {} {} of {}/{}.", type, event.getAction(), event.getRepositoryOwner(), event.getRepositoryName());
+        }
+        return 204;
+    }
+
+    /**
+     * @return The body, or {@code null} if it is larger than {@link #MAX_BODY_BYTES}.
+     */
+    private static byte[] readBody(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > MAX_BODY_BYTES) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,75 @@
+package com.sirknightj.webhook;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Checks the {@code X-Hub-Signature-256} header GitHub sends with every webhook delivery: {@code sha256=} followed by
+ * the hex HMAC-SHA256 of the raw body, keyed with the webhook's secret.
+ * <p>
+ * https://docs.github.com/en/webhooks/using-webhooks/validating-webhook-deliveries
+ */
+public class WebhookSignatureVerifier {
+
+    public static final String SIGNATURE_HEADER = "X-Hub-Signature-256";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "sha256=";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+
+    /**
+     * Constructor.
+     *
+     * @param secret Secret of the webhook, as entered in its settings on GitHub.
+     */
+    public WebhookSignatureVerifier(final String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A webhook secret is required to verify deliveries");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * @param body      Raw body of the delivery.
+     * @param signature Value of the {@value #SIGNATURE_HEADER} header. Can be {@code null}.
+     * @return Whether the signature matches the body. Compared in constant time.
+     */
+    public boolean verify(final byte[] body, final String signature) {
+        if (signature == null || !signature.startsWith(PREFIX)) {
+            return false;
+        }
+        final byte[] expected = sign(body).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Signs a body the way GitHub does, e.g. to replay a recorded delivery.
+     *
+     * @param body Raw body of the delivery.
+     * @return The value of the {@value #SIGNATURE_HEADER} header.
+     */
+    public String sign(final byte[] body) {
+        final byte[] digest;
+        try {
+            // Mac instances aren't thread-safe, and are cheap next to reading a delivery.
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            digest = mac.doFinal(body);
+        } catch (final GeneralSecurityException ex) {
+            // Every JRE provides HmacSHA256.
+            throw new IllegalStateException(ex);
+        }
+        final char[] hex = new char[PREFIX.length() + digest.length * 2];
+        PREFIX.getChars(0, PREFIX.length(), hex, 0);
+        for (int i = 0; i < digest.length; i++) {
+            hex[PREFIX.length() + i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[PREFIX.length() + i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,623 @@
+package com.sirknightj;
+
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.utils.RepoInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the GitHub REST endpoints the collector uses: {@code /search/issues}, {@code /repos/{o}/{r}/pulls},
+ * {@code /repos/{o}/{r}/issues}, {@code /orgs/{org}/repos} and {@code /rate_limit}.
+ * <p>
+ * Every repository exists. Its issues and pull requests are generated from its name, so thousands of repositories cost
+ * nothing up front, and {@link #expectedRepoInfo} tells what the collector should have fetched. Each token has its own
+ * core and search budget, and requests can be slowed down, or rejected with a secondary rate limit or a server error.
+ */
+public class FakeGithubServer implements AutoCloseable {
+
+    /**
+     * How the server behaves. Unlimited and instant by default.
+     */
+    public static class Settings {
+        private Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        private int maxItemsPerRepository = 40;
+        private Duration history = Duration.ofDays(30);
+        private Duration latency = Duration.ZERO;
+        private Duration latencyJitter = Duration.ZERO;
+        private int coreLimit = 1_000_000;
+        private int searchLimit = 1_000_000;
+        private Duration rateLimitWindow = Duration.ofHours(1);
+        private double secondaryRateLimitRate;
+        private double serverErrorRate;
+        private long seed = 42;
+        private final Map<String, Integer> organizations = new HashMap<>();
+
+        /**
+         * @param now Current time of the simulated repositories. Issues are created and closed before it.
+         */
+        public Settings withNow(final Instant now) {
+            this.now = now;
+            return this;
+        }
+
+        /**
+         * @param maxItemsPerRepository Most issues and pull requests of a repository. Each has between 0 and this many.
+         */
+        public Settings withMaxItemsPerRepository(final int maxItemsPerRepository) {
+            this.maxItemsPerRepository = maxItemsPerRepository;
+            return this;
+        }
+
+        /**
+         * @param latency Time every request takes.
+         * @param jitter  Up to this much is added to each request at random.
+         */
+        public Settings withLatency(final Duration latency, final Duration jitter) {
+            this.latency = latency;
+            this.latencyJitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param coreLimit   Core requests each token may send per window.
+         * @param searchLimit Search requests each token may send per window.
+         * @param window      Length of a window. GitHub's are an hour for core, and a minute for search.
+         */
+        public Settings withRateLimits(final int coreLimit, final int searchLimit, final Duration window) {
+            this.coreLimit = coreLimit;
+            this.searchLimit = searchLimit;
+            this.rateLimitWindow = window;
+            return this;
+        }
+
+        /**
+         * @param secondaryRateLimitRate Share of requests rejected with a secondary rate limit: 403 and Retry-After.
+         * @param serverErrorRate        Share of requests failed with a 502.
+         */
+        public Settings withFaults(final double secondaryRateLimitRate, final double serverErrorRate) {
+            this.secondaryRateLimitRate = secondaryRateLimitRate;
+            this.serverErrorRate = serverErrorRate;
+            return this;
+        }
+
+        /**
+         * @param organization Login of an organization to list.
+         * @param repositories Number of its repositories, named {@code repo-0} and up.
+         */
+        public Settings withOrganization(final String organization, final int repositories) {
+            this.organizations.put(organization.toLowerCase(Locale.ROOT), repositories);
+            return this;
+        }
+
+        /**
+         * @param seed Seed of the generated repositories and of the injected faults.
+         */
+        public Settings withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Instant getNow() {
+            return this.now;
+        }
+    }
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Random faults;
+    private final Map<String, List<Item>> repositories = new ConcurrentHashMap<>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Map<String, AtomicInteger> requestsByEndpoint = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> responsesByStatus = new ConcurrentHashMap<>();
+    private final AtomicInteger rateLimitRejections = new AtomicInteger();
+    private final AtomicInteger injectedFaults = new AtomicInteger();
+    private final Set<String> faultedRepositories = ConcurrentHashMap.newKeySet();
+
+    public FakeGithubServer(final Settings settings) throws IOException {
+        this.settings = settings;
+        this.faults = new Random(settings.seed);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Requests are slept on, so they mustn't queue up behind each other.
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "fake-github");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return What {@code GithubAPI} should fetch for the repository, over {@code start} to {@code end} (inclusive).
+     */
+    public RepoInfo expectedRepoInfo(final String owner, final String name, final ZonedDateTime start, final ZonedDateTime end) {
+        final long from = start.toEpochSecond();
+        final long to = end.toEpochSecond();
+        int openIssues = 0;
+        int openPullRequests = 0;
+        int issuesOpened = 0;
+        int issuesClosed = 0;
+        int pullRequestsOpened = 0;
+        int pullRequestsClosed = 0;
+        for (final Item item : items(owner, name)) {
+            final boolean open = item.closedAt < 0;
+            final boolean opened = item.createdAt >= from && item.createdAt <= to;
+            final boolean closed = !open && item.closedAt >= from && item.closedAt <= to;
+            if (item.pullRequest) {
+                openPullRequests += open ? 1 : 0;
+                pullRequestsOpened += opened ? 1 : 0;
+                pullRequestsClosed += closed ? 1 : 0;
+            } else {
+                openIssues += open ? 1 : 0;
+                issuesOpened += opened ? 1 : 0;
+                issuesClosed += closed ? 1 : 0;
+            }
+        }
+        return new RepoInfo(owner, name, openIssues, openPullRequests, issuesClosed, issuesOpened, pullRequestsClosed, pullRequestsOpened);
+    }
+
+    public int requests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return Requests by endpoint, e.g. {@code search/issues} or {@code repos/pulls}.
+     */
+    public Map<String, Integer> requestsByEndpoint() {
+        return snapshot(this.requestsByEndpoint);
+    }
+
+    public Map<Integer, Integer> responsesByStatus() {
+        return snapshot(this.responsesByStatus);
+    }
+
+    /**
+     * @return Requests rejected because their token's budget was used up.
+     */
+    public int rateLimitRejections() {
+        return this.rateLimitRejections.get();
+    }
+
+    /**
+     * @return Requests failed on purpose: secondary rate limits and server errors.
+     */
+    public int injectedFaults() {
+        return this.injectedFaults.get();
+    }
+
+    /**
+     * @return Repositories, as lower-case {@code owner/name}, that any request was rejected or failed for.
+     */
+    public Set<String> faultedRepositories() {
+        return Set.copyOf(this.faultedRepositories);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            this.requests.incrementAndGet();
+            try (final InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            final String path = exchange.getRequestURI().getPath();
+            final String[] segments = path.substring(1).split("/");
+            final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            final String endpoint = segments.length >= 4 && "repos".equals(segments[0]) ? "repos/" + segments[3]
+                    : segments.length >= 3 && "orgs".equals(segments[0]) ? "orgs/" + segments[2]
+                    : path.substring(1);
+            this.requestsByEndpoint.computeIfAbsent(endpoint, unused -> new AtomicInteger()).incrementAndGet();
+            sleepLatency();
+
+            if ("rate_limit".equals(endpoint)) {
+                respondRateLimit(exchange);
+                return;
+            }
+            final boolean search = "search/issues".equals(endpoint);
+            final String repository = search ? searchRepository(query.getOrDefault("q", ""))
+                    : "repos".equals(segments[0]) && segments.length >= 3 ? segments[1] + "/" + segments[2] : null;
+
+            // Rejected requests count against the budget, as on GitHub.
+            final Window window = this.windows.computeIfAbsent(token(exchange) + (search ? "/search" : "/core"),
+                    unused -> new Window(search ? this.settings.searchLimit : this.settings.coreLimit));
+            final int remaining = window.take(Instant.now());
+            addRateLimitHeaders(exchange, window, Math.max(remaining, 0), search ? "search" : "core");
+            if (remaining < 0) {
+                this.rateLimitRejections.incrementAndGet();
+                fault(repository);
+                respond(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                return;
+            }
+            final double draw;
+            synchronized (this.faults) {
+                draw = this.faults.nextDouble();
+            }
+            if (draw < this.settings.serverErrorRate) {
+                this.injectedFaults.incrementAndGet();
+                fault(repository);
+                respond(exchange, 502, "{\"message\":\"Server Error\"}");
+                return;
+            }
+            if (draw < this.settings.serverErrorRate + this.settings.secondaryRateLimitRate) {
+                this.injectedFaults.incrementAndGet();
+                fault(repository);
+                exchange.getResponseHeaders().add(RateLimitGovernor.RETRY_AFTER_HEADER, "1");
+                respond(exchange, 403, "{\"message\":\"You have exceeded a secondary rate limit.\"}");
+                return;
+            }
+
+            if (search) {
+                respond(exchange, 200, "{\"total_count\":" + searchCount(query.getOrDefault("q", ""))
+                        + ",\"incomplete_results\":false,\"items\":[]}");
+            } else if ("repos/pulls".equals(endpoint)) {
+                respondOpenPullRequests(exchange, path, segments[1], segments[2]);
+            } else if ("repos/issues".equals(endpoint)) {
+                respondIssues(exchange, path, query, segments[1], segments[2]);
+            } else if ("orgs/repos".equals(endpoint)) {
+                respondOrganizationRepositories(exchange, path, query, segments[1]);
+            } else {
+                respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respondRateLimit(final HttpExchange exchange) throws IOException {
+        final StringBuilder body = new StringBuilder("{\"resources\":{");
+        final String token = token(exchange);
+        final String[] resources = {"core", "search"};
+        for (int i = 0; i < resources.length; i++) {
+            final int limit = "search".equals(resources[i]) ? this.settings.searchLimit : this.settings.coreLimit;
+            final Window window = this.windows.computeIfAbsent(token + "/" + resources[i], unused -> new Window(limit));
+            final Window.State state = window.peek(Instant.now());
+            body.append(i > 0 ? "," : "").append('"').append(resources[i]).append("\":{\"limit\":").append(window.limit)
+                    .append(",\"remaining\":").append(state.remaining).append(",\"reset\":").append(state.reset)
+                    .append(",\"used\":").append(window.limit - state.remaining).append('}');
+        }
+        respond(exchange, 200, body.append("}}").toString());
+    }
+
+    private void respondOpenPullRequests(final HttpExchange exchange, final String path, final String owner, final String name) throws IOException {
+        int open = 0;
+        for (final Item item : items(owner, name)) {
+            open += item.pullRequest && item.closedAt < 0 ? 1 : 0;
+        }
+        // Listed one per page, so the last page number is the count.
+        if (open > 1) {
+            exchange.getResponseHeaders().add("Link", "<" + baseUrl() + path + "?state=open&per_page=1&page=2>; rel=\"next\", <"
+                    + baseUrl() + path + "?state=open&per_page=1&page=" + open + ">; rel=\"last\"");
+        }
+        respond(exchange, 200, open == 0 ? "[]" : "[{\"number\":1}]");
+    }
+
+    private void respondIssues(final HttpExchange exchange, final String path, final Map<String, String> query,
+                               final String owner, final String name) throws IOException {
+        final long since = query.containsKey("since") ? Instant.parse(query.get("since")).getEpochSecond() : Long.MIN_VALUE;
+        final List<Item> updated = new ArrayList<>();
+        for (final Item item : items(owner, name)) {
+            if (item.updatedAt >= since) {
+                updated.add(item);
+            }
+        }
+        updated.sort((a, b) -> Long.compare(a.updatedAt, b.updatedAt));
+
+        final StringBuilder body = new StringBuilder("[");
+        final List<Item> page = page(exchange, path, query, updated);
+        for (final Item item : page) {
+            body.append(body.length() > 1 ? "," : "").append("{\"number\":").append(item.number)
+                    .append(",\"state\":\"").append(item.closedAt < 0 ? "open" : "closed")
+                    .append("\",\"created_at\":\"").append(Instant.ofEpochSecond(item.createdAt))
+                    .append("\",\"updated_at\":\"").append(Instant.ofEpochSecond(item.updatedAt))
+                    .append("\",\"closed_at\":").append(item.closedAt < 0 ? "null" : "\"" + Instant.ofEpochSecond(item.closedAt) + "\"");
+            if (item.pullRequest) {
+                body.append(",\"pull_request\":{\"url\":\"").append(baseUrl()).append("/repos/").append(owner).append('/')
+                        .append(name).append("/pulls/").append(item.number).append("\"}");
+            }
+            body.append('}');
+        }
+        respond(exchange, 200, body.append(']').toString());
+    }
+
+    private void respondOrganizationRepositories(final HttpExchange exchange, final String path, final Map<String, String> query,
+                                                 final String organization) throws IOException {
+        final Integer count = this.settings.organizations.get(organization.toLowerCase(Locale.ROOT));
+        if (count == null) {
+            respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            return;
+        }
+        final List<Integer> all = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            all.add(i);
+        }
+        final StringBuilder body = new StringBuilder("[");
+        for (final int i : page(exchange, path, query, all)) {
+            final String name = "repo-" + i;
+            int open = 0;
+            long lastActivity = this.settings.now.minus(this.settings.history).getEpochSecond();
+            for (final Item item : items(organization, name)) {
+                open += item.closedAt < 0 ? 1 : 0;
+                lastActivity = Math.max(lastActivity, item.updatedAt);
+            }
+            body.append(body.length() > 1 ? "," : "").append("{\"name\":\"").append(name)
+                    .append("\",\"owner\":{\"login\":\"").append(organization)
+                    .append("\"},\"open_issues_count\":").append(open)
+                    .append(",\"pushed_at\":\"").append(Instant.ofEpochSecond(lastActivity))
+                    .append("\",\"updated_at\":\"").append(Instant.ofEpochSecond(lastActivity)).append("\"}");
+        }
+        respond(exchange, 200, body.append(']').toString());
+    }
+
+    /**
+     * Cuts the page requested by {@code page} and {@code per_page} out of {@code all}, and links to the next and
+     * last pages.
+     */
+    private <T> List<T> page(final HttpExchange exchange, final String path, final Map<String, String> query, final List<T> all) {
+        final int perPage = Math.max(1, Math.min(100, Integer.parseInt(query.getOrDefault("per_page", "30"))));
+        final int page = Math.max(1, Integer.parseInt(query.getOrDefault("page", "1")));
+        final int lastPage = Math.max(1, (all.size() + perPage - 1) / perPage);
+        if (page < lastPage) {
+            final Map<String, String> next = new LinkedHashMap<>(query);
+            next.put("page", String.valueOf(page + 1));
+            final Map<String, String> last = new LinkedHashMap<>(query);
+            last.put("page", String.valueOf(lastPage));
+            exchange.getResponseHeaders().add("Link", "<" + baseUrl() + path + "?" + formatQuery(next) + ">; rel=\"next\", <"
+                    + baseUrl() + path + "?" + formatQuery(last) + ">; rel=\"last\"");
+        }
+        final int from = Math.min(all.size(), (page - 1) * perPage);
+        return all.subList(from, Math.min(all.size(), from + perPage));
+    }
+
+    private int searchCount(final String q) {
+        String repository = null;
+        Boolean pullRequest = null;
+        boolean openOnly = false;
+        String qualifier = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (final String term : q.split(" ")) {
+            if (term.startsWith("repo:")) {
+                repository = term.substring("repo:".length());
+            } else if ("is:issue".equals(term)) {
+                pullRequest = false;
+            } else if ("is:pr".equals(term)) {
+                pullRequest = true;
+            } else if ("state:open".equals(term)) {
+                openOnly = true;
+            } else if (term.startsWith("created:") || term.startsWith("closed:")) {
+                qualifier = term.substring(0, term.indexOf(':'));
+                final String[] range = term.substring(qualifier.length() + 1).split("\\.\\.");
+                from = OffsetDateTime.parse(range[0]).toEpochSecond();
+                to = OffsetDateTime.parse(range[1]).toEpochSecond();
+            }
+        }
+        if (repository == null || !repository.contains("/")) {
+            return 0;
+        }
+        final String[] ownerAndName = repository.split("/", 2);
+        int count = 0;
+        for (final Item item : items(ownerAndName[0], ownerAndName[1])) {
+            if (pullRequest != null && item.pullRequest != pullRequest) {
+                continue;
+            }
+            if (openOnly && item.closedAt >= 0) {
+                continue;
+            }
+            final long time = "closed".equals(qualifier) ? item.closedAt : item.createdAt;
+            if (qualifier != null && (time < 0 || time < from || time > to)) {
+                continue;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String searchRepository(final String q) {
+        for (final String term : q.split(" ")) {
+            if (term.startsWith("repo:")) {
+                return term.substring("repo:".length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates the issues and pull requests of a repository, the same way every time.
+     */
+    private List<Item> items(final String owner, final String name) {
+        final String key = (owner + "/" + name).toLowerCase(Locale.ROOT);
+        return this.repositories.computeIfAbsent(key, unused -> {
+            final Random random = new Random(this.settings.seed * 31 + key.hashCode());
+            final long now = this.settings.now.getEpochSecond();
+            final int historySeconds = (int) this.settings.history.getSeconds();
+            final int count = random.nextInt(this.settings.maxItemsPerRepository + 1);
+            final List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final long createdAt = now - random.nextInt(historySeconds);
+                final boolean pullRequest = random.nextInt(10) < 4;
+                final long closedAt = random.nextInt(10) < 6 ? createdAt + (long) (random.nextDouble() * (now - createdAt)) : -1;
+                items.add(new Item(i + 1, pullRequest, createdAt, closedAt));
+            }
+            return Collections.unmodifiableList(items);
+        });
+    }
+
+    private void fault(final String repository) {
+        if (repository != null) {
+            this.faultedRepositories.add(repository.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private void sleepLatency() {
+        long nanos = this.settings.latency.toNanos();
+        if (!this.settings.latencyJitter.isZero()) {
+            nanos += ThreadLocalRandom.current().nextLong(this.settings.latencyJitter.toNanos() + 1);
+        }
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void addRateLimitHeaders(final HttpExchange exchange, final Window window, final int remaining, final String resource) {
+        exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, String.valueOf(window.limit));
+        exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, String.valueOf(remaining));
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(window.peek(Instant.now()).reset));
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESOURCE_HEADER, resource);
+    }
+
+    private static String token(final HttpExchange exchange) {
+        final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null ? authorization : "anonymous";
+    }
+
+    private static Map<String, String> parseQuery(final String rawQuery) {
+        final Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (final String parameter : rawQuery.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                query.put(parameter.substring(0, equals), URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String formatQuery(final Map<String, String> query) {
+        final StringBuilder formatted = new StringBuilder();
+        for (final Map.Entry<String, String> parameter : query.entrySet()) {
+            formatted.append(formatted.length() > 0 ? "&" : "").append(parameter.getKey()).append('=')
+                    .append(URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8));
+        }
+        return formatted.toString();
+    }
+
+    private static <K> Map<K, Integer> snapshot(final Map<K, AtomicInteger> counters) {
+        final Map<K, Integer> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.get()));
+        return snapshot;
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        this.responsesByStatus.computeIfAbsent(status, unused -> new AtomicInteger()).incrementAndGet();
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static final class Item {
+        private final int number;
+        private final boolean pullRequest;
+        private final long createdAt;
+        // -1 while open.
+        private final long closedAt;
+        private final long updatedAt;
+
+        private Item(final int number, final boolean pullRequest, final long createdAt, final long closedAt) {
+            this.number = number;
+            this.pullRequest = pullRequest;
+            this.createdAt = createdAt;
+            this.closedAt = closedAt;
+            this.updatedAt = Math.max(createdAt, closedAt);
+        }
+    }
+
+    /**
+     * Budget of one token for one resource, over fixed windows of wall-clock time.
+     */
+    private final class Window {
+        private final int limit;
+        private long start;
+        private int used;
+
+        private Window(final int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * @return The requests left after this one, or -1 if this one is over the limit.
+         */
+        private synchronized int take(final Instant now) {
+            roll(now);
+            if (this.used >= this.limit) {
+                return -1;
+            }
+            this.used++;
+            return this.limit - this.used;
+        }
+
+        private synchronized State peek(final Instant now) {
+            roll(now);
+            return new State(this.limit - this.used, (this.start + FakeGithubServer.this.settings.rateLimitWindow.toMillis() + 999) / 1000);
+        }
+
+        private void roll(final Instant now) {
+            final long windowMillis = FakeGithubServer.this.settings.rateLimitWindow.toMillis();
+            final long nowMillis = now.toEpochMilli();
+            if (nowMillis >= this.start + windowMillis) {
+                // Windows line up with the epoch, so their resets fall on whole seconds.
+                this.start = nowMillis - nowMillis % windowMillis;
+                this.used = 0;
+            }
+        }
+
+        private final class State {
+            private final int remaining;
+            private final long reset;
+
+            private State(final int remaining, final long reset) {
+                this.remaining = remaining;
+                this.reset = reset;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.sirknightj;
+
+import com.sirknightj.http.ResponseCache;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.utils.RepoInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GithubAPITest {
+
+    private final ZonedDateTime start = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(ZoneId.of("UTC"));
+    private final ZonedDateTime end = this.start.plusDays(1).minusSeconds(1);
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile int lastOpenPullRequestPage = 57;
+    private HttpServer server;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/search/issues", exchange -> {
+            final String query = exchange.getRequestURI().getRawQuery();
+            final int count = query.contains("state%3Aopen") ? 5
+                    : query.contains("is%3Aissue+created") ? 1
+                    : query.contains("is%3Aissue+closed") ? 2
+                    : query.contains("is%3Apr+created") ? 3
+                    : 4;
+            respond(exchange, "{\"total_count\":" + count + ",\"incomplete_results\":false,\"items\":[{\"number\":1}]}", null);
+        });
+        this.server.createContext("/repos/owner/repo/pulls", exchange -> respond(exchange, "[{\"number\":99,\"title\":\"A pull request\"}]",
+                "<http://127.0.0.1/repositories/1/pulls?state=open&per_page=1&page=2>; rel=\"next\", "
+                        + "<http://127.0.0.1/repositories/1/pulls?state=open&per_page=1&page=" + this.lastOpenPullRequestPage + ">; rel=\"last\""));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void when_fetchingRepo_then_countsParsedFromGzippedResponses() throws Exception {
+        final GithubAPI githubAPI = new GithubAPI("test-token", 2, null, baseUrl());
+
+        final List<RepoInfo> repoInfo = githubAPI.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo"), Map.entry("owner", "missing")), this.start, this.end);
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 5, 57, 2, 1, 4, 3)), repoInfo);
+    }
+
+    @Test
+    public void when_fetchingOpenCounts_then_noIntervalSearchesSent() throws Exception {
+        final GithubAPI githubAPI = new GithubAPI("test-token", 2, null, baseUrl());
+
+        final List<RepoInfo> repoInfo = githubAPI.fetchOpenCounts(List.of(Map.entry("owner", "repo")));
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 5, 57, 0, 0, 0, 0)), repoInfo);
+        assertEquals(2, this.requests.get());
+    }
+
+    @Test
+    public void when_responseUnchanged_then_cachedValueUsed() throws Exception {
+        final GithubAPI githubAPI = new GithubAPI("test-token", 1, new ResponseCache(100), baseUrl());
+
+        final RepoInfo first = githubAPI.fetchRepoInfo("owner", "repo", this.start, this.end);
+        final RepoInfo second = githubAPI.fetchRepoInfo("owner", "repo", this.start, this.end);
+
+        assertEquals(first, second);
+        assertEquals(12, this.requests.get());
+        // The open pull requests are counted from the Link header, which the ETag doesn't cover.
+        assertEquals(5, this.notModified.get());
+    }
+
+    @Test
+    public void when_linkHeaderChangesWithSameBody_then_newCountUsed() throws Exception {
+        final GithubAPI githubAPI = new GithubAPI("test-token", 1, new ResponseCache(100), baseUrl());
+
+        assertEquals(57, githubAPI.fetchOpenPullRequestsCount("owner", "repo"));
+        // An older pull request is closed. The newest, the only one in the body, and so the ETag, stay the same.
+        this.lastOpenPullRequestPage = 56;
+
+        assertEquals(56, githubAPI.fetchOpenPullRequestsCount("owner", "repo"));
+        assertEquals(0, this.notModified.get());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    private void respond(final HttpExchange exchange, final String body, final String link) throws IOException {
+        this.requests.incrementAndGet();
+        // Plenty of quota left, so the governor doesn't hold the test back.
+        exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, "5000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, "4000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(System.currentTimeMillis() / 1000 + 60));
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESOURCE_HEADER, exchange.getRequestURI().getPath().startsWith("/search") ? "search" : "core");
+        final String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (link != null) {
+            exchange.getResponseHeaders().add("Link", link);
+        }
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            this.notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, compressed.size());
+        try (final OutputStream out = exchange.getResponseBody()) {
+            compressed.writeTo(out);
+        }
+    }
+}
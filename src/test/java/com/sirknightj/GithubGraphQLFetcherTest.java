@@ -0,0 +1,148 @@
+package com.sirknightj;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.utils.RepoInfo;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GithubGraphQLFetcherTest {
+
+    private static final Pattern REPOSITORY_ALIAS = Pattern.compile("(r\\d+): repository\\(owner: \"([^\"]+)\", name: \"([^\"]+)\"\\)");
+
+    private final ZonedDateTime start = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(ZoneId.of("UTC"));
+    private final ZonedDateTime end = this.start.plusDays(1).minusSeconds(1);
+
+    private final List<String> receivedQueries = new ArrayList<>();
+    private HttpServer server;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/graphql", exchange -> {
+            final JsonObject request = new Gson().fromJson(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), JsonObject.class);
+            final String query = request.get("query").getAsString();
+            synchronized (this.receivedQueries) {
+                this.receivedQueries.add(query);
+            }
+
+            // Every count is derived from the repository name, e.g. "repo7" has 7 open issues and 70 opened issues.
+            final JsonObject data = new JsonObject();
+            final Matcher matcher = REPOSITORY_ALIAS.matcher(query);
+            while (matcher.find()) {
+                final String alias = matcher.group(1);
+                final String name = matcher.group(3);
+                if (name.equals("missing")) {
+                    data.add(alias, null);
+                    continue;
+                }
+                final int n = Integer.parseInt(name.substring("repo".length()));
+                final JsonObject repository = new JsonObject();
+                repository.add("issues", totalCount(n));
+                repository.add("pullRequests", totalCount(n + 1));
+                data.add(alias, repository);
+                data.add(alias + "_io", issueCount(n * 10));
+                data.add(alias + "_ic", issueCount(n * 10 + 1));
+                data.add(alias + "_po", issueCount(n * 10 + 2));
+                data.add(alias + "_pc", issueCount(n * 10 + 3));
+            }
+            final JsonObject response = new JsonObject();
+            response.add("data", data);
+
+            final byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, "5000");
+            exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, "4999");
+            exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+            exchange.getResponseHeaders().add(RateLimitGovernor.RESOURCE_HEADER, "graphql");
+            exchange.sendResponseHeaders(200, body.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void when_fetchingManyRepos_then_oneRequestPerBatchAndSameRepoInfo() throws Exception {
+        final List<Map.Entry<String, String>> repos = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            repos.add(Map.entry("owner", "repo" + i));
+        }
+        final GithubGraphQLFetcher fetcher = newFetcher(20);
+
+        final List<RepoInfo> repoInfo = fetcher.fetchGithubIssuesFrom(repos, this.start, this.end);
+
+        assertEquals(3, this.receivedQueries.size());
+        assertEquals(45, repoInfo.size());
+        for (int i = 0; i < 45; i++) {
+            assertEquals(new RepoInfo("owner", "repo" + i, i, i + 1, i * 10 + 1, i * 10, i * 10 + 3, i * 10 + 2), repoInfo.get(i));
+        }
+        assertTrue(this.receivedQueries.get(0).contains("\"repo:owner/repo0 is:issue created:2023-07-17T09:30:00Z..2023-07-18T09:29:59Z\""));
+    }
+
+    @Test
+    public void when_repoMissing_then_skippedAndOthersReturned() throws Exception {
+        final List<Map.Entry<String, String>> repos = List.of(
+                Map.entry("owner", "repo1"),
+                Map.entry("owner", "missing"),
+                Map.entry("owner", "repo3"));
+
+        final List<RepoInfo> repoInfo = newFetcher(20).fetchGithubIssuesFrom(repos, this.start, this.end);
+
+        assertEquals(2, repoInfo.size());
+        assertEquals("repo1", repoInfo.get(0).getRepositoryName());
+        assertEquals("repo3", repoInfo.get(1).getRepositoryName());
+    }
+
+    @Test
+    public void when_apiBaseUrlConfigured_then_graphqlEndpointOnSameHost() {
+        assertEquals(URI.create(GithubGraphQLFetcher.DEFAULT_ENDPOINT), GithubGraphQLFetcher.endpointFor(GithubAPI.DEFAULT_API_BASE_URL));
+        assertEquals(URI.create("https://github.example.com/api/graphql"),
+                GithubGraphQLFetcher.endpointFor("https://github.example.com/api/v3"));
+        assertEquals(URI.create("http://127.0.0.1:8080/graphql"), GithubGraphQLFetcher.endpointFor("http://127.0.0.1:8080"));
+    }
+
+    private GithubGraphQLFetcher newFetcher(final int batchSize) {
+        final URI endpoint = URI.create("http://127.0.0.1:" + this.server.getAddress().getPort() + "/graphql");
+        return new GithubGraphQLFetcher(() -> "test-token", endpoint, batchSize, new RateLimitGovernor(true), new GithubHttpClient());
+    }
+
+    private static JsonObject totalCount(final int count) {
+        final JsonObject object = new JsonObject();
+        object.addProperty("totalCount", count);
+        return object;
+    }
+
+    private static JsonObject issueCount(final int count) {
+        final JsonObject object = new JsonObject();
+        object.addProperty("issueCount", count);
+        return object;
+    }
+}
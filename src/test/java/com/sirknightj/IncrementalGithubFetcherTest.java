@@ -0,0 +1,197 @@
+package com.sirknightj;
+
+import com.sirknightj.http.GithubHttpClient;
+import com.sirknightj.index.IssueStateIndex;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.utils.RepoInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalGithubFetcherTest {
+
+    private final ZonedDateTime start = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(ZoneId.of("UTC"));
+    private final ZonedDateTime end = this.start.plusDays(1).minusSeconds(1);
+
+    // Issues per page of the stub, much smaller than the fetcher asks for, so a few issues span several pages.
+    private static final int PAGE_SIZE = 2;
+
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Issue> issues = new ConcurrentHashMap<>();
+    private volatile Runnable afterListing = () -> { };
+    private HttpServer server;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/repos/owner/repo/issues", exchange -> {
+            final String query = exchange.getRequestURI().getRawQuery();
+            this.queries.add(query);
+            final Matcher since = Pattern.compile("since=([^&]+)").matcher(query);
+            final Matcher page = Pattern.compile("(?:^|&)page=(\\d+)").matcher(query);
+            final Instant updatedSince = since.find() ? Instant.parse(URLDecoder.decode(since.group(1), StandardCharsets.UTF_8)) : Instant.EPOCH;
+            final int pageNumber = page.find() ? Integer.parseInt(page.group(1)) : 1;
+
+            // Like GitHub: oldest update first, offset pagination, and a next link while there are more.
+            final List<Issue> listed = new ArrayList<>();
+            for (final Issue issue : this.issues.values()) {
+                if (!issue.updatedAt.isBefore(updatedSince)) {
+                    listed.add(issue);
+                }
+            }
+            listed.sort(Comparator.comparing((Issue issue) -> issue.updatedAt).thenComparingInt(issue -> issue.number));
+            final int from = Math.min(listed.size(), (pageNumber - 1) * PAGE_SIZE);
+            final int to = Math.min(listed.size(), from + PAGE_SIZE);
+            final StringBuilder body = new StringBuilder("[");
+            for (final Issue issue : listed.subList(from, to)) {
+                body.append(body.length() > 1 ? "," : "").append(issue.toJson());
+            }
+            // Before responding, so the fetcher can't request the next page first.
+            this.afterListing.run();
+            respond(exchange, body.append("]").toString(), to < listed.size()
+                    ? "<" + baseUrl() + "/repos/owner/repo/issues?state=all&page=" + (pageNumber + 1) + ">; rel=\"next\"" : null);
+        });
+        this.server.start();
+
+        put(1, false, "2023-07-01T00:00:00Z", "2023-07-17T11:00:00Z", "2023-07-17T11:00:00Z");
+        put(2, false, "2023-07-17T10:00:00Z", null, "2023-07-17T11:30:00Z");
+        put(3, true, "2023-07-17T12:00:00Z", "2023-07-17T13:00:00Z", "2023-07-17T13:00:00Z");
+        put(4, true, "2023-07-18T08:00:00Z", null, "2023-07-18T08:00:00Z");
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void when_synced_then_countsDerivedFromIndex() throws Exception {
+        final IncrementalGithubFetcher fetcher = newFetcher(new IssueStateIndex());
+
+        final List<RepoInfo> first = fetcher.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo")), this.start, this.end);
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 1, 1, 1, 1, 1, 2)), first);
+        // Each page is listed again from the newest update of the previous one.
+        assertEquals(3, this.queries.size());
+        assertTrue(this.queries.get(1).contains("since=2023-07-17T11%3A30%3A00Z"), this.queries.get(1));
+    }
+
+    @Test
+    public void when_syncedAgain_then_onlyChangesFetched() throws Exception {
+        final IncrementalGithubFetcher fetcher = newFetcher(new IssueStateIndex());
+        fetcher.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo")), this.start, this.end);
+        // Issue 2 is closed after the first sync.
+        put(2, false, "2023-07-17T10:00:00Z", "2023-07-18T09:00:00Z", "2023-07-18T09:00:00Z");
+
+        final List<RepoInfo> second = fetcher.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo")), this.start, this.end);
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 0, 1, 2, 1, 1, 2)), second);
+        assertEquals(4, this.queries.size());
+        assertTrue(this.queries.get(3).contains("since=2023-07-18T08%3A00%3A00Z"), this.queries.get(3));
+    }
+
+    @Test
+    public void when_issueUpdatedMidSync_then_noIssueSkipped() throws Exception {
+        put(5, false, "2023-07-18T08:30:00Z", null, "2023-07-18T08:30:00Z");
+        final IncrementalGithubFetcher fetcher = newFetcher(new IssueStateIndex());
+        // Once the first page is listed, issue 1 is updated, and moves to the end of the listing. Following the offset
+        // links, issue 3 would shift onto the first page, and never be listed.
+        this.afterListing = () -> {
+            this.afterListing = () -> { };
+            put(1, false, "2023-07-01T00:00:00Z", "2023-07-17T11:00:00Z", "2023-07-18T09:00:00Z");
+        };
+
+        final List<RepoInfo> synced = fetcher.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo")), this.start, this.end);
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 2, 1, 1, 2, 1, 2)), synced);
+        assertEquals(5, fetcher.getIndex().get("owner", "repo").size());
+    }
+
+    @Test
+    public void when_wholePageUpdatedInSameSecond_then_nextOffsetPageListed() throws Exception {
+        this.issues.clear();
+        for (int number = 1; number <= 5; number++) {
+            put(number, false, "2023-07-17T10:00:00Z", null, "2023-07-17T11:00:00Z");
+        }
+        final IncrementalGithubFetcher fetcher = newFetcher(new IssueStateIndex());
+
+        fetcher.fetchGithubIssuesFrom(List.of(Map.entry("owner", "repo")), this.start, this.end);
+
+        assertEquals(5, fetcher.getIndex().get("owner", "repo").size());
+        assertTrue(this.queries.get(this.queries.size() - 1).contains("page=3"), this.queries.toString());
+    }
+
+    private IncrementalGithubFetcher newFetcher(final IssueStateIndex index) {
+        return new IncrementalGithubFetcher("test-token", index, baseUrl(), new RateLimitGovernor(true), new GithubHttpClient());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    private void put(final int number, final boolean pullRequest, final String createdAt, final String closedAt, final String updatedAt) {
+        this.issues.put(number, new Issue(number, pullRequest, createdAt, closedAt, Instant.parse(updatedAt)));
+    }
+
+    private void respond(final HttpExchange exchange, final String body, final String link) throws IOException {
+        // Plenty of quota left, so the governor doesn't hold the test back.
+        exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, "5000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, "4000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(System.currentTimeMillis() / 1000 + 60));
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESOURCE_HEADER, "core");
+        if (link != null) {
+            exchange.getResponseHeaders().add("Link", link);
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Issue {
+        private final int number;
+        private final boolean pullRequest;
+        private final String createdAt;
+        private final String closedAt;
+        private final Instant updatedAt;
+
+        private Issue(final int number, final boolean pullRequest, final String createdAt, final String closedAt, final Instant updatedAt) {
+            this.number = number;
+            this.pullRequest = pullRequest;
+            this.createdAt = createdAt;
+            this.closedAt = closedAt;
+            this.updatedAt = updatedAt;
+        }
+
+        private String toJson() {
+            return "{\"number\":" + this.number + ",\"title\":\"Issue " + this.number + "\",\"labels\":[{\"name\":\"bug\"}],"
+                    + "\"created_at\":\"" + this.createdAt + "\",\"updated_at\":\"" + this.updatedAt + "\","
+                    + "\"closed_at\":" + (this.closedAt == null ? "null" : "\"" + this.closedAt + "\"")
+                    + (this.pullRequest ? ",\"pull_request\":{\"url\":\"https://example.com\"}" : "") + "}";
+        }
+    }
+}
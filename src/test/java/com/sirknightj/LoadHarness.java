@@ -0,0 +1,261 @@
+package com.sirknightj;
+
+import com.sirknightj.cloudwatch.FakeCloudWatchServer;
+import com.sirknightj.cloudwatch.GitHubStatsCloudWatchPublisher;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.pipeline.StreamingFetchPipeline;
+import com.sirknightj.ratelimit.TokenPool;
+import com.sirknightj.shard.FileLeaseStore;
+import com.sirknightj.shard.ShardCoordinator;
+import com.sirknightj.utils.RepoInfo;
+import lombok.Data;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives {@link GithubAPI#fetchGithubIssuesFrom} and the CloudWatch publisher end to end against a
+ * {@link FakeGithubServer} and a {@link FakeCloudWatchServer}, the way a one-shot run does, and reports how fast and
+ * how reliably the repositories were collected. Used to check scaling changes without touching GitHub.
+ * <p>
+ * With several instances, the repositories are split between them by {@link ShardCoordinator}s sharing a
+ * {@link FileLeaseStore}, and each instance collects its share with its own tokens, concurrently.
+ * <p>
+ * Arguments of {@link #main}: the number of repositories (default 1000), tokens per instance (3), parallelism (4),
+ * latency in milliseconds (50), the shares of secondary rate limits (0.01) and server errors (0), the number of
+ * instances (1), and the search requests each token may send per minute (unlimited if 0, the default).
+ */
+public final class LoadHarness {
+
+    // Short, so the instances split the shards quickly, but long enough for a renewal to finish under load.
+    private static final Duration LEASE_PERIOD = Duration.ofSeconds(3);
+
+    private LoadHarness() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int repositories = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int tokens = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : GithubAPI.DEFAULT_PARALLELISM;
+        final long latencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 50;
+        final double secondaryRateLimitRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+        final double serverErrorRate = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        final int instances = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+        final int searchLimit = args.length > 7 ? Integer.parseInt(args[7]) : 0;
+
+        final FakeGithubServer.Settings settings = new FakeGithubServer.Settings()
+                .withLatency(Duration.ofMillis(latencyMillis), Duration.ofMillis(latencyMillis / 2))
+                .withFaults(secondaryRateLimitRate, serverErrorRate);
+        if (searchLimit > 0) {
+            // Granted every 10 seconds rather than every minute, so short runs are paced like long ones.
+            settings.withRateLimits(1_000_000, Math.max(1, searchLimit / 6), Duration.ofSeconds(10));
+        }
+        System.out.println(run(settings, repositories, instances, tokens, parallelism).format());
+    }
+
+    /**
+     * Fetches and publishes the last day of {@code repositories} repositories, named {@code load/repo-0} and up.
+     *
+     * @param settings     Behaviour of the GitHub stand-in.
+     * @param repositories Number of repositories.
+     * @param instances    Number of collector instances to split the repositories between.
+     * @param tokens       Number of tokens of each instance. Each has its own budget on the stand-in.
+     * @param parallelism  Repositories each instance fetches concurrently.
+     * @return What happened.
+     * @throws Exception If the stand-ins couldn't be started, or the run was interrupted.
+     */
+    public static LoadReport run(final FakeGithubServer.Settings settings, final int repositories, final int instances,
+                                 final int tokens, final int parallelism) throws Exception {
+        final ZonedDateTime end = settings.getNow().atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+        final ZonedDateTime start = end.minusDays(1);
+        final Path leaseDirectory = Files.createTempDirectory("load-harness-leases");
+        final List<ShardCoordinator> coordinators = new ArrayList<>();
+
+        try (final FakeGithubServer github = new FakeGithubServer(settings);
+             final FakeCloudWatchServer cloudWatch = new FakeCloudWatchServer(0);
+             final GitHubStatsCloudWatchPublisher publisher = new GitHubStatsCloudWatchPublisher(cloudWatch.newClient())) {
+            if (instances > 1) {
+                final FileLeaseStore store = new FileLeaseStore(leaseDirectory);
+                for (int instance = 0; instance < instances; instance++) {
+                    coordinators.add(new ShardCoordinator(store, "instance-" + instance, ShardCoordinator.DEFAULT_SHARDS, LEASE_PERIOD));
+                }
+                coordinators.forEach(ShardCoordinator::start);
+                awaitSplit(coordinators);
+            }
+
+            final Map<String, RepoInfo> fetched = new ConcurrentHashMap<>();
+            final AtomicInteger datumsPublished = new AtomicInteger();
+            final ExecutorService executor = Executors.newFixedThreadPool(instances);
+            final List<Future<?>> runs = new ArrayList<>();
+            final long startNanos = System.nanoTime();
+            for (int instance = 0; instance < instances; instance++) {
+                final List<String> authTokens = new ArrayList<>(tokens);
+                for (int i = 0; i < tokens; i++) {
+                    authTokens.add("load-token-" + instance + "-" + i);
+                }
+                final ShardCoordinator coordinator = coordinators.isEmpty() ? null : coordinators.get(instance);
+                runs.add(executor.submit(() -> {
+                    final GithubAPI fetcher = new GithubAPI(TokenPool.of(authTokens), parallelism, null, github.baseUrl());
+                    final Iterator<Map.Entry<String, String>> owned = repositories(repositories, coordinator);
+                    final PublishResult result = new StreamingFetchPipeline(fetcher, publisher).run(owned, start, end.minusSeconds(1), end,
+                            info -> fetched.put(key(info.getRepositoryOwner(), info.getRepositoryName()), info));
+                    datumsPublished.addAndGet(result.getDatumsPublished());
+                    return null;
+                }));
+            }
+            for (final Future<?> run : runs) {
+                run.get();
+            }
+            final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+            executor.shutdown();
+
+            int correct = 0;
+            for (final RepoInfo info : fetched.values()) {
+                if (info.equals(github.expectedRepoInfo(info.getRepositoryOwner(), info.getRepositoryName(), start, end.minusSeconds(1)))) {
+                    correct++;
+                }
+            }
+            final Set<String> faulted = github.faultedRepositories();
+            int recovered = 0;
+            for (final String repository : faulted) {
+                recovered += fetched.containsKey(repository) ? 1 : 0;
+            }
+            return new LoadReport(repositories, instances, fetched.size(), correct, elapsed, github.requests(),
+                    github.requestsByEndpoint(), github.responsesByStatus(), github.rateLimitRejections(),
+                    github.injectedFaults(), faulted.size(), recovered, datumsPublished.get(), cloudWatch.requests());
+        } finally {
+            coordinators.forEach(ShardCoordinator::close);
+        }
+    }
+
+    /**
+     * Waits until every instance holds its shards, and every shard is held by exactly one instance, which takes a few
+     * renewals as the instances see each other. The split must stay the same for a lease period, as shards are handed
+     * over one by one.
+     */
+    private static void awaitSplit(final List<ShardCoordinator> coordinators) throws InterruptedException {
+        final long deadline = System.nanoTime() + LEASE_PERIOD.multipliedBy(10).toNanos();
+        List<Set<Integer>> stable = null;
+        long stableSinceNanos = 0;
+        while (System.nanoTime() < deadline) {
+            final List<Set<Integer>> split = new ArrayList<>();
+            final Set<Integer> owned = new HashSet<>();
+            int total = 0;
+            boolean everyInstanceOwns = true;
+            for (final ShardCoordinator coordinator : coordinators) {
+                final Set<Integer> shards = coordinator.ownedShards();
+                split.add(shards);
+                owned.addAll(shards);
+                total += shards.size();
+                everyInstanceOwns &= !shards.isEmpty();
+            }
+            if (!everyInstanceOwns || owned.size() != ShardCoordinator.DEFAULT_SHARDS || total != owned.size()) {
+                stable = null;
+            } else if (!split.equals(stable)) {
+                stable = split;
+                stableSinceNanos = System.nanoTime();
+            } else if (System.nanoTime() - stableSinceNanos >= LEASE_PERIOD.toNanos()) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("The instances didn't split the shards within " + LEASE_PERIOD.multipliedBy(10));
+    }
+
+    /**
+     * @return The repositories owned by {@code coordinator}, or all of them if it is {@code null}, read lazily.
+     */
+    private static Iterator<Map.Entry<String, String>> repositories(final int count, final ShardCoordinator coordinator) {
+        return new Iterator<>() {
+            private int next;
+            private Map.Entry<String, String> owned;
+
+            @Override
+            public boolean hasNext() {
+                while (this.owned == null && this.next < count) {
+                    final Map.Entry<String, String> repository = new AbstractMap.SimpleImmutableEntry<>("load", "repo-" + this.next++);
+                    if (coordinator == null || coordinator.owns(repository)) {
+                        this.owned = repository;
+                    }
+                }
+                return this.owned != null;
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<String, String> repository = this.owned;
+                this.owned = null;
+                return repository;
+            }
+        };
+    }
+
+    private static String key(final String owner, final String name) {
+        return (owner + "/" + name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Outcome of a run of the harness.
+     */
+    @Data
+    public static class LoadReport {
+        private final int repositories;
+        private final int instances;
+        private final int repositoriesFetched;
+        // Fetched with exactly the stats the stand-in holds.
+        private final int repositoriesCorrect;
+        private final Duration elapsed;
+        private final int githubRequests;
+        private final Map<String, Integer> requestsByEndpoint;
+        private final Map<Integer, Integer> responsesByStatus;
+        private final int rateLimitRejections;
+        private final int injectedFaults;
+        // Repositories that had a request rejected or failed at least once.
+        private final int repositoriesFaulted;
+        // Of those, the ones that were still fetched.
+        private final int repositoriesRecovered;
+        private final int datumsPublished;
+        private final int cloudWatchRequests;
+
+        public double getRepositoriesPerMinute() {
+            return this.repositoriesFetched * 60_000.0 / Math.max(1, this.elapsed.toMillis());
+        }
+
+        public double getRequestsPerRepository() {
+            return (double) this.githubRequests / Math.max(1, this.repositories);
+        }
+
+        public String format() {
+            return String.format(Locale.ROOT, "Fetched %d of %d repositories (%d correct) with %d instances in %d ms: %.0f repositories/minute%n"
+                            + "GitHub requests: %d, %.2f per repository, by endpoint %s%n"
+                            + "Responses by status: %s%n"
+                            + "Rate limit rejections: %d, injected faults: %d, repositories recovered: %d of %d%n"
+                            + "Datums published: %d in %d PutMetricData requests",
+                    this.repositoriesFetched, this.repositories, this.repositoriesCorrect, this.instances, this.elapsed.toMillis(),
+                    getRepositoriesPerMinute(), this.githubRequests, getRequestsPerRepository(), this.requestsByEndpoint,
+                    this.responsesByStatus, this.rateLimitRejections, this.injectedFaults, this.repositoriesRecovered,
+                    this.repositoriesFaulted, this.datumsPublished, this.cloudWatchRequests);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sirknightj;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadHarnessTest {
+
+    @Test
+    public void when_secondaryRateLimitsInjected_then_everyRepositoryRecoveredAndPublished() throws Exception {
+        final int repositories = 120;
+        final FakeGithubServer.Settings settings = new FakeGithubServer.Settings()
+                .withLatency(Duration.ofMillis(2), Duration.ofMillis(3))
+                .withFaults(0.01, 0);
+
+        final LoadHarness.LoadReport report = LoadHarness.run(settings, repositories, 1, 3, 8);
+
+        assertEquals(repositories, report.getRepositoriesFetched(), report.format());
+        assertEquals(repositories, report.getRepositoriesCorrect(), report.format());
+        assertTrue(report.getInjectedFaults() > 0, report.format());
+        assertEquals(report.getRepositoriesFaulted(), report.getRepositoriesRecovered(), report.format());
+        assertEquals(repositories * 6, report.getDatumsPublished());
+        // Six requests per repository, plus a retry per injected fault.
+        assertEquals(repositories * 6 + report.getInjectedFaults(), report.getGithubRequests(), report.format());
+    }
+
+    @Test
+    public void when_sharded_then_everyRepositoryFetchedOnce() throws Exception {
+        final int repositories = 150;
+        final FakeGithubServer.Settings settings = new FakeGithubServer.Settings()
+                .withLatency(Duration.ofMillis(2), Duration.ofMillis(3));
+
+        final LoadHarness.LoadReport report = LoadHarness.run(settings, repositories, 3, 1, 4);
+
+        assertEquals(repositories, report.getRepositoriesFetched(), report.format());
+        assertEquals(repositories, report.getRepositoriesCorrect(), report.format());
+        assertEquals(repositories * 6, report.getDatumsPublished());
+        // No repository is fetched by two instances.
+        assertEquals(repositories * 6, report.getGithubRequests(), report.format());
+    }
+}
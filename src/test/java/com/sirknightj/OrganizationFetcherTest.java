@@ -0,0 +1,146 @@
+package com.sirknightj;
+
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.utils.RepoInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrganizationFetcherTest {
+
+    private final ZonedDateTime start = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(ZoneId.of("UTC"));
+    private final ZonedDateTime end = this.start.plusDays(1).minusSeconds(1);
+
+    private final AtomicInteger pullRequestRequests = new AtomicInteger();
+    private final AtomicInteger listingRequests = new AtomicInteger();
+    private volatile int quietOpenIssuesCount = 7;
+    private HttpServer server;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/orgs/org/repos", exchange -> {
+            this.listingRequests.incrementAndGet();
+            if (exchange.getRequestURI().getRawQuery().contains("page=2")) {
+                respond(exchange, "[" + repository("dormant", 0, "2021-01-01T00:00:00Z", "2021-01-01T00:00:00Z") + "]", null);
+            } else {
+                respond(exchange, "[" + repository("busy", 12, "2023-07-17T12:00:00Z", "2023-01-01T00:00:00Z") + ","
+                                + repository("quiet", this.quietOpenIssuesCount, "2022-05-01T00:00:00Z", "2023-07-01T00:00:00Z") + "]",
+                        "<" + baseUrl() + "/orgs/org/repos?type=all&per_page=100&page=2>; rel=\"next\"");
+            }
+        });
+        this.server.createContext("/repos/org/", exchange -> {
+            this.pullRequestRequests.incrementAndGet();
+            respond(exchange, "[{\"number\":1}]", "<" + baseUrl() + "/repositories/1/pulls?per_page=1&page=3>; rel=\"last\"");
+        });
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void when_scanningOrganization_then_onlyActiveRepositoriesDelegated() throws Exception {
+        final List<List<Map.Entry<String, String>>> delegated = new ArrayList<>();
+        final OrganizationFetcher fetcher = newFetcher(delegated);
+
+        final List<RepoInfo> first = fetcher.fetchGithubIssuesFrom(
+                List.of(Map.entry("other", "repo"), Map.entry("org", OrganizationFetcher.ALL_REPOSITORIES)), this.start, this.end);
+
+        assertEquals(List.of(List.of(Map.entry("other", "repo"), Map.entry("org", "busy"))), delegated);
+        assertEquals(List.of(
+                new RepoInfo("other", "repo", 1, 1, 1, 1, 1, 1),
+                new RepoInfo("org", "busy", 1, 1, 1, 1, 1, 1),
+                new RepoInfo("org", "quiet", 4, 3, 0, 0, 0, 0),
+                new RepoInfo("org", "dormant", 0, 3, 0, 0, 0, 0)), first);
+        assertEquals(2, this.pullRequestRequests.get());
+
+        // Nothing changed: the open pull requests of the inactive repositories are remembered.
+        fetcher.fetchGithubIssuesFrom(List.of(Map.entry("org", OrganizationFetcher.ALL_REPOSITORIES)), this.start, this.end);
+        assertEquals(2, this.pullRequestRequests.get());
+        assertEquals(List.of(Map.entry("org", "busy")), delegated.get(1));
+
+        // An issue was opened without touching the repository itself.
+        this.quietOpenIssuesCount = 8;
+        fetcher.fetchGithubIssuesFrom(List.of(Map.entry("org", OrganizationFetcher.ALL_REPOSITORIES)), this.start, this.end);
+        assertEquals(List.of(Map.entry("org", "busy"), Map.entry("org", "quiet")), delegated.get(2));
+    }
+
+    @Test
+    public void when_organizationExpanded_then_repositoriesStillSkippedFromListing() throws Exception {
+        final List<List<Map.Entry<String, String>>> delegated = new ArrayList<>();
+        final OrganizationFetcher fetcher = newFetcher(delegated);
+
+        final List<Map.Entry<String, String>> repositories = fetcher.expand(Map.entry("org", OrganizationFetcher.ALL_REPOSITORIES));
+        assertEquals(List.of(Map.entry("org", "busy"), Map.entry("org", "quiet"), Map.entry("org", "dormant")), repositories);
+        assertEquals(List.of(Map.entry("other", "repo")), fetcher.expand(Map.entry("other", "repo")));
+
+        // Scheduled one by one, e.g. split between instances.
+        final List<RepoInfo> repoInfo = fetcher.fetchGithubIssuesFrom(List.of(Map.entry("org", "dormant"), Map.entry("org", "busy")),
+                this.start, this.end);
+
+        assertEquals(List.of(List.of(Map.entry("org", "busy"))), delegated);
+        assertEquals(List.of(
+                new RepoInfo("org", "dormant", 0, 3, 0, 0, 0, 0),
+                new RepoInfo("org", "busy", 1, 1, 1, 1, 1, 1)), repoInfo);
+        // Two pages to expand it, and two more to fetch from it.
+        assertEquals(4, this.listingRequests.get());
+    }
+
+    private OrganizationFetcher newFetcher(final List<List<Map.Entry<String, String>>> delegated) {
+        final GithubAPI githubAPI = new GithubAPI("test-token", 1, null, baseUrl());
+        final GithubStatsFetcher delegate = (repos, start, end) -> {
+            delegated.add(repos);
+            final List<RepoInfo> repoInfo = new ArrayList<>();
+            for (final Map.Entry<String, String> repo : repos) {
+                repoInfo.add(new RepoInfo(repo.getKey(), repo.getValue(), 1, 1, 1, 1, 1, 1));
+            }
+            return repoInfo;
+        };
+        return new OrganizationFetcher(githubAPI, delegate, baseUrl());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    private static String repository(final String name, final int openIssuesCount, final String pushedAt, final String updatedAt) {
+        return "{\"name\":\"" + name + "\",\"full_name\":\"org/" + name + "\",\"owner\":{\"login\":\"org\"},"
+                + "\"description\":null,\"open_issues_count\":" + openIssuesCount + ","
+                + "\"pushed_at\":\"" + pushedAt + "\",\"updated_at\":\"" + updatedAt + "\"}";
+    }
+
+    private void respond(final HttpExchange exchange, final String body, final String link) throws IOException {
+        // Plenty of quota left, so the governor doesn't hold the test back.
+        exchange.getResponseHeaders().add(RateLimitGovernor.LIMIT_HEADER, "5000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.REMAINING_HEADER, "4000");
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESET_HEADER, String.valueOf(System.currentTimeMillis() / 1000 + 60));
+        exchange.getResponseHeaders().add(RateLimitGovernor.RESOURCE_HEADER, "core");
+        if (link != null) {
+            exchange.getResponseHeaders().add("Link", link);
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sirknightj.catalog;
+
+import com.sirknightj.schedule.PollingTier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RepoCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void when_read_then_commentsAndMalformedLinesSkipped() throws Exception {
+        final Path file = this.directory.resolve("repos.txt");
+        Files.write(file, List.of(
+                "# Busy ones",
+                "facebookresearch/audiocraft hot",
+                "",
+                "  aws/aws-sdk-java-v2\thourly  ",
+                "facebookresearch/llama",
+                "aws/*",
+                "not-a-repository",
+                "owner/name sometimes"), StandardCharsets.UTF_8);
+
+        final List<RepoCatalog.CatalogEntry> entries = new ArrayList<>();
+        try (final RepoCatalog.CatalogReader reader = new RepoCatalog(file).open()) {
+            reader.forEachRemaining(entries::add);
+        }
+
+        assertEquals(List.of(
+                new RepoCatalog.CatalogEntry("facebookresearch", "audiocraft", PollingTier.HOT),
+                new RepoCatalog.CatalogEntry("aws", "aws-sdk-java-v2", PollingTier.HOURLY),
+                new RepoCatalog.CatalogEntry("facebookresearch", "llama", null),
+                new RepoCatalog.CatalogEntry("aws", "*", null)), entries);
+    }
+}
@@ -0,0 +1,141 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CloudWatchPublishingPipelineTest {
+
+    @Test
+    public void when_manyDatums_then_splitIntoLimitSizedBatches() {
+        final List<MetricDatum> metricData = GitHubStatsCloudWatchPublisher.toMetricData(repos(400), ZonedDateTime.now());
+
+        final List<List<MetricDatum>> batches = CloudWatchPublishingPipeline.partition(metricData, 1000, Integer.MAX_VALUE);
+        final List<List<MetricDatum>> smallBatches = CloudWatchPublishingPipeline.partition(metricData, 1000, 10_000);
+
+        assertEquals(List.of(1000, 1000, 400), List.of(batches.get(0).size(), batches.get(1).size(), batches.get(2).size()));
+        for (final List<MetricDatum> batch : smallBatches) {
+            final int bytes = batch.stream().mapToInt(CloudWatchPublishingPipeline::estimateSize).sum();
+            assertTrue(bytes <= 10_000);
+        }
+        assertEquals(2400, smallBatches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void when_throttled_then_batchesRetriedAndAllPublished() throws Exception {
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(3);
+             final CloudWatchAsyncClient cw = fake.newClient();
+             final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace,
+                     1000, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES, 2, 5, Duration.ofMillis(10))) {
+
+            final PublishResult result = pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(400), ZonedDateTime.now()));
+
+            assertTrue(result.isSuccess());
+            assertEquals(3, result.getBatches());
+            assertEquals(6, result.getRequests());
+            assertEquals(2400, result.getDatumsPublished());
+            assertEquals(2400, fake.acceptedMetricNames().size());
+            assertTrue(fake.acceptedBatchSizes().stream().allMatch(size -> size <= 1000));
+        }
+    }
+
+    @Test
+    public void when_throttledPastMaxAttempts_then_batchReportedFailed() throws Exception {
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(Integer.MAX_VALUE);
+             final CloudWatchAsyncClient cw = fake.newClient();
+             final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace,
+                     1000, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES, 2, 3, Duration.ofMillis(10))) {
+
+            final PublishResult result = pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(1), ZonedDateTime.now()));
+
+            assertFalse(result.isSuccess());
+            assertEquals(3, result.getRequests());
+            assertEquals(6, result.getDatumsFailed());
+        }
+    }
+
+    @Test
+    public void when_clientThrows_then_batchesReportedFailed() throws Exception {
+        // Throws from putMetricData() itself, rather than failing the future it returns.
+        final CloudWatchAsyncClient cw = new CloudWatchAsyncClient() {
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace,
+                1000, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES, 1, 3, Duration.ofMillis(10))) {
+
+            // With one request in flight, the second batch only goes out once the first one's permit is released.
+            final PublishResult result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(400), ZonedDateTime.now())));
+
+            assertFalse(result.isSuccess());
+            assertEquals(3, result.getFailedBatches());
+            assertEquals(2400, result.getDatumsFailed());
+        }
+    }
+
+    @Test
+    public void when_interruptedWhileWaiting_then_interruptedExceptionThrown() throws Exception {
+        // Never answers.
+        final CloudWatchAsyncClient cw = new CloudWatchAsyncClient() {
+            @Override
+            public CompletableFuture<PutMetricDataResponse> putMetricData(final PutMetricDataRequest request) {
+                return new CompletableFuture<>();
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace)) {
+            final CompletableFuture<Throwable> thrown = new CompletableFuture<>();
+            final Thread publisher = new Thread(() -> {
+                try {
+                    pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(1), ZonedDateTime.now()));
+                    thrown.complete(null);
+                } catch (final Throwable ex) {
+                    thrown.complete(ex);
+                }
+            });
+            publisher.start();
+            publisher.interrupt();
+
+            assertTrue(thrown.get(10, TimeUnit.SECONDS) instanceof InterruptedException);
+        }
+    }
+
+    private static List<RepoInfo> repos(final int count) {
+        final List<RepoInfo> repos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            repos.add(new RepoInfo("owner", "repo" + i, i, i, i, i, i, i));
+        }
+        return repos;
+    }
+}
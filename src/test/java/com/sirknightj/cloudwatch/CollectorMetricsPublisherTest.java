@@ -0,0 +1,84 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.metrics.CollectorMetrics;
+import com.sirknightj.ratelimit.RateLimitResource;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectorMetricsPublisherTest {
+
+    private static final URI PULLS = URI.create("https://api.github.com/repos/o/r/pulls?state=open&per_page=1");
+
+    @Test
+    public void when_publishedTwice_then_onlyWhatWasRecordedSinceIsPublished() throws Exception {
+        final CollectorMetrics metrics = new CollectorMetrics();
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(0);
+             final CollectorMetricsPublisher publisher = new CollectorMetricsPublisher(fake.newClient(), "GitHub Stats Collector", metrics)) {
+            metrics.recordResponse(PULLS, 200, 20_000_000);
+            metrics.recordResponse(PULLS, 200, 20_000_000);
+            metrics.recordResponse(PULLS, 404, 40_000_000);
+            metrics.recordBytesReceived(1500);
+            metrics.recordRateLimitRemaining(this, RateLimitResource.CORE, 5000, 4000, Instant.now().plusSeconds(3600).getEpochSecond());
+
+            final List<MetricDatum> first = publisher.toMetricData(Instant.now());
+
+            final MetricDatum latency = only(first, CollectorMetricsPublisher.REQUEST_LATENCY_METRIC_NAME);
+            assertEquals("repos/pulls", latency.dimensions().get(0).value());
+            assertEquals(2, latency.values().size());
+            assertEquals(3.0, latency.counts().stream().mapToDouble(Double::doubleValue).sum());
+            assertEquals(2, first.stream().filter(datum -> datum.metricName().equals(CollectorMetricsPublisher.RESPONSES_METRIC_NAME)).count());
+            assertEquals(1500.0, only(first, CollectorMetricsPublisher.BYTES_RECEIVED_METRIC_NAME).value());
+            assertEquals(4000.0, only(first, CollectorMetricsPublisher.RATE_LIMIT_REMAINING_METRIC_NAME).value());
+
+            publisher.commit();
+            metrics.recordResponse(PULLS, 200, 20_000_000);
+
+            final List<MetricDatum> second = publisher.toMetricData(Instant.now());
+
+            assertEquals(List.of(1.0), only(second, CollectorMetricsPublisher.REQUEST_LATENCY_METRIC_NAME).counts());
+            assertEquals(1.0, only(second, CollectorMetricsPublisher.RESPONSES_METRIC_NAME).value());
+            assertEquals(0.0, only(second, CollectorMetricsPublisher.BYTES_RECEIVED_METRIC_NAME).value());
+
+            assertTrue(publisher.publish().isSuccess());
+        }
+    }
+
+    @Test
+    public void when_publishFails_then_republishedNextTime() throws Exception {
+        final CollectorMetrics metrics = new CollectorMetrics();
+        // Every attempt of the first publish is throttled.
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(CloudWatchPublishingPipeline.DEFAULT_MAX_ATTEMPTS);
+             final CollectorMetricsPublisher publisher = new CollectorMetricsPublisher(fake.newClient(), "GitHub Stats Collector", metrics)) {
+            metrics.recordResponse(PULLS, 200, 20_000_000);
+            metrics.recordBytesReceived(1500);
+            assertFalse(publisher.publish().isSuccess());
+
+            metrics.recordResponse(PULLS, 200, 20_000_000);
+            final List<MetricDatum> retried = publisher.toMetricData(Instant.now());
+
+            assertEquals(List.of(2.0), only(retried, CollectorMetricsPublisher.REQUEST_LATENCY_METRIC_NAME).counts());
+            assertEquals(2.0, only(retried, CollectorMetricsPublisher.RESPONSES_METRIC_NAME).value());
+            assertEquals(1500.0, only(retried, CollectorMetricsPublisher.BYTES_RECEIVED_METRIC_NAME).value());
+
+            assertTrue(publisher.publish().isSuccess());
+            assertEquals(0.0, only(publisher.toMetricData(Instant.now()), CollectorMetricsPublisher.BYTES_RECEIVED_METRIC_NAME).value());
+        }
+    }
+
+    private static MetricDatum only(final List<MetricDatum> metricData, final String metricName) {
+        final List<MetricDatum> matching = metricData.stream()
+                .filter(datum -> datum.metricName().equals(metricName))
+                .collect(Collectors.toList());
+        assertEquals(1, matching.size(), metricName);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,132 @@
+package com.sirknightj.cloudwatch;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedMetricFormatSinkTest {
+
+    private static final ZonedDateTime COLLECTED = ZonedDateTime.of(2023, 7, 18, 9, 30, 0, 0, ZoneOffset.UTC);
+    private static final List<RepoInfo> REPOSITORIES = List.of(
+            new RepoInfo("owner", "repo", 1, 2, 3, 4, 5, 6),
+            new RepoInfo("owner", "other", 10, 20, 30, 40, 50, 60));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void when_publish_then_oneValidEmfDocumentPerRepository() throws Exception {
+        final StringWriter out = new StringWriter();
+        final PublishResult result;
+        try (final EmbeddedMetricFormatSink sink = new EmbeddedMetricFormatSink(out, true)) {
+            result = sink.publish(REPOSITORIES, COLLECTED);
+        }
+
+        assertEquals(12, result.getDatumsPublished());
+        assertDocuments(List.of(out.toString().split("\n")));
+    }
+
+    @Test
+    public void when_configuredAsEmf_then_documentsAppendedToOutputFile() throws Exception {
+        final Path output = this.directory.resolve("emf.log");
+        try (final MetricsSink sink = MetricsSinks.fromConfiguration(Map.of(MetricsSinks.SINK_VARIABLE, "emf",
+                MetricsSinks.EMF_OUTPUT_VARIABLE, output.toString(), MetricsSinks.SPOOL_FILE_VARIABLE, "none"))) {
+            assertTrue(sink instanceof EmbeddedMetricFormatSink, sink.getClass().getName());
+            sink.publish(REPOSITORIES, COLLECTED);
+        }
+
+        assertDocuments(Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void when_otherThreadsPrintToSameStream_then_documentsNotBrokenUp() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream stream = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+        final AtomicBoolean logging = new AtomicBoolean(true);
+        // Like the console appender, printing log lines while the documents are written.
+        final Thread logger = new Thread(() -> {
+            while (logging.get()) {
+                stream.print("09:30:00.000 [fetch] DEBUG com.sirknightj.GithubAPI - A log line\n");
+            }
+        });
+        logger.start();
+        try (final EmbeddedMetricFormatSink sink = new EmbeddedMetricFormatSink(stream)) {
+            for (int i = 0; i < 200; i++) {
+                sink.publish(REPOSITORIES, COLLECTED);
+            }
+        } finally {
+            logging.set(false);
+            logger.join();
+        }
+
+        final List<String> documents = new ArrayList<>();
+        for (final String line : bytes.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (line.startsWith("{")) {
+                documents.add(line);
+            } else {
+                assertTrue(line.endsWith("A log line"), line);
+            }
+        }
+        assertEquals(400, documents.size());
+        assertDocuments(documents.subList(0, 2));
+        for (final String document : documents) {
+            JsonParser.parseString(document).getAsJsonObject();
+        }
+    }
+
+    private static void assertDocuments(final List<String> lines) {
+        assertEquals(REPOSITORIES.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            final RepoInfo repo = REPOSITORIES.get(i);
+            final JsonObject document = JsonParser.parseString(lines.get(i)).getAsJsonObject();
+
+            final JsonObject aws = document.getAsJsonObject("_aws");
+            assertEquals(COLLECTED.toInstant().toEpochMilli(), aws.get("Timestamp").getAsLong());
+            final JsonObject directive = aws.getAsJsonArray("CloudWatchMetrics").get(0).getAsJsonObject();
+            assertEquals(CloudwatchConstants.customMetricNamespace, directive.get("Namespace").getAsString());
+            final JsonArray dimensionSet = new JsonArray();
+            dimensionSet.add(CloudwatchConstants.repositoryOwnerDimensionName);
+            dimensionSet.add(CloudwatchConstants.repositoryNameDimensionName);
+            final JsonArray dimensions = new JsonArray();
+            dimensions.add(dimensionSet);
+            assertEquals(dimensions, directive.getAsJsonArray("Dimensions"));
+            final List<String> metricNames = new ArrayList<>();
+            directive.getAsJsonArray("Metrics").forEach(metric -> {
+                metricNames.add(metric.getAsJsonObject().get("Name").getAsString());
+                assertEquals("Count", metric.getAsJsonObject().get("Unit").getAsString());
+            });
+            assertEquals(List.of(CloudwatchConstants.openIssuesMetricName, CloudwatchConstants.openPullRequestsMetricName,
+                    CloudwatchConstants.openedPullRequestsMetricName, CloudwatchConstants.closedPullRequestsMetricName,
+                    CloudwatchConstants.openedIssuesMetricName, CloudwatchConstants.closedIssuesMetricName), metricNames);
+
+            assertEquals(repo.getRepositoryOwner(), document.get(CloudwatchConstants.repositoryOwnerDimensionName).getAsString());
+            assertEquals(repo.getRepositoryName(), document.get(CloudwatchConstants.repositoryNameDimensionName).getAsString());
+            assertEquals(repo.getCurrentIssuesOpen(), document.get(CloudwatchConstants.openIssuesMetricName).getAsInt());
+            assertEquals(repo.getCurrentPullRequestsOpen(), document.get(CloudwatchConstants.openPullRequestsMetricName).getAsInt());
+            assertEquals(repo.getPullRequestsOpened(), document.get(CloudwatchConstants.openedPullRequestsMetricName).getAsInt());
+            assertEquals(repo.getPullRequestsClosed(), document.get(CloudwatchConstants.closedPullRequestsMetricName).getAsInt());
+            assertEquals(repo.getIssuesOpened(), document.get(CloudwatchConstants.openedIssuesMetricName).getAsInt());
+            assertEquals(repo.getIssuesClosed(), document.get(CloudwatchConstants.closedIssuesMetricName).getAsInt());
+        }
+    }
+}
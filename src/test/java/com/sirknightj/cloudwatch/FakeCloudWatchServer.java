@@ -0,0 +1,142 @@
+package com.sirknightj.cloudwatch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClientBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in for the CloudWatch PutMetricData API (AWS query protocol). Records the metric names of every
+ * accepted datum, and can throttle a configurable number of requests first.
+ */
+public class FakeCloudWatchServer implements AutoCloseable {
+
+    private static final Pattern METRIC_NAME = Pattern.compile("MetricData\\.member\\.\\d+\\.MetricName=([^&]*)");
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger requestsToThrottle;
+    private final List<String> acceptedMetricNames = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> acceptedBatchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param requestsToThrottle Number of requests to reject with a {@code Throttling} error before accepting any.
+     */
+    public FakeCloudWatchServer(final int requestsToThrottle) throws IOException {
+        this.requestsToThrottle = new AtomicInteger(requestsToThrottle);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public URI endpoint() {
+        return URI.create("http://127.0.0.1:" + this.server.getAddress().getPort());
+    }
+
+    /**
+     * @return An async client pointed at this server, with SDK retries disabled.
+     */
+    public CloudWatchAsyncClient newClient() {
+        return clientBuilder().build();
+    }
+
+    /**
+     * @param httpClient HTTP client the client sends with. Closed when the client is closed.
+     * @return An async client pointed at this server, with SDK retries disabled.
+     */
+    public CloudWatchAsyncClient newClient(final SdkAsyncHttpClient httpClient) {
+        return clientBuilder().httpClient(httpClient).build();
+    }
+
+    private CloudWatchAsyncClientBuilder clientBuilder() {
+        return CloudWatchAsyncClient.builder()
+                .region(Region.US_WEST_2)
+                .endpointOverride(endpoint())
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .overrideConfiguration(ClientOverrideConfiguration.builder().retryPolicy(RetryPolicy.none()).build());
+    }
+
+    public int requests() {
+        return this.requests.get();
+    }
+
+    public List<String> acceptedMetricNames() {
+        synchronized (this.acceptedMetricNames) {
+            return new ArrayList<>(this.acceptedMetricNames);
+        }
+    }
+
+    public List<Integer> acceptedBatchSizes() {
+        synchronized (this.acceptedBatchSizes) {
+            return new ArrayList<>(this.acceptedBatchSizes);
+        }
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        this.requests.incrementAndGet();
+        final String body = readBody(exchange);
+
+        if (this.requestsToThrottle.getAndDecrement() > 0) {
+            respond(exchange, 400, "<ErrorResponse xmlns=\"http://monitoring.amazonaws.com/doc/2010-08-01/\">"
+                    + "<Error><Type>Sender</Type><Code>Throttling</Code><Message>Rate exceeded</Message></Error>"
+                    + "<RequestId>throttled</RequestId></ErrorResponse>");
+            return;
+        }
+
+        final Matcher matcher = METRIC_NAME.matcher(body);
+        int datums = 0;
+        while (matcher.find()) {
+            this.acceptedMetricNames.add(URLDecoder.decode(matcher.group(1), StandardCharsets.UTF_8));
+            datums++;
+        }
+        this.acceptedBatchSizes.add(datums);
+        respond(exchange, 200, "<PutMetricDataResponse xmlns=\"http://monitoring.amazonaws.com/doc/2010-08-01/\">"
+                + "<ResponseMetadata><RequestId>ok</RequestId></ResponseMetadata></PutMetricDataResponse>");
+    }
+
+    private static String readBody(final HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        in.transferTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.sirknightj.cloudwatch;
+
+import com.sirknightj.utils.CloudwatchConstants;
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdkAsyncHttpClientTest {
+
+    @Test
+    public void when_throttled_then_errorParsedAndBatchesRetried() throws Exception {
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(1);
+             final CloudWatchAsyncClient cw = fake.newClient(new JdkAsyncHttpClient());
+             final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace,
+                     1000, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES, 2, 3, Duration.ofMillis(10))) {
+
+            final PublishResult result = pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(200), ZonedDateTime.now()));
+
+            assertTrue(result.isSuccess());
+            assertEquals(3, result.getRequests());
+            assertEquals(1200, result.getDatumsPublished());
+            assertEquals(1200, fake.acceptedMetricNames().size());
+        }
+    }
+
+    @Test
+    public void when_unreachable_then_batchReportedFailed() throws Exception {
+        final URI endpoint;
+        try (final FakeCloudWatchServer fake = new FakeCloudWatchServer(0)) {
+            endpoint = fake.endpoint();
+        }
+        try (final CloudWatchAsyncClient cw = MetricsSinks.cloudWatchClientFromConfiguration(
+                Map.of(MetricsSinks.HTTP_CLIENT_VARIABLE, "jdk", MetricsSinks.ENDPOINT_VARIABLE, endpoint.toString()));
+             final CloudWatchPublishingPipeline pipeline = new CloudWatchPublishingPipeline(cw, CloudwatchConstants.customMetricNamespace,
+                     1000, CloudWatchPublishingPipeline.DEFAULT_MAX_PAYLOAD_BYTES, 2, 1, Duration.ofMillis(10))) {
+
+            final PublishResult result = pipeline.publish(GitHubStatsCloudWatchPublisher.toMetricData(repos(1), ZonedDateTime.now()));
+
+            assertFalse(result.isSuccess());
+            assertEquals(6, result.getDatumsFailed());
+        }
+    }
+
+    private static List<RepoInfo> repos(final int count) {
+        final List<RepoInfo> repos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            repos.add(new RepoInfo("owner", "repo" + i, i, i, i, i, i, i));
+        }
+        return repos;
+    }
+}
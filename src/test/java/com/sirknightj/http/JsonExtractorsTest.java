@@ -0,0 +1,50 @@
+package com.sirknightj.http;
+
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonExtractorsTest {
+
+    @Test
+    public void when_searchResponse_then_totalCountExtracted() throws IOException {
+        final String body = "{\"incomplete_results\":false,\"items\":[{\"number\":1,\"labels\":[{\"total_count\":9}]}],\"total_count\":42}";
+
+        assertEquals(42, JsonExtractors.TOTAL_COUNT.extract(new JsonReader(new StringReader(body)), name -> null));
+    }
+
+    @Test
+    public void when_totalCountMissing_then_throws() {
+        final String body = "{\"message\":\"Validation Failed\"}";
+
+        assertThrows(IOException.class, () -> JsonExtractors.TOTAL_COUNT.extract(new JsonReader(new StringReader(body)), name -> null));
+    }
+
+    @Test
+    public void when_arrayResponse_then_elementsCounted() throws IOException {
+        final String body = "[{\"number\":1,\"user\":{\"login\":\"a\"}},{\"number\":2,\"body\":null},[]]";
+
+        assertEquals(3, JsonExtractors.ARRAY_SIZE.extract(new JsonReader(new StringReader(body)), name -> null));
+    }
+
+    @Test
+    public void when_linkHeaderHasLastPage_then_lastPageNumberIsCount() throws IOException {
+        final String body = "[{\"number\":1234}]";
+        final String link = "<https://api.github.com/repositories/1/pulls?state=open&per_page=1&page=2>; rel=\"next\", "
+                + "<https://api.github.com/repositories/1/pulls?state=open&per_page=1&page=317>; rel=\"last\"";
+
+        assertEquals(317, JsonExtractors.LAST_PAGE_NUMBER.extract(new JsonReader(new StringReader(body)),
+                name -> name.equals("Link") ? link : null));
+    }
+
+    @Test
+    public void when_noLinkHeader_then_itemsOnPageCounted() throws IOException {
+        assertEquals(1, JsonExtractors.LAST_PAGE_NUMBER.extract(new JsonReader(new StringReader("[{}]")), name -> null));
+        assertEquals(0, JsonExtractors.LAST_PAGE_NUMBER.extract(new JsonReader(new StringReader("[]")), name -> null));
+    }
+}
@@ -0,0 +1,41 @@
+package com.sirknightj.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+    @Test
+    public void when_moreEntriesThanMax_then_leastRecentlyUsedEvicted() {
+        final ResponseCache cache = new ResponseCache(2);
+        cache.put("a", "\"etag-a\"", null, 1);
+        cache.put("b", "\"etag-b\"", null, 2);
+        cache.get("a");
+        cache.put("c", "\"etag-c\"", null, 3);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a").getValue());
+        assertEquals(3, cache.get("c").getValue());
+    }
+
+    @Test
+    public void when_flushed_then_reloadedFromFile(@TempDir final Path tempDir) {
+        final Path file = tempDir.resolve("cache.bin");
+        final ResponseCache cache = new ResponseCache(10, file);
+        cache.put("https://api.github.com/search/issues?q=repo:a/b", "W/\"abc\"", "Mon, 17 Jul 2023 16:59:59 GMT", 42);
+        cache.put("https://api.github.com/repos/a/b/pulls?state=open", null, null, 7);
+        cache.flush();
+
+        final ResponseCache reloaded = new ResponseCache(10, file);
+
+        assertEquals(1, reloaded.size());
+        assertEquals(new ResponseCache.Entry("W/\"abc\"", "Mon, 17 Jul 2023 16:59:59 GMT", 42),
+                reloaded.get("https://api.github.com/search/issues?q=repo:a/b"));
+    }
+}
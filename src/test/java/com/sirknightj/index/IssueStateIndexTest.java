@@ -0,0 +1,58 @@
+package com.sirknightj.index;
+
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IssueStateIndexTest {
+
+    @Test
+    public void when_flushedAndReloaded_then_sameCounts(@TempDir final Path tempDir) {
+        final Path file = tempDir.resolve("index.bin");
+        final IssueStateIndex index = new IssueStateIndex(file);
+        final RepoIssueIndex repoIndex = index.get("owner", "repo");
+        // Enough issues to grow the arrays a few times. Every third one is a pull request, every other one is closed.
+        for (int number = 1; number <= 1000; number++) {
+            repoIndex.record(number, number % 3 == 0, number, number % 2 == 0 ? number + 10 : RepoIssueIndex.NOT_CLOSED);
+        }
+        // Updating an issue doesn't add an entry.
+        repoIndex.record(1, false, 1, 5);
+        repoIndex.setSyncedThrough(1234);
+        index.flush();
+
+        final RepoIssueIndex reloaded = new IssueStateIndex(file).get("owner", "repo");
+
+        assertEquals(1000, reloaded.size());
+        assertEquals(1234, reloaded.getSyncedThrough());
+        assertEquals(5L, reloaded.getClosedAt(1));
+        assertEquals(repoIndex.toRepoInfo("owner", "repo", 100, 199), reloaded.toRepoInfo("owner", "repo", 100, 199));
+        assertEquals(new RepoInfo("owner", "repo", 332, 167, 33, 67, 17, 33), reloaded.toRepoInfo("owner", "repo", 100, 199));
+    }
+
+    @Test
+    public void when_historyBucketed_then_openCountsCarriedAcrossWindows() {
+        final RepoIssueIndex repoIndex = new RepoIssueIndex();
+        // Open before the first window, closed in the second.
+        repoIndex.record(1, false, 50, 250);
+        // Opened in the first window, still open.
+        repoIndex.record(2, false, 150, RepoIssueIndex.NOT_CLOSED);
+        // Pull request opened and closed in the second window.
+        repoIndex.record(3, true, 210, 220);
+        // Closed before the first window.
+        repoIndex.record(4, false, 10, 20);
+        // Opened after the last window.
+        repoIndex.record(5, true, 400, RepoIssueIndex.NOT_CLOSED);
+
+        final List<RepoInfo> history = repoIndex.toRepoInfoHistory("owner", "repo", 100, 100, 2);
+
+        assertEquals(List.of(new RepoInfo("owner", "repo", 2, 0, 0, 1, 0, 0),
+                new RepoInfo("owner", "repo", 1, 0, 1, 0, 1, 1)), history);
+        // Each window matches what the single window query derives, apart from the open counts, which are current.
+        assertEquals(history.get(1).getIssuesClosed(), repoIndex.toRepoInfo("owner", "repo", 200, 299).getIssuesClosed());
+    }
+}
@@ -0,0 +1,115 @@
+package com.sirknightj.metrics;
+
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.ratelimit.RateLimitResource;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectorMetricsTest {
+
+    @Test
+    public void when_bucketed_then_everyDurationFallsInItsBucket() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            final int index = LatencyHistogram.bucketIndex(micros);
+            assertTrue(LatencyHistogram.bucketLowerBoundMicros(index) <= micros);
+            assertTrue(index + 1 == LatencyHistogram.BUCKET_COUNT || micros < LatencyHistogram.bucketLowerBoundMicros(index + 1));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void when_recorded_then_percentilesWithinBucketError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMeanMillis(), 0.001);
+        assertEquals(500, snapshot.getP50Millis(), 500 * 0.125);
+        assertEquals(990, snapshot.getP99Millis(), 990 * 0.125);
+        assertEquals(1000, snapshot.getMaxMillis(), 0.001);
+    }
+
+    @Test
+    public void when_recordedConcurrently_then_nothingLost() throws Exception {
+        final CollectorMetrics metrics = new CollectorMetrics();
+        final URI uri = URI.create("https://api.github.com/search/issues?q=repo:o/r");
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.recordResponse(uri, 200, i * 1_000L);
+                    metrics.recordBytesReceived(10);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, metrics.getRequestLatencies().get("search/issues").getCount());
+        assertEquals(Map.of("200", 80_000L), metrics.getResponseStatusCounts());
+        assertEquals(800_000, metrics.getBytesReceived());
+    }
+
+    @Test
+    public void when_endpointNamed_then_ownerAndRepositoryLeftOut() {
+        assertEquals("repos/pulls", CollectorMetrics.endpoint(URI.create("https://api.github.com/repos/o/r/pulls?state=open&per_page=1")));
+        assertEquals("repos/issues", CollectorMetrics.endpoint(URI.create("http://localhost:1234/repos/o/r/issues")));
+        assertEquals("orgs/repos", CollectorMetrics.endpoint(URI.create("https://api.github.com/orgs/o/repos?type=all")));
+        assertEquals("search/issues", CollectorMetrics.endpoint(URI.create("https://api.github.com/search/issues?q=repo:o/r")));
+        assertEquals("graphql", CollectorMetrics.endpoint(URI.create("https://api.github.com/graphql")));
+    }
+
+    @Test
+    public void when_severalTokensReport_then_rateLimitRemainingAddedUp() {
+        final CollectorMetrics metrics = new CollectorMetrics();
+        final Object first = new Object();
+        final Object second = new Object();
+        assertEquals(-1, metrics.getRateLimitRemaining(RateLimitResource.CORE, 1_000));
+
+        metrics.recordRateLimitRemaining(first, RateLimitResource.CORE, 5000, 4000, 2_000);
+        metrics.recordRateLimitRemaining(second, RateLimitResource.CORE, 5000, 100, 3_000);
+        metrics.recordRateLimitRemaining(first, RateLimitResource.CORE, 5000, 3999, 2_000);
+        assertEquals(4099, metrics.getRateLimitRemaining(RateLimitResource.CORE, 1_000));
+        assertEquals(-1, metrics.getRateLimitRemaining(RateLimitResource.SEARCH, 1_000));
+
+        // The first token's window is over, so its whole limit is left.
+        assertEquals(5100, metrics.getRateLimitRemaining(RateLimitResource.CORE, 2_500));
+    }
+
+    @Test
+    public void when_registered_then_readableOverJmx() throws Exception {
+        final CollectorMetrics metrics = CollectorMetrics.getInstance();
+        metrics.registerMBean();
+        metrics.registerMBean();
+        metrics.recordResponse(URI.create("https://api.github.com/repos/o/r/pulls"), 200, 5_000_000);
+        metrics.recordRateLimitRemaining(this, RateLimitResource.SEARCH, 30, 25, Instant.now().plusSeconds(60).getEpochSecond());
+        metrics.recordPublish(new PublishResult(1, 1, 6, 0, 0), 1_000_000);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(CollectorMetrics.OBJECT_NAME);
+
+        assertTrue((Long) server.getAttribute(name, "DatumsPublished") >= 6);
+        assertTrue((Long) ((CompositeData) server.getAttribute(name, "PublishTimes")).get("count") >= 1);
+        assertTrue(server.getAttribute(name, "RequestLatencies").toString().contains("repos/pulls"));
+        assertTrue(server.getAttribute(name, "RateLimitRemaining").toString().contains("SEARCH"));
+    }
+}
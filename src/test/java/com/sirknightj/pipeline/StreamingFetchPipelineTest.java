@@ -0,0 +1,123 @@
+package com.sirknightj.pipeline;
+
+import com.sirknightj.GithubStatsFetcher;
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingFetchPipelineTest {
+
+    private final ZonedDateTime start = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(ZoneId.of("UTC"));
+    private final ZonedDateTime end = this.start.plusDays(1);
+
+    private final RecordingSink sink = new RecordingSink();
+    // Repositories read from the iterator when each batch was published.
+    private final List<Integer> readAtPublish = new CopyOnWriteArrayList<>();
+    private final AtomicInteger read = new AtomicInteger();
+
+    @Test
+    public void when_manyRepositories_then_publishedInBatchesWhileReading() throws Exception {
+        final int repositories = 10_000;
+        final GithubStatsFetcher fetcher = (repos, start, end) -> {
+            final List<RepoInfo> stats = new ArrayList<>(repos.size());
+            for (final Map.Entry<String, String> repo : repos) {
+                stats.add(new RepoInfo(repo.getKey(), repo.getValue(), 1, 0, 0, 0, 0, 0));
+            }
+            return stats;
+        };
+        final StreamingFetchPipeline pipeline = new StreamingFetchPipeline(fetcher, this.sink, 20, 2, 150, Duration.ofSeconds(5));
+        final AtomicInteger fetched = new AtomicInteger();
+
+        final PublishResult result = pipeline.run(repositories(repositories), this.start, this.end, this.end, info -> fetched.incrementAndGet());
+
+        assertEquals(repositories, fetched.get());
+        assertEquals(repositories * 6, result.getDatumsPublished());
+        assertEquals((repositories + 149) / 150, this.sink.batches.size());
+        for (final List<RepoInfo> batch : this.sink.batches) {
+            assertTrue(batch.size() <= 150, "batch of " + batch.size());
+        }
+        // The bounded queues keep the reader a few chunks ahead of the publisher, not the whole catalog.
+        assertTrue(this.readAtPublish.get(0) < 1_000, "read " + this.readAtPublish.get(0) + " before the first publish");
+    }
+
+    @Test
+    public void when_fetchSlow_then_partialBatchPublishedAfterLinger() throws Exception {
+        final GithubStatsFetcher fetcher = (repos, start, end) -> {
+            if ("slow".equals(repos.get(0).getValue())) {
+                Thread.sleep(2_000);
+            }
+            return List.of(new RepoInfo(repos.get(0).getKey(), repos.get(0).getValue(), 0, 0, 0, 0, 0, 0));
+        };
+        final StreamingFetchPipeline pipeline = new StreamingFetchPipeline(fetcher, this.sink, 1, 2, 150, Duration.ofMillis(100));
+
+        pipeline.run(List.of(Map.entry("owner", "fast"), Map.entry("owner", "slow")).iterator(), this.start, this.end, this.end, info -> {
+        });
+
+        assertEquals(2, this.sink.batches.size());
+        assertEquals("fast", this.sink.batches.get(0).get(0).getRepositoryName());
+    }
+
+    @Test
+    public void when_chunkFails_then_restPublished() throws Exception {
+        final GithubStatsFetcher fetcher = (repos, start, end) -> {
+            if ("broken".equals(repos.get(0).getValue())) {
+                throw new IOException("Every repository failed");
+            }
+            return List.of(new RepoInfo(repos.get(0).getKey(), repos.get(0).getValue(), 0, 0, 0, 0, 0, 0));
+        };
+        final StreamingFetchPipeline pipeline = new StreamingFetchPipeline(fetcher, this.sink, 1, 1, 150, Duration.ofSeconds(5));
+
+        final PublishResult result = pipeline.run(List.of(Map.entry("owner", "broken"), Map.entry("owner", "fine")).iterator(),
+                this.start, this.end, this.end, info -> {
+                });
+
+        assertEquals(6, result.getDatumsPublished());
+        assertEquals("fine", this.sink.batches.get(0).get(0).getRepositoryName());
+    }
+
+    private Iterator<Map.Entry<String, String>> repositories(final int count) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return StreamingFetchPipelineTest.this.read.get() < count;
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                return Map.entry("owner", "repo-" + StreamingFetchPipelineTest.this.read.getAndIncrement());
+            }
+        };
+    }
+
+    private class RecordingSink implements MetricsSink {
+        private final List<List<RepoInfo>> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+            StreamingFetchPipelineTest.this.readAtPublish.add(StreamingFetchPipelineTest.this.read.get());
+            this.batches.add(repoInfo);
+            return new PublishResult(1, 1, repoInfo.size() * 6, 0, 0);
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sirknightj.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitGovernorTest {
+
+    private static final Instant NOW = Instant.parse("2023-07-17T16:59:59Z");
+
+    private final RateLimitGovernor governor = new RateLimitGovernor(true, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    public void when_responseHasRateLimitHeaders_then_stateIsRecordedForReportedResource() {
+        final Map<String, String> headers = Map.of(
+                RateLimitGovernor.LIMIT_HEADER, "30",
+                RateLimitGovernor.REMAINING_HEADER, "12",
+                RateLimitGovernor.RESET_HEADER, String.valueOf(NOW.plusSeconds(40).getEpochSecond()),
+                RateLimitGovernor.RESOURCE_HEADER, "search");
+
+        final boolean retry = this.governor.onResponse(RateLimitResource.CORE, 200, headers::get);
+
+        final RateLimitState state = this.governor.getState(RateLimitResource.SEARCH);
+        assertFalse(retry);
+        assertTrue(state.isKnown());
+        assertEquals(30, state.getLimit());
+        assertEquals(12, state.getRemaining());
+        assertNull(state.getPausedUntil());
+        assertFalse(this.governor.getState(RateLimitResource.CORE).isKnown());
+    }
+
+    @Test
+    public void when_budgetExhausted_then_pausedUntilReset() {
+        final Instant reset = NOW.plusSeconds(40);
+        final Map<String, String> headers = Map.of(
+                RateLimitGovernor.LIMIT_HEADER, "30",
+                RateLimitGovernor.REMAINING_HEADER, "0",
+                RateLimitGovernor.RESET_HEADER, String.valueOf(reset.getEpochSecond()));
+
+        final boolean retry = this.governor.onResponse(RateLimitResource.SEARCH, 403, headers::get);
+
+        assertTrue(retry);
+        assertEquals(Duration.ofSeconds(41), this.governor.getState(RateLimitResource.SEARCH).pauseRemaining(NOW));
+    }
+
+    @Test
+    public void when_retryAfterHeader_then_pausedForRetryAfter() {
+        final Map<String, String> headers = Map.of(RateLimitGovernor.RETRY_AFTER_HEADER, "7");
+
+        final boolean retry = this.governor.onResponse(RateLimitResource.CORE, 403, headers::get);
+
+        assertTrue(retry);
+        assertEquals(Duration.ofSeconds(7), this.governor.getState(RateLimitResource.CORE).pauseRemaining(NOW));
+    }
+
+    @Test
+    public void when_secondaryLimitWithoutRetryAfter_then_pausedForBackoff() {
+        // Primary budget left, and no Retry-After: only the message tells it apart from a plain 403.
+        final Map<String, String> headers = Map.of(
+                RateLimitGovernor.LIMIT_HEADER, "5000",
+                RateLimitGovernor.REMAINING_HEADER, "4321",
+                RateLimitGovernor.RESET_HEADER, String.valueOf(NOW.plusSeconds(1800).getEpochSecond()));
+
+        final boolean retry = this.governor.onResponse(RateLimitResource.CORE, 403, headers::get,
+                "{\"message\":\"You have exceeded a secondary rate limit. Please wait a few minutes before you try again.\"}");
+
+        assertTrue(retry);
+        assertEquals(Duration.ofMinutes(1), this.governor.getState(RateLimitResource.CORE).pauseRemaining(NOW));
+    }
+
+    @Test
+    public void when_plainForbidden_then_notRetried() {
+        assertFalse(this.governor.onResponse(RateLimitResource.CORE, 403, name -> null));
+        assertFalse(this.governor.onResponse(RateLimitResource.CORE, 403, name -> null,
+                "{\"message\":\"Resource not accessible by personal access token\"}"));
+    }
+}
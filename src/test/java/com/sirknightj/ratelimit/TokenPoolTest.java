@@ -0,0 +1,58 @@
+package com.sirknightj.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenPoolTest {
+
+    private static final Instant NOW = Instant.parse("2023-07-17T16:59:00Z");
+
+    private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+    private final TokenPool.PooledToken first = new TokenPool.PooledToken("first", () -> "a", new RateLimitGovernor(true, this.clock));
+    private final TokenPool.PooledToken second = new TokenPool.PooledToken("second", () -> "b", new RateLimitGovernor(true, this.clock));
+    private final TokenPool pool = new TokenPool(List.of(this.first, this.second), this.clock);
+
+    @Test
+    public void when_budgetsReported_then_tokenWithMostRemainingChosen() throws Exception {
+        report(this.first, 200, 4000);
+        report(this.second, 200, 4500);
+
+        assertEquals(this.second, this.pool.acquire(RateLimitResource.CORE));
+
+        report(this.second, 200, 100);
+        assertEquals(this.first, this.pool.acquire(RateLimitResource.CORE));
+    }
+
+    @Test
+    public void when_tokenExhausted_then_takenOutOfRotationUntilReset() throws Exception {
+        report(this.first, 200, 10);
+        report(this.second, 403, 0);
+
+        // The second token is paused, so the first is used despite its low budget.
+        assertEquals(this.first, this.pool.acquire(RateLimitResource.CORE));
+        assertEquals(this.first, this.pool.acquire(RateLimitResource.CORE));
+    }
+
+    @Test
+    public void when_budgetUnknown_then_tokenTriedFirst() throws Exception {
+        report(this.first, 200, 4999);
+
+        assertEquals(this.second, this.pool.acquire(RateLimitResource.CORE));
+    }
+
+    private static void report(final TokenPool.PooledToken token, final int status, final int remaining) {
+        final Map<String, String> headers = Map.of(
+                RateLimitGovernor.LIMIT_HEADER, "5000",
+                RateLimitGovernor.REMAINING_HEADER, String.valueOf(remaining),
+                RateLimitGovernor.RESET_HEADER, String.valueOf(NOW.plusSeconds(600).getEpochSecond()),
+                RateLimitGovernor.RESOURCE_HEADER, "core");
+        token.getGovernor().onResponse(RateLimitResource.CORE, status, headers::get);
+    }
+}
@@ -0,0 +1,157 @@
+package com.sirknightj.schedule;
+
+import com.sirknightj.OrganizationFetcher;
+import com.sirknightj.ratelimit.RateLimitGovernor;
+import com.sirknightj.ratelimit.RateLimitResource;
+import com.sirknightj.ratelimit.TokenPool;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepoPollingSchedulerTest {
+
+    private static final Map.Entry<String, String> HOT_A = Map.entry("owner", "hot-a");
+    private static final Map.Entry<String, String> HOT_B = Map.entry("owner", "hot-b");
+    private static final Map.Entry<String, String> QUIET = Map.entry("owner", "quiet");
+
+    private final ZonedDateTime anchor = ZonedDateTime.of(2023, 7, 17, 9, 30, 0, 0, ZoneOffset.UTC);
+    private final Instant start = this.anchor.toInstant().plus(Duration.ofHours(3).plusMinutes(2));
+
+    @Test
+    public void when_sameTierDue_then_batchedByWindow() {
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(null, Map.of(RateLimitResource.CORE, 1), this.anchor);
+        scheduler.add(HOT_A, PollingTier.HOT, this.start);
+        scheduler.add(HOT_B, PollingTier.HOT, this.start);
+        scheduler.add(QUIET, PollingTier.DAILY, this.start);
+
+        final Instant firstDue = this.start.plus(Duration.ofMinutes(3));
+        assertEquals(firstDue, scheduler.nextDue());
+        assertEquals(List.of(), scheduler.pollDue(firstDue.minusSeconds(1)));
+
+        final List<PollingBatch> batches = scheduler.pollDue(firstDue);
+
+        assertEquals(1, batches.size());
+        assertEquals(List.of(HOT_A, HOT_B), batches.get(0).getRepositories());
+        assertEquals(firstDue.minus(PollingTier.HOT.getInterval()), batches.get(0).getStart().toInstant());
+        assertEquals(firstDue, batches.get(0).getEnd().toInstant());
+    }
+
+    @Test
+    public void when_ticksMissed_then_windowsCaughtUpOldestFirst() {
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(null, Map.of(RateLimitResource.CORE, 1), this.anchor);
+        scheduler.add(HOT_A, PollingTier.HOT, this.start);
+        final Instant firstDue = scheduler.nextDue();
+        // Suspended for 12 minutes: the windows ending at +0, +5 and +10 were missed.
+        final Instant late = firstDue.plus(Duration.ofMinutes(12));
+
+        for (int window = 0; window < 3; window++) {
+            final List<PollingBatch> batches = scheduler.pollDue(late);
+            assertEquals(1, batches.size());
+            assertEquals(firstDue.plus(PollingTier.HOT.getInterval().multipliedBy(window)), batches.get(0).getEnd().toInstant());
+            scheduler.complete(batches.get(0), Set.of("owner/hot-a"), late);
+        }
+
+        assertEquals(List.of(), scheduler.pollDue(late));
+        assertEquals(firstDue.plus(Duration.ofMinutes(15)), scheduler.nextDue());
+    }
+
+    @Test
+    public void when_organizationExpanded_then_eachRepositoryPolledOncePerWindow() {
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(null, Map.of(RateLimitResource.CORE, 1), this.anchor);
+        // Its repositories come back under their own names, so the organization itself could never succeed.
+        assertThrows(IllegalArgumentException.class,
+                () -> scheduler.add(Map.entry("org", OrganizationFetcher.ALL_REPOSITORIES), PollingTier.HOT, this.start));
+        assertTrue(scheduler.add(Map.entry("org", "a"), PollingTier.HOT, this.start));
+        assertTrue(scheduler.add(Map.entry("org", "b"), PollingTier.HOT, this.start));
+        // Listed both on its own and in its organization.
+        assertFalse(scheduler.add(Map.entry("org", "a"), PollingTier.DAILY, this.start));
+        final Instant firstDue = scheduler.nextDue();
+
+        final List<PollingBatch> batches = scheduler.pollDue(firstDue);
+        assertEquals(List.of(Map.entry("org", "a"), Map.entry("org", "b")), batches.get(0).getRepositories());
+        scheduler.complete(batches.get(0), Set.of("org/a", "org/b"), firstDue);
+
+        assertEquals(2, scheduler.size());
+        assertEquals(firstDue.plus(PollingTier.HOT.getInterval()), scheduler.nextDue());
+    }
+
+    @Test
+    public void when_pollFails_then_windowRetriedThenSkipped() {
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(null, Map.of(RateLimitResource.CORE, 1), this.anchor);
+        scheduler.add(HOT_A, PollingTier.HOT, this.start);
+        Instant now = scheduler.nextDue();
+        final Instant windowEnd = now;
+
+        for (int attempt = 1; attempt < RepoPollingScheduler.MAX_ATTEMPTS; attempt++) {
+            final PollingBatch batch = scheduler.pollDue(now).get(0);
+            assertEquals(windowEnd, batch.getEnd().toInstant());
+            scheduler.complete(batch, Set.of(), now);
+            assertEquals(now.plus(RepoPollingScheduler.RETRY_DELAY), scheduler.nextDue());
+            now = scheduler.nextDue();
+        }
+        scheduler.complete(scheduler.pollDue(now).get(0), Set.of(), now);
+
+        assertEquals(windowEnd.plus(PollingTier.HOT.getInterval()), scheduler.nextDue());
+    }
+
+    @Test
+    public void when_budgetShort_then_lowerTiersDeferredUntilReset() {
+        // Governors compare resets against the system clock.
+        final Instant now = Instant.now();
+        final RateLimitGovernor governor = new RateLimitGovernor(true);
+        final TokenPool tokenPool = new TokenPool(List.of(new TokenPool.PooledToken("token", () -> "t", governor)));
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(tokenPool, Map.of(RateLimitResource.SEARCH, 5),
+                ZonedDateTime.ofInstant(now.minus(Duration.ofDays(1).plusHours(1)), ZoneOffset.UTC));
+        scheduler.add(QUIET, PollingTier.DAILY, now.minus(Duration.ofDays(1)));
+        scheduler.add(HOT_A, PollingTier.HOT, now.minus(Duration.ofMinutes(10)));
+
+        // 20 of 30 left: the hot repository takes 5, and the daily one would leave 10, under its reserve of 15.
+        final Instant reset = now.plusSeconds(60);
+        governor.onResponse(RateLimitResource.SEARCH, 200, Map.of(
+                RateLimitGovernor.LIMIT_HEADER, "30",
+                RateLimitGovernor.REMAINING_HEADER, "20",
+                RateLimitGovernor.RESET_HEADER, String.valueOf(reset.getEpochSecond()),
+                RateLimitGovernor.RESOURCE_HEADER, "search")::get);
+
+        final List<PollingBatch> batches = scheduler.pollDue(now);
+
+        assertEquals(1, batches.size());
+        assertEquals(List.of(HOT_A), batches.get(0).getRepositories());
+        assertEquals(Instant.ofEpochSecond(reset.getEpochSecond()), scheduler.nextDue());
+    }
+
+    @Test
+    public void when_notOwned_then_windowsSkippedUntilReclaimed() {
+        final RepoPollingScheduler scheduler = new RepoPollingScheduler(null, Map.of(RateLimitResource.CORE, 1), this.anchor);
+        scheduler.add(HOT_A, PollingTier.HOT, this.start);
+        scheduler.add(HOT_B, PollingTier.HOT, this.start);
+        scheduler.setOwnership(repository -> !HOT_B.equals(repository));
+        final Instant firstDue = scheduler.nextDue();
+        final Instant late = firstDue.plus(Duration.ofMinutes(7));
+
+        // Two windows of hot-b ended while another instance owned it.
+        List<PollingBatch> batches = scheduler.pollDue(late);
+        assertEquals(List.of(HOT_A), batches.get(0).getRepositories());
+        scheduler.complete(batches.get(0), Set.of("owner/hot-a"), late);
+
+        // Taken over: the windows that ended after the other instance last held it are due again.
+        scheduler.setOwnership(repository -> true);
+        assertEquals(1, scheduler.reclaim(HOT_B::equals, firstDue.plusSeconds(1), late));
+
+        batches = scheduler.pollDue(late);
+        assertEquals(1, batches.size());
+        assertEquals(Set.of(HOT_A, HOT_B), Set.copyOf(batches.get(0).getRepositories()));
+        assertEquals(firstDue.plus(PollingTier.HOT.getInterval()), batches.get(0).getEnd().toInstant());
+    }
+}
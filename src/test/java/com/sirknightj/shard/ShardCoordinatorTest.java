@@ -0,0 +1,166 @@
+package com.sirknightj.shard;
+
+import com.sirknightj.OrganizationFetcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardCoordinatorTest {
+
+    private static final int SHARDS = 64;
+    private static final Duration LEASE_PERIOD = Duration.ofSeconds(30);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-07-17T09:30:00Z"));
+
+    @TempDir
+    Path leaseDirectory;
+
+    @Test
+    public void when_instancesJoin_then_everyRepositoryOwnedByExactlyOne() throws Exception {
+        final FileLeaseStore store = new FileLeaseStore(this.leaseDirectory);
+        final List<ShardCoordinator> instances = List.of(instance(store, "a"), instance(store, "b"), instance(store, "c"));
+
+        // The first instance takes every shard, then hands the others' over once it sees them.
+        refreshAll(instances, 3);
+
+        final Set<Integer> owned = new HashSet<>();
+        for (final ShardCoordinator instance : instances) {
+            final Set<Integer> shards = instance.ownedShards();
+            assertTrue(shards.size() >= SHARDS / 6, instance.getInstanceId() + " owns " + shards);
+            for (final Integer shard : shards) {
+                assertTrue(owned.add(shard), "shard " + shard + " owned twice");
+            }
+        }
+        assertEquals(SHARDS, owned.size());
+
+        final Map<String, Integer> repositories = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            final Map.Entry<String, String> repository = Map.entry("owner", "repo-" + i);
+            int owners = 0;
+            for (final ShardCoordinator instance : instances) {
+                if (instance.owns(repository)) {
+                    owners++;
+                    repositories.merge(instance.getInstanceId(), 1, Integer::sum);
+                }
+            }
+            assertEquals(1, owners, repository.toString());
+        }
+        for (final int count : repositories.values()) {
+            assertTrue(count > 3000 / 6, repositories.toString());
+        }
+    }
+
+    @Test
+    public void when_organizationExpanded_then_itsRepositoriesSpreadOverShards() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> ShardCoordinator.shardOf("aws", OrganizationFetcher.ALL_REPOSITORIES, SHARDS));
+
+        final Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            shards.add(ShardCoordinator.shardOf("aws", "repo-" + i, SHARDS));
+        }
+        assertTrue(shards.size() > SHARDS / 2, shards.toString());
+    }
+
+    @Test
+    public void when_instanceDies_then_shardsTakenOverWithinLeasePeriod() throws Exception {
+        final FileLeaseStore store = new FileLeaseStore(this.leaseDirectory);
+        final ShardCoordinator a = instance(store, "a");
+        final ShardCoordinator b = instance(store, "b");
+        final ShardCoordinator c = instance(store, "c");
+        refreshAll(List.of(a, b, c), 3);
+        final Set<Integer> shardsOfC = c.ownedShards();
+        final Instant lastRenewalOfC = this.clock.instant();
+        final Map<Integer, Instant> takenOver = new HashMap<>();
+        a.onTakeover(takenOver::put);
+        b.onTakeover(takenOver::put);
+
+        // c stops renewing. Its leases are still held within the period.
+        this.clock.advance(LEASE_PERIOD.minusSeconds(1));
+        refreshAll(List.of(a, b), 1);
+        assertEquals(SHARDS - shardsOfC.size(), a.ownedShards().size() + b.ownedShards().size());
+
+        this.clock.advance(Duration.ofSeconds(1));
+        refreshAll(List.of(a, b), 1);
+
+        assertEquals(SHARDS, a.ownedShards().size() + b.ownedShards().size());
+        assertEquals(shardsOfC, takenOver.keySet());
+        for (final Instant since : takenOver.values()) {
+            assertEquals(lastRenewalOfC, since);
+        }
+    }
+
+    @Test
+    public void when_leaseHeldByAnother_then_notAcquiredUntilReleased() throws Exception {
+        final FileLeaseStore store = new FileLeaseStore(this.leaseDirectory);
+        final Instant now = this.clock.instant();
+
+        final Lease first = store.acquire("shard-1", "a", LEASE_PERIOD, now);
+        assertNull(first.getPreviousHolder());
+        assertNull(store.acquire("shard-1", "b", LEASE_PERIOD, now.plusSeconds(10)));
+
+        store.release("shard-1", "a", now.plusSeconds(20));
+        final Lease second = store.acquire("shard-1", "b", LEASE_PERIOD, now.plusSeconds(21));
+
+        assertEquals("b", second.getHolder());
+        assertEquals("a", second.getPreviousHolder());
+        assertEquals(now.plusSeconds(20), second.getPreviousRenewedAt());
+        assertEquals(List.of(second), store.listHeld("shard-", now.plusSeconds(21)));
+        assertEquals(List.of(), store.listHeld("shard-", second.getExpiresAt()));
+    }
+
+    private ShardCoordinator instance(final LeaseStore store, final String instanceId) {
+        return new ShardCoordinator(store, instanceId, SHARDS, LEASE_PERIOD, this.clock);
+    }
+
+    private static void refreshAll(final List<ShardCoordinator> instances, final int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (final ShardCoordinator instance : instances) {
+                instance.refresh();
+            }
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        private void advance(final Duration duration) {
+            this.now = this.now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.now;
+        }
+    }
+}
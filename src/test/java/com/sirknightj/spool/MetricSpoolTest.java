@@ -0,0 +1,133 @@
+package com.sirknightj.spool;
+
+import com.sirknightj.cloudwatch.MetricsSink;
+import com.sirknightj.cloudwatch.PublishResult;
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricSpoolTest {
+
+    private static final ZonedDateTime COLLECTED = ZonedDateTime.of(2023, 7, 17, 16, 30, 0, 0, ZoneOffset.UTC);
+
+    private final List<RepoInfo> first = List.of(new RepoInfo("owner", "repo", 1, 2, 3, 4, 5, 6));
+    private final List<RepoInfo> second = List.of(new RepoInfo("owner", "other", 7, 8, 9, 10, 11, 12),
+            new RepoInfo("another-owner", "repo", 0, 0, 0, 0, 0, 0));
+
+    @Test
+    public void when_reopened_then_onlyUncommittedBatchesPending(@TempDir final Path tempDir) throws Exception {
+        final Path file = tempDir.resolve("spool.bin");
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            spool.commit(spool.append(this.first, COLLECTED));
+            spool.append(this.second, COLLECTED.plusDays(1));
+        }
+
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            final List<MetricSpool.SpooledBatch> pending = spool.pending();
+
+            assertEquals(1, pending.size());
+            assertEquals(this.second, pending.get(0).getRepoInfo());
+            assertEquals(COLLECTED.plusDays(1).toInstant(), pending.get(0).getMetricCollectedTime().toInstant());
+        }
+    }
+
+    @Test
+    public void when_alreadyOpen_then_notOpenedAgainUntilClosed(@TempDir final Path tempDir) throws Exception {
+        final Path file = tempDir.resolve("spool.bin");
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            spool.append(this.first, COLLECTED);
+            final IOException ex = assertThrows(IOException.class, () -> new MetricSpool(file));
+            assertTrue(ex.getMessage().contains("already used"), ex.getMessage());
+        }
+
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            assertEquals(1, spool.pendingCount());
+        }
+    }
+
+    @Test
+    public void when_lastRecordTorn_then_ignored(@TempDir final Path tempDir) throws Exception {
+        final Path file = tempDir.resolve("spool.bin");
+        final long secondId;
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            spool.append(this.first, COLLECTED);
+            secondId = spool.append(this.second, COLLECTED);
+        }
+        // Corrupt the payload of the second record, as if the process died while writing it.
+        try (final RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(secondId + 20);
+            raw.write(0x7f);
+        }
+
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            assertEquals(1, spool.pendingCount());
+            assertEquals(this.first, spool.pending().get(0).getRepoInfo());
+
+            // New records go where the torn one was.
+            spool.append(this.second, COLLECTED);
+            assertEquals(2, spool.pending().size());
+        }
+    }
+
+    @Test
+    public void when_publishFails_then_replayedOnNextPublish(@TempDir final Path tempDir) throws Exception {
+        final RecordingSink delegate = new RecordingSink();
+        final Clock clock = Clock.fixed(COLLECTED.plusDays(2).toInstant(), ZoneOffset.UTC);
+        try (final SpoolingMetricsSink sink = new SpoolingMetricsSink(delegate, new MetricSpool(tempDir.resolve("spool.bin")), clock)) {
+            delegate.fail = true;
+            sink.publish(this.first, COLLECTED);
+
+            delegate.fail = false;
+            sink.publish(this.second, COLLECTED.plusDays(1));
+        }
+
+        assertEquals(List.of(this.first, this.first, this.second), delegate.published);
+    }
+
+    @Test
+    public void when_pendingBatchTooOld_then_dropped(@TempDir final Path tempDir) throws Exception {
+        final Path file = tempDir.resolve("spool.bin");
+        try (final MetricSpool spool = new MetricSpool(file)) {
+            spool.append(this.first, COLLECTED);
+        }
+
+        final RecordingSink delegate = new RecordingSink();
+        final Clock clock = Clock.fixed(Instant.from(COLLECTED.plusDays(15)), ZoneOffset.UTC);
+        try (final MetricSpool spool = new MetricSpool(file);
+             final SpoolingMetricsSink ignored = new SpoolingMetricsSink(delegate, spool, clock)) {
+            assertEquals(0, spool.pendingCount());
+        }
+        assertEquals(List.of(), delegate.published);
+    }
+
+    private static final class RecordingSink implements MetricsSink {
+        private final List<List<RepoInfo>> published = new ArrayList<>();
+        private boolean fail;
+
+        @Override
+        public PublishResult publish(final List<RepoInfo> repoInfo, final ZonedDateTime metricCollectedTime) {
+            this.published.add(repoInfo);
+            return this.fail
+                    ? new PublishResult(1, 1, 0, 1, repoInfo.size() * 6)
+                    : new PublishResult(1, 1, repoInfo.size() * 6, 0, 0);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
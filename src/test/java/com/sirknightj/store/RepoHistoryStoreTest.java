@@ -0,0 +1,78 @@
+package com.sirknightj.store;
+
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RepoHistoryStoreTest {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    // A Monday.
+    private final ZonedDateTime monday = LocalDateTime.of(2023, 7, 17, 9, 30).atZone(UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void when_reopened_then_snapshotsKept() throws Exception {
+        // Small growth, so the columns are remapped several times.
+        try (final RepoHistoryStore store = new RepoHistoryStore(this.directory, 3)) {
+            for (int day = 0; day < 5; day++) {
+                store.append(List.of(
+                        new RepoInfo("owner", "a", day, 1, 0, 1, 0, 0),
+                        new RepoInfo("owner", "b", 10 + day, 2, 0, 0, 0, 0)), this.monday.plusDays(day));
+            }
+        }
+
+        try (final RepoHistoryStore store = new RepoHistoryStore(this.directory, 3)) {
+            assertEquals(10, store.size());
+            final List<HistorySnapshot> snapshots = store.snapshots("OWNER/A",
+                    this.monday.plusDays(1).toInstant(), this.monday.plusDays(3).toInstant());
+
+            assertEquals(List.of(
+                    new HistorySnapshot(this.monday.plusDays(1).toInstant(), new RepoInfo("owner", "a", 1, 1, 0, 1, 0, 0)),
+                    new HistorySnapshot(this.monday.plusDays(2).toInstant(), new RepoInfo("owner", "a", 2, 1, 0, 1, 0, 0))), snapshots);
+            assertEquals(List.of(), store.snapshots("owner/unknown", Instant.EPOCH, Instant.MAX));
+        }
+    }
+
+    @Test
+    public void when_rolledUp_then_flowsSummedAndLatestOpenKept() throws Exception {
+        try (final RepoHistoryStore store = new RepoHistoryStore(this.directory)) {
+            // Two weeks of daily snapshots, the second week appended first, as when missed windows are caught up on.
+            final List<ZonedDateTime> days = new ArrayList<>();
+            for (int day = 7; day < 14; day++) {
+                days.add(this.monday.plusDays(day));
+            }
+            for (int day = 0; day < 7; day++) {
+                days.add(this.monday.plusDays(day));
+            }
+            for (final ZonedDateTime day : days) {
+                final int dayOfRange = (int) Duration.between(this.monday, day).toDays();
+                store.append(List.of(new RepoInfo("owner", "a", 100 + dayOfRange, 5, 1, 2, 3, 4)), day);
+            }
+
+            final List<RollupRow> weeks = store.rollup(null, Instant.EPOCH, this.monday.plusDays(30).toInstant(), RollupPeriod.WEEK, UTC);
+            final List<RollupRow> months = store.rollup("owner/a", Instant.EPOCH, this.monday.plusDays(30).toInstant(), RollupPeriod.MONTH, UTC);
+
+            final ZonedDateTime weekStart = this.monday.toLocalDate().atStartOfDay(UTC);
+            assertEquals(List.of(
+                    new RollupRow("owner/a", weekStart, 7, 14, 7, 28, 21, 106, 5),
+                    new RollupRow("owner/a", weekStart.plusWeeks(1), 7, 14, 7, 28, 21, 113, 5)), weeks);
+            assertEquals(List.of(
+                    new RollupRow("owner/a", weekStart.withDayOfMonth(1), 14, 28, 14, 56, 42, 113, 5)), months);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.sirknightj.webhook;
+
+import com.sirknightj.utils.RepoInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Replays deliveries recorded from GitHub, signed with the test secret, against a local server.
+ */
+class WebhookServerTest {
+
+    private static final String SECRET = "It's a Secret to Everybody";
+
+    private final WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(SECRET);
+    private final LiveRepoCounters counters = new LiveRepoCounters();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private WebhookServer server;
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        this.server = new WebhookServer(new InetSocketAddress("127.0.0.1", 0), this.verifier, this.counters);
+        // Open counts are only published once polled.
+        this.counters.track("facebookresearch", "audiocraft");
+        this.counters.reconcile((repos, start, end) -> List.of(new RepoInfo("facebookresearch", "audiocraft", 10, 4, 0, 0, 0, 0)));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        this.server.close();
+    }
+
+    @Test
+    public void when_deliveriesReplayed_then_counted() throws Exception {
+        assertEquals(204, replay("issues", "issues-opened.json"));
+        assertEquals(204, replay("issues", "issues-labeled.json"));
+        assertEquals(204, replay("issues", "issues-closed.json"));
+        assertEquals(204, replay("pull_request", "pull_request-opened.json"));
+        assertEquals(204, replay("pull_request", "pull_request-closed.json"));
+        assertEquals(204, replay("ping", "issues-opened.json"));
+
+        assertEquals(List.of(new RepoInfo("facebookresearch", "audiocraft", 10, 4, 1, 1, 1, 1)), this.counters.drain());
+        // Opened and closed start over after a drain. Open counts don't.
+        assertEquals(204, replay("issues", "issues-opened.json"));
+        assertEquals(List.of(new RepoInfo("facebookresearch", "audiocraft", 11, 4, 0, 1, 0, 0)), this.counters.drain());
+    }
+
+    @Test
+    public void when_reconciled_then_eventsDuringPollKept() throws Exception {
+        // A delivery was missed: 12 issues are open, not 10. One more is opened while polling.
+        this.counters.reconcile((repos, start, end) -> {
+            try {
+                assertEquals(204, replay("issues", "issues-opened.json"));
+            } catch (final Exception ex) {
+                throw new IOException(ex);
+            }
+            return List.of(new RepoInfo("FacebookResearch", "AudioCraft", 12, 4, 0, 0, 0, 0));
+        });
+
+        assertEquals(List.of(new RepoInfo("facebookresearch", "audiocraft", 13, 4, 0, 1, 0, 0)), this.counters.drain());
+    }
+
+    @Test
+    public void when_signed_then_matchesGithubExample() {
+        // https://docs.github.com/en/webhooks/using-webhooks/validating-webhook-deliveries#testing-the-webhook-payload-validation
+        assertEquals("sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17",
+                this.verifier.sign("Hello, World!".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void when_redelivered_then_countedOnce() throws Exception {
+        final String deliveryId = UUID.randomUUID().toString();
+        final byte[] body = payload("issues-opened.json");
+
+        assertEquals(204, send("issues", deliveryId, body, this.verifier.sign(body)));
+        assertEquals(204, send("issues", deliveryId, body, this.verifier.sign(body)));
+
+        assertEquals(1, this.counters.drain().get(0).getIssuesOpened());
+    }
+
+    @Test
+    public void when_signatureWrong_then_rejected() throws Exception {
+        final byte[] body = payload("issues-opened.json");
+        final String otherSignature = new WebhookSignatureVerifier("another secret").sign(body);
+
+        assertEquals(401, send("issues", UUID.randomUUID().toString(), body, otherSignature));
+        assertEquals(401, send("issues", UUID.randomUUID().toString(), body, null));
+
+        assertEquals(List.of(new RepoInfo("facebookresearch", "audiocraft", 10, 4, 0, 0, 0, 0)), this.counters.drain());
+    }
+
+    @Test
+    public void when_payloadMalformed_then_rejected() throws Exception {
+        final byte[] body = "{\"action\": \"opened\"".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(400, send("issues", UUID.randomUUID().toString(), body, this.verifier.sign(body)));
+    }
+
+    private int replay(final String event, final String resource) throws Exception {
+        final byte[] body = payload(resource);
+        return send(event, UUID.randomUUID().toString(), body, this.verifier.sign(body));
+    }
+
+    private int send(final String event, final String deliveryId, final byte[] body, final String signature) throws Exception {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + this.server.getPort() + WebhookServer.DEFAULT_PATH))
+                .header(WebhookServer.EVENT_HEADER, event)
+                .header(WebhookServer.DELIVERY_HEADER, deliveryId)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (signature != null) {
+            request.header(WebhookSignatureVerifier.SIGNATURE_HEADER, signature);
+        }
+        return this.client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static byte[] payload(final String resource) throws IOException {
+        try (final InputStream in = WebhookServerTest.class.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+}